@@ -1610,7 +1610,10 @@ public class PGraphicsJava2D extends PGraphics {
         // https://github.com/processing/processing/issues/2208
         who.pixels = new int[who.pixelWidth * who.pixelHeight];
       }
-      cash.update(who, tint, tintColor);
+      // only copy the area changed since the last time it was drawn
+      cash.update(who, tint, tintColor,
+                  who.getModifiedX1(), who.getModifiedY1(),
+                  who.getModifiedX2(), who.getModifiedY2());
       who.setModified(false);
     }
 
@@ -1669,6 +1672,18 @@ public class PGraphicsJava2D extends PGraphics {
      * with the update without further checks.
      */
     public void update(PImage source, boolean tint, int tintColor) {
+      update(source, tint, tintColor,
+             0, 0, source.pixelWidth, source.pixelHeight);
+    }
+
+
+    /**
+     * Update only the pixels from x1, y1 up to (not including) x2, y2,
+     * which is usually the area that was changed with set() or
+     * updatePixels(x, y, w, h) since the image was last drawn.
+     */
+    public void update(PImage source, boolean tint, int tintColor,
+                       int x1, int y1, int x2, int y2) {
       //int bufferType = BufferedImage.TYPE_INT_ARGB;
       int targetType = ARGB;
       boolean opaque = (tintColor & 0xFF000000) == 0xFF000000;
@@ -1690,6 +1705,11 @@ public class PGraphicsJava2D extends PGraphics {
                                   BufferedImage.TYPE_INT_ARGB);
       }
 
+      int w = x2 - x1;
+      if (w <= 0 || y2 <= y1) {
+        return;
+      }
+      int stride = source.pixelWidth;
       WritableRaster wr = image.getRaster();
       if (tint) {
         if (tintedTemp == null || tintedTemp.length != source.pixelWidth) {
@@ -1706,9 +1726,9 @@ public class PGraphicsJava2D extends PGraphics {
         if (targetType == RGB) {
           // The target image is opaque, meaning that the source image has no
           // alpha (is not ARGB), and the tint has no alpha.
-          int index = 0;
-          for (int y = 0; y < source.pixelHeight; y++) {
-            for (int x = 0; x < source.pixelWidth; x++) {
+          for (int y = y1; y < y2; y++) {
+            int index = y*stride + x1;
+            for (int x = 0; x < w; x++) {
               int argb1 = source.pixels[index++];
               int r1 = (argb1 >> 16) & 0xff;
               int g1 = (argb1 >> 8) & 0xff;
@@ -1722,7 +1742,7 @@ public class PGraphicsJava2D extends PGraphics {
                   ((g2 * g1) & 0xff00) |
                   (((b2 * b1) & 0xff00) >> 8);
             }
-            wr.setDataElements(0, y, source.pixelWidth, 1, tintedTemp);
+            wr.setDataElements(x1, y, w, 1, tintedTemp);
           }
           // could this be any slower?
 //          float[] scales = { tintR, tintG, tintB };
@@ -1735,19 +1755,19 @@ public class PGraphicsJava2D extends PGraphics {
           if (source.format == RGB &&
               (tintColor & 0xffffff) == 0xffffff) {
             int hi = tintColor & 0xff000000;
-            int index = 0;
-            for (int y = 0; y < source.pixelHeight; y++) {
-              for (int x = 0; x < source.pixelWidth; x++) {
+            for (int y = y1; y < y2; y++) {
+              int index = y*stride + x1;
+              for (int x = 0; x < w; x++) {
                 tintedTemp[x] = hi | (source.pixels[index++] & 0xFFFFFF);
               }
-              wr.setDataElements(0, y, source.pixelWidth, 1, tintedTemp);
+              wr.setDataElements(x1, y, w, 1, tintedTemp);
             }
           } else {
-            int index = 0;
-            for (int y = 0; y < source.pixelHeight; y++) {
+            for (int y = y1; y < y2; y++) {
+              int index = y*stride + x1;
               if (source.format == RGB) {
                 int alpha = tintColor & 0xFF000000;
-                for (int x = 0; x < source.pixelWidth; x++) {
+                for (int x = 0; x < w; x++) {
                   int argb1 = source.pixels[index++];
                   int r1 = (argb1 >> 16) & 0xff;
                   int g1 = (argb1 >> 8) & 0xff;
@@ -1758,7 +1778,7 @@ public class PGraphicsJava2D extends PGraphics {
                       (((b2 * b1) & 0xff00) >> 8);
                 }
               } else if (source.format == ARGB) {
-                for (int x = 0; x < source.pixelWidth; x++) {
+                for (int x = 0; x < w; x++) {
                   int argb1 = source.pixels[index++];
                   int a1 = (argb1 >> 24) & 0xff;
                   int r1 = (argb1 >> 16) & 0xff;
@@ -1772,13 +1792,13 @@ public class PGraphicsJava2D extends PGraphics {
                 }
               } else if (source.format == ALPHA) {
                 int lower = tintColor & 0xFFFFFF;
-                for (int x = 0; x < source.pixelWidth; x++) {
+                for (int x = 0; x < w; x++) {
                   int a1 = source.pixels[index++];
                   tintedTemp[x] =
                       (((a2 * a1) & 0xff00) << 16) | lower;
                 }
               }
-              wr.setDataElements(0, y, source.pixelWidth, 1, tintedTemp);
+              wr.setDataElements(x1, y, w, 1, tintedTemp);
             }
           }
           // Not sure why ARGB images take the scales in this order...
@@ -1798,7 +1818,18 @@ public class PGraphicsJava2D extends PGraphics {
           // in a PImage and how the high bits will be set.
         }
         // If no tint, just shove the pixels on in there verbatim
-        wr.setDataElements(0, 0, source.pixelWidth, source.pixelHeight, source.pixels);
+        if (x1 == 0 && y1 == 0 &&
+            x2 == source.pixelWidth && y2 == source.pixelHeight) {
+          wr.setDataElements(0, 0, source.pixelWidth, source.pixelHeight, source.pixels);
+        } else {
+          if (tintedTemp == null || tintedTemp.length != source.pixelWidth) {
+            tintedTemp = new int[source.pixelWidth];
+          }
+          for (int y = y1; y < y2; y++) {
+            System.arraycopy(source.pixels, y*stride + x1, tintedTemp, 0, w);
+            wr.setDataElements(x1, y, w, 1, tintedTemp);
+          }
+        }
       }
       this.tinted = tint;
       this.tintedColor = tintColor;
@@ -2787,26 +2818,43 @@ public class PGraphicsJava2D extends PGraphics {
 //  }
 
 
+  /** Scratch row used by updatePixels() for partial updates. */
+  int[] rowPixels;
+
+
   /**
    * Update the pixels[] buffer to the PGraphics image.
    * <P>
    * Unlike in PImage, where updatePixels() only requests that the
    * update happens, in PGraphicsJava2D, this will happen immediately.
+   * Only the rows and columns inside the region are copied.
    */
   @Override
   public void updatePixels(int x, int y, int c, int d) {
-    //if ((x == 0) && (y == 0) && (c == width) && (d == height)) {
-//    System.err.format("%d %d %d %d .. w/h = %d %d .. pw/ph = %d %d %n", x, y, c, d, width, height, pixelWidth, pixelHeight);
-    if ((x != 0) || (y != 0) || (c != pixelWidth) || (d != pixelHeight)) {
-      // Show a warning message, but continue anyway.
-      showVariationWarning("updatePixels(x, y, w, h)");
-//      new Exception().printStackTrace(System.out);
-    }
-//    updatePixels();
-    if (pixels != null) {
-      getRaster().setDataElements(0, 0, pixelWidth, pixelHeight, pixels);
+    int x1 = PApplet.max(0, x);
+    int y1 = PApplet.max(0, y);
+    int x2 = PApplet.min(pixelWidth, x + c);
+    int y2 = PApplet.min(pixelHeight, y + d);
+
+    if (pixels != null && x2 > x1 && y2 > y1) {
+      WritableRaster raster = getRaster();
+      if (x1 == 0 && y1 == 0 && x2 == pixelWidth && y2 == pixelHeight) {
+        raster.setDataElements(0, 0, pixelWidth, pixelHeight, pixels);
+
+      } else {
+        // setDataElements() wants the region packed, so go a row at a time
+        int w = x2 - x1;
+        if (rowPixels == null || rowPixels.length < w) {
+          rowPixels = new int[w];
+        }
+        for (int row = y1; row < y2; row++) {
+          System.arraycopy(pixels, row*pixelWidth + x1, rowPixels, 0, w);
+          raster.setDataElements(x1, row, w, 1, rowPixels);
+        }
+      }
     }
-    modified = true;
+    // mark the region, so that an image cache of this copies only that
+    super.updatePixels(x, y, c, d);
   }
 
 
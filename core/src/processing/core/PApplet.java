@@ -6019,6 +6019,39 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Open an XML file so that it can be read one element at a time, rather
+   * than loading the entire document into memory. Useful for files that
+   * are larger than the available memory.
+   *
+   * @param filename name of a file in the data folder or a URL.
+   * @see XMLReader
+   * @see PApplet#loadXML(String)
+   */
+  public XMLReader loadXMLStream(String filename) {
+    return loadXMLStream(filename, null);
+  }
+
+
+  /**
+   * @param path elements to return when iterating, i.e. "osm/node"
+   */
+  public XMLReader loadXMLStream(String filename, String path) {
+    try {
+      InputStream input = createInput(filename);
+      if (input == null) {
+        System.err.println(filename + " does not exist or could not be read");
+        return null;
+      }
+      return new XMLReader(input, path);
+
+    } catch (IOException e) {
+      printStackTrace(e);
+      return null;
+    }
+  }
+
+
   /**
    * @webref input:files
    * @brief Converts String content to an XML object
@@ -6179,6 +6212,29 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Open a JSON file so that the elements of its outermost array can be
+   * read one at a time, rather than loading the entire document into
+   * memory. Useful for files that are larger than the available memory.
+   *
+   * @param filename name of a file in the data folder or a URL.
+   * @see JSONReader
+   * @see PApplet#loadJSONArray(String)
+   */
+  public JSONReader loadJSONStream(String filename) {
+    return loadJSONStream(filename, null);
+  }
+
+
+  /**
+   * @param path values to return when iterating, i.e. "features/*"
+   */
+  public JSONReader loadJSONStream(String filename, String path) {
+    BufferedReader reader = createReader(filename);
+    return (reader == null) ? null : new JSONReader(reader, path);
+  }
+
+
   /**
    * @webref output:files
    * @param json the JSONArray to save
@@ -6228,7 +6284,7 @@ public class PApplet implements PConstants {
 
 
   /**
-   * Options may contain "header", "tsv", "csv", or "bin" separated by commas.
+   * Options may contain "header", "tsv", "csv", "bin", or "cbin" separated by commas.
    *
    * Another option is "dictionary=filename.tsv", which allows users to
    * specify a "dictionary" file that contains a mapping of the column titles
@@ -6237,7 +6293,10 @@ public class PApplet implements PConstants {
    * dictionary file can only be tab separated values (.tsv) and its extension
    * will be ignored. This option was added in Processing 2.0.2.
    *
-   * @param options may contain "header", "tsv", "csv", or "bin" separated by commas
+   * For large CSV or TSV files, the "parallel" option will split up the
+   * work of parsing the file across all available processors.
+   *
+   * @param options may contain "header", "tsv", "csv", "bin", or "cbin" separated by commas
    */
   public Table loadTable(String filename, String options) {
     try {
@@ -6265,6 +6324,46 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Open a CSV or TSV file so that it can be read a batch of rows at a time,
+   * rather than loading the entire file into memory. Useful for files that
+   * are larger than the available memory.
+   *
+   * @param filename name of a file in the data folder or a URL.
+   * @see TableReader
+   * @see PApplet#loadTable(String)
+   */
+  public TableReader loadTableStream(String filename) {
+    return loadTableStream(filename, null);
+  }
+
+
+  /**
+   * @param options may contain "header", "tsv", or "csv" separated by commas
+   */
+  public TableReader loadTableStream(String filename, String options) {
+    try {
+      String optionStr = Table.extensionOptions(true, filename, options);
+      InputStream input = createInput(filename);
+      if (input == null) {
+        System.err.println(filename + " does not exist or could not be read");
+        return null;
+      }
+      TableReader reader = new TableReader(input, optionStr);
+      for (String opt : trim(split(optionStr, ','))) {
+        if (opt.startsWith("dictionary=")) {
+          reader.setColumnTypes(loadTable(opt.substring(opt.indexOf('=') + 1), "tsv"));
+        }
+      }
+      return reader;
+
+    } catch (IOException e) {
+      printStackTrace(e);
+      return null;
+    }
+  }
+
+
   /**
    * @webref output:files
    * @param table the Table object to save to a file
@@ -6278,7 +6377,7 @@ public class PApplet implements PConstants {
 
 
   /**
-   * @param options can be one of "tsv", "csv", "bin", or "html"
+   * @param options can be one of "tsv", "csv", "bin", "cbin", or "html"
    */
   public boolean saveTable(Table table, String filename, String options) {
 //    String ext = checkExtension(filename);
@@ -249,6 +249,14 @@ public interface PConstants {
   static final int THRESHOLD = 16;
   static final int ERODE     = 17;
   static final int DILATE    = 18;
+  static final int FAST_BLUR = 19;
+
+
+  // resize() filters
+
+  static final int BILINEAR = 1;
+  static final int BICUBIC  = 2;
+  static final int LANCZOS  = 3;
 
 
   // blend mode keyword definitions
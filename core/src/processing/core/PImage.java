@@ -27,7 +27,13 @@ package processing.core;
 import java.awt.*;
 import java.awt.image.*;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.imageio.*;
 import javax.imageio.metadata.*;
@@ -159,6 +165,9 @@ public class PImage implements PConstants, Cloneable {
   static final int PREC_ALPHA_SHIFT = 24-PRECISIONB;
   static final int PREC_RED_SHIFT = 16-PRECISIONB;
 
+  /** Scratch space for resizeInto(), kept for when this is the target again */
+  private long[] resampleBuffer;
+
   // internal kernel stuff for the gaussian blur filter
   private int blurRadius;
   private int blurKernelSize;
@@ -462,15 +471,15 @@ public class PImage implements PConstants, Cloneable {
    * function in the current Processing release, this will always be subject
    * to change.
    * <br/> <br/>
-   * Currently, none of the renderers use the additional parameters to
-   * <b>updatePixels()</b>, however this may be implemented in the future.
+   * The additional parameters to <b>updatePixels()</b> set the region that
+   * was changed, so that only that area has to be copied to the screen.
    *
    * ( end auto-generated )
    * <h3>Advanced</h3>
-   * Mark the pixels in this region as needing an update.
-   * This is not currently used by any of the renderers, however the api
-   * is structured this way in the hope of being able to use this to
-   * speed things up in the future.
+   * Mark the pixels in this region as needing an update. Calls made before
+   * the image is next drawn are combined into a single rectangle covering
+   * all of them, and the default (JAVA2D) and OpenGL renderers only copy
+   * that rectangle instead of the whole image.
    * @webref pimage:pixels
    * @brief Updates the image with the data in its pixels[] array
    * @usage web_application
@@ -491,15 +500,11 @@ public class PImage implements PConstants, Cloneable {
       modified = true;
 
     } else {
-      if (x < mx1) mx1 = PApplet.max(0, x);
-      if (x > mx2) mx2 = PApplet.min(pixelWidth, x);
-      if (y < my1) my1 = PApplet.max(0, y);
-      if (y > my2) my2 = PApplet.min(pixelHeight, y);
-
-      if (x2 < mx1) mx1 = PApplet.max(0, x2);
-      if (x2 > mx2) mx2 = PApplet.min(pixelWidth, x2);
-      if (y2 < my1) my1 = PApplet.max(0, y2);
-      if (y2 > my2) my2 = PApplet.min(pixelHeight, y2);
+      // grow the modified area so that it also covers this one
+      mx1 = PApplet.max(0, PApplet.min(mx1, x));
+      mx2 = PApplet.min(pixelWidth, PApplet.max(mx2, x2));
+      my1 = PApplet.max(0, PApplet.min(my1, y));
+      my2 = PApplet.min(pixelHeight, PApplet.max(my2, y2));
     }
   }
 
@@ -547,6 +552,14 @@ public class PImage implements PConstants, Cloneable {
    * @see PImage#get(int, int, int, int)
    */
   public void resize(int w, int h) {  // ignore
+    resize(w, h, BILINEAR);
+  }
+
+
+  /**
+   * @param mode BILINEAR, BICUBIC, or LANCZOS
+   */
+  public void resize(int w, int h, int mode) {  // ignore
     if (w <= 0 && h <= 0) {
       throw new IllegalArgumentException("width or height must be > 0 for resize");
     }
@@ -559,15 +572,16 @@ public class PImage implements PConstants, Cloneable {
       h = (int) (height * diff);
     }
 
-    BufferedImage img =
-      shrinkImage((BufferedImage) getNative(), w*pixelDensity, h*pixelDensity);
-
-    PImage temp = new PImage(img);
-    this.pixelWidth = temp.width;
-    this.pixelHeight = temp.height;
+    loadPixels();
+    int targetWidth = w * pixelDensity;
+    int targetHeight = h * pixelDensity;
+    int[] outgoing = new int[targetWidth * targetHeight];
+    resample(pixels, pixelWidth, pixelHeight, format == ARGB,
+             outgoing, targetWidth, targetHeight, mode, null);
 
-    // Get the resized pixel array
-    this.pixels = temp.pixels;
+    this.pixelWidth = targetWidth;
+    this.pixelHeight = targetHeight;
+    this.pixels = outgoing;
 
     this.width = pixelWidth / pixelDensity;
     this.height = pixelHeight / pixelDensity;
@@ -577,74 +591,294 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
-  // Adapted from getFasterScaledInstance() method from page 111 of
-  // "Filthy Rich Clients" by Chet Haase and Romain Guy
-  // Additional modifications and simplifications have been added,
-  // plus a fix to deal with an infinite loop if images are expanded.
-  // http://code.google.com/p/processing/issues/detail?id=1463
-  static private BufferedImage shrinkImage(BufferedImage img,
-                                           int targetWidth, int targetHeight) {
-    int type = (img.getTransparency() == Transparency.OPAQUE) ?
-      BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
-    BufferedImage outgoing = img;
-    BufferedImage scratchImage = null;
-    Graphics2D g2 = null;
-    int prevW = outgoing.getWidth();
-    int prevH = outgoing.getHeight();
-    boolean isTranslucent = img.getTransparency() != Transparency.OPAQUE;
-
-    // Use multi-step technique: start with original size, then scale down in
-    // multiple passes with drawImage() until the target size is reached
-    int w = img.getWidth();
-    int h = img.getHeight();
-
-    do {
-      if (w > targetWidth) {
-        w /= 2;
-        // if this is the last step, do the exact size
-        if (w < targetWidth) {
-          w = targetWidth;
-        }
-      } else if (targetWidth >= w) {
-        w = targetWidth;
+  public void resizeInto(PImage target) {
+    resizeInto(target, BILINEAR);
+  }
+
+
+  /**
+   * Resample this image to the size of another image, replacing its
+   * pixels. Unlike resize(), this image is left alone and no new pixel
+   * array is created, so it's a better fit for making lots of thumbnails.
+   *
+   * @param target image to be filled, its size doesn't change
+   * @param mode BILINEAR, BICUBIC, or LANCZOS
+   */
+  public void resizeInto(PImage target, int mode) {
+    if (target == this) {
+      return;  // already that size
+    }
+    loadPixels();
+    target.loadPixels();
+    int targetWidth = target.pixelWidth;
+    int targetHeight = target.pixelHeight;
+    int needed = targetWidth * pixelHeight;
+    if (target.resampleBuffer == null || target.resampleBuffer.length < needed) {
+      target.resampleBuffer = new long[needed];
+    }
+    resample(pixels, pixelWidth, pixelHeight, format == ARGB,
+             target.pixels, targetWidth, targetHeight, mode,
+             target.resampleBuffer);
+    target.updatePixels();
+  }
+
+
+  /** Fixed point precision of the resampling weights */
+  static final int RESAMPLE_BITS = 20;
+
+
+  /**
+   * Scale pixels from one size to another, first across, then down, each
+   * time with a filter that's widened when shrinking so every source
+   * pixel counts. In between, each channel is kept with 16 bits, and
+   * ARGB images are premultiplied, so that transparent pixels don't bleed
+   * their color into their neighbors. The scratch array must hold
+   * dstWidth * srcHeight entries, or is created if it's null.
+   */
+  static void resample(final int[] src, final int srcWidth, int srcHeight,
+                       final boolean alpha, final int[] dest,
+                       final int dstWidth, final int dstHeight, int mode,
+                       long[] scratch) {
+    if (mode != BILINEAR && mode != BICUBIC && mode != LANCZOS) {
+      throw new IllegalArgumentException("Use BILINEAR, BICUBIC, or LANCZOS to resize");
+    }
+    if (srcWidth == dstWidth && srcHeight == dstHeight) {
+      System.arraycopy(src, 0, dest, 0, dstWidth * dstHeight);
+      return;
+    }
+    final ResampleWeights across =
+      ResampleWeights.get(srcWidth, dstWidth, mode);
+    final ResampleWeights down =
+      ResampleWeights.get(srcHeight, dstHeight, mode);
+    final long[] middle = (scratch != null) ?
+      scratch : new long[dstWidth * srcHeight];
+
+    runBands(srcHeight, dstWidth * across.taps, new Band() {
+      void run(int top, int bottom) {
+        for (int y = top; y < bottom; y++) {
+          int srcRow = y * srcWidth;
+          int dstRow = y * dstWidth;
+          for (int x = 0; x < dstWidth; x++) {
+            middle[dstRow + x] =
+              across.across(src, srcRow + across.start[x], x, alpha);
+          }
+        }
+      }
+    });
+    runBands(dstHeight, dstWidth * down.taps, new Band() {
+      void run(int top, int bottom) {
+        for (int y = top; y < bottom; y++) {
+          int first = down.start[y] * dstWidth;
+          int dstRow = y * dstWidth;
+          for (int x = 0; x < dstWidth; x++) {
+            dest[dstRow + x] =
+              down.down(middle, first + x, dstWidth, y, alpha);
+          }
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Precomputed filter weights for resampling one axis from srcSize to
+   * dstSize. Output pixel i is made from count[i] source pixels beginning
+   * at start[i], with weights from weights[i * taps], in fixed point with
+   * RESAMPLE_BITS of precision and adding up to exactly one (so flat areas
+   * come out unchanged).
+   */
+  static class ResampleWeights {
+    final int srcSize, dstSize, mode;
+    final int taps;
+    final int[] start;
+    final int[] count;
+    final int[] weights;
+
+    // the last few used, since the same sizes tend to come up over and over
+    static private final ResampleWeights[] cache = new ResampleWeights[8];
+    static private int cacheNext;
+
+
+    static synchronized ResampleWeights get(int srcSize, int dstSize, int mode) {
+      for (ResampleWeights w : cache) {
+        if (w != null && w.srcSize == srcSize &&
+            w.dstSize == dstSize && w.mode == mode) {
+          return w;
+        }
       }
-      if (h > targetHeight) {
-        h /= 2;
-        if (h < targetHeight) {
-          h = targetHeight;
+      ResampleWeights w = new ResampleWeights(srcSize, dstSize, mode);
+      cache[cacheNext] = w;
+      cacheNext = (cacheNext + 1) % cache.length;
+      return w;
+    }
+
+
+    ResampleWeights(int srcSize, int dstSize, int mode) {
+      this.srcSize = srcSize;
+      this.dstSize = dstSize;
+      this.mode = mode;
+
+      double scale = (double) srcSize / dstSize;
+      double filterScale = Math.max(scale, 1);
+      double support = filterSupport(mode) * filterScale;
+      taps = 2 * (int) Math.ceil(support) + 2;
+      start = new int[dstSize];
+      count = new int[dstSize];
+      weights = new int[dstSize * taps];
+
+      final int one = 1 << RESAMPLE_BITS;
+      double[] w = new double[taps];
+      for (int i = 0; i < dstSize; i++) {
+        double center = (i + 0.5) * scale;
+        int left = Math.max(0, (int) Math.floor(center - support));
+        int right = Math.min(srcSize, (int) Math.ceil(center + support));
+        int n = right - left;
+        double total = 0;
+        for (int j = 0; j < n; j++) {
+          w[j] = filter(mode, (left + j + 0.5 - center) / filterScale);
+          total += w[j];
+        }
+        // round to fixed point, then give whatever's left over to the
+        // largest weight, so that flat areas stay exactly the same
+        int sum = 0;
+        int largest = 0;
+        for (int j = 0; j < n; j++) {
+          int weight = (int) Math.round(w[j] / total * one);
+          weights[i*taps + j] = weight;
+          sum += weight;
+          if (w[j] > w[largest]) {
+            largest = j;
+          }
         }
-      } else if (targetHeight >= h) {
-        h = targetHeight;
+        weights[i*taps + largest] += one - sum;
+        start[i] = left;
+        count[i] = n;
       }
-      if (scratchImage == null || isTranslucent) {
-        // Use a single scratch buffer for all iterations and then copy
-        // to the final, correctly-sized image before returning
-        scratchImage = new BufferedImage(w, h, type);
-        g2 = scratchImage.createGraphics();
+    }
+
+
+    static double filterSupport(int mode) {
+      switch (mode) {
+      case BILINEAR: return 1;
+      case BICUBIC: return 2;
+      default: return 3;
       }
-      g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-      g2.drawImage(outgoing, 0, 0, w, h, 0, 0, prevW, prevH, null);
-      prevW = w;
-      prevH = h;
-      outgoing = scratchImage;
-    } while (w != targetWidth || h != targetHeight);
-
-    if (g2 != null) {
-      g2.dispose();
-    }
-
-    // If we used a scratch buffer that is larger than our target size,
-    // create an image of the right size and copy the results into it
-    if (targetWidth != outgoing.getWidth() ||
-        targetHeight != outgoing.getHeight()) {
-      scratchImage = new BufferedImage(targetWidth, targetHeight, type);
-      g2 = scratchImage.createGraphics();
-      g2.drawImage(outgoing, 0, 0, null);
-      g2.dispose();
-      outgoing = scratchImage;
     }
-    return outgoing;
+
+
+    static double filter(int mode, double x) {
+      x = Math.abs(x);
+      switch (mode) {
+      case BILINEAR:
+        return (x < 1) ? 1 - x : 0;
+
+      case BICUBIC:  // Catmull-Rom
+        if (x < 1) {
+          return (1.5*x - 2.5)*x*x + 1;
+        }
+        if (x < 2) {
+          return ((-0.5*x + 2.5)*x - 4)*x + 2;
+        }
+        return 0;
+
+      default:  // Lanczos, three lobes
+        if (x == 0) {
+          return 1;
+        }
+        if (x >= 3) {
+          return 0;
+        }
+        double px = Math.PI * x;
+        return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+      }
+    }
+
+
+    /**
+     * Filter count[i] pixels in a row beginning at offset, returning the
+     * four channels with 16 bits each (0 to 255 * 255). With alpha, the
+     * color is premultiplied.
+     */
+    long across(int[] pixels, int offset, int i, boolean alpha) {
+      long a = 0, r = 0, g = 0, b = 0;
+      int index = offset;
+      for (int k = i * taps, stop = k + count[i]; k < stop; k++) {
+        long weight = weights[k];
+        int c = pixels[index++];
+        int ca = c >>> 24;
+        int cr = (c >> 16) & 0xff;
+        int cg = (c >> 8) & 0xff;
+        int cb = c & 0xff;
+        if (alpha) {
+          cr *= ca;
+          cg *= ca;
+          cb *= ca;
+        }
+        a += weight * ca;
+        r += weight * cr;
+        g += weight * cg;
+        b += weight * cb;
+      }
+      long half = 1L << (RESAMPLE_BITS - 1);
+      int a16 = clamp((int) ((a * 255 + half) >> RESAMPLE_BITS), 255 * 255);
+      // sharper filters can overshoot, and premultiplied color can't be
+      // more than the alpha
+      int max = alpha ? a16 : 255 * 255;
+      int scale = alpha ? 1 : 255;
+      int r16 = clamp((int) ((r * scale + half) >> RESAMPLE_BITS), max);
+      int g16 = clamp((int) ((g * scale + half) >> RESAMPLE_BITS), max);
+      int b16 = clamp((int) ((b * scale + half) >> RESAMPLE_BITS), max);
+      return ((long) a16 << 48) | ((long) r16 << 32) | ((long) g16 << 16) | b16;
+    }
+
+
+    /**
+     * Filter count[i] entries from across() beginning at offset, each step
+     * apart, and turn them back into a pixel.
+     */
+    int down(long[] middle, int offset, int step, int i, boolean alpha) {
+      long a = 0, r = 0, g = 0, b = 0;
+      int index = offset;
+      for (int k = i * taps, stop = k + count[i]; k < stop; k++) {
+        long weight = weights[k];
+        long c = middle[index];
+        index += step;
+        a += weight * (c >>> 48);
+        r += weight * ((c >>> 32) & 0xffff);
+        g += weight * ((c >>> 16) & 0xffff);
+        b += weight * (c & 0xffff);
+      }
+      long half = 1L << (RESAMPLE_BITS - 1);
+      int a16 = clamp((int) ((a + half) >> RESAMPLE_BITS), 255 * 255);
+      int max = alpha ? a16 : 255 * 255;
+      int r16 = clamp((int) ((r + half) >> RESAMPLE_BITS), max);
+      int g16 = clamp((int) ((g + half) >> RESAMPLE_BITS), max);
+      int b16 = clamp((int) ((b + half) >> RESAMPLE_BITS), max);
+      if (!alpha) {
+        return (div255(a16) << 24) | (div255(r16) << 16) |
+          (div255(g16) << 8) | div255(b16);
+      }
+      if (a16 == 0) {
+        return 0;
+      }
+      int round = a16 >> 1;
+      return (div255(a16) << 24) |
+        ((r16 * 255 + round) / a16 << 16) |
+        ((g16 * 255 + round) / a16 << 8) |
+        ((b16 * 255 + round) / a16);
+    }
+
+
+    /** value / 255, rounded, for anything up to 255 * 255 */
+    static private int div255(int value) {
+      int t = value + 128;
+      return (t + (t >> 8)) >> 8;
+    }
+
+
+    static private int clamp(int value, int max) {
+      return (value < 0) ? 0 : ((value > max) ? max : value);
+    }
   }
 
 
@@ -1001,6 +1235,63 @@ public class PImage implements PConstants, Cloneable {
   // IMAGE FILTERS
 
 
+  /**
+   * Smallest amount of work (roughly, pixels times the reads for each
+   * pixel) worth splitting across threads. Anything less runs on the
+   * calling thread.
+   */
+  static final int PARALLEL_MIN = 1 << 17;
+
+
+  /** Work on one band of rows (or pixels), for runBands(). */
+  static abstract class Band {
+    /** Handle start up to (not including) stop. */
+    abstract void run(int start, int stop);
+  }
+
+
+  /**
+   * Split count rows (or single pixels) into one band per processor, and
+   * run them at the same time on the common fork-join pool. Stays on the
+   * calling thread if count times the cost of each isn't enough work to
+   * bother. Each pixel is still written by exactly the same code, so the
+   * results don't depend on how the work was split up.
+   */
+  static void runBands(int count, int cost, final Band band) {
+    long work = (long) count * cost;
+    int bandCount = (int) Math.min(Math.min(count, work / (PARALLEL_MIN / 2)),
+                                   Runtime.getRuntime().availableProcessors());
+    if (work < PARALLEL_MIN || bandCount < 2) {
+      band.run(0, count);
+      return;
+    }
+    List<Callable<Object>> tasks = new ArrayList<>();
+    for (int i = 0; i < bandCount; i++) {
+      final int start = (int) ((long) count * i / bandCount);
+      final int stop = (int) ((long) count * (i+1) / bandCount);
+      tasks.add(new Callable<Object>() {
+        public Object call() {
+          band.run(start, stop);
+          return null;
+        }
+      });
+    }
+    try {
+      for (Future<Object> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+
   public void filter(int kind) {
     loadPixels();
 
@@ -1012,36 +1303,52 @@ public class PImage implements PConstants, Cloneable {
         filter(BLUR, 1);
         break;
 
+      case FAST_BLUR:
+        filter(FAST_BLUR, 1);
+        break;
+
       case GRAY:
         if (format == ALPHA) {
           // for an alpha image, convert it to an opaque grayscale
-          for (int i = 0; i < pixels.length; i++) {
-            int col = 255 - pixels[i];
-            pixels[i] = 0xff000000 | (col << 16) | (col << 8) | col;
-          }
+          runBands(pixels.length, 1, new Band() {
+            void run(int start, int stop) {
+              for (int i = start; i < stop; i++) {
+                int col = 255 - pixels[i];
+                pixels[i] = 0xff000000 | (col << 16) | (col << 8) | col;
+              }
+            }
+          });
           format = RGB;
 
         } else {
           // Converts RGB image data into grayscale using
           // weighted RGB components, and keeps alpha channel intact.
           // [toxi 040115]
-          for (int i = 0; i < pixels.length; i++) {
-            int col = pixels[i];
-            // luminance = 0.3*red + 0.59*green + 0.11*blue
-            // 0.30 * 256 =  77
-            // 0.59 * 256 = 151
-            // 0.11 * 256 =  28
-            int lum = (77*(col>>16&0xff) + 151*(col>>8&0xff) + 28*(col&0xff))>>8;
-            pixels[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
-          }
+          runBands(pixels.length, 1, new Band() {
+            void run(int start, int stop) {
+              for (int i = start; i < stop; i++) {
+                int col = pixels[i];
+                // luminance = 0.3*red + 0.59*green + 0.11*blue
+                // 0.30 * 256 =  77
+                // 0.59 * 256 = 151
+                // 0.11 * 256 =  28
+                int lum = (77*(col>>16&0xff) + 151*(col>>8&0xff) + 28*(col&0xff))>>8;
+                pixels[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
+              }
+            }
+          });
         }
         break;
 
       case INVERT:
-        for (int i = 0; i < pixels.length; i++) {
-          //pixels[i] = 0xff000000 |
-          pixels[i] ^= 0xffffff;
-        }
+        runBands(pixels.length, 1, new Band() {
+          void run(int start, int stop) {
+            for (int i = start; i < stop; i++) {
+              //pixels[i] = 0xff000000 |
+              pixels[i] ^= 0xffffff;
+            }
+          }
+        });
         break;
 
       case POSTERIZE:
@@ -1049,9 +1356,13 @@ public class PImage implements PConstants, Cloneable {
         "instead of filter(POSTERIZE)");
 
       case OPAQUE:
-        for (int i = 0; i < pixels.length; i++) {
-          pixels[i] |= 0xff000000;
-        }
+        runBands(pixels.length, 1, new Band() {
+          void run(int start, int stop) {
+            for (int i = start; i < stop; i++) {
+              pixels[i] |= 0xff000000;
+            }
+          }
+        });
         format = RGB;
         break;
 
@@ -1092,6 +1403,9 @@ public class PImage implements PConstants, Cloneable {
    * extent of the blurring. If no level parameter is used, the blur is
    * equivalent to Guassian blur of radius 1<br />
    * <br />
+   * FAST_BLUR - a close approximation of BLUR that takes the same time no
+   * matter how large the level parameter is<br />
+   * <br />
    * OPAQUE - sets the alpha channel to entirely opaque<br />
    * <br />
    * ERODE - reduces the light areas with the amount defined by the level
@@ -1106,6 +1420,7 @@ public class PImage implements PConstants, Cloneable {
    * <P>
    * <UL>
    * <LI>filter(BLUR) provides a basic blur.
+   * <LI>filter(FAST_BLUR) is similar, but the cost doesn't grow with the radius.
    * <LI>filter(GRAY) converts the image to grayscale based on luminance.
    * <LI>filter(INVERT) will invert the color components in the image.
    * <LI>filter(OPAQUE) set all the high bits in the image to opaque
@@ -1122,7 +1437,7 @@ public class PImage implements PConstants, Cloneable {
    * @webref image:pixels
    * @brief Converts the image to grayscale or black and white
    * @usage web_application
-   * @param kind Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, ERODE, or DILATE
+   * @param kind Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, FAST_BLUR, ERODE, or DILATE
    * @param param unique for each, see above
    */
   public void filter(int kind, float param) {
@@ -1138,6 +1453,10 @@ public class PImage implements PConstants, Cloneable {
           blurRGB(param);
         break;
 
+      case FAST_BLUR:
+        fastBlur(param);
+        break;
+
       case GRAY:
         throw new RuntimeException("Use filter(GRAY) instead of " +
                                    "filter(GRAY, param)");
@@ -1156,8 +1475,30 @@ public class PImage implements PConstants, Cloneable {
           throw new RuntimeException("Levels must be between 2 and 255 for " +
                                      "filter(POSTERIZE, levels)");
         }
-        int levels1 = levels - 1;
-        for (int i = 0; i < pixels.length; i++) {
+        posterize(levels);
+        break;
+
+      case THRESHOLD:  // greater than or equal to the threshold
+        threshold((int) (param * 255));
+        break;
+
+        // [toxi20050728] added new filters
+        case ERODE:
+          throw new RuntimeException("Use filter(ERODE) instead of " +
+                                     "filter(ERODE, param)");
+        case DILATE:
+          throw new RuntimeException("Use filter(DILATE) instead of " +
+                                     "filter(DILATE, param)");
+    }
+    updatePixels();  // mark as modified
+  }
+
+
+  protected void posterize(final int levels) {
+    final int levels1 = levels - 1;
+    runBands(pixels.length, 1, new Band() {
+      void run(int start, int stop) {
+        for (int i = start; i < stop; i++) {
           int rlevel = (pixels[i] >> 16) & 0xff;
           int glevel = (pixels[i] >> 8) & 0xff;
           int blevel = pixels[i] & 0xff;
@@ -1169,28 +1510,23 @@ public class PImage implements PConstants, Cloneable {
                        (glevel << 8) |
                        blevel);
         }
-        break;
+      }
+    });
+  }
 
-      case THRESHOLD:  // greater than or equal to the threshold
-        int thresh = (int) (param * 255);
-        for (int i = 0; i < pixels.length; i++) {
+
+  protected void threshold(final int thresh) {
+    runBands(pixels.length, 1, new Band() {
+      void run(int start, int stop) {
+        for (int i = start; i < stop; i++) {
           int max = Math.max((pixels[i] & RED_MASK) >> 16,
                              Math.max((pixels[i] & GREEN_MASK) >> 8,
                                       (pixels[i] & BLUE_MASK)));
           pixels[i] = (pixels[i] & ALPHA_MASK) |
             ((max < thresh) ? 0x000000 : 0xffffff);
         }
-        break;
-
-        // [toxi20050728] added new filters
-        case ERODE:
-          throw new RuntimeException("Use filter(ERODE) instead of " +
-                                     "filter(ERODE, param)");
-        case DILATE:
-          throw new RuntimeException("Use filter(DILATE) instead of " +
-                                     "filter(DILATE, param)");
-    }
-    updatePixels();  // mark as modified
+      }
+    });
   }
 
 
@@ -1237,241 +1573,450 @@ public class PImage implements PConstants, Cloneable {
 
 
   protected void blurAlpha(float r) {
-    int sum, cb;
-    int read, ri, ym, ymi, bk0;
-    int[] b2 = new int[pixels.length];
-    int yi = 0;
+    final int[] b2 = new int[pixels.length];
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        //cb = cg = cr = sum = 0;
-        cb = sum = 0;
-        read = x - blurRadius;
-        if (read<0) {
-          bk0=-read;
-          read=0;
-        } else {
-          if (read >= pixelWidth)
-            break;
-          bk0=0;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth)
-            break;
-          int c = pixels[read + yi];
-          int[] bm = blurMult[i];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
-        }
-        ri = yi + x;
-        b2[ri] = cb / sum;
+    // the vertical pass reads rows above and below from the horizontal
+    // pass, so all of its bands have to finish before that one starts
+    runBands(pixelHeight, pixelWidth * blurKernelSize, new Band() {
+      void run(int top, int bottom) {
+        int sum, cb;
+        int read, ri, bk0;
+        int yi = top * pixelWidth;
+
+        for (int y = top; y < bottom; y++) {
+          for (int x = 0; x < pixelWidth; x++) {
+            //cb = cg = cr = sum = 0;
+            cb = sum = 0;
+            read = x - blurRadius;
+            if (read<0) {
+              bk0=-read;
+              read=0;
+            } else {
+              if (read >= pixelWidth)
+                break;
+              bk0=0;
+            }
+            for (int i = bk0; i < blurKernelSize; i++) {
+              if (read >= pixelWidth)
+                break;
+              int c = pixels[read + yi];
+              int[] bm = blurMult[i];
+              cb += bm[c & BLUE_MASK];
+              sum += blurKernel[i];
+              read++;
+            }
+            ri = yi + x;
+            b2[ri] = cb / sum;
+          }
+          yi += pixelWidth;
+        }
       }
-      yi += pixelWidth;
-    }
-
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
-
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight)
-            break;
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight)
-            break;
-          int[] bm = blurMult[i];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
-          ri++;
-          read += pixelWidth;
-        }
-        pixels[x+yi] = (cb/sum);
+    });
+
+    runBands(pixelHeight, pixelWidth * blurKernelSize, new Band() {
+      void run(int top, int bottom) {
+        int sum, cb;
+        int read, ri, bk0;
+        int yi = top * pixelWidth;
+        int ym = top - blurRadius;
+        int ymi = ym * pixelWidth;
+
+        for (int y = top; y < bottom; y++) {
+          for (int x = 0; x < pixelWidth; x++) {
+            cb = sum = 0;
+            if (ym < 0) {
+              bk0 = ri = -ym;
+              read = x;
+            } else {
+              if (ym >= pixelHeight)
+                break;
+              bk0 = 0;
+              ri = ym;
+              read = x + ymi;
+            }
+            for (int i = bk0; i < blurKernelSize; i++) {
+              if (ri >= pixelHeight)
+                break;
+              int[] bm = blurMult[i];
+              cb += bm[b2[read]];
+              sum += blurKernel[i];
+              ri++;
+              read += pixelWidth;
+            }
+            pixels[x+yi] = (cb/sum);
+          }
+          yi += pixelWidth;
+          ymi += pixelWidth;
+          ym++;
+        }
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
-    }
+    });
   }
 
 
   protected void blurRGB(float r) {
-    int sum, cr, cg, cb; //, k;
-    int /*pixel,*/ read, ri, /*roff,*/ ym, ymi, /*riw,*/ bk0;
-    int[] r2 = new int[pixels.length];
-    int[] g2 = new int[pixels.length];
-    int[] b2 = new int[pixels.length];
-    int yi = 0;
+    final int[] r2 = new int[pixels.length];
+    final int[] g2 = new int[pixels.length];
+    final int[] b2 = new int[pixels.length];
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = sum = 0;
-        read = x - blurRadius;
-        if (read < 0) {
-          bk0 = -read;
-          read = 0;
-        } else {
-          if (read >= pixelWidth) {
-            break;
+    // the vertical pass reads rows above and below from the horizontal
+    // pass, so all of its bands have to finish before that one starts
+    runBands(pixelHeight, pixelWidth * blurKernelSize, new Band() {
+      void run(int top, int bottom) {
+        int sum, cr, cg, cb;
+        int read, ri, bk0;
+        int yi = top * pixelWidth;
+
+        for (int y = top; y < bottom; y++) {
+          for (int x = 0; x < pixelWidth; x++) {
+            cb = cg = cr = sum = 0;
+            read = x - blurRadius;
+            if (read < 0) {
+              bk0 = -read;
+              read = 0;
+            } else {
+              if (read >= pixelWidth) {
+                break;
+              }
+              bk0 = 0;
+            }
+            for (int i = bk0; i < blurKernelSize; i++) {
+              if (read >= pixelWidth) {
+                break;
+              }
+              int c = pixels[read + yi];
+              int[] bm = blurMult[i];
+              cr += bm[(c & RED_MASK) >> 16];
+              cg += bm[(c & GREEN_MASK) >> 8];
+              cb += bm[c & BLUE_MASK];
+              sum += blurKernel[i];
+              read++;
+            }
+            ri = yi + x;
+            r2[ri] = cr / sum;
+            g2[ri] = cg / sum;
+            b2[ri] = cb / sum;
           }
-          bk0 = 0;
+          yi += pixelWidth;
         }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth) {
-            break;
-          }
-          int c = pixels[read + yi];
-          int[] bm = blurMult[i];
-          cr += bm[(c & RED_MASK) >> 16];
-          cg += bm[(c & GREEN_MASK) >> 8];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
-        }
-        ri = yi + x;
-        r2[ri] = cr / sum;
-        g2[ri] = cg / sum;
-        b2[ri] = cb / sum;
       }
-      yi += pixelWidth;
-    }
-
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
-
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight) {
-            break;
+    });
+
+    runBands(pixelHeight, pixelWidth * blurKernelSize, new Band() {
+      void run(int top, int bottom) {
+        int sum, cr, cg, cb;
+        int read, ri, bk0;
+        int yi = top * pixelWidth;
+        int ym = top - blurRadius;
+        int ymi = ym * pixelWidth;
+
+        for (int y = top; y < bottom; y++) {
+          for (int x = 0; x < pixelWidth; x++) {
+            cb = cg = cr = sum = 0;
+            if (ym < 0) {
+              bk0 = ri = -ym;
+              read = x;
+            } else {
+              if (ym >= pixelHeight) {
+                break;
+              }
+              bk0 = 0;
+              ri = ym;
+              read = x + ymi;
+            }
+            for (int i = bk0; i < blurKernelSize; i++) {
+              if (ri >= pixelHeight) {
+                break;
+              }
+              int[] bm = blurMult[i];
+              cr += bm[r2[read]];
+              cg += bm[g2[read]];
+              cb += bm[b2[read]];
+              sum += blurKernel[i];
+              ri++;
+              read += pixelWidth;
+            }
+            pixels[x+yi] = 0xff000000 | (cr/sum)<<16 | (cg/sum)<<8 | (cb/sum);
           }
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
+          yi += pixelWidth;
+          ymi += pixelWidth;
+          ym++;
         }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight) {
-            break;
-          }
-          int[] bm = blurMult[i];
-          cr += bm[r2[read]];
-          cg += bm[g2[read]];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
-          ri++;
-          read += pixelWidth;
-        }
-        pixels[x+yi] = 0xff000000 | (cr/sum)<<16 | (cg/sum)<<8 | (cb/sum);
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
-    }
+    });
   }
 
 
   protected void blurARGB(float r) {
-    int sum, cr, cg, cb, ca;
-    int /*pixel,*/ read, ri, /*roff,*/ ym, ymi, /*riw,*/ bk0;
     int wh = pixels.length;
-    int[] r2 = new int[wh];
-    int[] g2 = new int[wh];
-    int[] b2 = new int[wh];
-    int[] a2 = new int[wh];
-    int yi = 0;
+    final int[] r2 = new int[wh];
+    final int[] g2 = new int[wh];
+    final int[] b2 = new int[wh];
+    final int[] a2 = new int[wh];
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = ca = sum = 0;
-        read = x - blurRadius;
-        if (read < 0) {
-          bk0 = -read;
-          read = 0;
-        } else {
-          if (read >= pixelWidth) {
-            break;
+    // the vertical pass reads rows above and below from the horizontal
+    // pass, so all of its bands have to finish before that one starts
+    runBands(pixelHeight, pixelWidth * blurKernelSize, new Band() {
+      void run(int top, int bottom) {
+        int sum, cr, cg, cb, ca;
+        int read, ri, bk0;
+        int yi = top * pixelWidth;
+
+        for (int y = top; y < bottom; y++) {
+          for (int x = 0; x < pixelWidth; x++) {
+            cb = cg = cr = ca = sum = 0;
+            read = x - blurRadius;
+            if (read < 0) {
+              bk0 = -read;
+              read = 0;
+            } else {
+              if (read >= pixelWidth) {
+                break;
+              }
+              bk0=0;
+            }
+            for (int i = bk0; i < blurKernelSize; i++) {
+              if (read >= pixelWidth) {
+                break;
+              }
+              int c = pixels[read + yi];
+              int[] bm=blurMult[i];
+              ca += bm[(c & ALPHA_MASK) >>> 24];
+              cr += bm[(c & RED_MASK) >> 16];
+              cg += bm[(c & GREEN_MASK) >> 8];
+              cb += bm[c & BLUE_MASK];
+              sum += blurKernel[i];
+              read++;
+            }
+            ri = yi + x;
+            a2[ri] = ca / sum;
+            r2[ri] = cr / sum;
+            g2[ri] = cg / sum;
+            b2[ri] = cb / sum;
           }
-          bk0=0;
+          yi += pixelWidth;
         }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth) {
-            break;
+      }
+    });
+
+    runBands(pixelHeight, pixelWidth * blurKernelSize, new Band() {
+      void run(int top, int bottom) {
+        int sum, cr, cg, cb, ca;
+        int read, ri, bk0;
+        int yi = top * pixelWidth;
+        int ym = top - blurRadius;
+        int ymi = ym * pixelWidth;
+
+        for (int y = top; y < bottom; y++) {
+          for (int x = 0; x < pixelWidth; x++) {
+            cb = cg = cr = ca = sum = 0;
+            if (ym < 0) {
+              bk0 = ri = -ym;
+              read = x;
+            } else {
+              if (ym >= pixelHeight) {
+                break;
+              }
+              bk0 = 0;
+              ri = ym;
+              read = x + ymi;
+            }
+            for (int i = bk0; i < blurKernelSize; i++) {
+              if (ri >= pixelHeight) {
+                break;
+              }
+              int[] bm=blurMult[i];
+              ca += bm[a2[read]];
+              cr += bm[r2[read]];
+              cg += bm[g2[read]];
+              cb += bm[b2[read]];
+              sum += blurKernel[i];
+              ri++;
+              read += pixelWidth;
+            }
+            pixels[x+yi] = (ca/sum)<<24 | (cr/sum)<<16 | (cg/sum)<<8 | (cb/sum);
           }
-          int c = pixels[read + yi];
-          int[] bm=blurMult[i];
-          ca += bm[(c & ALPHA_MASK) >>> 24];
-          cr += bm[(c & RED_MASK) >> 16];
-          cg += bm[(c & GREEN_MASK) >> 8];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
-        }
-        ri = yi + x;
-        a2[ri] = ca / sum;
-        r2[ri] = cr / sum;
-        g2[ri] = cg / sum;
-        b2[ri] = cb / sum;
+          yi += pixelWidth;
+          ymi += pixelWidth;
+          ym++;
+        }
       }
-      yi += pixelWidth;
-    }
+    });
+  }
 
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = ca = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight) {
-            break;
+  /**
+   * Blur by running a box filter over the image three times in each
+   * direction, which comes out very close to a Gaussian. Each box is a
+   * running sum, so the time taken doesn't depend on the radius, and no
+   * tables are needed. The boxes are sized to match the spread of the
+   * kernel used by filter(BLUR) for the same radius. Each channel is done
+   * separately, with the rows split into bands for the horizontal passes
+   * and the columns split for the vertical ones (which still go through
+   * the image a row at a time).
+   */
+  protected void fastBlur(float r) {
+    // filter(BLUR) reaches out 3.5 * r pixels, with weights that fall off
+    // as the square of the distance, so its sigma is that reach / sqrt(10)
+    float sigma = r * 3.5f / (float) Math.sqrt(10);
+    final int[] radii = boxRadii(sigma);
+    final int[] plane = new int[pixels.length];
+    final int[] temp = new int[pixels.length];
+    final int w = pixelWidth;
+    final int h = pixelHeight;
+
+    int[] shifts;
+    if (format == ALPHA) {
+      shifts = new int[] { 0 };
+    } else if (format == ARGB) {
+      shifts = new int[] { 24, 16, 8, 0 };
+    } else {
+      shifts = new int[] { 16, 8, 0 };
+    }
+    for (final int shift : shifts) {
+      runBands(h, w, new Band() {
+        void run(int top, int bottom) {
+          for (int y = top; y < bottom; y++) {
+            int offset = y * w;
+            for (int i = offset; i < offset + w; i++) {
+              plane[i] = (pixels[i] >>> shift) & 0xff;
+            }
+            boxBlur(plane, temp, offset, w, radii[0]);
+            boxBlur(temp, plane, offset, w, radii[1]);
+            boxBlur(plane, temp, offset, w, radii[2]);
           }
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
         }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight) {
-            break;
+      });
+      runBands(w, h, new Band() {
+        void run(int left, int right) {
+          boxBlurColumns(temp, plane, left, right, w, h, radii[0]);
+          boxBlurColumns(plane, temp, left, right, w, h, radii[1]);
+          boxBlurColumns(temp, plane, left, right, w, h, radii[2]);
+          int mask = ~(0xff << shift);
+          for (int y = 0; y < h; y++) {
+            for (int i = y*w + left; i < y*w + right; i++) {
+              pixels[i] = (pixels[i] & mask) | (plane[i] << shift);
+            }
           }
-          int[] bm=blurMult[i];
-          ca += bm[a2[read]];
-          cr += bm[r2[read]];
-          cg += bm[g2[read]];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
-          ri++;
-          read += pixelWidth;
-        }
-        pixels[x+yi] = (ca/sum)<<24 | (cr/sum)<<16 | (cg/sum)<<8 | (cb/sum);
+        }
+      });
+    }
+    if (format == RGB) {
+      opaque();
+    }
+  }
+
+
+  /**
+   * Radii for three box blurs that together approximate a Gaussian with
+   * the given sigma, see "Fast Almost-Gaussian Filtering" (Kovesi, 2010).
+   */
+  static int[] boxRadii(float sigma) {
+    int n = 3;
+    double ideal = Math.sqrt(12 * sigma * sigma / n + 1);
+    int lower = (int) Math.floor(ideal);
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    int upper = lower + 2;
+    // how many of the boxes should use the smaller width
+    double m = (12 * sigma * sigma - n*lower*lower - 4*n*lower - 3*n) / (-4*lower - 4);
+    int smaller = (int) Math.round(m);
+    int[] radii = new int[n];
+    for (int i = 0; i < n; i++) {
+      radii[i] = ((i < smaller ? lower : upper) - 1) / 2;
+    }
+    return radii;
+  }
+
+
+  /**
+   * Box blur count values of src, starting at start, into the same spots
+   * in dest. Values near the ends are averaged over the part of the box
+   * that's inside.
+   */
+  static void boxBlur(int[] src, int[] dest, int start, int count, int r) {
+    int size = 2*r + 1;
+    // (sum * mult) >>> 40 is the same as sum / size while sum * size < 2^40,
+    // which holds for sums of 8-bit values until boxes are 2^16 wide
+    long mult = ((1L << 40) + size - 1) / size;
+    int sum = 0;
+    for (int i = 0, stop = Math.min(r, count - 1); i <= stop; i++) {
+      sum += src[start + i];
+    }
+    int stop = start + count;
+    for (int i = 0; i < count; i++) {
+      int index = start + i;
+      int low = index - r;
+      int high = index + r;
+      if (low >= start && high < stop) {
+        // the whole box fits, so run through the middle without checks
+        for (; high < stop - 1; index++, low++, high++) {
+          dest[index] = (int) (((sum + r) * mult) >>> 40);
+          sum += src[high + 1] - src[low];
+        }
+        dest[index] = (int) (((sum + r) * mult) >>> 40);
+        i = index - start;
+      } else {
+        int n = Math.min(high, stop - 1) - Math.max(low, start) + 1;
+        dest[index] = (sum + (n >> 1)) / n;
+      }
+      if (high + 1 < stop) {
+        sum += src[high + 1];
+      }
+      if (low >= start) {
+        sum -= src[low];
+      }
+    }
+  }
+
+
+  /**
+   * Same as boxBlur(), but down the columns from left up to (not
+   * including) right, a whole row at a time.
+   */
+  static void boxBlurColumns(int[] src, int[] dest, int left, int right,
+                             int w, int h, int r) {
+    int size = 2*r + 1;
+    long mult = ((1L << 40) + size - 1) / size;
+    int[] sums = new int[right - left];
+    for (int y = 0, stop = Math.min(r, h - 1); y <= stop; y++) {
+      for (int x = left, row = y*w; x < right; x++) {
+        sums[x - left] += src[row + x];
+      }
+    }
+    for (int y = 0; y < h; y++) {
+      int low = y - r;
+      int high = y + r;
+      int row = y*w;
+      if (low >= 0 && high < h) {
+        for (int x = left; x < right; x++) {
+          dest[row + x] = (int) (((sums[x - left] + r) * mult) >>> 40);
+        }
+      } else {
+        int n = Math.min(high, h - 1) - Math.max(low, 0) + 1;
+        for (int x = left; x < right; x++) {
+          dest[row + x] = (sums[x - left] + (n >> 1)) / n;
+        }
+      }
+      if (high + 1 < h) {
+        int add = (high + 1)*w;
+        for (int x = left; x < right; x++) {
+          sums[x - left] += src[add + x];
+        }
+      }
+      if (low >= 0) {
+        int sub = low*w;
+        for (int x = left; x < right; x++) {
+          sums[x - left] -= src[sub + x];
+        }
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
     }
   }
 
@@ -1481,139 +2026,149 @@ public class PImage implements PConstants, Cloneable {
    * as decision factor. [toxi 050728]
    */
   protected void dilate() {  // formerly dilate(false)
-    int index = 0;
-    int maxIndex = pixels.length;
-    int[] outgoing = new int[maxIndex];
+    final int maxIndex = pixels.length;
+    final int[] outgoing = new int[maxIndex];
 
     // erosion (grow light areas)
-    while (index < maxIndex) {
-      int curRowIndex = index;
-      int maxRowIndex = index + pixelWidth;
-      while (index < maxRowIndex) {
-        int orig = pixels[index];
-        int result = orig;
-        int idxLeft = index - 1;
-        int idxRight = index + 1;
-        int idxUp = index - pixelWidth;
-        int idxDown = index + pixelWidth;
-        if (idxLeft < curRowIndex) {
-          idxLeft = index;
-        }
-        if (idxRight >= maxRowIndex) {
-          idxRight = index;
-        }
-        if (idxUp < 0) {
-          idxUp = index;
-        }
-        if (idxDown >= maxIndex) {
-          idxDown = index;
-        }
-
-        int colUp = pixels[idxUp];
-        int colLeft = pixels[idxLeft];
-        int colDown = pixels[idxDown];
-        int colRight = pixels[idxRight];
-
-        // compute luminance
-        int currLum =
-          77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
-        int lumLeft =
-          77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
-        int lumRight =
-          77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
-        int lumUp =
-          77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
-        int lumDown =
-          77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
-
-        if (lumLeft > currLum) {
-          result = colLeft;
-          currLum = lumLeft;
-        }
-        if (lumRight > currLum) {
-          result = colRight;
-          currLum = lumRight;
-        }
-        if (lumUp > currLum) {
-          result = colUp;
-          currLum = lumUp;
-        }
-        if (lumDown > currLum) {
-          result = colDown;
-          currLum = lumDown;
-        }
-        outgoing[index++] = result;
+    runBands(pixelHeight, pixelWidth, new Band() {
+      void run(int top, int bottom) {
+        int index = top * pixelWidth;
+        int stop = (bottom == pixelHeight) ? maxIndex : bottom * pixelWidth;
+        while (index < stop) {
+          int curRowIndex = index;
+          int maxRowIndex = index + pixelWidth;
+          while (index < maxRowIndex) {
+            int orig = pixels[index];
+            int result = orig;
+            int idxLeft = index - 1;
+            int idxRight = index + 1;
+            int idxUp = index - pixelWidth;
+            int idxDown = index + pixelWidth;
+            if (idxLeft < curRowIndex) {
+              idxLeft = index;
+            }
+            if (idxRight >= maxRowIndex) {
+              idxRight = index;
+            }
+            if (idxUp < 0) {
+              idxUp = index;
+            }
+            if (idxDown >= maxIndex) {
+              idxDown = index;
+            }
+
+            int colUp = pixels[idxUp];
+            int colLeft = pixels[idxLeft];
+            int colDown = pixels[idxDown];
+            int colRight = pixels[idxRight];
+
+            // compute luminance
+            int currLum =
+              77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
+            int lumLeft =
+              77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
+            int lumRight =
+              77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
+            int lumUp =
+              77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
+            int lumDown =
+              77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
+
+            if (lumLeft > currLum) {
+              result = colLeft;
+              currLum = lumLeft;
+            }
+            if (lumRight > currLum) {
+              result = colRight;
+              currLum = lumRight;
+            }
+            if (lumUp > currLum) {
+              result = colUp;
+              currLum = lumUp;
+            }
+            if (lumDown > currLum) {
+              result = colDown;
+              currLum = lumDown;
+            }
+            outgoing[index++] = result;
+          }
+        }
       }
-    }
+    });
     System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
   }
 
 
   protected void erode() {  // formerly dilate(true)
-    int index = 0;
-    int maxIndex = pixels.length;
-    int[] outgoing = new int[maxIndex];
+    final int maxIndex = pixels.length;
+    final int[] outgoing = new int[maxIndex];
 
     // dilate (grow dark areas)
-    while (index < maxIndex) {
-      int curRowIndex = index;
-      int maxRowIndex = index + pixelWidth;
-      while (index < maxRowIndex) {
-        int orig = pixels[index];
-        int result = orig;
-        int idxLeft = index - 1;
-        int idxRight = index + 1;
-        int idxUp = index - pixelWidth;
-        int idxDown = index + pixelWidth;
-        if (idxLeft < curRowIndex) {
-          idxLeft = index;
-        }
-        if (idxRight >= maxRowIndex) {
-          idxRight = index;
-        }
-        if (idxUp < 0) {
-          idxUp = index;
-        }
-        if (idxDown >= maxIndex) {
-          idxDown = index;
-        }
-
-        int colUp = pixels[idxUp];
-        int colLeft = pixels[idxLeft];
-        int colDown = pixels[idxDown];
-        int colRight = pixels[idxRight];
-
-        // compute luminance
-        int currLum =
-          77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
-        int lumLeft =
-          77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
-        int lumRight =
-          77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
-        int lumUp =
-          77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
-        int lumDown =
-          77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
-
-        if (lumLeft < currLum) {
-          result = colLeft;
-          currLum = lumLeft;
-        }
-        if (lumRight < currLum) {
-          result = colRight;
-          currLum = lumRight;
-        }
-        if (lumUp < currLum) {
-          result = colUp;
-          currLum = lumUp;
-        }
-        if (lumDown < currLum) {
-          result = colDown;
-          currLum = lumDown;
-        }
-        outgoing[index++] = result;
+    runBands(pixelHeight, pixelWidth, new Band() {
+      void run(int top, int bottom) {
+        int index = top * pixelWidth;
+        int stop = (bottom == pixelHeight) ? maxIndex : bottom * pixelWidth;
+        while (index < stop) {
+          int curRowIndex = index;
+          int maxRowIndex = index + pixelWidth;
+          while (index < maxRowIndex) {
+            int orig = pixels[index];
+            int result = orig;
+            int idxLeft = index - 1;
+            int idxRight = index + 1;
+            int idxUp = index - pixelWidth;
+            int idxDown = index + pixelWidth;
+            if (idxLeft < curRowIndex) {
+              idxLeft = index;
+            }
+            if (idxRight >= maxRowIndex) {
+              idxRight = index;
+            }
+            if (idxUp < 0) {
+              idxUp = index;
+            }
+            if (idxDown >= maxIndex) {
+              idxDown = index;
+            }
+
+            int colUp = pixels[idxUp];
+            int colLeft = pixels[idxLeft];
+            int colDown = pixels[idxDown];
+            int colRight = pixels[idxRight];
+
+            // compute luminance
+            int currLum =
+              77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
+            int lumLeft =
+              77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
+            int lumRight =
+              77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
+            int lumUp =
+              77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
+            int lumDown =
+              77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
+
+            if (lumLeft < currLum) {
+              result = colLeft;
+              currLum = lumLeft;
+            }
+            if (lumRight < currLum) {
+              result = colRight;
+              currLum = lumRight;
+            }
+            if (lumUp < currLum) {
+              result = colUp;
+              currLum = lumUp;
+            }
+            if (lumDown < currLum) {
+              result = colDown;
+              currLum = lumDown;
+            }
+            outgoing[index++] = result;
+          }
+        }
       }
-    }
+    });
     System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
   }
 
@@ -1976,6 +2531,17 @@ public class PImage implements PConstants, Cloneable {
     int destOffset = destY1 * screenW + destX1;
     srcBuffer = img.pixels;
 
+    if (dx == PRECISIONF && dy == PRECISIONF) {
+      // same size, so each pixel comes straight from the source
+      int srcOffset = (srcYOffset >> PRECISIONB) * img.pixelWidth +
+        (srcXOffset >> PRECISIONB);
+      if (blit_unscaled(srcBuffer, srcOffset, img.pixelWidth,
+                        destPixels, destOffset, screenW,
+                        destW, destH, mode)) {
+        return;
+      }
+    }
+
     if (smooth) {
       // use bilinear filtering
       iw = img.pixelWidth;
@@ -2416,6 +2982,92 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /**
+   * Copy or blend without any scaling, for blit_resize(). The most common
+   * modes each get their own loop, rather than going through the bilinear
+   * filter and a blend function for every pixel. Fully transparent source
+   * pixels leave the destination as it was, and opaque ones replace it,
+   * which is what the blend functions would do anyway. Returns false for
+   * other modes, which are left to the regular path.
+   */
+  private static boolean blit_unscaled(int[] srcPixels, int srcOffset, int srcStride,
+                                       int[] destPixels, int destOffset, int destStride,
+                                       int w, int h, int mode) {
+    if (w <= 0 || h <= 0) {
+      return true;  // clipped away entirely
+    }
+    switch (mode) {
+    case REPLACE:
+      for (int y = 0; y < h; y++) {
+        System.arraycopy(srcPixels, srcOffset, destPixels, destOffset, w);
+        srcOffset += srcStride;
+        destOffset += destStride;
+      }
+      return true;
+
+    case BLEND:
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++) {
+          int src = srcPixels[srcOffset + x];
+          int a = src >>> 24;
+          if (a == 0xFF) {
+            destPixels[destOffset + x] = src;
+          } else if (a != 0) {
+            destPixels[destOffset + x] =
+              blend_blend(destPixels[destOffset + x], src);
+          }
+        }
+        srcOffset += srcStride;
+        destOffset += destStride;
+      }
+      return true;
+
+    case ADD:
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++) {
+          int src = srcPixels[srcOffset + x];
+          if ((src >>> 24) != 0) {
+            destPixels[destOffset + x] =
+              blend_add_pin(destPixels[destOffset + x], src);
+          }
+        }
+        srcOffset += srcStride;
+        destOffset += destStride;
+      }
+      return true;
+
+    case MULTIPLY:
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++) {
+          int src = srcPixels[srcOffset + x];
+          if ((src >>> 24) != 0) {
+            destPixels[destOffset + x] =
+              blend_multiply(destPixels[destOffset + x], src);
+          }
+        }
+        srcOffset += srcStride;
+        destOffset += destStride;
+      }
+      return true;
+
+    case SCREEN:
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++) {
+          int src = srcPixels[srcOffset + x];
+          if ((src >>> 24) != 0) {
+            destPixels[destOffset + x] =
+              blend_screen(destPixels[destOffset + x], src);
+          }
+        }
+        srcOffset += srcStride;
+        destOffset += destStride;
+      }
+      return true;
+    }
+    return false;
+  }
+
+
   private void filter_new_scanline() {
     sX = srcXOffset;
     fracV = srcYOffset & PREC_MAXVAL;
@@ -0,0 +1,251 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import processing.core.PApplet;
+
+
+/**
+ * <p>Storage for a COMPACT Table column. Instead of a String object for each
+ * entry, the UTF-8 bytes for all the entries are kept in a single array,
+ * along with the start and length of each one. Strings are only created
+ * when an entry is read with get().</p>
+ * <p>Entries that are replaced with longer values are added to the end of the
+ * array, leaving the old bytes unused. Once more than half the array is
+ * unused, it's repacked.</p>
+ */
+class CompactStrings {
+  static final int NULL_LENGTH = -1;
+
+  /** UTF-8 bytes for all entries */
+  byte[] data;
+  /** Number of bytes in data that are in use (or were, see unused) */
+  int used;
+  /** Number of bytes in data left behind by replaced entries */
+  int unused;
+
+  int[] starts;
+  int[] lengths;
+  int count;
+
+
+  CompactStrings(int count) {
+    this.count = count;
+    starts = new int[count];
+    lengths = new int[count];
+    Arrays.fill(lengths, NULL_LENGTH);
+    data = new byte[Math.max(16, count * 4)];
+  }
+
+
+  int size() {
+    return count;
+  }
+
+
+  /** Change the number of entries, new ones will be null. */
+  void resize(int newCount) {
+    if (newCount > starts.length) {
+      starts = PApplet.expand(starts, newCount);
+      lengths = PApplet.expand(lengths, newCount);
+    }
+    for (int i = count; i < newCount; i++) {
+      starts[i] = 0;
+      lengths[i] = NULL_LENGTH;
+    }
+    for (int i = newCount; i < count; i++) {
+      if (lengths[i] > 0) {
+        unused += lengths[i];
+      }
+    }
+    count = newCount;
+  }
+
+
+  String get(int index) {
+    int length = lengths[index];
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    return new String(data, starts[index], length, StandardCharsets.UTF_8);
+  }
+
+
+  void set(int index, String value) {
+    set(index, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+  }
+
+
+  void set(int index, byte[] bytes) {
+    int oldLength = lengths[index];
+    if (bytes == null) {
+      if (oldLength > 0) {
+        unused += oldLength;
+      }
+      lengths[index] = NULL_LENGTH;
+      return;
+    }
+    if (oldLength >= bytes.length) {
+      // fits in the old spot
+      System.arraycopy(bytes, 0, data, starts[index], bytes.length);
+      unused += oldLength - bytes.length;
+    } else {
+      if (oldLength > 0) {
+        unused += oldLength;
+      }
+      starts[index] = append(bytes, 0, bytes.length);
+    }
+    lengths[index] = bytes.length;
+    if (unused > (1 << 16) && unused > used / 2) {
+      pack();
+    }
+  }
+
+
+  /** Add bytes to the end of the data, returning where they were added. */
+  protected int append(byte[] bytes, int offset, int length) {
+    if (used + length > data.length) {
+      long needed = Math.max((long) data.length << 1, (long) used + length);
+      if (needed > Integer.MAX_VALUE - 8) {
+        if ((long) used + length > Integer.MAX_VALUE - 8) {
+          throw new RuntimeException("Too much text for a compact column, use a STRING column instead");
+        }
+        needed = Integer.MAX_VALUE - 8;
+      }
+      data = Arrays.copyOf(data, (int) needed);
+    }
+    int start = used;
+    System.arraycopy(bytes, offset, data, start, length);
+    used += length;
+    return start;
+  }
+
+
+  /** Same as get(index).equals(value), without creating the String. */
+  boolean equals(int index, byte[] bytes) {
+    int length = lengths[index];
+    if (bytes == null || length == NULL_LENGTH) {
+      return bytes == null && length == NULL_LENGTH;
+    }
+    if (length != bytes.length) {
+      return false;
+    }
+    int start = starts[index];
+    // values often share a prefix (ids, paths, dates) so check the end first
+    if (length != 0 && data[start + length - 1] != bytes[length - 1]) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (data[start + i] != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /** Insert a null entry, moving everything after it down by one. */
+  void insert(int index) {
+    resize(count + 1);
+    System.arraycopy(starts, index, starts, index + 1, count - index - 1);
+    System.arraycopy(lengths, index, lengths, index + 1, count - index - 1);
+    starts[index] = 0;
+    lengths[index] = NULL_LENGTH;
+  }
+
+
+  void remove(int index) {
+    if (lengths[index] > 0) {
+      unused += lengths[index];
+    }
+    System.arraycopy(starts, index + 1, starts, index, count - index - 1);
+    System.arraycopy(lengths, index + 1, lengths, index, count - index - 1);
+    count--;
+  }
+
+
+  /** Re-order the entries, so that entry i is the old entry order[i]. */
+  void reorder(int[] order) {
+    int[] newStarts = new int[starts.length];
+    int[] newLengths = new int[lengths.length];
+    for (int i = 0; i < count; i++) {
+      newStarts[i] = starts[order[i]];
+      newLengths[i] = lengths[order[i]];
+    }
+    starts = newStarts;
+    lengths = newLengths;
+    pack();  // so that scans read the bytes in order
+  }
+
+
+  /** Copy entries from another column, starting at index. */
+  void copy(CompactStrings source, int sourceCount, int index) {
+    for (int i = 0; i < sourceCount; i++) {
+      int length = source.lengths[i];
+      lengths[index + i] = length;
+      starts[index + i] = (length == NULL_LENGTH) ?
+        0 : append(source.data, source.starts[i], length);
+    }
+  }
+
+
+  /** Copy a single entry from another set of strings. */
+  void copyEntry(CompactStrings source, int sourceIndex, int index) {
+    int length = source.lengths[sourceIndex];
+    lengths[index] = length;
+    starts[index] = (length == NULL_LENGTH) ?
+      0 : append(source.data, source.starts[sourceIndex], length);
+  }
+
+
+  /** Copy the entries into a new array, in order, dropping unused bytes. */
+  void pack() {
+    byte[] packed = new byte[(int) Math.max(16, byteCount())];
+    int position = 0;
+    for (int i = 0; i < count; i++) {
+      int length = lengths[i];
+      if (length >= 0) {
+        // empty strings move too, their old start may be past the new end
+        System.arraycopy(data, starts[i], packed, position, length);
+        starts[i] = position;
+        position += length;
+      }
+    }
+    data = packed;
+    used = position;
+    unused = 0;
+  }
+
+
+  /** Bytes needed for all the entries (without the unused space). */
+  long byteCount() {
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      if (lengths[i] > 0) {
+        total += lengths[i];
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,562 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * <p>Copies the fields of a class to and from Table rows and JSON objects,
+ * so that records can be used as regular objects:</p>
+ * <pre>
+ * class Station {
+ *   String name;
+ *   float lat, lon;
+ *   int riders;
+ * }
+ *
+ * DataBinding&lt;Station&gt; binding = DataBinding.of(Station.class, this);
+ * List&lt;Station&gt; stations = binding.read(loadTable("stations.csv", "header"));
+ * saveJSONArray(binding.toJSONArray(stations), "stations.json");
+ * </pre>
+ * <p>Fields are matched to columns (or keys) with the same name. Fields of
+ * type int, long, float, double, boolean, char, and String are supported,
+ * others (and static or transient fields) are ignored, as are columns that
+ * don't have a matching field. Booleans are read from the text "true" or
+ * "1", and a char is the first character of its text.</p>
+ * <p>The fields and constructor of each class are only looked up once, and
+ * the Table columns once per Table, rather than once for every row. Classes
+ * in a sketch are usually inner classes, which need the sketch itself
+ * (<b>this</b>) to be created, so it's passed along with the class.</p>
+ *
+ * @nowebref
+ * @see Table
+ * @see JSONObject
+ */
+public class DataBinding<T> {
+  static final int INT = 0;
+  static final int LONG = 1;
+  static final int FLOAT = 2;
+  static final int DOUBLE = 3;
+  static final int BOOLEAN = 4;
+  static final int CHAR = 5;
+  static final int STRING = 6;
+
+  /** Constructor and accessors for each class, found the first time it's used. */
+  static final ClassValue<Plan> plans = new ClassValue<Plan>() {
+    @Override
+    protected Plan computeValue(Class<?> type) {
+      return new Plan(type);
+    }
+  };
+
+  protected Class<T> type;
+  protected Plan plan;
+  /** The object that contains this class (usually the sketch), or null. */
+  protected Object enclosing;
+
+
+  protected DataBinding(Class<T> type, Object enclosing) {
+    this.type = type;
+    this.plan = plans.get(type);
+    if (plan.inner && enclosing == null) {
+      throw new IllegalArgumentException(type.getSimpleName() + " is an inner class, " +
+                                         "use DataBinding.of(" + type.getSimpleName() +
+                                         ".class, this) instead");
+    }
+    this.enclosing = enclosing;
+  }
+
+
+  /** For a top-level or static class. */
+  static public <T> DataBinding<T> of(Class<T> type) {
+    return new DataBinding<>(type, null);
+  }
+
+
+  /**
+   * @param enclosing the object that contains the class, i.e. the sketch
+   */
+  static public <T> DataBinding<T> of(Class<T> type, Object enclosing) {
+    return new DataBinding<>(type, enclosing);
+  }
+
+
+  /** Names of the fields that will be read and written. */
+  public String[] listFields() {
+    String[] outgoing = new String[plan.accessors.length];
+    for (int i = 0; i < outgoing.length; i++) {
+      outgoing[i] = plan.accessors[i].name;
+    }
+    return outgoing;
+  }
+
+
+  public T newInstance() {
+    try {
+      Object item = plan.inner ?
+        plan.constructor.invokeExact(enclosing) :
+        plan.constructor.invokeExact();
+      return type.cast(item);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException("Could not create a new " + type.getSimpleName(), t);
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Create an object for each row of a Table. */
+  public List<T> read(Table table) {
+    List<T> outgoing = new ArrayList<>(table.getRowCount());
+    loadInto(table, outgoing);
+    return outgoing;
+  }
+
+
+  /** Create an object for each row of a Table, and add them to a List. */
+  public void loadInto(Table table, List<? super T> list) {
+    int[] columns = findColumns(table);
+    int rowCount = table.getRowCount();
+    if (list instanceof ArrayList) {
+      ((ArrayList<? super T>) list).ensureCapacity(list.size() + rowCount);
+    }
+    for (int row = 0; row < rowCount; row++) {
+      T item = newInstance();
+      readRow(table, row, columns, item);
+      list.add(item);
+    }
+  }
+
+
+  /** Create an object from a single row. */
+  public T read(TableRow row) {
+    T item = newInstance();
+    readInto(row, item);
+    return item;
+  }
+
+
+  /** Set the fields of an existing object from a single row. */
+  public void readInto(TableRow row, T item) {
+    try {
+      for (Accessor accessor : plan.accessors) {
+        int col = findColumn(row, accessor.name);
+        if (col != -1) {
+          switch (accessor.kind) {
+          case INT: accessor.setter.invokeExact((Object) item, row.getInt(col)); break;
+          case LONG: accessor.setter.invokeExact((Object) item, row.getLong(col)); break;
+          case FLOAT: accessor.setter.invokeExact((Object) item, row.getFloat(col)); break;
+          case DOUBLE: accessor.setter.invokeExact((Object) item, row.getDouble(col)); break;
+          default: setText(accessor, item, row.getString(col));
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+
+  /**
+   * Add a row to the Table for each object. Columns for the fields are
+   * added to the Table if it doesn't already have them.
+   */
+  public void writeInto(Iterable<? extends T> items, Table table) {
+    Collection<? extends T> collection;
+    if (items instanceof Collection) {
+      collection = (Collection<? extends T>) items;
+    } else {
+      List<T> list = new ArrayList<>();
+      for (T item : items) {
+        list.add(item);
+      }
+      collection = list;
+    }
+    int[] columns = findColumns(table);
+    for (int i = 0; i < columns.length; i++) {
+      if (columns[i] == -1) {
+        Accessor accessor = plan.accessors[i];
+        table.addColumn(accessor.name, accessor.tableType());
+        columns[i] = table.getColumnCount() - 1;
+      }
+    }
+    int row = table.getRowCount();
+    // add all the rows at once, rather than resizing every column each time
+    table.setRowCount(row + collection.size());
+    for (T item : collection) {
+      writeRow(item, table, row++, columns);
+    }
+  }
+
+
+  /** Create a new Table that has a row for each object. */
+  public Table toTable(Iterable<? extends T> items) {
+    Table table = new Table();
+    writeInto(items, table);
+    return table;
+  }
+
+
+  /** Copy the fields of an object to a row, for the columns it has. */
+  public void write(T item, TableRow row) {
+    try {
+      for (Accessor accessor : plan.accessors) {
+        int col = findColumn(row, accessor.name);
+        if (col != -1) {
+          switch (accessor.kind) {
+          case INT: row.setInt(col, (int) accessor.getter.invokeExact((Object) item)); break;
+          case LONG: row.setLong(col, (long) accessor.getter.invokeExact((Object) item)); break;
+          case FLOAT: row.setFloat(col, (float) accessor.getter.invokeExact((Object) item)); break;
+          case DOUBLE: row.setDouble(col, (double) accessor.getter.invokeExact((Object) item)); break;
+          default: row.setString(col, getText(accessor, item));
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Create an object from the keys of a JSONObject. */
+  public T read(JSONObject json) {
+    T item = newInstance();
+    readInto(json, item);
+    return item;
+  }
+
+
+  /** Set the fields of an existing object from the keys of a JSONObject. */
+  public void readInto(JSONObject json, T item) {
+    try {
+      for (Accessor accessor : plan.accessors) {
+        String name = accessor.name;
+        if (json.hasKey(name) && !json.isNull(name)) {
+          switch (accessor.kind) {
+          case INT: accessor.setter.invokeExact((Object) item, json.getInt(name)); break;
+          case LONG: accessor.setter.invokeExact((Object) item, json.getLong(name)); break;
+          case FLOAT: accessor.setter.invokeExact((Object) item, json.getFloat(name)); break;
+          case DOUBLE: accessor.setter.invokeExact((Object) item, json.getDouble(name)); break;
+          case BOOLEAN: accessor.setter.invokeExact((Object) item, json.getBoolean(name)); break;
+          default: setText(accessor, item, json.get(name).toString());
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+
+  /** Create an object for each JSONObject in an array. */
+  public List<T> read(JSONArray array) {
+    List<T> outgoing = new ArrayList<>(array.size());
+    loadInto(array, outgoing);
+    return outgoing;
+  }
+
+
+  /** Create an object for each JSONObject in an array, and add them to a List. */
+  public void loadInto(JSONArray array, List<? super T> list) {
+    int count = array.size();
+    if (list instanceof ArrayList) {
+      ((ArrayList<? super T>) list).ensureCapacity(list.size() + count);
+    }
+    for (int i = 0; i < count; i++) {
+      list.add(read(array.getJSONObject(i)));
+    }
+  }
+
+
+  /**
+   * Create an object for each match from a JSONReader, without loading
+   * the whole file.
+   */
+  public void loadInto(JSONReader reader, List<? super T> list) {
+    for (JSONObject json : reader) {
+      list.add(read(json));
+    }
+  }
+
+
+  public JSONObject toJSONObject(T item) {
+    JSONObject json = new JSONObject();
+    try {
+      for (Accessor accessor : plan.accessors) {
+        String name = accessor.name;
+        switch (accessor.kind) {
+        case INT: json.setInt(name, (int) accessor.getter.invokeExact((Object) item)); break;
+        case LONG: json.setLong(name, (long) accessor.getter.invokeExact((Object) item)); break;
+        case FLOAT: json.setFloat(name, (float) accessor.getter.invokeExact((Object) item)); break;
+        case DOUBLE: json.setDouble(name, (double) accessor.getter.invokeExact((Object) item)); break;
+        case BOOLEAN: json.setBoolean(name, (boolean) accessor.getter.invokeExact((Object) item)); break;
+        default:
+          String text = getText(accessor, item);
+          if (text != null) {
+            json.setString(name, text);
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+    return json;
+  }
+
+
+  public JSONArray toJSONArray(Iterable<? extends T> items) {
+    JSONArray array = new JSONArray();
+    for (T item : items) {
+      array.append(toJSONObject(item));
+    }
+    return array;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Column for each accessor, or -1 if the Table doesn't have it. */
+  protected int[] findColumns(Table table) {
+    int[] columns = new int[plan.accessors.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = table.getColumnIndex(plan.accessors[i].name, false);
+    }
+    return columns;
+  }
+
+
+  static protected int findColumn(TableRow row, String name) {
+    String[] titles = row.getColumnTitles();
+    if (titles != null) {
+      for (int col = 0; col < titles.length; col++) {
+        if (name.equals(titles[col])) {
+          return col;
+        }
+      }
+    }
+    return -1;
+  }
+
+
+  protected void readRow(Table table, int row, int[] columns, T item) {
+    Accessor[] accessors = plan.accessors;
+    try {
+      for (int i = 0; i < accessors.length; i++) {
+        int col = columns[i];
+        if (col != -1) {
+          Accessor accessor = accessors[i];
+          switch (accessor.kind) {
+          case INT: accessor.setter.invokeExact((Object) item, table.getInt(row, col)); break;
+          case LONG: accessor.setter.invokeExact((Object) item, table.getLong(row, col)); break;
+          case FLOAT: accessor.setter.invokeExact((Object) item, table.getFloat(row, col)); break;
+          case DOUBLE: accessor.setter.invokeExact((Object) item, table.getDouble(row, col)); break;
+          default: setText(accessor, item, table.getString(row, col));
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+
+  protected void writeRow(T item, Table table, int row, int[] columns) {
+    Accessor[] accessors = plan.accessors;
+    try {
+      for (int i = 0; i < accessors.length; i++) {
+        Accessor accessor = accessors[i];
+        int col = columns[i];
+        switch (accessor.kind) {
+        case INT: table.setInt(row, col, (int) accessor.getter.invokeExact((Object) item)); break;
+        case LONG: table.setLong(row, col, (long) accessor.getter.invokeExact((Object) item)); break;
+        case FLOAT: table.setFloat(row, col, (float) accessor.getter.invokeExact((Object) item)); break;
+        case DOUBLE: table.setDouble(row, col, (double) accessor.getter.invokeExact((Object) item)); break;
+        default: table.setString(row, col, getText(accessor, item));
+        }
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+
+  /** Set a boolean, char, or String field from text. */
+  static protected void setText(Accessor accessor, Object item,
+                                String text) throws Throwable {
+    switch (accessor.kind) {
+    case BOOLEAN:
+      if (text != null) {
+        boolean value = text.equalsIgnoreCase("true") || text.equals("1");
+        accessor.setter.invokeExact(item, value);
+      }
+      break;
+    case CHAR:
+      if (text != null && text.length() > 0) {
+        accessor.setter.invokeExact(item, text.charAt(0));
+      }
+      break;
+    case STRING:
+      accessor.setter.invokeExact(item, text);
+      break;
+    }
+  }
+
+
+  /** Get a boolean, char, or String field as text. */
+  static protected String getText(Accessor accessor, Object item) throws Throwable {
+    switch (accessor.kind) {
+    case BOOLEAN:
+      return String.valueOf((boolean) accessor.getter.invokeExact(item));
+    case CHAR:
+      char c = (char) accessor.getter.invokeExact(item);
+      return (c == 0) ? null : String.valueOf(c);
+    default:
+      return (String) accessor.getter.invokeExact(item);
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Everything needed to create and fill in objects of a particular class. */
+  static class Plan {
+    MethodHandle constructor;
+    boolean inner;
+    Accessor[] accessors;
+
+    Plan(Class<?> type) {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      // an inner class of the sketch takes the sketch as a hidden parameter
+      inner = type.getEnclosingClass() != null &&
+        !Modifier.isStatic(type.getModifiers());
+      try {
+        Constructor<?> con = inner ?
+          type.getDeclaredConstructor(type.getEnclosingClass()) :
+          type.getDeclaredConstructor();
+        con.setAccessible(true);
+        constructor = lookup.unreflectConstructor(con);
+        constructor = inner ?
+          constructor.asType(MethodType.methodType(Object.class, Object.class)) :
+          constructor.asType(MethodType.methodType(Object.class));
+
+      } catch (NoSuchMethodException e) {
+        throw new RuntimeException(type.getSimpleName() + " needs a constructor " +
+                                   "that doesn't take any parameters", e);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+
+      List<Accessor> found = new ArrayList<>();
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          int mods = field.getModifiers();
+          int kind = kindOf(field.getType());
+          if (kind != -1 && !field.isSynthetic() &&
+              !Modifier.isStatic(mods) && !Modifier.isTransient(mods)) {
+            field.setAccessible(true);
+            try {
+              found.add(new Accessor(field, kind, lookup));
+            } catch (IllegalAccessException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      }
+      accessors = found.toArray(new Accessor[found.size()]);
+    }
+
+    static int kindOf(Class<?> c) {
+      if (c == Integer.TYPE) return INT;
+      if (c == Long.TYPE) return LONG;
+      if (c == Float.TYPE) return FLOAT;
+      if (c == Double.TYPE) return DOUBLE;
+      if (c == Boolean.TYPE) return BOOLEAN;
+      if (c == Character.TYPE) return CHAR;
+      if (c == String.class) return STRING;
+      return -1;
+    }
+  }
+
+
+  /** Getter and setter for one field, typed as (Object) and (Object, value). */
+  static class Accessor {
+    String name;
+    int kind;
+    MethodHandle getter;
+    MethodHandle setter;
+
+    Accessor(Field field, int kind, MethodHandles.Lookup lookup) throws IllegalAccessException {
+      this.name = field.getName();
+      this.kind = kind;
+      Class<?> valueType = field.getType();
+      getter = lookup.unreflectGetter(field)
+        .asType(MethodType.methodType(valueType, Object.class));
+      if (Modifier.isFinal(field.getModifiers())) {
+        // can still be written out, but not read back in
+        setter = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null)
+                                             .asType(MethodType.methodType(void.class)),
+                                             0, Object.class, valueType);
+      } else {
+        setter = lookup.unreflectSetter(field)
+          .asType(MethodType.methodType(void.class, Object.class, valueType));
+      }
+    }
+
+    int tableType() {
+      switch (kind) {
+      case INT: return Table.INT;
+      case LONG: return Table.LONG;
+      case FLOAT: return Table.FLOAT;
+      case DOUBLE: return Table.DOUBLE;
+      }
+      return Table.STRING;
+    }
+  }
+}
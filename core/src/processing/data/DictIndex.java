@@ -0,0 +1,337 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.Arrays;
+
+
+/**
+ * <p>Lookup from a key to its position in the keys[] array of a dictionary:
+ * the String-keyed IntDict, FloatDict, LongDict, DoubleDict, and StringDict,
+ * and the primitive-keyed IntIntDict, IntFloatDict, and LongObjectDict.
+ * Replaces the HashMap&lt;String, Integer&gt; used before, which created an
+ * Integer for every entry and had to be rebuilt after each sort or
+ * removal.</p>
+ * <p>It's an open-addressing (linear probing) table of entry numbers, with
+ * the hash code of each entry's key cached in a separate array, so that
+ * growing the table or moving entries around never touches the keys.
+ * The keys themselves stay in the dictionary, and are passed in for the
+ * lookups that need to compare them.</p>
+ */
+class DictIndex {
+  /** Entry number + 1 for each slot in the table, 0 for an empty slot. */
+  private int[] slots;
+  private int mask;
+
+  /** Hash for the key of each entry. */
+  private int[] hashes;
+  private int count;
+
+
+  DictIndex() {
+    this(10);
+  }
+
+
+  DictIndex(int expected) {
+    hashes = new int[Math.max(expected, 10)];
+    allocate(expected);
+  }
+
+
+  /** Index the first count entries of keys. */
+  DictIndex(String[] keys, int count) {
+    this(count);
+    for (int i = 0; i < count; i++) {
+      put(keys, keys[i]);
+    }
+  }
+
+
+  private void allocate(int expected) {
+    int capacity = 16;
+    // keep the table at most 3/4 full so that probes stay short
+    while (capacity - (capacity >> 2) <= expected) {
+      capacity <<= 1;
+    }
+    slots = new int[capacity];
+    mask = capacity - 1;
+  }
+
+
+  static int hash(String key) {
+    if (key == null) {
+      return 0;
+    }
+    // String caches its hashCode(), but the low bits need mixing
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+
+  static int hash(long key) {
+    int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+
+  int size() {
+    return count;
+  }
+
+
+  /** Entry number for key, or -1 if it's not in the index. */
+  int get(String[] keys, String key) {
+    int h = hash(key);
+    int p = h & mask;
+    int slot;
+    while ((slot = slots[p]) != 0) {
+      int entry = slot - 1;
+      if (hashes[entry] == h) {
+        String found = keys[entry];
+        if (found == key || (key != null && key.equals(found))) {
+          return entry;
+        }
+      }
+      p = (p + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  int get(int[] keys, int key) {
+    int h = hash(key);
+    int p = h & mask;
+    int slot;
+    while ((slot = slots[p]) != 0) {
+      if (keys[slot - 1] == key) {
+        return slot - 1;
+      }
+      p = (p + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  int get(long[] keys, long key) {
+    int h = hash(key);
+    int p = h & mask;
+    int slot;
+    while ((slot = slots[p]) != 0) {
+      if (keys[slot - 1] == key) {
+        return slot - 1;
+      }
+      p = (p + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Add the next entry (numbered size()) for a key that's not already in
+   * the index. This is the fast path used when a dictionary creates a key
+   * after a lookup has come back empty.
+   */
+  void add(String key) {
+    addHash(hash(key));
+  }
+
+
+  void add(long key) {
+    addHash(hash(key));
+  }
+
+
+  private void addHash(int h) {
+    if (count == hashes.length) {
+      hashes = Arrays.copyOf(hashes, count << 1);
+    }
+    hashes[count] = h;
+    count++;
+    if (count > slots.length - (slots.length >> 2)) {
+      allocate(count);
+      for (int i = 0; i < count; i++) {
+        insert(i);
+      }
+    } else {
+      insert(count - 1);
+    }
+  }
+
+
+  /**
+   * Add the next entry for a key that may already be in the index. If it
+   * is, lookups will find the new entry from now on, same as HashMap.put().
+   */
+  void put(String[] keys, String key) {
+    int found = get(keys, key);
+    if (found == -1) {
+      add(key);
+    } else {
+      if (count == hashes.length) {
+        hashes = Arrays.copyOf(hashes, count << 1);
+      }
+      hashes[count] = hashes[found];
+      slots[find(found)] = count + 1;
+      count++;
+    }
+  }
+
+
+  /** Use a different key for an entry. */
+  void set(int entry, String key) {
+    setHash(entry, hash(key));
+  }
+
+
+  void set(int entry, long key) {
+    setHash(entry, hash(key));
+  }
+
+
+  private void setHash(int entry, int h) {
+    int p = find(entry);
+    if (p != -1) {
+      delete(p);
+    }
+    hashes[entry] = h;
+    insert(entry);
+  }
+
+
+  /**
+   * Remove an entry, and renumber the entries that follow it, the same way
+   * the dictionary shifts its keys and values down by one.
+   */
+  void remove(int entry) {
+    int p = find(entry);
+    if (p != -1) {
+      delete(p);
+    }
+    System.arraycopy(hashes, entry + 1, hashes, entry, count - entry - 1);
+    count--;
+    int after = entry + 1;
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] > after) {
+        slots[i]--;
+      }
+    }
+  }
+
+
+  /** Update the index after the dictionary swaps two of its entries. */
+  void swap(int a, int b) {
+    int pa = find(a);
+    int pb = find(b);
+    if (pa != -1) slots[pa] = b + 1;
+    if (pb != -1) slots[pb] = a + 1;
+    int temp = hashes[a];
+    hashes[a] = hashes[b];
+    hashes[b] = temp;
+  }
+
+
+  /**
+   * Update the index after the dictionary moves its first order.length
+   * entries, so that entry i is the old entry order[i].
+   */
+  void reorder(int[] order) {
+    int[] old = hashes.clone();
+    for (int i = 0; i < order.length; i++) {
+      hashes[i] = old[order[i]];
+    }
+    truncate(count);
+  }
+
+
+  /** Drop all but the first count entries. */
+  void truncate(int newCount) {
+    count = Math.min(count, newCount);
+    Arrays.fill(slots, 0);
+    // Go backwards, so that when a key is in there more than once, the
+    // last copy is closest to its starting slot and is the one found by
+    // get(), the same as put().
+    for (int i = count - 1; i >= 0; i--) {
+      insert(i);
+    }
+  }
+
+
+  void clear() {
+    count = 0;
+    Arrays.fill(slots, 0);
+  }
+
+
+  DictIndex copy() {
+    DictIndex outgoing = new DictIndex(0);
+    outgoing.slots = slots.clone();
+    outgoing.mask = mask;
+    outgoing.hashes = hashes.clone();
+    outgoing.count = count;
+    return outgoing;
+  }
+
+
+  /** Place an entry (whose hash is already set) in the first open slot. */
+  private void insert(int entry) {
+    int p = hashes[entry] & mask;
+    while (slots[p] != 0) {
+      p = (p + 1) & mask;
+    }
+    slots[p] = entry + 1;
+  }
+
+
+  /** Slot holding an entry, or -1 if it was replaced by a duplicate key. */
+  private int find(int entry) {
+    int p = hashes[entry] & mask;
+    int slot;
+    while ((slot = slots[p]) != 0) {
+      if (slot == entry + 1) {
+        return p;
+      }
+      p = (p + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Empty a slot, then move later entries from the same run back into the
+   * gap, so that lookups don't stop early. (No tombstones needed.)
+   */
+  private void delete(int p) {
+    int hole = p;
+    int q = (p + 1) & mask;
+    int slot;
+    while ((slot = slots[q]) != 0) {
+      int home = hashes[slot - 1] & mask;
+      // move it if the hole is between its home slot and where it is now
+      if (((q - home) & mask) >= ((q - hole) & mask)) {
+        slots[hole] = slot;
+        hole = q;
+      }
+      q = (q + 1) & mask;
+    }
+    slots[hole] = 0;
+  }
+}
@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -25,7 +24,7 @@ public class DoubleDict {
   protected double[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictIndex indices = new DictIndex();
 
 
   public DoubleDict() {
@@ -64,7 +63,7 @@ public class DoubleDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseFloat(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, pieces[0]);
         count++;
       }
     }
@@ -82,7 +81,7 @@ public class DoubleDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -103,7 +102,7 @@ public class DoubleDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Float) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -116,7 +115,7 @@ public class DoubleDict {
     for (Map.Entry<String, Double> e : incoming.entrySet()) {
       keys[index] = e.getKey();
       values[index] = e.getValue();
-      indices.put(keys[index], index);
+      indices.put(keys, keys[index]);
       index++;
     }
   }
@@ -152,7 +151,7 @@ public class DoubleDict {
     keys = newKeys;
     values = newValues;
     count = length;
-    resetIndices();
+    indices.truncate(length);
   }
 
 
@@ -164,15 +163,7 @@ public class DoubleDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
-  }
-
-
-  private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.clear();
   }
 
 
@@ -399,6 +390,7 @@ public class DoubleDict {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    indices.set(index, key);
     keys[index] = key;
     values[index] = value;
   }
@@ -590,8 +582,7 @@ public class DoubleDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.get(keys, what);
   }
 
 
@@ -600,7 +591,7 @@ public class DoubleDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
+    indices.add(what);
     keys[count] = what;
     values[count] = much;
     count++;
@@ -627,12 +618,11 @@ public class DoubleDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     double value = values[index];
-    indices.remove(keys[index]);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
+    indices.remove(index);
     count--;
     keys[count] = null;
     values[count] = 0;
@@ -647,9 +637,7 @@ public class DoubleDict {
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
+    indices.swap(a, b);
   }
 
 
@@ -766,10 +754,15 @@ public class DoubleDict {
         DoubleDict.this.swap(a, b);
       }
     };
-    s.run();
-
-    // Set the indices after sort/swaps (performance fix 160411)
-    resetIndices();
+    // sort the positions, then move everything once
+    int[] order = s.order();
+    String[] oldKeys = PApplet.subset(keys, 0, order.length);
+    double[] oldValues = PApplet.subset(values, 0, order.length);
+    for (int i = 0; i < order.length; i++) {
+      keys[i] = oldKeys[order[i]];
+      values[i] = oldValues[order[i]];
+    }
+    indices.reorder(order);
   }
 
 
@@ -794,9 +787,7 @@ public class DoubleDict {
     DoubleDict outgoing = new DoubleDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
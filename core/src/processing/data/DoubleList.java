@@ -4,7 +4,10 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Random;
+import java.util.function.DoubleConsumer;
 
 import processing.core.PApplet;
 
@@ -17,6 +20,11 @@ import processing.core.PApplet;
  * Functions like sort() and shuffle() always act on the list itself. To get
  * a sorted copy, use list.copy().sort().
  *
+ * For very large lists, use forEachValue() or valueIterator() to go through
+ * the values without converting each one to a Double, subList() to
+ * work with part of a list without copying it, and setChunkSize() to append
+ * many values without repeatedly copying the whole list as it grows.
+ *
  * @nowebref
  * @see IntList
  * @see StringList
@@ -25,6 +33,19 @@ public class DoubleList implements Iterable<Double> {
   int count;
   double[] data;
 
+  /** Index in data of the first value, for a list made by subList() */
+  protected int offset;
+  /** True if data belongs to another list, because this was made by subList() */
+  protected boolean shared;
+
+  /** Size of each new block when appending in chunks, or 0 to grow data */
+  protected int chunkSize;
+  /** Full blocks of values in chunked mode, data holds the values after them */
+  protected double[][] blocks;
+  protected int blockCount;
+  /** Number of values held in blocks */
+  protected int blockTotal;
+
 
   public DoubleList() {
     data = new double[10];
@@ -106,6 +127,7 @@ public class DoubleList implements Iterable<Double> {
    * size changes (from very large to very small).
    */
   private void crop() {
+    unshare();
     if (count != data.length) {
       data = PApplet.subset(data, 0, count);
     }
@@ -124,6 +146,7 @@ public class DoubleList implements Iterable<Double> {
 
 
   public void resize(int length) {
+    unshare();
     if (length > data.length) {
       double[] temp = new double[length];
       System.arraycopy(data, 0, temp, 0, count);
@@ -144,6 +167,9 @@ public class DoubleList implements Iterable<Double> {
    */
   public void clear() {
     count = 0;
+    blocks = null;
+    blockCount = 0;
+    blockTotal = 0;
   }
 
 
@@ -154,10 +180,11 @@ public class DoubleList implements Iterable<Double> {
    * @brief Get an entry at a particular index
    */
   public double get(int index) {
-    if (index >= count) {
+    if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    return data[index];
+    flatten();
+    return data[offset + index];
   }
 
 
@@ -170,14 +197,19 @@ public class DoubleList implements Iterable<Double> {
    * @brief Set the entry at a particular index
    */
   public void set(int index, double what) {
+    if (index < 0) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    flatten();
     if (index >= count) {
+      unshare();
       data = PApplet.expand(data, index+1);
       for (int i = count; i < index; i++) {
         data[i] = 0;
       }
       count = index+1;
     }
-    data[index] = what;
+    data[offset + index] = what;
   }
 
 
@@ -207,6 +239,7 @@ public class DoubleList implements Iterable<Double> {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    unshare();
     double entry = data[index];
 //    int[] outgoing = new int[count - 1];
 //    System.arraycopy(data, 0, outgoing, 0, index);
@@ -238,6 +271,7 @@ public class DoubleList implements Iterable<Double> {
   // Remove all instances of a particular value,
   // and return the number of values found and removed
   public int removeValues(int value) {
+    unshare();
     int ii = 0;
     if (Double.isNaN(value)) {
       for (int i = 0; i < count; i++) {
@@ -260,17 +294,18 @@ public class DoubleList implements Iterable<Double> {
 
   /** Replace the first instance of a particular value */
   public boolean replaceValue(double value, double newValue) {
+    flatten();
     if (Double.isNaN(value)) {
       for (int i = 0; i < count; i++) {
-        if (Double.isNaN(data[i])) {
-          data[i] = newValue;
+        if (Double.isNaN(data[offset + i])) {
+          data[offset + i] = newValue;
           return true;
         }
       }
     } else {
       int index = index(value);
       if (index != -1) {
-        data[index] = newValue;
+        data[offset + index] = newValue;
         return true;
       }
     }
@@ -280,18 +315,19 @@ public class DoubleList implements Iterable<Double> {
 
   /** Replace all instances of a particular value */
   public boolean replaceValues(double value, double newValue) {
+    flatten();
     boolean changed = false;
     if (Double.isNaN(value)) {
       for (int i = 0; i < count; i++) {
-        if (Double.isNaN(data[i])) {
-          data[i] = newValue;
+        if (Double.isNaN(data[offset + i])) {
+          data[offset + i] = newValue;
           changed = true;
         }
       }
     } else {
       for (int i = 0; i < count; i++) {
-        if (data[i] == value) {
-          data[i] = newValue;
+        if (data[offset + i] == value) {
+          data[offset + i] = newValue;
           changed = true;
         }
       }
@@ -308,10 +344,88 @@ public class DoubleList implements Iterable<Double> {
    * @brief Add a new entry to the list
    */
   public void append(double value) {
-    if (count == data.length) {
+    if (shared) {
+      unshare();
+    }
+    if (count - blockTotal == data.length) {
+      grow();
+    }
+    data[count++ - blockTotal] = value;
+  }
+
+
+  /**
+   * Make room for more values once data is full. In chunked mode, data
+   * becomes another one of the blocks, rather than being copied.
+   */
+  private void grow() {
+    if (chunkSize == 0) {
       data = PApplet.expand(data);
+    } else {
+      if (data.length != 0) {
+        if (blocks == null) {
+          blocks = new double[8][];
+        } else if (blockCount == blocks.length) {
+          blocks = Arrays.copyOf(blocks, blockCount << 1);
+        }
+        blocks[blockCount++] = data;
+        blockTotal += data.length;
+      }
+      data = new double[chunkSize];
+    }
+  }
+
+
+  /**
+   * Append in blocks of this many values, instead of copying the entire
+   * list to a new array (twice as large) each time that it fills up.
+   * This means that appending hundreds of millions of values never needs
+   * one giant array, or the time to copy it. The blocks are joined into
+   * one array the first time the list is used for something other than
+   * append(), size(), forEachValue(), or valueIterator(). Use 0 (the
+   * default) to go back to a single array.
+   */
+  public void setChunkSize(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Chunk size cannot be negative");
+    }
+    chunkSize = size;
+    if (size == 0) {
+      flatten();
+    }
+  }
+
+
+  /** Copy the blocks from chunked mode into a single array. */
+  private void flatten() {
+    if (blocks != null) {
+      double[] temp = new double[count];
+      int index = 0;
+      for (int i = 0; i < blockCount; i++) {
+        System.arraycopy(blocks[i], 0, temp, index, blocks[i].length);
+        index += blocks[i].length;
+      }
+      System.arraycopy(data, 0, temp, index, count - index);
+      data = temp;
+      blocks = null;
+      blockCount = 0;
+      blockTotal = 0;
+    }
+  }
+
+
+  /**
+   * Make sure that data is a single array that belongs to this list,
+   * before anything that changes its size. A list made by subList()
+   * gets its own copy, so it won't write over the list it came from.
+   */
+  private void unshare() {
+    flatten();
+    if (shared) {
+      data = PApplet.subset(data, offset, count);
+      offset = 0;
+      shared = false;
     }
-    data[count++] = value;
   }
 
 
@@ -374,6 +488,7 @@ public class DoubleList implements Iterable<Double> {
 
   // same as splice
   public void insert(int index, double[] values) {
+    unshare();
     if (index < 0) {
       throw new IllegalArgumentException("insert() index cannot be negative: it was " + index);
     }
@@ -451,6 +566,7 @@ public class DoubleList implements Iterable<Double> {
 
   /** Return the first index of a particular value. */
   public int index(double what) {
+    flatten();
     /*
     if (indexCache != null) {
       try {
@@ -461,7 +577,7 @@ public class DoubleList implements Iterable<Double> {
     }
     */
     for (int i = 0; i < count; i++) {
-      if (data[i] == what) {
+      if (data[offset + i] == what) {
         return i;
       }
     }
@@ -474,15 +590,16 @@ public class DoubleList implements Iterable<Double> {
    * @brief Check if a number is a part of the list
    */
   public boolean hasValue(double value) {
+    flatten();
     if (Double.isNaN(value)) {
       for (int i = 0; i < count; i++) {
-        if (Double.isNaN(data[i])) {
+        if (Double.isNaN(data[offset + i])) {
           return true;
         }
       }
     } else {
       for (int i = 0; i < count; i++) {
-        if (data[i] == value) {
+        if (data[offset + i] == value) {
           return true;
         }
       }
@@ -503,8 +620,9 @@ public class DoubleList implements Iterable<Double> {
    * @brief Add to a value
    */
   public void add(int index, double amount) {
-    if (index < count) {
-      data[index] += amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] += amount;
     } else {
       boundsProblem(index, "add");
     }
@@ -516,8 +634,9 @@ public class DoubleList implements Iterable<Double> {
    * @brief Subtract from a value
    */
   public void sub(int index, double amount) {
-    if (index < count) {
-      data[index] -= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] -= amount;
     } else {
       boundsProblem(index, "sub");
     }
@@ -529,8 +648,9 @@ public class DoubleList implements Iterable<Double> {
    * @brief Multiply a value
    */
   public void mult(int index, double amount) {
-    if (index < count) {
-      data[index] *= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] *= amount;
     } else {
       boundsProblem(index, "mult");
     }
@@ -542,14 +662,318 @@ public class DoubleList implements Iterable<Double> {
    * @brief Divide a value
    */
   public void div(int index, double amount) {
-    if (index < count) {
-      data[index] /= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] /= amount;
     } else {
       boundsProblem(index, "div");
     }
   }
 
 
+  /**
+   * Add an amount to every value. This and the other functions that work
+   * on the whole list use simple loops that Java can compile to vector
+   * instructions, and split the work across processors for large lists.
+   */
+  public void add(final double amount) {
+    flatten();
+    final double[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] += amount;
+        }
+      }
+    });
+  }
+
+
+  /** Subtract an amount from every value. */
+  public void sub(double amount) {
+    add(-amount);
+  }
+
+
+  /** Multiply every value by an amount. */
+  public void mult(final double amount) {
+    flatten();
+    final double[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] *= amount;
+        }
+      }
+    });
+  }
+
+
+  /** Divide every value by an amount. */
+  public void div(final double amount) {
+    flatten();
+    final double[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] /= amount;
+        }
+      }
+    });
+  }
+
+
+  /** Add each value of another list (of the same size) to this one. */
+  public void add(DoubleList list) {
+    checkSize(list, "add");
+    final double[] a = data;
+    final double[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] += b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Add each value of another list, multiplied by scale, to this one.
+   * Also known as "axpy" in linear algebra libraries.
+   */
+  public void add(DoubleList list, final double scale) {
+    checkSize(list, "add");
+    final double[] a = data;
+    final double[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] += b[i + shift] * scale;
+        }
+      }
+    });
+  }
+
+
+  /** Subtract each value of another list (of the same size) from this one. */
+  public void sub(DoubleList list) {
+    checkSize(list, "sub");
+    final double[] a = data;
+    final double[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] -= b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /** Multiply each value by the one at the same index in another list. */
+  public void mult(DoubleList list) {
+    checkSize(list, "mult");
+    final double[] a = data;
+    final double[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] *= b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /** Divide each value by the one at the same index in another list. */
+  public void div(DoubleList list) {
+    checkSize(list, "div");
+    final double[] a = data;
+    final double[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] /= b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /** Multiply every value by mult, then add amount, i.e. to scale and shift. */
+  public void multAdd(final double mult, final double amount) {
+    flatten();
+    final double[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] = a[i] * mult + amount;
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Multiply each value by the one at the same index in mult, then add
+   * the one at the same index in amount.
+   */
+  public void multAdd(DoubleList mult, DoubleList amount) {
+    checkSize(mult, "multAdd");
+    checkSize(amount, "multAdd");
+    final double[] a = data;
+    final double[] b = mult.data;
+    final double[] c = amount.data;
+    final int shiftB = mult.offset - offset;
+    final int shiftC = amount.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] = a[i] * b[i + shiftB] + c[i + shiftC];
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Multiply each value by the one at the same index in another list,
+   * and return the sum of all those.
+   */
+  public double dot(DoubleList list) {
+    checkSize(list, "dot");
+    final double[] a = data;
+    final double[] b = list.data;
+    final int shift = list.offset - offset;
+    int[] bounds = Sort.pieces(offset, count);
+    final double[] sums = new double[bounds.length - 1];
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        double sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += a[i] * b[i + shift];
+        }
+        sums[n] = sum;
+      }
+    });
+    double sum = 0;
+    for (double s : sums) {
+      sum += s;
+    }
+    return sum;
+  }
+
+
+  /**
+   * Divide each value by the magnitude of the list (the square root of
+   * its dot product with itself), so that it has a length of 1.
+   * A list of all zeroes is left alone.
+   */
+  public void normalize() {
+    double mag = Math.sqrt(dot(this));
+    if (mag != 0) {
+      div(mag);
+    }
+  }
+
+
+  /**
+   * Replace each value with the sum of it and all of the values before it.
+   * Large lists are done in two passes: first each processor adds up its
+   * piece, then adds the total of the pieces before it while it replaces
+   * the values in its piece.
+   */
+  public void cumulativeSum() {
+    flatten();
+    final double[] a = data;
+    int[] bounds = Sort.pieces(offset, count);
+    final double[] starts = new double[bounds.length - 1];
+    if (starts.length > 1) {
+      Sort.runPieces(bounds, new Sort.Piece() {
+        void run(int n, int start, int stop) {
+          double sum = 0;
+          for (int i = start; i < stop; i++) {
+            sum += a[i];
+          }
+          starts[n] = sum;
+        }
+      });
+      double total = 0;
+      for (int i = 0; i < starts.length; i++) {
+        double piece = starts[i];
+        starts[i] = total;
+        total += piece;
+      }
+    }
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        double sum = starts[n];
+        for (int i = start; i < stop; i++) {
+          sum += a[i];
+          a[i] = sum;
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * between low and high. Values outside that range (and NaN) are not
+   * counted, and a value equal to high goes in the last bin.
+   */
+  public IntList histogram(final int bins, final double low, final double high) {
+    if (bins < 1) {
+      throw new IllegalArgumentException("histogram() needs at least one bin");
+    }
+    if (!(high > low)) {
+      throw new IllegalArgumentException("histogram() needs high to be larger than low");
+    }
+    flatten();
+    final double[] a = data;
+    final double scale = bins / (high - low);
+    int[] bounds = Sort.pieces(offset, count);
+    final int[][] counts = new int[bounds.length - 1][bins];
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        int[] tally = counts[n];
+        for (int i = start; i < stop; i++) {
+          double value = a[i];
+          if (value >= low && value <= high) {
+            int bin = (int) ((value - low) * scale);
+            tally[bin < bins ? bin : bins - 1]++;
+          }
+        }
+      }
+    });
+    IntList outgoing = new IntList(counts[0]);
+    for (int n = 1; n < counts.length; n++) {
+      for (int bin = 0; bin < bins; bin++) {
+        outgoing.data[bin] += counts[n][bin];
+      }
+    }
+    return outgoing;
+  }
+
+
+  private void checkSize(DoubleList list, String method) {
+    if (list.count != count) {
+      String msg =
+        String.format("%s() needs lists of the same size, not %d and %d",
+                      method, count, list.count);
+      throw new IllegalArgumentException(msg);
+    }
+    flatten();
+    list.flatten();
+  }
+
+
   private void checkMinMax(String functionName) {
     if (count == 0) {
       String msg =
@@ -566,26 +990,28 @@ public class DoubleList implements Iterable<Double> {
    */
   public double min() {
     checkMinMax("min");
+    flatten();
     int index = minIndex();
-    return index == -1 ? Double.NaN : data[index];
+    return index == -1 ? Double.NaN : data[offset + index];
   }
 
 
   public int minIndex() {
     checkMinMax("minIndex");
+    flatten();
     double m = Double.NaN;
     int mi = -1;
     for (int i = 0; i < count; i++) {
       // find one good value to start
-      if (data[i] == data[i]) {
-        m = data[i];
+      if (data[offset + i] == data[offset + i]) {
+        m = data[offset + i];
         mi = i;
 
         // calculate the rest
         for (int j = i+1; j < count; j++) {
-          double d = data[j];
+          double d = data[offset + j];
           if (!Double.isNaN(d) && (d < m)) {
-            m = data[j];
+            m = data[offset + j];
             mi = j;
           }
         }
@@ -602,26 +1028,28 @@ public class DoubleList implements Iterable<Double> {
    */
   public double max() {
     checkMinMax("max");
+    flatten();
     int index = maxIndex();
-    return index == -1 ? Double.NaN : data[index];
+    return index == -1 ? Double.NaN : data[offset + index];
   }
 
 
   public int maxIndex() {
     checkMinMax("maxIndex");
+    flatten();
     double m = Double.NaN;
     int mi = -1;
     for (int i = 0; i < count; i++) {
       // find one good value to start
-      if (data[i] == data[i]) {
-        m = data[i];
+      if (data[offset + i] == data[offset + i]) {
+        m = data[offset + i];
         mi = i;
 
         // calculate the rest
         for (int j = i+1; j < count; j++) {
-          double d = data[j];
+          double d = data[offset + j];
           if (!Double.isNaN(d) && (d > m)) {
-            m = data[j];
+            m = data[offset + j];
             mi = j;
           }
         }
@@ -633,9 +1061,22 @@ public class DoubleList implements Iterable<Double> {
 
 
   public double sum() {
+    flatten();
+    final double[] a = data;
+    int[] bounds = Sort.pieces(offset, count);
+    final double[] sums = new double[bounds.length - 1];
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        double sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += a[i];
+        }
+        sums[n] = sum;
+      }
+    });
     double sum = 0;
-    for (int i = 0; i < count; i++) {
-      sum += data[i];
+    for (double s : sums) {
+      sum += s;
     }
     return sum;
   }
@@ -648,7 +1089,13 @@ public class DoubleList implements Iterable<Double> {
    * @brief Sorts an array, lowest to highest
    */
   public void sort() {
-    Arrays.sort(data, 0, count);
+    flatten();
+    if (count >= Sort.PARALLEL_MIN) {
+      // same order as Arrays.sort(), using all the processors
+      Arrays.parallelSort(data, offset, offset + count);
+    } else {
+      Arrays.sort(data, offset, offset + count);
+    }
   }
 
 
@@ -659,45 +1106,18 @@ public class DoubleList implements Iterable<Double> {
    * @brief Reverse sort, orders values from highest to lowest
    */
   public void sortReverse() {
-    new Sort() {
-      @Override
-      public int size() {
-        // if empty, don't even mess with the NaN check, it'll AIOOBE
-        if (count == 0) {
-          return 0;
-        }
-        // move NaN values to the end of the list and don't sort them
-        int right = count - 1;
-        while (data[right] != data[right]) {
-          right--;
-          if (right == -1) {  // all values are NaN
-            return 0;
-          }
-        }
-        for (int i = right; i >= 0; --i) {
-          double v = data[i];
-          if (v != v) {
-            data[i] = data[right];
-            data[right] = v;
-            --right;
-          }
-        }
-        return right + 1;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        double diff = data[b] - data[a];
-        return diff == 0 ? 0 : (diff < 0 ? -1 : 1);
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        double temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    flatten();
+    sort();  // NaN values are placed at the end
+    int right = count - 1;
+    while (right >= 0 && data[offset + right] != data[offset + right]) {
+      right--;
+    }
+    // reverse everything else, leaving the NaN values where they are
+    for (int left = 0; left < right; left++, right--) {
+      double temp = data[offset + left];
+      data[offset + left] = data[offset + right];
+      data[offset + right] = temp;
+    }
   }
 
 
@@ -724,11 +1144,12 @@ public class DoubleList implements Iterable<Double> {
    * @brief Reverse the order of the list elements
    */
   public void reverse() {
+    flatten();
     int ii = count - 1;
     for (int i = 0; i < count/2; i++) {
-      double t = data[i];
-      data[i] = data[ii];
-      data[ii] = t;
+      double t = data[offset + i];
+      data[offset + i] = data[offset + ii];
+      data[offset + ii] = t;
       --ii;
     }
   }
@@ -742,14 +1163,15 @@ public class DoubleList implements Iterable<Double> {
    * @brief Randomize the order of the list elements
    */
   public void shuffle() {
+    flatten();
     Random r = new Random();
     int num = count;
     while (num > 1) {
       int value = r.nextInt(num);
       num--;
-      double temp = data[num];
-      data[num] = data[value];
-      data[value] = temp;
+      double temp = data[offset + num];
+      data[offset + num] = data[offset + value];
+      data[offset + value] = temp;
     }
   }
 
@@ -759,19 +1181,22 @@ public class DoubleList implements Iterable<Double> {
    * sketch, allowing shuffle() to use its current randomSeed() setting.
    */
   public void shuffle(PApplet sketch) {
+    flatten();
     int num = count;
     while (num > 1) {
       int value = (int) sketch.random(num);
       num--;
-      double temp = data[num];
-      data[num] = data[value];
-      data[value] = temp;
+      double temp = data[offset + num];
+      data[offset + num] = data[offset + value];
+      data[offset + value] = temp;
     }
   }
 
 
   public DoubleList copy() {
-    DoubleList outgoing = new DoubleList(data);
+    flatten();
+    DoubleList outgoing = new DoubleList(count);
+    System.arraycopy(data, offset, outgoing.data, 0, count);
     outgoing.count = count;
     return outgoing;
   }
@@ -791,6 +1216,7 @@ public class DoubleList implements Iterable<Double> {
   /** Implemented this way so that we can use a FloatList in a for loop. */
   @Override
   public Iterator<Double> iterator() {
+    flatten();
 //  }
 //
 //
@@ -804,7 +1230,7 @@ public class DoubleList implements Iterable<Double> {
       }
 
       public Double next() {
-        return data[++index];
+        return data[offset + ++index];
       }
 
       public boolean hasNext() {
@@ -814,6 +1240,91 @@ public class DoubleList implements Iterable<Double> {
   }
 
 
+  /**
+   * Iterate through the values without converting each to a Double.
+   * Use nextDouble() rather than next() to get each value.
+   */
+  public PrimitiveIterator.OfDouble valueIterator() {
+    return new PrimitiveIterator.OfDouble() {
+      double[] array;
+      int index;
+      int stop;
+      int block = -1;  // data itself is block number blockCount
+
+      public boolean hasNext() {
+        while (index == stop) {
+          if (block >= blockCount) {
+            return false;
+          }
+          block++;
+          if (block < blockCount) {
+            array = blocks[block];
+            index = 0;
+            stop = array.length;
+          } else {
+            array = data;
+            index = offset;
+            stop = offset + count - blockTotal;
+          }
+        }
+        return true;
+      }
+
+      public double nextDouble() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return array[index++];
+      }
+    };
+  }
+
+
+  /**
+   * Run an action on each value in order, without converting each one to
+   * a Double the way that forEach() does.
+   * <pre>
+   * list.forEachValue(v -&gt; total += v);
+   * </pre>
+   */
+  public void forEachValue(DoubleConsumer action) {
+    for (int i = 0; i < blockCount; i++) {
+      for (double value : blocks[i]) {
+        action.accept(value);
+      }
+    }
+    int stop = offset + count - blockTotal;
+    for (int i = offset; i < stop; i++) {
+      action.accept(data[i]);
+    }
+  }
+
+
+  /**
+   * Get a list of the values from start up to (but not including) stop,
+   * without copying them. The two lists share the same values, so set(),
+   * sort(), shuffle(), and so on affect both, which makes it possible to
+   * work on one part of a large list. If the new list changes size (with
+   * append(), remove(), etc.) or values() is used, it first makes a copy
+   * of its values, so that it doesn't write over the original. Once the
+   * original list changes size, the values seen by the new list are no
+   * longer reliable.
+   */
+  public DoubleList subList(int start, int stop) {
+    if (start < 0 || stop > count || start > stop) {
+      throw new IndexOutOfBoundsException("subList(" + start + ", " + stop +
+                                          ") is outside a list of size " + count);
+    }
+    flatten();
+    DoubleList outgoing = new DoubleList(0);
+    outgoing.data = data;
+    outgoing.offset = offset + start;
+    outgoing.count = stop - start;
+    outgoing.shared = true;
+    return outgoing;
+  }
+
+
   /**
    * Create a new array with a copy of all the values.
    * @return an array sized by the length of the list with each of the values.
@@ -834,7 +1345,8 @@ public class DoubleList implements Iterable<Double> {
     if (array == null || array.length != count) {
       array = new double[count];
     }
-    System.arraycopy(data, 0, array, 0, count);
+    flatten();
+    System.arraycopy(data, offset, array, 0, count);
     return array;
   }
 
@@ -865,29 +1377,32 @@ public class DoubleList implements Iterable<Double> {
 
 
   public DoubleList getSubset(int start, int num) {
+    flatten();
     double[] subset = new double[num];
-    System.arraycopy(data, start, subset, 0, num);
+    System.arraycopy(data, offset + start, subset, 0, num);
     return new DoubleList(subset);
   }
 
 
   public String join(String separator) {
+    flatten();
     if (count == 0) {
       return "";
     }
     StringBuilder sb = new StringBuilder();
-    sb.append(data[0]);
+    sb.append(data[offset]);
     for (int i = 1; i < count; i++) {
       sb.append(separator);
-      sb.append(data[i]);
+      sb.append(data[offset + i]);
     }
     return sb.toString();
   }
 
 
   public void print() {
+    flatten();
     for (int i = 0; i < count; i++) {
-      System.out.format("[%d] %f%n", i, data[i]);
+      System.out.format("[%d] %f%n", i, data[offset + i]);
     }
   }
 
@@ -906,8 +1421,9 @@ public class DoubleList implements Iterable<Double> {
    * Write entries to a PrintWriter, one per line
    */
   public void write(PrintWriter writer) {
+    flatten();
     for (int i = 0; i < count; i++) {
-      writer.println(data[i]);
+      writer.println(data[offset + i]);
     }
     writer.flush();
   }
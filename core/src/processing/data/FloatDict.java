@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class FloatDict {
   protected float[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictIndex indices = new DictIndex();
 
 
   public FloatDict() {
@@ -63,7 +62,7 @@ public class FloatDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseFloat(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, pieces[0]);
         count++;
       }
     }
@@ -81,7 +80,7 @@ public class FloatDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -102,7 +101,7 @@ public class FloatDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Float) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -137,7 +136,7 @@ public class FloatDict {
     keys = newKeys;
     values = newValues;
     count = length;
-    resetIndices();
+    indices.truncate(length);
   }
 
 
@@ -149,15 +148,7 @@ public class FloatDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
-  }
-
-
-  private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.clear();
   }
 
 
@@ -384,6 +375,7 @@ public class FloatDict {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    indices.set(index, key);
     keys[index] = key;
     values[index] = value;
   }
@@ -587,8 +579,7 @@ public class FloatDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.get(keys, what);
   }
 
 
@@ -597,7 +588,7 @@ public class FloatDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
+    indices.add(what);
     keys[count] = what;
     values[count] = much;
     count++;
@@ -624,12 +615,11 @@ public class FloatDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     float value = values[index];
-    indices.remove(keys[index]);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
+    indices.remove(index);
     count--;
     keys[count] = null;
     values[count] = 0;
@@ -644,9 +634,7 @@ public class FloatDict {
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
+    indices.swap(a, b);
   }
 
 
@@ -763,10 +751,15 @@ public class FloatDict {
         FloatDict.this.swap(a, b);
       }
     };
-    s.run();
-
-    // Set the indices after sort/swaps (performance fix 160411)
-    resetIndices();
+    // sort the positions, then move everything once
+    int[] order = s.order();
+    String[] oldKeys = PApplet.subset(keys, 0, order.length);
+    float[] oldValues = PApplet.subset(values, 0, order.length);
+    for (int i = 0; i < order.length; i++) {
+      keys[i] = oldKeys[order[i]];
+      values[i] = oldValues[order[i]];
+    }
+    indices.reorder(order);
   }
 
 
@@ -791,9 +784,7 @@ public class FloatDict {
     FloatDict outgoing = new FloatDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
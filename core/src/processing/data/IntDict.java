@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class IntDict {
   protected int[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictIndex indices = new DictIndex();
 
 
   public IntDict() {
@@ -63,7 +62,7 @@ public class IntDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseInt(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, pieces[0]);
         count++;
       }
     }
@@ -80,7 +79,7 @@ public class IntDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -101,7 +100,7 @@ public class IntDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Integer) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -136,7 +135,7 @@ public class IntDict {
     keys = newKeys;
     values = newValues;
     count = length;
-    resetIndices();
+    indices.truncate(length);
   }
 
 
@@ -148,15 +147,7 @@ public class IntDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
-  }
-
-
-  private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.clear();
   }
 
 
@@ -385,6 +376,7 @@ public class IntDict {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    indices.set(index, key);
     keys[index] = key;
     values[index] = value;
   }
@@ -572,8 +564,7 @@ public class IntDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.get(keys, what);
   }
 
 
@@ -582,7 +573,7 @@ public class IntDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
+    indices.add(what);
     keys[count] = what;
     values[count] = much;
     count++;
@@ -608,12 +599,11 @@ public class IntDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     int value = values[index];
-    indices.remove(keys[index]);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
+    indices.remove(index);
     count--;
     keys[count] = null;
     values[count] = 0;
@@ -628,9 +618,7 @@ public class IntDict {
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
+    indices.swap(a, b);
   }
 
 
@@ -708,10 +696,10 @@ public class IntDict {
         if (useKeys) {
           diff = keys[a].compareToIgnoreCase(keys[b]);
           if (diff == 0) {
-            diff = values[a] - values[b];
+            diff = Integer.compare(values[a], values[b]);
           }
         } else {  // sort values
-          diff = values[a] - values[b];
+          diff = Integer.compare(values[a], values[b]);
           if (diff == 0 && stable) {
             diff = keys[a].compareToIgnoreCase(keys[b]);
           }
@@ -724,10 +712,15 @@ public class IntDict {
         IntDict.this.swap(a, b);
       }
     };
-    s.run();
-
-    // Set the indices after sort/swaps (performance fix 160411)
-    resetIndices();
+    // sort the positions, then move everything once
+    int[] order = s.order();
+    String[] oldKeys = PApplet.subset(keys, 0, order.length);
+    int[] oldValues = PApplet.subset(values, 0, order.length);
+    for (int i = 0; i < order.length; i++) {
+      keys[i] = oldKeys[order[i]];
+      values[i] = oldValues[order[i]];
+    }
+    indices.reorder(order);
   }
 
 
@@ -752,9 +745,7 @@ public class IntDict {
     IntDict outgoing = new IntDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
@@ -0,0 +1,565 @@
+package processing.data;
+
+import java.io.*;
+import java.util.NoSuchElementException;
+
+import processing.core.PApplet;
+
+
+/**
+ * A simple class to use an int as a lookup for a float value. Works like
+ * FloatDict, but for things that already have a number as their id, without
+ * wrapping each key in an Integer the way a HashMap&lt;Integer, Float&gt;
+ * would. As with FloatDict, NaN values are ignored by the min and max
+ * functions, and moved to the end when sorting by value.
+ *
+ * @nowebref
+ * @see FloatDict
+ * @see IntIntDict
+ */
+public class IntFloatDict {
+
+  /** Number of elements in the table */
+  protected int count;
+
+  protected int[] keys;
+  protected float[] values;
+
+  /** Internal implementation for faster lookups */
+  private DictIndex indices = new DictIndex();
+
+
+  public IntFloatDict() {
+    count = 0;
+    keys = new int[10];
+    values = new float[10];
+  }
+
+
+  /**
+   * Create a new lookup with a specific size. This is more efficient than not
+   * specifying a size. Use it when you know the rough size of the thing you're creating.
+   */
+  public IntFloatDict(int length) {
+    count = 0;
+    keys = new int[length];
+    values = new float[length];
+    indices = new DictIndex(length);
+  }
+
+
+  /**
+   * Read a set of entries from a Reader that has each key/value pair on
+   * a single line, separated by a tab.
+   */
+  public IntFloatDict(BufferedReader reader) {
+    this();
+    String[] lines = PApplet.loadStrings(reader);
+    for (String line : lines) {
+      String[] pieces = PApplet.split(line, '\t');
+      if (pieces.length == 2) {
+        set(PApplet.parseInt(pieces[0]), PApplet.parseFloat(pieces[1]));
+      }
+    }
+  }
+
+
+  /**
+   * Create a dictionary from arrays of keys and values. If a key is in the
+   * array more than once, the last value is used.
+   */
+  public IntFloatDict(int[] keys, float[] values) {
+    this(keys.length);
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("key and value arrays must be the same length");
+    }
+    for (int i = 0; i < keys.length; i++) {
+      set(keys[i], values[i]);
+    }
+  }
+
+
+  /**
+   * Returns the number of key/value pairs
+   */
+  public int size() {
+    return count;
+  }
+
+
+  /**
+   * Resize the internal data, this can only be used to shrink the list.
+   * Helpful for situations like sorting and then grabbing the top 50 entries.
+   */
+  public void resize(int length) {
+    if (length > count) {
+      throw new IllegalArgumentException("resize() can only be used to shrink the dictionary");
+    }
+    if (length < 1) {
+      throw new IllegalArgumentException("resize(" + length + ") is too small, use 1 or higher");
+    }
+    keys = PApplet.subset(keys, 0, length);
+    values = PApplet.subset(values, 0, length);
+    count = length;
+    indices.truncate(length);
+  }
+
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    count = 0;
+    indices.clear();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public int key(int index) {
+    return keys[index];
+  }
+
+
+  /**
+   * Return a copy of the internal keys array. This array can be modified.
+   */
+  public int[] keyArray() {
+    return keyArray(null);
+  }
+
+
+  public int[] keyArray(int[] outgoing) {
+    if (outgoing == null || outgoing.length != count) {
+      outgoing = new int[count];
+    }
+    System.arraycopy(keys, 0, outgoing, 0, count);
+    return outgoing;
+  }
+
+
+  public float value(int index) {
+    return values[index];
+  }
+
+
+  /**
+   * Create a new array and copy each of the values into it.
+   */
+  public float[] valueArray() {
+    return valueArray(null);
+  }
+
+
+  /**
+   * Fill an already-allocated array with the values (more efficient than
+   * creating a new array each time). If 'array' is null, or not the same
+   * size as the number of values, a new array will be allocated and returned.
+   */
+  public float[] valueArray(float[] array) {
+    if (array == null || array.length != count) {
+      array = new float[count];
+    }
+    System.arraycopy(values, 0, array, 0, count);
+    return array;
+  }
+
+
+  /**
+   * Return a value for the specified key.
+   */
+  public float get(int key) {
+    int index = index(key);
+    if (index == -1) {
+      throw new IllegalArgumentException("No key " + key);
+    }
+    return values[index];
+  }
+
+
+  public float get(int key, float alternate) {
+    int index = index(key);
+    if (index == -1) return alternate;
+    return values[index];
+  }
+
+
+  /**
+   * Create a new key/value pair or change the value of one.
+   */
+  public void set(int key, float amount) {
+    int index = index(key);
+    if (index == -1) {
+      create(key, amount);
+    } else {
+      values[index] = amount;
+    }
+  }
+
+
+  public void setIndex(int index, int key, float value) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    indices.set(index, key);
+    keys[index] = key;
+    values[index] = value;
+  }
+
+
+  public boolean hasKey(int key) {
+    return index(key) != -1;
+  }
+
+
+  public void add(int key, float amount) {
+    int index = index(key);
+    if (index == -1) {
+      create(key, amount);
+    } else {
+      values[index] += amount;
+    }
+  }
+
+
+  public void sub(int key, float amount) {
+    add(key, -amount);
+  }
+
+
+  public void mult(int key, float amount) {
+    int index = index(key);
+    if (index != -1) {
+      values[index] *= amount;
+    }
+  }
+
+
+  public void div(int key, float amount) {
+    int index = index(key);
+    if (index != -1) {
+      values[index] /= amount;
+    }
+  }
+
+
+  private void checkMinMax(String functionName) {
+    if (count == 0) {
+      String msg =
+        String.format("Cannot use %s() on an empty %s.",
+                      functionName, getClass().getSimpleName());
+      throw new RuntimeException(msg);
+    }
+  }
+
+
+  // return the index of the minimum value, ignoring NaN
+  public int minIndex() {
+    if (count == 0) return -1;
+
+    // Will still return -1 if there are 1 or more entries, and they're all NaN
+    float m = Float.NaN;
+    int mi = -1;
+    for (int i = 0; i < count; i++) {
+      float d = values[i];
+      if (d == d && (mi == -1 || d < m)) {
+        m = d;
+        mi = i;
+      }
+    }
+    return mi;
+  }
+
+
+  // return the key for the minimum value, or throw an error if there are none
+  public int minKey() {
+    checkMinMax("minKey");
+    int index = minIndex();
+    if (index == -1) {
+      throw new RuntimeException("minKey() has no answer when all values are NaN");
+    }
+    return keys[index];
+  }
+
+
+  // return the minimum value (NaN if they're all NaN), or throw an error if there are none
+  public float minValue() {
+    checkMinMax("minValue");
+    int index = minIndex();
+    if (index == -1) {
+      return Float.NaN;
+    }
+    return values[index];
+  }
+
+
+  // return the index of the max value, ignoring NaN
+  public int maxIndex() {
+    if (count == 0) {
+      return -1;
+    }
+    float m = Float.NaN;
+    int mi = -1;
+    for (int i = 0; i < count; i++) {
+      float d = values[i];
+      if (d == d && (mi == -1 || d > m)) {
+        m = d;
+        mi = i;
+      }
+    }
+    return mi;
+  }
+
+
+  // return the key for the maximum value, or throw an error if there are none
+  public int maxKey() {
+    checkMinMax("maxKey");
+    int index = maxIndex();
+    if (index == -1) {
+      throw new RuntimeException("maxKey() has no answer when all values are NaN");
+    }
+    return keys[index];
+  }
+
+
+  // return the maximum value (NaN if they're all NaN), or throw an error if there are none
+  public float maxValue() {
+    checkMinMax("maxValue");
+    int index = maxIndex();
+    if (index == -1) {
+      return Float.NaN;
+    }
+    return values[index];
+  }
+
+
+  public float sum() {
+    double amount = sumDouble();
+    if (amount > Float.MAX_VALUE) {
+      throw new RuntimeException("sum() exceeds " + Float.MAX_VALUE + ", use sumDouble()");
+    }
+    if (amount < -Float.MAX_VALUE) {
+      throw new RuntimeException("sum() lower than " + -Float.MAX_VALUE + ", use sumDouble()");
+    }
+    return (float) amount;
+  }
+
+
+  public double sumDouble() {
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+
+  public int index(int what) {
+    return indices.get(keys, what);
+  }
+
+
+  protected void create(int what, float much) {
+    if (count == keys.length) {
+      keys = PApplet.expand(keys);
+      values = PApplet.expand(values);
+    }
+    indices.add(what);
+    keys[count] = what;
+    values[count] = much;
+    count++;
+  }
+
+
+  public float remove(int key) {
+    int index = index(key);
+    if (index == -1) {
+      throw new NoSuchElementException("No key " + key);
+    }
+    float value = values[index];
+    removeIndex(index);
+    return value;
+  }
+
+
+  public float removeIndex(int index) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    float value = values[index];
+    System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+    System.arraycopy(values, index + 1, values, index, count - index - 1);
+    indices.remove(index);
+    count--;
+    return value;
+  }
+
+
+  public void swap(int a, int b) {
+    int tkey = keys[a];
+    float tvalue = values[a];
+    keys[a] = keys[b];
+    values[a] = values[b];
+    keys[b] = tkey;
+    values[b] = tvalue;
+    indices.swap(a, b);
+  }
+
+
+  /**
+   * Sort the keys in ascending order.
+   */
+  public void sortKeys() {
+    sortImpl(true, false, true);
+  }
+
+
+  /**
+   * Sort the keys in descending order.
+   */
+  public void sortKeysReverse() {
+    sortImpl(true, true, true);
+  }
+
+
+  /**
+   * Sort by values in ascending order. The smallest value will be at [0].
+   */
+  public void sortValues() {
+    sortValues(true);
+  }
+
+
+  /**
+   * Set true to ensure that the order returned is identical. Slightly
+   * slower because the tie-breaker for identical values compares the keys.
+   */
+  public void sortValues(boolean stable) {
+    sortImpl(false, false, stable);
+  }
+
+
+  /**
+   * Sort by values in descending order. The largest value will be at [0].
+   */
+  public void sortValuesReverse() {
+    sortValuesReverse(true);
+  }
+
+
+  public void sortValuesReverse(boolean stable) {
+    sortImpl(false, true, stable);
+  }
+
+
+  protected void sortImpl(final boolean useKeys, final boolean reverse,
+                          final boolean stable) {
+    Sort s = new Sort() {
+      @Override
+      public int size() {
+        if (useKeys) {
+          return count;  // don't worry about NaN values
+        }
+        // first move NaN values to the end of the list
+        int right = count - 1;
+        while (right >= 0 && values[right] != values[right]) {
+          right--;
+        }
+        for (int i = right; i >= 0; --i) {
+          if (Float.isNaN(values[i])) {
+            swap(i, right);
+            --right;
+          }
+        }
+        return right + 1;
+      }
+
+      @Override
+      public int compare(int a, int b) {
+        int diff;
+        if (useKeys) {
+          diff = Integer.compare(keys[a], keys[b]);  // keys are unique
+        } else {
+          diff = Float.compare(values[a], values[b]);
+          if (diff == 0 && stable) {
+            diff = Integer.compare(keys[a], keys[b]);
+          }
+        }
+        return reverse ? -diff : diff;
+      }
+
+      @Override
+      public void swap(int a, int b) {
+        IntFloatDict.this.swap(a, b);
+      }
+    };
+    // sort the positions, then move everything once
+    int[] order = s.order();
+    int[] oldKeys = PApplet.subset(keys, 0, order.length);
+    float[] oldValues = PApplet.subset(values, 0, order.length);
+    for (int i = 0; i < order.length; i++) {
+      keys[i] = oldKeys[order[i]];
+      values[i] = oldValues[order[i]];
+    }
+    indices.reorder(order);
+  }
+
+
+  /** Returns a duplicate copy of this object. */
+  public IntFloatDict copy() {
+    IntFloatDict outgoing = new IntFloatDict(count);
+    System.arraycopy(keys, 0, outgoing.keys, 0, count);
+    System.arraycopy(values, 0, outgoing.values, 0, count);
+    outgoing.indices = indices.copy();
+    outgoing.count = count;
+    return outgoing;
+  }
+
+
+  public void print() {
+    for (int i = 0; i < size(); i++) {
+      System.out.println(keys[i] + " = " + values[i]);
+    }
+  }
+
+
+  /**
+   * Save tab-delimited entries to a file (TSV format, UTF-8 encoding)
+   */
+  public void save(File file) {
+    PrintWriter writer = PApplet.createWriter(file);
+    write(writer);
+    writer.close();
+  }
+
+
+  /**
+   * Write tab-delimited entries to a PrintWriter
+   */
+  public void write(PrintWriter writer) {
+    for (int i = 0; i < count; i++) {
+      writer.println(keys[i] + "\t" + values[i]);
+    }
+    writer.flush();
+  }
+
+
+  /**
+   * Return this dictionary as a String in JSON format. (The keys are
+   * written as Strings, since JSON doesn't allow anything else.)
+   */
+  public String toJSON() {
+    StringList items = new StringList();
+    for (int i = 0; i < count; i++) {
+      items.append("\"" + keys[i] + "\": " + values[i]);
+    }
+    return "{ " + items.join(", ") + " }";
+  }
+
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " size=" + size() + " " + toJSON();
+  }
+}
@@ -4,7 +4,10 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Random;
+import java.util.function.IntConsumer;
 
 import processing.core.PApplet;
 
@@ -22,6 +25,11 @@ import processing.core.PApplet;
  * Functions like sort() and shuffle() always act on the list itself. To get
  * a sorted copy, use list.copy().sort().
  *
+ * For very large lists, use forEachValue() or valueIterator() to go through
+ * the values without converting each one to an Integer, subList() to
+ * work with part of a list without copying it, and setChunkSize() to append
+ * many values without repeatedly copying the whole list as it grows.
+ *
  * @webref data:composite
  * @see FloatList
  * @see StringList
@@ -30,6 +38,19 @@ public class IntList implements Iterable<Integer> {
   protected int count;
   protected int[] data;
 
+  /** Index in data of the first value, for a list made by subList() */
+  protected int offset;
+  /** True if data belongs to another list, because this was made by subList() */
+  protected boolean shared;
+
+  /** Size of each new block when appending in chunks, or 0 to grow data */
+  protected int chunkSize;
+  /** Full blocks of values in chunked mode, data holds the values after them */
+  protected int[][] blocks;
+  protected int blockCount;
+  /** Number of values held in blocks */
+  protected int blockTotal;
+
 
   public IntList() {
     data = new int[10];
@@ -108,8 +129,9 @@ public class IntList implements Iterable<Integer> {
     int count = stop - start;
     IntList newbie = new IntList(count);
     for (int i = 0; i < count; i++) {
-      newbie.set(i, start+i);
+      newbie.data[i] = start+i;
     }
+    newbie.count = count;
     return newbie;
   }
 
@@ -121,6 +143,7 @@ public class IntList implements Iterable<Integer> {
    * size changes (from very large to very small).
    */
   private void crop() {
+    unshare();
     if (count != data.length) {
       data = PApplet.subset(data, 0, count);
     }
@@ -139,6 +162,7 @@ public class IntList implements Iterable<Integer> {
 
 
   public void resize(int length) {
+    unshare();
     if (length > data.length) {
       int[] temp = new int[length];
       System.arraycopy(data, 0, temp, 0, count);
@@ -159,6 +183,9 @@ public class IntList implements Iterable<Integer> {
    */
   public void clear() {
     count = 0;
+    blocks = null;
+    blockCount = 0;
+    blockTotal = 0;
   }
 
 
@@ -169,10 +196,11 @@ public class IntList implements Iterable<Integer> {
    * @brief Get an entry at a particular index
    */
   public int get(int index) {
-    if (index >= this.count) {
+    if (index < 0 || index >= this.count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    return data[index];
+    flatten();
+    return data[offset + index];
   }
 
 
@@ -185,14 +213,19 @@ public class IntList implements Iterable<Integer> {
    * @brief Set the entry at a particular index
    */
   public void set(int index, int what) {
+    if (index < 0) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    flatten();
     if (index >= count) {
+      unshare();
       data = PApplet.expand(data, index+1);
       for (int i = count; i < index; i++) {
         data[i] = 0;
       }
       count = index+1;
     }
-    data[index] = what;
+    data[offset + index] = what;
   }
 
 
@@ -222,6 +255,7 @@ public class IntList implements Iterable<Integer> {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    unshare();
     int entry = data[index];
 //    int[] outgoing = new int[count - 1];
 //    System.arraycopy(data, 0, outgoing, 0, index);
@@ -253,6 +287,7 @@ public class IntList implements Iterable<Integer> {
   // Remove all instances of a particular value,
   // and return the number of values found and removed
   public int removeValues(int value) {
+    unshare();
     int ii = 0;
     for (int i = 0; i < count; i++) {
       if (data[i] != value) {
@@ -272,10 +307,88 @@ public class IntList implements Iterable<Integer> {
    * @brief Add a new entry to the list
    */
   public void append(int value) {
-    if (count == data.length) {
+    if (shared) {
+      unshare();
+    }
+    if (count - blockTotal == data.length) {
+      grow();
+    }
+    data[count++ - blockTotal] = value;
+  }
+
+
+  /**
+   * Make room for more values once data is full. In chunked mode, data
+   * becomes another one of the blocks, rather than being copied.
+   */
+  private void grow() {
+    if (chunkSize == 0) {
       data = PApplet.expand(data);
+    } else {
+      if (data.length != 0) {
+        if (blocks == null) {
+          blocks = new int[8][];
+        } else if (blockCount == blocks.length) {
+          blocks = Arrays.copyOf(blocks, blockCount << 1);
+        }
+        blocks[blockCount++] = data;
+        blockTotal += data.length;
+      }
+      data = new int[chunkSize];
+    }
+  }
+
+
+  /**
+   * Append in blocks of this many values, instead of copying the entire
+   * list to a new array (twice as large) each time that it fills up.
+   * This means that appending hundreds of millions of values never needs
+   * one giant array, or the time to copy it. The blocks are joined into
+   * one array the first time the list is used for something other than
+   * append(), size(), forEachValue(), or valueIterator(). Use 0 (the
+   * default) to go back to a single array.
+   */
+  public void setChunkSize(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Chunk size cannot be negative");
+    }
+    chunkSize = size;
+    if (size == 0) {
+      flatten();
+    }
+  }
+
+
+  /** Copy the blocks from chunked mode into a single array. */
+  private void flatten() {
+    if (blocks != null) {
+      int[] temp = new int[count];
+      int index = 0;
+      for (int i = 0; i < blockCount; i++) {
+        System.arraycopy(blocks[i], 0, temp, index, blocks[i].length);
+        index += blocks[i].length;
+      }
+      System.arraycopy(data, 0, temp, index, count - index);
+      data = temp;
+      blocks = null;
+      blockCount = 0;
+      blockTotal = 0;
+    }
+  }
+
+
+  /**
+   * Make sure that data is a single array that belongs to this list,
+   * before anything that changes its size. A list made by subList()
+   * gets its own copy, so it won't write over the list it came from.
+   */
+  private void unshare() {
+    flatten();
+    if (shared) {
+      data = PApplet.subset(data, offset, count);
+      offset = 0;
+      shared = false;
     }
-    data[count++] = value;
   }
 
 
@@ -338,6 +451,7 @@ public class IntList implements Iterable<Integer> {
 
   // same as splice
   public void insert(int index, int[] values) {
+    unshare();
     if (index < 0) {
       throw new IllegalArgumentException("insert() index cannot be negative: it was " + index);
     }
@@ -415,6 +529,7 @@ public class IntList implements Iterable<Integer> {
 
   /** Return the first index of a particular value. */
   public int index(int what) {
+    flatten();
     /*
     if (indexCache != null) {
       try {
@@ -425,7 +540,7 @@ public class IntList implements Iterable<Integer> {
     }
     */
     for (int i = 0; i < count; i++) {
-      if (data[i] == what) {
+      if (data[offset + i] == what) {
         return i;
       }
     }
@@ -447,12 +562,13 @@ public class IntList implements Iterable<Integer> {
    * @brief Check if a number is a part of the list
    */
   public boolean hasValue(int value) {
+    flatten();
 //    if (indexCache == null) {
 //      cacheIndices();
 //    }
 //    return index(what) != -1;
     for (int i = 0; i < count; i++) {
-      if (data[i] == value) {
+      if (data[offset + i] == value) {
         return true;
       }
     }
@@ -464,10 +580,11 @@ public class IntList implements Iterable<Integer> {
    * @brief Add one to a value
    */
   public void increment(int index) {
+    flatten();
     if (count <= index) {
       resize(index + 1);
     }
-    data[index]++;
+    data[offset + index]++;
   }
 
 
@@ -483,8 +600,9 @@ public class IntList implements Iterable<Integer> {
    * @brief Add to a value
    */
   public void add(int index, int amount) {
-    if (index < count) {
-      data[index] += amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] += amount;
     } else {
       boundsProblem(index, "add");
     }
@@ -495,8 +613,9 @@ public class IntList implements Iterable<Integer> {
    * @brief Subtract from a value
    */
   public void sub(int index, int amount) {
-    if (index < count) {
-      data[index] -= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] -= amount;
     } else {
       boundsProblem(index, "sub");
     }
@@ -507,8 +626,9 @@ public class IntList implements Iterable<Integer> {
    * @brief Multiply a value
    */
   public void mult(int index, int amount) {
-    if (index < count) {
-      data[index] *= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] *= amount;
     } else {
       boundsProblem(index, "mult");
     }
@@ -519,14 +639,306 @@ public class IntList implements Iterable<Integer> {
    * @brief Divide a value
    */
   public void div(int index, int amount) {
-    if (index < count) {
-      data[index] /= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] /= amount;
     } else {
       boundsProblem(index, "div");
     }
   }
 
 
+  /**
+   * Add an amount to every value. This and the other functions that work
+   * on the whole list use simple loops that Java can compile to vector
+   * instructions, and split the work across processors for large lists.
+   */
+  public void add(final int amount) {
+    flatten();
+    final int[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] += amount;
+        }
+      }
+    });
+  }
+
+
+  /** Subtract an amount from every value. */
+  public void sub(int amount) {
+    add(-amount);
+  }
+
+
+  /** Multiply every value by an amount. */
+  public void mult(final int amount) {
+    flatten();
+    final int[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] *= amount;
+        }
+      }
+    });
+  }
+
+
+  /** Divide every value by an amount. */
+  public void div(final int amount) {
+    flatten();
+    final int[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] /= amount;
+        }
+      }
+    });
+  }
+
+
+  /** Add each value of another list (of the same size) to this one. */
+  public void add(IntList list) {
+    checkSize(list, "add");
+    final int[] a = data;
+    final int[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] += b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Add each value of another list, multiplied by scale, to this one.
+   * Also known as "axpy" in linear algebra libraries.
+   */
+  public void add(IntList list, final int scale) {
+    checkSize(list, "add");
+    final int[] a = data;
+    final int[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] += b[i + shift] * scale;
+        }
+      }
+    });
+  }
+
+
+  /** Subtract each value of another list (of the same size) from this one. */
+  public void sub(IntList list) {
+    checkSize(list, "sub");
+    final int[] a = data;
+    final int[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] -= b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /** Multiply each value by the one at the same index in another list. */
+  public void mult(IntList list) {
+    checkSize(list, "mult");
+    final int[] a = data;
+    final int[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] *= b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /** Divide each value by the one at the same index in another list. */
+  public void div(IntList list) {
+    checkSize(list, "div");
+    final int[] a = data;
+    final int[] b = list.data;
+    final int shift = list.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] /= b[i + shift];
+        }
+      }
+    });
+  }
+
+
+  /** Multiply every value by mult, then add amount, i.e. to scale and shift. */
+  public void multAdd(final int mult, final int amount) {
+    flatten();
+    final int[] a = data;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] = a[i] * mult + amount;
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Multiply each value by the one at the same index in mult, then add
+   * the one at the same index in amount.
+   */
+  public void multAdd(IntList mult, IntList amount) {
+    checkSize(mult, "multAdd");
+    checkSize(amount, "multAdd");
+    final int[] a = data;
+    final int[] b = mult.data;
+    final int[] c = amount.data;
+    final int shiftB = mult.offset - offset;
+    final int shiftC = amount.offset - offset;
+    Sort.runPieces(Sort.pieces(offset, count), new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          a[i] = a[i] * b[i + shiftB] + c[i + shiftC];
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Multiply each value by the one at the same index in another list,
+   * and return the sum of all those.
+   */
+  public long dot(IntList list) {
+    checkSize(list, "dot");
+    final int[] a = data;
+    final int[] b = list.data;
+    final int shift = list.offset - offset;
+    int[] bounds = Sort.pieces(offset, count);
+    final long[] sums = new long[bounds.length - 1];
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        long sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += (long) a[i] * b[i + shift];
+        }
+        sums[n] = sum;
+      }
+    });
+    long sum = 0;
+    for (long s : sums) {
+      sum += s;
+    }
+    return sum;
+  }
+
+
+  /**
+   * Replace each value with the sum of it and all of the values before it.
+   * The sums are added up as long values, but stored as ints.
+   * Large lists are done in two passes: first each processor adds up its
+   * piece, then adds the total of the pieces before it while it replaces
+   * the values in its piece.
+   */
+  public void cumulativeSum() {
+    flatten();
+    final int[] a = data;
+    int[] bounds = Sort.pieces(offset, count);
+    final long[] starts = new long[bounds.length - 1];
+    if (starts.length > 1) {
+      Sort.runPieces(bounds, new Sort.Piece() {
+        void run(int n, int start, int stop) {
+          long sum = 0;
+          for (int i = start; i < stop; i++) {
+            sum += a[i];
+          }
+          starts[n] = sum;
+        }
+      });
+      long total = 0;
+      for (int i = 0; i < starts.length; i++) {
+        long piece = starts[i];
+        starts[i] = total;
+        total += piece;
+      }
+    }
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        long sum = starts[n];
+        for (int i = start; i < stop; i++) {
+          sum += a[i];
+          a[i] = (int) sum;
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * between low and high. Values outside that range are not counted,
+   * and a value equal to high goes in the last bin.
+   */
+  public IntList histogram(final int bins, final int low, final int high) {
+    if (bins < 1) {
+      throw new IllegalArgumentException("histogram() needs at least one bin");
+    }
+    if (high <= low) {
+      throw new IllegalArgumentException("histogram() needs high to be larger than low");
+    }
+    flatten();
+    final int[] a = data;
+    final double scale = bins / ((double) high - low);
+    int[] bounds = Sort.pieces(offset, count);
+    final int[][] counts = new int[bounds.length - 1][bins];
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        int[] tally = counts[n];
+        for (int i = start; i < stop; i++) {
+          int value = a[i];
+          if (value >= low && value <= high) {
+            int bin = (int) (((long) value - low) * scale);
+            tally[bin < bins ? bin : bins - 1]++;
+          }
+        }
+      }
+    });
+    IntList outgoing = new IntList(counts[0]);
+    for (int n = 1; n < counts.length; n++) {
+      for (int bin = 0; bin < bins; bin++) {
+        outgoing.data[bin] += counts[n][bin];
+      }
+    }
+    return outgoing;
+  }
+
+
+  private void checkSize(IntList list, String method) {
+    if (list.count != count) {
+      String msg =
+        String.format("%s() needs lists of the same size, not %d and %d",
+                      method, count, list.count);
+      throw new IllegalArgumentException(msg);
+    }
+    flatten();
+    list.flatten();
+  }
+
+
   private void checkMinMax(String functionName) {
     if (count == 0) {
       String msg =
@@ -543,9 +955,10 @@ public class IntList implements Iterable<Integer> {
    */
   public int min() {
     checkMinMax("min");
-    int outgoing = data[0];
+    flatten();
+    int outgoing = data[offset];
     for (int i = 1; i < count; i++) {
-      if (data[i] < outgoing) outgoing = data[i];
+      if (data[offset + i] < outgoing) outgoing = data[offset + i];
     }
     return outgoing;
   }
@@ -555,11 +968,12 @@ public class IntList implements Iterable<Integer> {
   // if there are ties, it returns the first one found.
   public int minIndex() {
     checkMinMax("minIndex");
-    int value = data[0];
+    flatten();
+    int value = data[offset];
     int index = 0;
     for (int i = 1; i < count; i++) {
-      if (data[i] < value) {
-        value = data[i];
+      if (data[offset + i] < value) {
+        value = data[offset + i];
         index = i;
       }
     }
@@ -573,9 +987,10 @@ public class IntList implements Iterable<Integer> {
    */
   public int max() {
     checkMinMax("max");
-    int outgoing = data[0];
+    flatten();
+    int outgoing = data[offset];
     for (int i = 1; i < count; i++) {
-      if (data[i] > outgoing) outgoing = data[i];
+      if (data[offset + i] > outgoing) outgoing = data[offset + i];
     }
     return outgoing;
   }
@@ -585,11 +1000,12 @@ public class IntList implements Iterable<Integer> {
   // if there are ties, it returns the first one found.
   public int maxIndex() {
     checkMinMax("maxIndex");
-    int value = data[0];
+    flatten();
+    int value = data[offset];
     int index = 0;
     for (int i = 1; i < count; i++) {
-      if (data[i] > value) {
-        value = data[i];
+      if (data[offset + i] > value) {
+        value = data[offset + i];
         index = i;
       }
     }
@@ -610,9 +1026,22 @@ public class IntList implements Iterable<Integer> {
 
 
   public long sumLong() {
+    flatten();
+    final int[] a = data;
+    int[] bounds = Sort.pieces(offset, count);
+    final long[] sums = new long[bounds.length - 1];
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        long sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += a[i];
+        }
+        sums[n] = sum;
+      }
+    });
     long sum = 0;
-    for (int i = 0; i < count; i++) {
-      sum += data[i];
+    for (long s : sums) {
+      sum += s;
     }
     return sum;
   }
@@ -625,7 +1054,13 @@ public class IntList implements Iterable<Integer> {
    * @brief Sorts the array, lowest to highest
    */
   public void sort() {
-    Arrays.sort(data, 0, count);
+    flatten();
+    if (count >= Sort.PARALLEL_MIN) {
+      // same order as Arrays.sort(), using all the processors
+      Arrays.parallelSort(data, offset, offset + count);
+    } else {
+      Arrays.sort(data, offset, offset + count);
+    }
   }
 
 
@@ -636,24 +1071,8 @@ public class IntList implements Iterable<Integer> {
    * @brief Reverse sort, orders values from highest to lowest
    */
   public void sortReverse() {
-    new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        return data[b] - data[a];
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        int temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    sort();
+    reverse();
   }
 
 
@@ -679,11 +1098,12 @@ public class IntList implements Iterable<Integer> {
    * @brief Reverse the order of the list elements
    */
   public void reverse() {
+    flatten();
     int ii = count - 1;
     for (int i = 0; i < count/2; i++) {
-      int t = data[i];
-      data[i] = data[ii];
-      data[ii] = t;
+      int t = data[offset + i];
+      data[offset + i] = data[offset + ii];
+      data[offset + ii] = t;
       --ii;
     }
   }
@@ -697,14 +1117,15 @@ public class IntList implements Iterable<Integer> {
    * @brief Randomize the order of the list elements
    */
   public void shuffle() {
+    flatten();
     Random r = new Random();
     int num = count;
     while (num > 1) {
       int value = r.nextInt(num);
       num--;
-      int temp = data[num];
-      data[num] = data[value];
-      data[value] = temp;
+      int temp = data[offset + num];
+      data[offset + num] = data[offset + value];
+      data[offset + value] = temp;
     }
   }
 
@@ -714,19 +1135,22 @@ public class IntList implements Iterable<Integer> {
    * sketch, allowing shuffle() to use its current randomSeed() setting.
    */
   public void shuffle(PApplet sketch) {
+    flatten();
     int num = count;
     while (num > 1) {
       int value = (int) sketch.random(num);
       num--;
-      int temp = data[num];
-      data[num] = data[value];
-      data[value] = temp;
+      int temp = data[offset + num];
+      data[offset + num] = data[offset + value];
+      data[offset + value] = temp;
     }
   }
 
 
   public IntList copy() {
-    IntList outgoing = new IntList(data);
+    flatten();
+    IntList outgoing = new IntList(count);
+    System.arraycopy(data, offset, outgoing.data, 0, count);
     outgoing.count = count;
     return outgoing;
   }
@@ -745,7 +1169,7 @@ public class IntList implements Iterable<Integer> {
 
   @Override
   public Iterator<Integer> iterator() {
-//  public Iterator<Integer> valueIterator() {
+    flatten();
     return new Iterator<Integer>() {
       int index = -1;
 
@@ -755,7 +1179,7 @@ public class IntList implements Iterable<Integer> {
       }
 
       public Integer next() {
-        return data[++index];
+        return data[offset + ++index];
       }
 
       public boolean hasNext() {
@@ -765,6 +1189,91 @@ public class IntList implements Iterable<Integer> {
   }
 
 
+  /**
+   * Iterate through the values without converting each to an Integer.
+   * Use nextInt() rather than next() to get each value.
+   */
+  public PrimitiveIterator.OfInt valueIterator() {
+    return new PrimitiveIterator.OfInt() {
+      int[] array;
+      int index;
+      int stop;
+      int block = -1;  // data itself is block number blockCount
+
+      public boolean hasNext() {
+        while (index == stop) {
+          if (block >= blockCount) {
+            return false;
+          }
+          block++;
+          if (block < blockCount) {
+            array = blocks[block];
+            index = 0;
+            stop = array.length;
+          } else {
+            array = data;
+            index = offset;
+            stop = offset + count - blockTotal;
+          }
+        }
+        return true;
+      }
+
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return array[index++];
+      }
+    };
+  }
+
+
+  /**
+   * Run an action on each value in order, without converting each one to
+   * an Integer the way that forEach() does.
+   * <pre>
+   * list.forEachValue(v -&gt; total += v);
+   * </pre>
+   */
+  public void forEachValue(IntConsumer action) {
+    for (int i = 0; i < blockCount; i++) {
+      for (int value : blocks[i]) {
+        action.accept(value);
+      }
+    }
+    int stop = offset + count - blockTotal;
+    for (int i = offset; i < stop; i++) {
+      action.accept(data[i]);
+    }
+  }
+
+
+  /**
+   * Get a list of the values from start up to (but not including) stop,
+   * without copying them. The two lists share the same values, so set(),
+   * sort(), shuffle(), and so on affect both, which makes it possible to
+   * work on one part of a large list. If the new list changes size (with
+   * append(), remove(), etc.) or values() is used, it first makes a copy
+   * of its values, so that it doesn't write over the original. Once the
+   * original list changes size, the values seen by the new list are no
+   * longer reliable.
+   */
+  public IntList subList(int start, int stop) {
+    if (start < 0 || stop > count || start > stop) {
+      throw new IndexOutOfBoundsException("subList(" + start + ", " + stop +
+                                          ") is outside a list of size " + count);
+    }
+    flatten();
+    IntList outgoing = new IntList(0);
+    outgoing.data = data;
+    outgoing.offset = offset + start;
+    outgoing.count = stop - start;
+    outgoing.shared = true;
+    return outgoing;
+  }
+
+
   /**
    * Create a new array with a copy of all the values.
    *
@@ -786,7 +1295,8 @@ public class IntList implements Iterable<Integer> {
     if (array == null || array.length != count) {
       array = new int[count];
     }
-    System.arraycopy(data, 0, array, 0, count);
+    flatten();
+    System.arraycopy(data, offset, array, 0, count);
     return array;
   }
 
@@ -841,13 +1351,14 @@ public class IntList implements Iterable<Integer> {
    * normalization in place on int values).
    */
   public FloatList getPercent() {
+    flatten();
     double sum = 0;
     for (float value : array()) {
       sum += value;
     }
     FloatList outgoing = new FloatList(count);
     for (int i = 0; i < count; i++) {
-      double percent = data[i] / sum;
+      double percent = data[offset + i] / sum;
       outgoing.set(i, (float) percent);
     }
     return outgoing;
@@ -873,29 +1384,32 @@ public class IntList implements Iterable<Integer> {
 
 
   public IntList getSubset(int start, int num) {
+    flatten();
     int[] subset = new int[num];
-    System.arraycopy(data, start, subset, 0, num);
+    System.arraycopy(data, offset + start, subset, 0, num);
     return new IntList(subset);
   }
 
 
   public String join(String separator) {
+    flatten();
     if (count == 0) {
       return "";
     }
     StringBuilder sb = new StringBuilder();
-    sb.append(data[0]);
+    sb.append(data[offset]);
     for (int i = 1; i < count; i++) {
       sb.append(separator);
-      sb.append(data[i]);
+      sb.append(data[offset + i]);
     }
     return sb.toString();
   }
 
 
   public void print() {
+    flatten();
     for (int i = 0; i < count; i++) {
-      System.out.format("[%d] %d%n", i, data[i]);
+      System.out.format("[%d] %d%n", i, data[offset + i]);
     }
   }
 
@@ -914,8 +1428,9 @@ public class IntList implements Iterable<Integer> {
    * Write entries to a PrintWriter, one per line
    */
   public void write(PrintWriter writer) {
+    flatten();
     for (int i = 0; i < count; i++) {
-      writer.println(data[i]);
+      writer.println(data[offset + i]);
     }
     writer.flush();
   }
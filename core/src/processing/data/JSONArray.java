@@ -42,6 +42,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import processing.core.PApplet;
 
@@ -100,9 +101,21 @@ import processing.core.PApplet;
 public class JSONArray {
 
   /**
-   * The arrayList where the JSONArray's properties are kept.
+   * The arrayList where the JSONArray's properties are kept. This is null
+   * while all the values are numbers, and kept in intValues or doubleValues.
    */
-  private final ArrayList<Object> myArrayList;
+  private ArrayList<Object> myArrayList;
+
+  /**
+   * Arrays of numbers (coordinates, samples, colors) are stored without
+   * wrapping each one in an Integer or a Double. Only one of these (or
+   * myArrayList) is used at a time. Anything other than an int (or double)
+   * being added switches back to myArrayList.
+   */
+  private int[] intValues;
+  private double[] doubleValues;
+  /** Number of elements used in intValues or doubleValues */
+  private int count;
 
 
   /**
@@ -130,18 +143,38 @@ public class JSONArray {
    */
   protected JSONArray(JSONTokener x) {
     this();
+    readValues(x);
+    // no room needed for more, since most of these are never added to
+    if (intValues != null && intValues.length != count) {
+      intValues = Arrays.copyOf(intValues, count);
+    } else if (doubleValues != null && doubleValues.length != count) {
+      doubleValues = Arrays.copyOf(doubleValues, count);
+    }
+  }
+
+
+  private void readValues(JSONTokener x) {
     if (x.nextClean() != '[') {
       throw new RuntimeException("A JSONArray text must start with '['");
     }
     if (x.nextClean() != ']') {
       x.back();
       for (;;) {
-        if (x.nextClean() == ',') {
-          x.back();
-          myArrayList.add(JSONObject.NULL);
+        char c = x.nextClean();
+        x.back();
+        if (c == ',') {
+          append(JSONObject.NULL);
+        } else if ((c >= '0' && c <= '9') || c == '-') {
+          // skip the Integer/Double objects when all the numbers are
+          // ints or all are doubles; a mix goes back to Integer and Double
+          switch (x.nextNumber()) {
+          case JSONTokener.INT: append((int) x.longValue); break;
+          case JSONTokener.DOUBLE: append(x.doubleValue); break;
+          case JSONTokener.LONG: append(Long.valueOf(x.longValue)); break;
+          default: append(x.otherValue);
+          }
         } else {
-          x.back();
-          myArrayList.add(x.nextValue());
+          append(x.nextValue());
         }
         switch (x.nextClean()) {
         case ';':
@@ -165,10 +198,8 @@ public class JSONArray {
    * @nowebref
    */
   public JSONArray(IntList list) {
-    myArrayList = new ArrayList<>();
-    for (int item : list.values()) {
-      myArrayList.add(Integer.valueOf(item));
-    }
+    intValues = list.array();
+    count = intValues.length;
   }
 
 
@@ -253,10 +284,42 @@ public class JSONArray {
     if (index < 0 || index >= this.size()) {
       return null;
     }
+    return value(index);
+  }
+
+
+  /** The value at a (valid) index, wrapped as an Integer or Double if needed. */
+  private Object value(int index) {
+    if (intValues != null) {
+      return Integer.valueOf(intValues[index]);
+    } else if (doubleValues != null) {
+      return Double.valueOf(doubleValues[index]);
+    }
     return myArrayList.get(index);
   }
 
 
+  /** True if there's an int or double stored without a wrapper at index. */
+  private boolean isPrimitive(int index) {
+    return myArrayList == null && index >= 0 && index < count;
+  }
+
+
+  /** Switch back to a list of objects, when adding something other than numbers. */
+  private void inflate() {
+    if (myArrayList == null) {
+      ArrayList<Object> list = new ArrayList<>(Math.max(count, 10));
+      for (int i = 0; i < count; i++) {
+        list.add(value(i));
+      }
+      myArrayList = list;
+      intValues = null;
+      doubleValues = null;
+      count = 0;
+    }
+  }
+
+
   /**
    * Get the object value associated with an index.
    * @param index must be between 0 and length() - 1
@@ -320,6 +383,9 @@ public class JSONArray {
    * @see JSONArray#getBoolean(int)
    */
   public int getInt(int index) {
+    if (isPrimitive(index)) {
+      return (intValues != null) ? intValues[index] : (int) doubleValues[index];
+    }
     Object object = this.get(index);
     try {
       return object instanceof Number
@@ -357,6 +423,9 @@ public class JSONArray {
    *  be converted to a number.
    */
   public long getLong(int index) {
+    if (isPrimitive(index)) {
+      return (intValues != null) ? intValues[index] : (long) doubleValues[index];
+    }
     Object object = this.get(index);
     try {
       return object instanceof Number
@@ -419,6 +488,9 @@ public class JSONArray {
    *  be converted to a number.
    */
   public double getDouble(int index) {
+    if (isPrimitive(index)) {
+      return (intValues != null) ? intValues[index] : doubleValues[index];
+    }
     Object object = this.get(index);
     try {
       return object instanceof Number
@@ -581,6 +653,9 @@ public class JSONArray {
    * @see JSONArray#getStringArray()
    */
   public int[] getIntArray() {
+    if (intValues != null) {
+      return Arrays.copyOf(intValues, count);
+    }
     int[] outgoing = new int[size()];
     for (int i = 0; i < size(); i++) {
       outgoing[i] = getInt(i);
@@ -602,6 +677,12 @@ public class JSONArray {
   /** Get this entire array as a float array. Everything must be an float. */
   public float[] getFloatArray() {
     float[] outgoing = new float[size()];
+    if (doubleValues != null) {
+      for (int i = 0; i < count; i++) {
+        outgoing[i] = (float) doubleValues[i];
+      }
+      return outgoing;
+    }
     for (int i = 0; i < size(); i++) {
       outgoing[i] = getFloat(i);
     }
@@ -611,6 +692,9 @@ public class JSONArray {
 
   /** Get this entire array as a double array. Everything must be an double. */
   public double[] getDoubleArray() {
+    if (doubleValues != null) {
+      return Arrays.copyOf(doubleValues, count);
+    }
     double[] outgoing = new double[size()];
     for (int i = 0; i < size(); i++) {
       outgoing[i] = getDouble(i);
@@ -717,7 +801,18 @@ public class JSONArray {
    * @return this.
    */
   public JSONArray append(int value) {
-    this.append(Integer.valueOf(value));
+    if (myArrayList != null && myArrayList.isEmpty()) {
+      myArrayList = null;
+      intValues = new int[10];
+    }
+    if (intValues != null) {
+      if (count == intValues.length) {
+        intValues = PApplet.expand(intValues);
+      }
+      intValues[count++] = value;
+    } else {
+      this.append(Integer.valueOf(value));
+    }
     return this;
   }
 
@@ -757,9 +852,21 @@ public class JSONArray {
    * @return this.
    */
   public JSONArray append(double value) {
-    Double d = value;
-    JSONObject.testValidity(d);
-    this.append(d);
+    if (Double.isInfinite(value) || Double.isNaN(value)) {
+      throw new RuntimeException("JSON does not allow non-finite numbers.");
+    }
+    if (myArrayList != null && myArrayList.isEmpty()) {
+      myArrayList = null;
+      doubleValues = new double[10];
+    }
+    if (doubleValues != null) {
+      if (count == doubleValues.length) {
+        doubleValues = PApplet.expand(doubleValues);
+      }
+      doubleValues[count++] = value;
+    } else {
+      this.append(Double.valueOf(value));
+    }
     return this;
   }
 
@@ -804,8 +911,7 @@ public class JSONArray {
    * @param value a JSONArray value
    */
   public JSONArray append(JSONArray value) {
-    myArrayList.add(value);
-    return this;
+    return append((Object) value);
   }
 
 
@@ -813,8 +919,7 @@ public class JSONArray {
    * @param value a JSONObject value
    */
   public JSONArray append(JSONObject value) {
-    myArrayList.add(value);
-    return this;
+    return append((Object) value);
   }
 
 
@@ -826,6 +931,7 @@ public class JSONArray {
    * @return this.
    */
   protected JSONArray append(Object value) {
+    inflate();
     myArrayList.add(value);
     return this;
   }
@@ -883,6 +989,10 @@ public class JSONArray {
    * @see JSONArray#setBoolean(int, boolean)
    */
   public JSONArray setInt(int index, int value) {
+    if (intValues != null && isPrimitive(index)) {
+      intValues[index] = value;
+      return this;
+    }
     this.set(index, Integer.valueOf(value));
     return this;
   }
@@ -935,6 +1045,11 @@ public class JSONArray {
    * not finite.
    */
   public JSONArray setDouble(int index, double value) {
+    if (doubleValues != null && isPrimitive(index) &&
+        !Double.isInfinite(value) && !Double.isNaN(value)) {
+      doubleValues[index] = value;
+      return this;
+    }
     return set(index, Double.valueOf(value));
   }
 
@@ -1019,6 +1134,7 @@ public class JSONArray {
     if (index < 0) {
       throw new RuntimeException("JSONArray[" + index + "] not found.");
     }
+    inflate();
     if (index < this.size()) {
       this.myArrayList.set(index, value);
     } else {
@@ -1041,7 +1157,7 @@ public class JSONArray {
    * @see JSONArray#remove(int)
    */
   public int size() {
-    return myArrayList.size();
+    return (myArrayList != null) ? myArrayList.size() : count;
   }
 
 
@@ -1068,7 +1184,16 @@ public class JSONArray {
    */
   public Object remove(int index) {
     Object o = this.opt(index);
-    this.myArrayList.remove(index);
+    if (myArrayList == null) {
+      if (index < 0 || index >= count) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+      }
+      Object array = (intValues != null) ? intValues : doubleValues;
+      System.arraycopy(array, index + 1, array, index, count - index - 1);
+      count--;
+    } else {
+      this.myArrayList.remove(index);
+    }
     return o;
   }
 
@@ -1204,7 +1329,7 @@ public class JSONArray {
       int thisFactor = (indentFactor == -1) ? 0 : indentFactor;
 
       if (length == 1) {
-        JSONObject.writeValue(writer, this.myArrayList.get(0),
+        JSONObject.writeValue(writer, value(0),
                               indentFactor, indent);
 //                              thisFactor, indent);
       } else if (length != 0) {
@@ -1220,7 +1345,7 @@ public class JSONArray {
           JSONObject.indent(writer, newIndent);
 //          JSONObject.writeValue(writer, this.myArrayList.get(i),
 //                                thisFactor, newIndent);
-          JSONObject.writeValue(writer, this.myArrayList.get(i),
+          JSONObject.writeValue(writer, value(i),
                                 indentFactor, newIndent);
           commanate = true;
         }
@@ -1253,7 +1378,7 @@ public class JSONArray {
       if (i > 0) {
         sb.append(separator);
       }
-      sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+      sb.append(JSONObject.valueToString(value(i)));
     }
     return sb.toString();
   }
@@ -112,18 +112,23 @@ import processing.core.PApplet;
  */
 public class JSONObject {
   /**
-   * The maximum number of keys in the key pool.
+   * The number of keys in the key pool (a power of 2).
    */
-  private static final int keyPoolSize = 100;
+  private static final int keyPoolSize = 1024;
 
   /**
    * Key pooling is like string interning, but without permanently tying up
    * memory. To help conserve memory, storage of duplicated key strings in
    * JSONObjects will be avoided by using a key pool to manage unique key
    * string objects. This is used by JSONObject.put(string, object).
+   * <p/>
+   * Each key has one slot, picked by its hash code, and a new key simply
+   * replaces whatever was in its slot. That keeps the pool from growing,
+   * and makes it safe to use from several threads without locking: reading
+   * or writing an array element is atomic, Strings are immutable, and the
+   * worst that can happen in a race is a key not being shared.
    */
-  private static HashMap<String, Object> keyPool =
-    new HashMap<>(keyPoolSize);
+  private static final String[] keyPool = new String[keyPoolSize];
 
 
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
@@ -1323,14 +1328,13 @@ public class JSONObject {
     }
     if (value != null) {
       testValidity(value);
-      pooled = (String)keyPool.get(key);
-      if (pooled == null) {
-        if (keyPool.size() >= keyPoolSize) {
-          keyPool = new HashMap<>(keyPoolSize);
-        }
-        keyPool.put(key, key);
-      } else {
+      int hash = key.hashCode();
+      int slot = (hash ^ (hash >>> 16)) & (keyPoolSize - 1);
+      pooled = keyPool[slot];
+      if (key.equals(pooled)) {
         key = pooled;
+      } else {
+        keyPool[slot] = key;
       }
       this.map.put(key, value);
     } else {
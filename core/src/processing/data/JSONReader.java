@@ -0,0 +1,769 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import processing.core.PApplet;
+
+
+/**
+ * <p>Reads a JSON file one value at a time, instead of loading the whole
+ * document into memory the way JSONObject and JSONArray do. Useful for
+ * files that are far larger than the available memory (GeoJSON exports,
+ * log dumps), since only the current value is held at a time.</p>
+ * <p>The simplest way to use it is with a path. Each object that matches
+ * is returned as its own JSONObject, and everything else is skipped over
+ * without being kept:</p>
+ * <pre>
+ * JSONReader reader = loadJSONStream("counties.geojson", "features/*");
+ * for (JSONObject feature : reader) {
+ *   String name = feature.getJSONObject("properties").getString("name");
+ * }
+ * </pre>
+ * <p>A path is a list of keys (for objects) or indices (for arrays),
+ * starting at the top of the document, separated by slashes. Use * to
+ * match any key or index at that level. Without a path, the elements of
+ * the outermost array (or the members of the outermost object) are
+ * returned.</p>
+ * <p>For more control, step through the document with nextToken(), which
+ * returns one of BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME,
+ * STRING, NUMBER, BOOLEAN, NULL, or END_DOCUMENT. Values can be read with
+ * getString(), getInt(), getFloat() and the others, whole objects and
+ * arrays with readValue(), and unwanted ones passed over with
+ * skipValue().</p>
+ *
+ * @nowebref
+ * @see JSONWriter
+ * @see PApplet#loadJSONStream(String)
+ */
+public class JSONReader implements Iterable<JSONObject>, Closeable {
+  static public final int BEGIN_OBJECT = 1;
+  static public final int END_OBJECT = 2;
+  static public final int BEGIN_ARRAY = 3;
+  static public final int END_ARRAY = 4;
+  static public final int NAME = 5;
+  static public final int STRING = 6;
+  static public final int NUMBER = 7;
+  static public final int BOOLEAN = 8;
+  static public final int NULL = 9;
+  static public final int END_DOCUMENT = 10;
+
+  // what's expected next at each level of nesting
+  static final private int EMPTY_DOCUMENT = 0;
+  static final private int DOCUMENT = 1;
+  static final private int EMPTY_ARRAY = 2;
+  static final private int ARRAY = 3;
+  static final private int EMPTY_OBJECT = 4;
+  static final private int OBJECT = 5;
+  static final private int AFTER_NAME = 6;
+
+  protected Reader reader;
+  protected char[] buffer = new char[8192];
+  protected int pos;
+  protected int limit;
+  /** Number of characters read before the start of the buffer. */
+  protected long offset;
+
+  /** Objects and arrays enclosing the current value. [0] is the document. */
+  protected int[] scopes = new int[32];
+  /** Current key at each level (for objects). */
+  protected String[] names = new String[32];
+  /** Current index at each level (for arrays). */
+  protected int[] indices = new int[32];
+  protected int depth;
+
+  /** Last token returned by nextToken(). */
+  protected int token;
+  /** Level of the object or array that contains the current token. */
+  protected int tokenDepth;
+  /** Text of the current name, string, number, or literal. */
+  protected String text;
+  protected StringBuilder scratch = new StringBuilder();
+
+  protected String[] path;
+  /** The path as array indices, or -1 where a level isn't a number. */
+  protected int[] pathIndices;
+
+
+  /**
+   * @nowebref
+   */
+  public JSONReader(File file) throws IOException {
+    this(file, null);
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public JSONReader(File file, String path) throws IOException {
+    this(PApplet.createInput(file), path);
+  }
+
+
+  /**
+   * Read UTF-8 encoded JSON from a stream.
+   */
+  public JSONReader(InputStream input, String path) throws IOException {
+    this(new InputStreamReader(input, StandardCharsets.UTF_8), path);
+  }
+
+
+  public JSONReader(Reader reader, String path) {
+    this.reader = reader;
+    scopes[0] = EMPTY_DOCUMENT;
+    setPath(path);
+  }
+
+
+  /**
+   * Set the values to be returned by next() and the iterator. Use null
+   * for the elements of the outermost array or object.
+   */
+  public void setPath(String path) {
+    if (path == null) {
+      this.path = null;
+      pathIndices = null;
+    } else {
+      this.path = (path.length() == 0) ? new String[0] : PApplet.split(path, '/');
+      pathIndices = new int[this.path.length];
+      for (int i = 0; i < this.path.length; i++) {
+        pathIndices[i] = PApplet.parseInt(this.path[i], -1);
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read the next token. After a NAME, STRING, or NUMBER, the text is
+   * available from getString(). Returns END_DOCUMENT (and closes the
+   * file) once everything has been read.
+   */
+  public int nextToken() {
+    int c;
+    switch (scopes[depth]) {
+    case EMPTY_DOCUMENT:
+      scopes[depth] = DOCUMENT;
+      c = nextClean();
+      if (c == -1) {
+        return endDocument();
+      }
+      return beginValue(c);
+
+    case DOCUMENT:
+      if (nextClean() != -1) {
+        throw syntaxError("Expected the end of the document");
+      }
+      return endDocument();
+
+    case EMPTY_ARRAY:
+    case ARRAY:
+      c = nextClean();
+      if (scopes[depth] == ARRAY) {
+        if (c == ',') {
+          c = nextClean();
+          indices[depth]++;
+        } else if (c != ']') {
+          throw syntaxError("Expected a ',' or ']'");
+        }
+      }
+      if (c == ']') {
+        return endScope(END_ARRAY);
+      }
+      scopes[depth] = ARRAY;
+      return beginValue(c);
+
+    case EMPTY_OBJECT:
+    case OBJECT:
+      c = nextClean();
+      if (scopes[depth] == OBJECT) {
+        // same as JSONObject, tolerate ; between pairs and a trailing comma
+        if (c == ',' || c == ';') {
+          c = nextClean();
+        } else if (c != '}') {
+          throw syntaxError("Expected a ',' or '}'");
+        }
+      }
+      if (c == '}') {
+        return endScope(END_OBJECT);
+      }
+      if (c != '"' && c != '\'') {
+        throw syntaxError("Expected a quoted key");
+      }
+      text = readString((char) c);
+      names[depth] = text;
+      scopes[depth] = AFTER_NAME;
+      tokenDepth = depth;
+      return token = NAME;
+
+    case AFTER_NAME:
+      c = nextClean();
+      if (c == '=') {  // also tolerated by JSONObject
+        if (peek() == '>') {
+          pos++;
+        }
+      } else if (c != ':') {
+        throw syntaxError("Expected a ':' after a key");
+      }
+      scopes[depth] = OBJECT;
+      return beginValue(nextClean());
+    }
+    throw new IllegalStateException("JSONReader is confused");
+  }
+
+
+  /**
+   * Move to the start of the next value that matches the path, skipping
+   * anything that can't contain a match. Returns false once the end of
+   * the document is reached.
+   */
+  public boolean next() {
+    for (;;) {
+      if ((token == BEGIN_OBJECT || token == BEGIN_ARRAY) && !containsMatches()) {
+        skipValue();
+      }
+      int t = nextToken();
+      if (t == END_DOCUMENT) {
+        return false;
+      }
+      if (t != NAME && t != END_OBJECT && t != END_ARRAY && matches()) {
+        return true;
+      }
+    }
+  }
+
+
+  /** True if the current value matches the path. */
+  public boolean matches() {
+    if (path == null) {
+      return tokenDepth == 1;
+    }
+    return tokenDepth == path.length && matchesPrefix(tokenDepth);
+  }
+
+
+  /** True if the current object or array might have matches inside. */
+  protected boolean containsMatches() {
+    int length = (path == null) ? 1 : path.length;
+    return tokenDepth < length && matchesPrefix(tokenDepth);
+  }
+
+
+  /** True if the first 'count' levels of the current path match. */
+  protected boolean matchesPrefix(int count) {
+    if (path != null) {
+      for (int i = 0; i < count; i++) {
+        String item = path[i];
+        int level = i + 1;
+        if (!item.equals("*")) {
+          if (isArray(level)) {
+            if (indices[level] != pathIndices[i]) {
+              return false;
+            }
+          } else if (!item.equals(names[level])) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Skip over the current value. After BEGIN_OBJECT or BEGIN_ARRAY, this
+   * moves to the matching END_OBJECT or END_ARRAY without reading anything
+   * in between. After a NAME, it skips the value that goes with it.
+   */
+  public void skipValue() {
+    if (token == NAME) {
+      nextToken();
+    }
+    if (token == BEGIN_OBJECT || token == BEGIN_ARRAY) {
+      int level = 1;
+      while (level != 0) {
+        int c = read();
+        switch (c) {
+        case -1:
+          throw syntaxError("Unexpected end of input");
+        case '"':
+        case '\'':
+          skipString((char) c);
+          break;
+        case '{':
+        case '[':
+          level++;
+          break;
+        case '}':
+        case ']':
+          level--;
+          break;
+        }
+      }
+      endScope((token == BEGIN_OBJECT) ? END_OBJECT : END_ARRAY);
+    }
+  }
+
+
+  /**
+   * Read the current value, including anything nested inside of it, as
+   * a JSONObject, JSONArray, String, Integer, Long, Double, Boolean, or
+   * JSONObject.NULL (same as the values in a JSONObject or JSONArray).
+   * After a NAME, reads the value that goes with it.
+   */
+  public Object readValue() {
+    if (token == NAME) {
+      nextToken();
+    }
+    switch (token) {
+    case BEGIN_OBJECT:
+      JSONObject object = new JSONObject();
+      while (nextToken() == NAME) {
+        String key = text;
+        nextToken();
+        object.put(key, readValue());
+      }
+      return object;
+
+    case BEGIN_ARRAY:
+      JSONArray array = new JSONArray();
+      while (nextToken() != END_ARRAY) {
+        array.append(readValue());
+      }
+      return array;
+
+    case STRING:
+      return text;
+
+    case NUMBER:
+    case BOOLEAN:
+    case NULL:
+      return JSONObject.stringToValue(text);
+    }
+    throw new RuntimeException("There is no value to read at " + getPath());
+  }
+
+
+  public JSONObject readJSONObject() {
+    Object value = readValue();
+    if (value instanceof JSONObject) {
+      return (JSONObject) value;
+    }
+    throw new RuntimeException(getPath() + " is not a JSONObject");
+  }
+
+
+  public JSONArray readJSONArray() {
+    Object value = readValue();
+    if (value instanceof JSONArray) {
+      return (JSONArray) value;
+    }
+    throw new RuntimeException(getPath() + " is not a JSONArray");
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** The last token returned by nextToken(). */
+  public int getToken() {
+    return token;
+  }
+
+
+  /** Number of objects and arrays that contain the current value. */
+  public int getDepth() {
+    return tokenDepth;
+  }
+
+
+  /** The key for the current value, or null if it's not in an object. */
+  public String getName() {
+    return (tokenDepth == 0 || isArray(tokenDepth)) ? null : names[tokenDepth];
+  }
+
+
+  /** The position in its array of the current value, or -1 if none. */
+  public int getIndex() {
+    return (tokenDepth != 0 && isArray(tokenDepth)) ? indices[tokenDepth] : -1;
+  }
+
+
+  /** Keys and indices leading to the current value, i.e. "features/12/id" */
+  public String getPath() {
+    StringBuilder sb = new StringBuilder();
+    for (int level = 1; level <= tokenDepth; level++) {
+      if (level != 1) {
+        sb.append('/');
+      }
+      if (isArray(level)) {
+        sb.append(indices[level]);
+      } else {
+        sb.append(names[level]);
+      }
+    }
+    return sb.toString();
+  }
+
+
+  /**
+   * Text of the current key, string, number, or true/false.
+   * Returns null for anything else.
+   */
+  public String getString() {
+    return (token == NAME || token == STRING ||
+            token == NUMBER || token == BOOLEAN) ? text : null;
+  }
+
+
+  public int getInt() {
+    return Integer.parseInt(getNumber());
+  }
+
+
+  public long getLong() {
+    return Long.parseLong(getNumber());
+  }
+
+
+  public float getFloat() {
+    return Float.parseFloat(getNumber());
+  }
+
+
+  public double getDouble() {
+    return Double.parseDouble(getNumber());
+  }
+
+
+  public boolean getBoolean() {
+    if (token != BOOLEAN) {
+      throw new RuntimeException(getPath() + " is not a boolean");
+    }
+    return text.equalsIgnoreCase("true");
+  }
+
+
+  /** True if the current value is null. */
+  public boolean isNull() {
+    return token == NULL;
+  }
+
+
+  protected String getNumber() {
+    if (token != NUMBER && token != STRING) {
+      throw new RuntimeException(getPath() + " is not a number");
+    }
+    return text;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Return the remaining values that match the path, reading each one
+   * as a separate JSONObject.
+   */
+  @Override
+  public Iterator<JSONObject> iterator() {
+    return new Iterator<JSONObject>() {
+      JSONObject upcoming;
+
+      public boolean hasNext() {
+        if (upcoming == null && JSONReader.this.next()) {
+          if (token != BEGIN_OBJECT) {
+            throw new RuntimeException(getPath() + " is not a JSONObject, " +
+                                       "use readValue() to read it");
+          }
+          upcoming = readJSONObject();
+        }
+        return upcoming != null;
+      }
+
+      public JSONObject next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        JSONObject outgoing = upcoming;
+        upcoming = null;
+        return outgoing;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove() not supported");
+      }
+    };
+  }
+
+
+  /**
+   * Close the underlying file. This happens automatically once the end of
+   * the document has been reached.
+   */
+  @Override
+  public void close() {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      reader = null;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  protected boolean isArray(int level) {
+    int scope = scopes[level];
+    return scope == EMPTY_ARRAY || scope == ARRAY;
+  }
+
+
+  protected int beginValue(int c) {
+    tokenDepth = depth;
+    switch (c) {
+    case '{':
+      push(EMPTY_OBJECT);
+      return token = BEGIN_OBJECT;
+    case '[':
+      push(EMPTY_ARRAY);
+      return token = BEGIN_ARRAY;
+    case '"':
+    case '\'':
+      text = readString((char) c);
+      return token = STRING;
+    case -1:
+      throw syntaxError("Unexpected end of input");
+    }
+    // true, false, null, or a number (or something unquoted,
+    // which is accepted as a string, same as JSONObject)
+    text = readLiteral((char) c);
+    if (text.length() == 0) {
+      throw syntaxError("Missing value");
+    }
+    if (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false")) {
+      return token = BOOLEAN;
+    }
+    if (text.equalsIgnoreCase("null")) {
+      return token = NULL;
+    }
+    char first = text.charAt(0);
+    if ((first >= '0' && first <= '9') ||
+        first == '.' || first == '-' || first == '+') {
+      return token = NUMBER;
+    }
+    return token = STRING;
+  }
+
+
+  protected void push(int scope) {
+    if (++depth == scopes.length) {
+      scopes = PApplet.expand(scopes);
+      names = PApplet.expand(names);
+      indices = PApplet.expand(indices);
+    }
+    scopes[depth] = scope;
+    names[depth] = null;
+    indices[depth] = 0;
+  }
+
+
+  protected int endScope(int which) {
+    depth--;
+    tokenDepth = depth;
+    return token = which;
+  }
+
+
+  protected int endDocument() {
+    close();
+    tokenDepth = 0;
+    return token = END_DOCUMENT;
+  }
+
+
+  protected RuntimeException syntaxError(String message) {
+    return new RuntimeException(message + " at character " + (offset + pos));
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Make sure there's at least one character in the buffer. */
+  protected boolean fill() {
+    if (pos < limit) {
+      return true;
+    }
+    if (reader == null) {
+      return false;
+    }
+    try {
+      offset += limit;
+      pos = 0;
+      limit = 0;
+      int count;
+      do {
+        count = reader.read(buffer, 0, buffer.length);
+      } while (count == 0);
+      if (count == -1) {
+        return false;
+      }
+      limit = count;
+      return true;
+
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  protected int read() {
+    return fill() ? buffer[pos++] : -1;
+  }
+
+
+  protected int peek() {
+    return fill() ? buffer[pos] : -1;
+  }
+
+
+  /** Next character that's not whitespace, or -1 at the end. */
+  protected int nextClean() {
+    while (fill()) {
+      char c = buffer[pos++];
+      if (c > ' ') {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+
+  /** Read the rest of a string, after its opening quote. */
+  protected String readString(char quote) {
+    scratch.setLength(0);
+    for (;;) {
+      if (!fill()) {
+        throw syntaxError("Unterminated string");
+      }
+      // copy everything up to the next quote or escape in one go
+      int start = pos;
+      while (pos < limit) {
+        char c = buffer[pos];
+        if (c == quote || c == '\\' || c == '\n' || c == '\r') {
+          break;
+        }
+        pos++;
+      }
+      scratch.append(buffer, start, pos - start);
+      if (pos == limit) {
+        continue;
+      }
+      char c = buffer[pos++];
+      if (c == quote) {
+        return scratch.toString();
+      } else if (c == '\\') {
+        scratch.append(readEscape());
+      } else {
+        throw syntaxError("Unterminated string");
+      }
+    }
+  }
+
+
+  protected char readEscape() {
+    int c = read();
+    switch (c) {
+    case 'b': return '\b';
+    case 't': return '\t';
+    case 'n': return '\n';
+    case 'f': return '\f';
+    case 'r': return '\r';
+    case 'u':
+      int value = 0;
+      for (int i = 0; i < 4; i++) {
+        int digit = JSONTokener.dehexchar((char) read());
+        if (digit == -1) {
+          throw syntaxError("Illegal escape.");
+        }
+        value = (value << 4) | digit;
+      }
+      return (char) value;
+    case '"':
+    case '\'':
+    case '\\':
+    case '/':
+      return (char) c;
+    }
+    throw syntaxError("Illegal escape.");
+  }
+
+
+  protected void skipString(char quote) {
+    for (;;) {
+      int c = read();
+      if (c == quote) {
+        return;
+      } else if (c == '\\') {
+        readEscape();
+      } else if (c == -1 || c == '\n' || c == '\r') {
+        throw syntaxError("Unterminated string");
+      }
+    }
+  }
+
+
+  /** Unquoted text, up to the next delimiter (same set as JSONTokener). */
+  protected String readLiteral(char first) {
+    if (isDelimiter(first)) {
+      pos--;  // leave it for the caller to complain about
+      return "";
+    }
+    scratch.setLength(0);
+    scratch.append(first);
+    while (fill()) {
+      char c = buffer[pos];
+      if (isDelimiter(c)) {
+        break;
+      }
+      scratch.append(c);
+      pos++;
+    }
+    return scratch.toString().trim();
+  }
+
+
+  static protected boolean isDelimiter(char c) {
+    return c < ' ' || ",:]}/\\\"[{;=#".indexOf(c) != -1;
+  }
+}
@@ -1,12 +1,13 @@
 package processing.data;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 
+import processing.core.PApplet;
+
 /*
 Copyright (c) 2002 JSON.org
 
@@ -48,6 +49,32 @@ class JSONTokener {
   private Reader  reader;
   private boolean usePrevious;
 
+  // read in blocks, rather than a (synchronized) read() for each character
+  private char[]  buffer = new char[8192];
+  private int     bufferIndex;
+  private int     bufferLength;
+  /** Everything read while skipTo() is looking ahead. */
+  private StringBuilder skipped;
+
+  /** Returned by nextNumber() when the text is not a plain number. */
+  static final int NOT_A_NUMBER = 0;
+  static final int INT = 1;
+  static final int LONG = 2;
+  static final int DOUBLE = 3;
+
+  /** The last value read by nextNumber(), as a long or a double. */
+  long    longValue;
+  double  doubleValue;
+  /** Set by nextNumber() when it returns NOT_A_NUMBER. */
+  Object  otherValue;
+
+  private char[] digits = new char[32];
+
+  static final private double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
 
   /**
    * Construct a JSONTokener from a Reader.
@@ -55,9 +82,7 @@ class JSONTokener {
    * @param reader     A reader.
    */
   public JSONTokener(Reader reader) {
-    this.reader = reader.markSupported()
-      ? reader
-        : new BufferedReader(reader);
+    this.reader = reader;
     this.eof = false;
     this.usePrevious = false;
     this.previous = 0;
@@ -151,12 +176,7 @@ class JSONTokener {
       this.usePrevious = false;
       c = this.previous;
     } else {
-      try {
-        c = this.reader.read();
-      } catch (IOException exception) {
-        throw new RuntimeException(exception);
-      }
-
+      c = read();
       if (c <= 0) { // End of stream
         this.eof = true;
       c = 0;
@@ -177,6 +197,29 @@ class JSONTokener {
   }
 
 
+  private int read() {
+    if (bufferIndex == bufferLength) {
+      try {
+        int count;
+        do {
+          count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count == -1) {
+          return -1;
+        }
+        bufferIndex = 0;
+        bufferLength = count;
+        if (skipped != null) {
+          skipped.append(buffer, 0, count);
+        }
+      } catch (IOException exception) {
+        throw new RuntimeException(exception);
+      }
+    }
+    return buffer[bufferIndex++];
+  }
+
+
   /**
    * Consume the next character, and check that it matches a specified
    * character.
@@ -251,6 +294,25 @@ class JSONTokener {
     char c;
     StringBuilder sb = new StringBuilder();
     for (;;) {
+      if (!usePrevious && previous != '\r') {
+        // copy plain characters straight from the buffer
+        int start = bufferIndex;
+        int stop = start;
+        while (stop < bufferLength) {
+          char b = buffer[stop];
+          if (b == quote || b == '\\' || b == '\n' || b == '\r' || b == 0) {
+            break;
+          }
+          stop++;
+        }
+        if (stop != start) {
+          sb.append(buffer, start, stop - start);
+          bufferIndex = stop;
+          index += stop - start;
+          character += stop - start;
+          previous = buffer[stop - 1];
+        }
+      }
       c = this.next();
       switch (c) {
       case 0:
@@ -374,6 +436,16 @@ class JSONTokener {
      * formatting character.
      */
 
+    if ((c >= '0' && c <= '9') || c == '-') {
+      this.back();
+      switch (nextNumber()) {
+      case INT: return Integer.valueOf((int) longValue);
+      case LONG: return Long.valueOf(longValue);
+      case DOUBLE: return Double.valueOf(doubleValue);
+      default: return otherValue;
+      }
+    }
+
     StringBuilder sb = new StringBuilder();
     while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
       sb.append(c);
@@ -389,6 +461,139 @@ class JSONTokener {
   }
 
 
+  /**
+   * Read a number without going through a String (and Long.valueOf() or
+   * Double.valueOf()) like nextValue() does. Returns INT, LONG, or DOUBLE,
+   * with the value in longValue or doubleValue. Anything else that starts
+   * out looking like a number (too many digits, or text like 12abc) is
+   * handled the same way as nextValue(), and the result put in otherValue.
+   */
+  int nextNumber() {
+    int length = 0;
+    boolean negative = false;
+    long mantissa = 0;
+    int significant = 0;  // digits in the mantissa, not counting leading zeros
+    int scale = 0;  // power of ten to apply to the mantissa
+    int exponent = 0;
+    boolean decimal = false;  // has a . or an exponent, so it's a double
+    boolean valid = true;
+
+    char c = this.next();
+    if (c == '-') {
+      negative = true;
+      digits[length++] = c;
+      c = this.next();
+    }
+    if (c < '0' || c > '9') {
+      valid = false;
+    }
+    // whole part
+    while (c >= '0' && c <= '9') {
+      if (length == digits.length) digits = PApplet.expand(digits);
+      digits[length++] = c;
+      if (mantissa != 0 || c != '0') {
+        if (++significant <= 18) {
+          mantissa = mantissa * 10 + (c - '0');
+        } else {
+          scale++;  // too many digits, will use parseDouble()
+        }
+      }
+      c = this.next();
+    }
+    // fraction
+    if (c == '.') {
+      decimal = true;
+      if (length == digits.length) digits = PApplet.expand(digits);
+      digits[length++] = c;
+      c = this.next();
+      if (c < '0' || c > '9') {
+        valid = false;
+      }
+      while (c >= '0' && c <= '9') {
+        if (length == digits.length) digits = PApplet.expand(digits);
+        digits[length++] = c;
+        if (mantissa != 0 || c != '0') {
+          significant++;
+        }
+        if (significant <= 18) {
+          mantissa = mantissa * 10 + (c - '0');
+          scale--;
+        }
+        c = this.next();
+      }
+    }
+    // exponent
+    if (c == 'e' || c == 'E') {
+      decimal = true;
+      if (length + 1 >= digits.length) digits = PApplet.expand(digits);
+      digits[length++] = c;
+      c = this.next();
+      boolean negativeExponent = false;
+      if (c == '-' || c == '+') {
+        negativeExponent = (c == '-');
+        digits[length++] = c;
+        c = this.next();
+      }
+      if (c < '0' || c > '9') {
+        valid = false;
+      }
+      while (c >= '0' && c <= '9') {
+        if (length == digits.length) digits = PApplet.expand(digits);
+        digits[length++] = c;
+        if (exponent < 10000) {
+          exponent = exponent * 10 + (c - '0');
+        }
+        c = this.next();
+      }
+      if (negativeExponent) {
+        exponent = -exponent;
+      }
+    }
+
+    if (valid && (c < ' ' || ",:]}/\\\"[{;=#".indexOf(c) >= 0)) {
+      this.back();
+      if (!decimal) {
+        if (significant <= 18) {
+          longValue = negative ? -mantissa : mantissa;
+          return (longValue == (int) longValue) ? INT : LONG;
+        }
+      } else {
+        scale += exponent;
+        if (significant <= 15 && scale >= -22 && scale <= 22) {
+          // both exactly representable, so a single multiply or divide
+          // is correctly rounded, same as Double.parseDouble()
+          double d = mantissa;
+          d = (scale < 0) ? d / POWERS_OF_TEN[-scale] : d * POWERS_OF_TEN[scale];
+          doubleValue = negative ? -d : d;
+          return DOUBLE;
+        }
+      }
+      otherValue = JSONObject.stringToValue(new String(digits, 0, length));
+      if (otherValue instanceof Double) {
+        doubleValue = (Double) otherValue;
+        return DOUBLE;
+      }
+      if (otherValue instanceof Long) {
+        longValue = (Long) otherValue;
+        return LONG;
+      }
+      return NOT_A_NUMBER;
+    }
+
+    // Not a plain number after all (or there's whitespace inside of it)
+    // so finish reading it as unquoted text, same as nextValue().
+    StringBuilder sb = new StringBuilder();
+    sb.append(digits, 0, length);
+    while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+      sb.append(c);
+      c = this.next();
+    }
+    this.back();
+    otherValue = JSONObject.stringToValue(sb.toString().trim());
+    return NOT_A_NUMBER;
+  }
+
+
   /**
    * Skip characters until the next character is the requested character.
    * If the requested character is not found, no characters are skipped.
@@ -398,25 +603,34 @@ class JSONTokener {
    */
   public char skipTo(char to) {
     char c;
+    long startIndex = this.index;
+    long startCharacter = this.character;
+    long startLine = this.line;
+    char startPrevious = this.previous;
+    boolean startUsePrevious = this.usePrevious;
+    // hang onto everything read from here, in case it needs to be put back
+    skipped = new StringBuilder();
+    skipped.append(buffer, bufferIndex, bufferLength - bufferIndex);
     try {
-      long startIndex = this.index;
-      long startCharacter = this.character;
-      long startLine = this.line;
-      this.reader.mark(1000000);
       do {
         c = this.next();
         if (c == 0) {
-          this.reader.reset();
+          buffer = new char[Math.max(skipped.length(), 1)];
+          skipped.getChars(0, skipped.length(), buffer, 0);
+          bufferIndex = 0;
+          bufferLength = skipped.length();
           this.index = startIndex;
           this.character = startCharacter;
           this.line = startLine;
+          this.previous = startPrevious;
+          this.usePrevious = startUsePrevious;
+          this.eof = false;
           return c;
         }
       } while (c != to);
-    } catch (IOException exc) {
-      throw new RuntimeException(exc);
+    } finally {
+      skipped = null;
     }
-
     this.back();
     return c;
   }
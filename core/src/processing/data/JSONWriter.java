@@ -0,0 +1,343 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+
+import processing.core.PApplet;
+
+
+/**
+ * <p>Writes JSON one value at a time, so that large documents can be
+ * saved without first building them as a JSONObject or JSONArray:</p>
+ * <pre>
+ * JSONWriter writer = new JSONWriter(createWriter("points.json"));
+ * writer.beginArray();
+ * for (PVector p : points) {
+ *   writer.beginObject();
+ *   writer.name("x").value(p.x);
+ *   writer.name("y").value(p.y);
+ *   writer.endObject();
+ * }
+ * writer.endArray();
+ * writer.close();
+ * </pre>
+ * <p>Inside an object, each value is preceded by name(). Existing
+ * JSONObject and JSONArray values can be written as a whole with
+ * value(). The output is formatted the same way as JSONObject.save(),
+ * and takes the same "compact" and "indent=N" options.</p>
+ *
+ * @nowebref
+ * @see JSONReader
+ */
+public class JSONWriter implements Closeable, Flushable {
+  static final private int EMPTY_DOCUMENT = 0;
+  static final private int DOCUMENT = 1;
+  static final private int EMPTY_ARRAY = 2;
+  static final private int ARRAY = 3;
+  static final private int EMPTY_OBJECT = 4;
+  static final private int OBJECT = 5;
+  static final private int AFTER_NAME = 6;
+
+  protected Writer writer;
+  /** Spaces per level, or -1 for no newlines at all ("compact") */
+  protected int indentFactor = 2;
+
+  protected int[] scopes = new int[32];
+  protected int depth;
+
+
+  public JSONWriter(File file) {
+    this(file, null);
+  }
+
+
+  public JSONWriter(File file, String options) {
+    this(PApplet.createWriter(file), options);
+  }
+
+
+  public JSONWriter(Writer writer) {
+    this(writer, null);
+  }
+
+
+  /**
+   * @param options "compact" and "indent=N", replace N with the number of spaces
+   */
+  public JSONWriter(Writer writer, String options) {
+    this.writer = writer;
+    scopes[0] = EMPTY_DOCUMENT;
+    if (options != null) {
+      String[] opts = PApplet.split(options, ',');
+      for (String opt : opts) {
+        if (opt.equals("compact")) {
+          indentFactor = -1;
+        } else if (opt.startsWith("indent=")) {
+          indentFactor = PApplet.parseInt(opt.substring(7), -2);
+          if (indentFactor == -2) {
+            throw new IllegalArgumentException("Could not read a number from " + opt);
+          }
+        } else {
+          System.err.println("Ignoring " + opt);
+        }
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public JSONWriter beginObject() {
+    return open(EMPTY_OBJECT, '{');
+  }
+
+
+  public JSONWriter endObject() {
+    return end(EMPTY_OBJECT, OBJECT, '}');
+  }
+
+
+  public JSONWriter beginArray() {
+    return open(EMPTY_ARRAY, '[');
+  }
+
+
+  public JSONWriter endArray() {
+    return end(EMPTY_ARRAY, ARRAY, ']');
+  }
+
+
+  /** Set the key for the next value written inside an object. */
+  public JSONWriter name(String key) {
+    if (key == null) {
+      throw new RuntimeException("Null key.");
+    }
+    int scope = scopes[depth];
+    if (scope != EMPTY_OBJECT && scope != OBJECT) {
+      throw new RuntimeException("name() can only be used inside an object");
+    }
+    try {
+      if (scope == OBJECT) {
+        writer.write(',');
+      }
+      newline(depth);
+      JSONObject.quote(key, writer);
+      writer.write(':');
+      if (indentFactor > 0) {
+        writer.write(' ');
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    scopes[depth] = AFTER_NAME;
+    return this;
+  }
+
+
+  public JSONWriter value(String value) {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue();
+    try {
+      JSONObject.quote(value, writer);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+
+  public JSONWriter value(int value) {
+    beforeValue();
+    writeRaw(String.valueOf(value));
+    return this;
+  }
+
+
+  public JSONWriter value(long value) {
+    beforeValue();
+    writeRaw(String.valueOf(value));
+    return this;
+  }
+
+
+  public JSONWriter value(float value) {
+    return writeValue(Float.valueOf(value));
+  }
+
+
+  public JSONWriter value(double value) {
+    return writeValue(Double.valueOf(value));
+  }
+
+
+  public JSONWriter value(boolean value) {
+    beforeValue();
+    writeRaw(value ? "true" : "false");
+    return this;
+  }
+
+
+  public JSONWriter value(JSONObject value) {
+    return writeValue(value);
+  }
+
+
+  public JSONWriter value(JSONArray value) {
+    return writeValue(value);
+  }
+
+
+  public JSONWriter nullValue() {
+    beforeValue();
+    writeRaw("null");
+    return this;
+  }
+
+
+  @Override
+  public void flush() {
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  /**
+   * Close the underlying writer. Throws an exception (after closing) if
+   * any objects or arrays were not ended.
+   */
+  @Override
+  public void close() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      writer = null;
+    }
+    if (depth != 0) {
+      throw new RuntimeException("JSONWriter was closed before the document was finished");
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  protected JSONWriter open(int scope, char bracket) {
+    beforeValue();
+    writeRaw(String.valueOf(bracket));
+    if (++depth == scopes.length) {
+      scopes = PApplet.expand(scopes);
+    }
+    scopes[depth] = scope;
+    return this;
+  }
+
+
+  protected JSONWriter end(int empty, int nonempty, char bracket) {
+    int scope = scopes[depth];
+    if (scope == AFTER_NAME) {
+      throw new RuntimeException("Missing a value after name()");
+    }
+    if (scope != empty && scope != nonempty) {
+      throw new RuntimeException("Cannot use '" + bracket + "' here, " +
+                                 "check that begin and end calls match");
+    }
+    depth--;
+    if (scope == nonempty) {
+      newline(depth);
+    }
+    writeRaw(String.valueOf(bracket));
+    return this;
+  }
+
+
+  /** Write a separator (if needed) and check that a value is allowed. */
+  protected void beforeValue() {
+    if (writer == null) {
+      throw new RuntimeException("JSONWriter has already been closed");
+    }
+    switch (scopes[depth]) {
+    case EMPTY_DOCUMENT:
+      scopes[depth] = DOCUMENT;
+      break;
+    case DOCUMENT:
+      throw new RuntimeException("A JSON document can only have one value " +
+                                 "at the top, use beginArray() first");
+    case EMPTY_ARRAY:
+    case ARRAY:
+      if (scopes[depth] == ARRAY) {
+        writeRaw(",");
+      }
+      newline(depth);
+      scopes[depth] = ARRAY;
+      break;
+    case AFTER_NAME:
+      scopes[depth] = OBJECT;
+      break;
+    default:
+      throw new RuntimeException("Use name() before each value in an object");
+    }
+  }
+
+
+  /** Write anything else, using the same code as JSONObject and JSONArray. */
+  protected JSONWriter writeValue(Object value) {
+    JSONObject.testValidity(value);
+    beforeValue();
+    try {
+      int indent = (indentFactor == -1) ? 0 : depth * indentFactor;
+      JSONObject.writeValue(writer, value, indentFactor, indent);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+
+  protected void writeRaw(String s) {
+    try {
+      writer.write(s);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  protected void newline(int level) {
+    if (indentFactor != -1) {
+      try {
+        writer.write('\n');
+        JSONObject.indent(writer, level * indentFactor);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class LongDict {
   protected long[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictIndex indices = new DictIndex();
 
 
   public LongDict() {
@@ -63,7 +62,7 @@ public class LongDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseInt(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, pieces[0]);
         count++;
       }
     }
@@ -80,7 +79,7 @@ public class LongDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -101,7 +100,7 @@ public class LongDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Integer) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -136,7 +135,7 @@ public class LongDict {
     keys = newKeys;
     values = newValues;
     count = length;
-    resetIndices();
+    indices.truncate(length);
   }
 
 
@@ -148,15 +147,7 @@ public class LongDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
-  }
-
-
-  private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.clear();
   }
 
 
@@ -385,6 +376,7 @@ public class LongDict {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    indices.set(index, key);
     keys[index] = key;
     values[index] = value;
   }
@@ -560,8 +552,7 @@ public class LongDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.get(keys, what);
   }
 
 
@@ -570,7 +561,7 @@ public class LongDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
+    indices.add(what);
     keys[count] = what;
     values[count] = much;
     count++;
@@ -597,12 +588,11 @@ public class LongDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     long value = values[index];
-    indices.remove(keys[index]);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
+    indices.remove(index);
     count--;
     keys[count] = null;
     values[count] = 0;
@@ -617,9 +607,7 @@ public class LongDict {
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
+    indices.swap(a, b);
   }
 
 
@@ -697,10 +685,10 @@ public class LongDict {
         if (useKeys) {
           diff = keys[a].compareToIgnoreCase(keys[b]);
           if (diff == 0) {
-            diff = values[a] - values[b];
+            diff = Long.compare(values[a], values[b]);
           }
         } else {  // sort values
-          diff = values[a] - values[b];
+          diff = Long.compare(values[a], values[b]);
           if (diff == 0 && stable) {
             diff = keys[a].compareToIgnoreCase(keys[b]);
           }
@@ -719,10 +707,15 @@ public class LongDict {
         LongDict.this.swap(a, b);
       }
     };
-    s.run();
-
-    // Set the indices after sort/swaps (performance fix 160411)
-    resetIndices();
+    // sort the positions, then move everything once
+    int[] order = s.order();
+    String[] oldKeys = PApplet.subset(keys, 0, order.length);
+    long[] oldValues = PApplet.subset(values, 0, order.length);
+    for (int i = 0; i < order.length; i++) {
+      keys[i] = oldKeys[order[i]];
+      values[i] = oldValues[order[i]];
+    }
+    indices.reorder(order);
   }
 
 
@@ -747,9 +740,7 @@ public class LongDict {
     LongDict outgoing = new LongDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
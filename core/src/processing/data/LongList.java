@@ -4,7 +4,10 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Random;
+import java.util.function.LongConsumer;
 
 import processing.core.PApplet;
 
@@ -22,6 +25,11 @@ import processing.core.PApplet;
  * Functions like sort() and shuffle() always act on the list itself. To get
  * a sorted copy, use list.copy().sort().
  *
+ * For very large lists, use forEachValue() or valueIterator() to go through
+ * the values without converting each one to a Long, subList() to
+ * work with part of a list without copying it, and setChunkSize() to append
+ * many values without repeatedly copying the whole list as it grows.
+ *
  * @nowebref
  * @see FloatList
  * @see StringList
@@ -30,6 +38,19 @@ public class LongList implements Iterable<Long> {
   protected int count;
   protected long[] data;
 
+  /** Index in data of the first value, for a list made by subList() */
+  protected int offset;
+  /** True if data belongs to another list, because this was made by subList() */
+  protected boolean shared;
+
+  /** Size of each new block when appending in chunks, or 0 to grow data */
+  protected int chunkSize;
+  /** Full blocks of values in chunked mode, data holds the values after them */
+  protected long[][] blocks;
+  protected int blockCount;
+  /** Number of values held in blocks */
+  protected int blockTotal;
+
 
   public LongList() {
     data = new long[10];
@@ -121,6 +142,7 @@ public class LongList implements Iterable<Long> {
    * size changes (from very large to very small).
    */
   private void crop() {
+    unshare();
     if (count != data.length) {
       data = PApplet.subset(data, 0, count);
     }
@@ -139,6 +161,7 @@ public class LongList implements Iterable<Long> {
 
 
   public void resize(int length) {
+    unshare();
     if (length > data.length) {
       long[] temp = new long[length];
       System.arraycopy(data, 0, temp, 0, count);
@@ -159,6 +182,9 @@ public class LongList implements Iterable<Long> {
    */
   public void clear() {
     count = 0;
+    blocks = null;
+    blockCount = 0;
+    blockTotal = 0;
   }
 
 
@@ -169,10 +195,11 @@ public class LongList implements Iterable<Long> {
    * @brief Get an entry at a particular index
    */
   public long get(int index) {
-    if (index >= this.count) {
+    if (index < 0 || index >= this.count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
-    return data[index];
+    flatten();
+    return data[offset + index];
   }
 
 
@@ -185,14 +212,19 @@ public class LongList implements Iterable<Long> {
    * @brief Set the entry at a particular index
    */
   public void set(int index, int what) {
+    if (index < 0) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    flatten();
     if (index >= count) {
+      unshare();
       data = PApplet.expand(data, index+1);
       for (int i = count; i < index; i++) {
         data[i] = 0;
       }
       count = index+1;
     }
-    data[index] = what;
+    data[offset + index] = what;
   }
 
 
@@ -222,6 +254,7 @@ public class LongList implements Iterable<Long> {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    unshare();
     long entry = data[index];
 //    int[] outgoing = new int[count - 1];
 //    System.arraycopy(data, 0, outgoing, 0, index);
@@ -253,6 +286,7 @@ public class LongList implements Iterable<Long> {
   // Remove all instances of a particular value,
   // and return the number of values found and removed
   public int removeValues(int value) {
+    unshare();
     int ii = 0;
     for (int i = 0; i < count; i++) {
       if (data[i] != value) {
@@ -272,10 +306,88 @@ public class LongList implements Iterable<Long> {
    * @brief Add a new entry to the list
    */
   public void append(long value) {
-    if (count == data.length) {
+    if (shared) {
+      unshare();
+    }
+    if (count - blockTotal == data.length) {
+      grow();
+    }
+    data[count++ - blockTotal] = value;
+  }
+
+
+  /**
+   * Make room for more values once data is full. In chunked mode, data
+   * becomes another one of the blocks, rather than being copied.
+   */
+  private void grow() {
+    if (chunkSize == 0) {
       data = PApplet.expand(data);
+    } else {
+      if (data.length != 0) {
+        if (blocks == null) {
+          blocks = new long[8][];
+        } else if (blockCount == blocks.length) {
+          blocks = Arrays.copyOf(blocks, blockCount << 1);
+        }
+        blocks[blockCount++] = data;
+        blockTotal += data.length;
+      }
+      data = new long[chunkSize];
+    }
+  }
+
+
+  /**
+   * Append in blocks of this many values, instead of copying the entire
+   * list to a new array (twice as large) each time that it fills up.
+   * This means that appending hundreds of millions of values never needs
+   * one giant array, or the time to copy it. The blocks are joined into
+   * one array the first time the list is used for something other than
+   * append(), size(), forEachValue(), or valueIterator(). Use 0 (the
+   * default) to go back to a single array.
+   */
+  public void setChunkSize(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Chunk size cannot be negative");
+    }
+    chunkSize = size;
+    if (size == 0) {
+      flatten();
+    }
+  }
+
+
+  /** Copy the blocks from chunked mode into a single array. */
+  private void flatten() {
+    if (blocks != null) {
+      long[] temp = new long[count];
+      int index = 0;
+      for (int i = 0; i < blockCount; i++) {
+        System.arraycopy(blocks[i], 0, temp, index, blocks[i].length);
+        index += blocks[i].length;
+      }
+      System.arraycopy(data, 0, temp, index, count - index);
+      data = temp;
+      blocks = null;
+      blockCount = 0;
+      blockTotal = 0;
+    }
+  }
+
+
+  /**
+   * Make sure that data is a single array that belongs to this list,
+   * before anything that changes its size. A list made by subList()
+   * gets its own copy, so it won't write over the list it came from.
+   */
+  private void unshare() {
+    flatten();
+    if (shared) {
+      data = PApplet.subset(data, offset, count);
+      offset = 0;
+      shared = false;
     }
-    data[count++] = value;
   }
 
 
@@ -338,6 +450,7 @@ public class LongList implements Iterable<Long> {
 
   // same as splice
   public void insert(int index, long[] values) {
+    unshare();
     if (index < 0) {
       throw new IllegalArgumentException("insert() index cannot be negative: it was " + index);
     }
@@ -415,6 +528,7 @@ public class LongList implements Iterable<Long> {
 
   /** Return the first index of a particular value. */
   public int index(int what) {
+    flatten();
     /*
     if (indexCache != null) {
       try {
@@ -425,7 +539,7 @@ public class LongList implements Iterable<Long> {
     }
     */
     for (int i = 0; i < count; i++) {
-      if (data[i] == what) {
+      if (data[offset + i] == what) {
         return i;
       }
     }
@@ -447,12 +561,13 @@ public class LongList implements Iterable<Long> {
    * @brief Check if a number is a part of the list
    */
   public boolean hasValue(int value) {
+    flatten();
 //    if (indexCache == null) {
 //      cacheIndices();
 //    }
 //    return index(what) != -1;
     for (int i = 0; i < count; i++) {
-      if (data[i] == value) {
+      if (data[offset + i] == value) {
         return true;
       }
     }
@@ -464,10 +579,11 @@ public class LongList implements Iterable<Long> {
    * @brief Add one to a value
    */
   public void increment(int index) {
+    flatten();
     if (count <= index) {
       resize(index + 1);
     }
-    data[index]++;
+    data[offset + index]++;
   }
 
 
@@ -483,8 +599,9 @@ public class LongList implements Iterable<Long> {
    * @brief Add to a value
    */
   public void add(int index, int amount) {
-    if (index < count) {
-      data[index] += amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] += amount;
     } else {
       boundsProblem(index, "add");
     }
@@ -495,8 +612,9 @@ public class LongList implements Iterable<Long> {
    * @brief Subtract from a value
    */
   public void sub(int index, int amount) {
-    if (index < count) {
-      data[index] -= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] -= amount;
     } else {
       boundsProblem(index, "sub");
     }
@@ -507,8 +625,9 @@ public class LongList implements Iterable<Long> {
    * @brief Multiply a value
    */
   public void mult(int index, int amount) {
-    if (index < count) {
-      data[index] *= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] *= amount;
     } else {
       boundsProblem(index, "mult");
     }
@@ -519,8 +638,9 @@ public class LongList implements Iterable<Long> {
    * @brief Divide a value
    */
   public void div(int index, int amount) {
-    if (index < count) {
-      data[index] /= amount;
+    flatten();
+    if (index >= 0 && index < count) {
+      data[offset + index] /= amount;
     } else {
       boundsProblem(index, "div");
     }
@@ -543,9 +663,10 @@ public class LongList implements Iterable<Long> {
    */
   public long min() {
     checkMinMax("min");
-    long outgoing = data[0];
+    flatten();
+    long outgoing = data[offset];
     for (int i = 1; i < count; i++) {
-      if (data[i] < outgoing) outgoing = data[i];
+      if (data[offset + i] < outgoing) outgoing = data[offset + i];
     }
     return outgoing;
   }
@@ -555,11 +676,12 @@ public class LongList implements Iterable<Long> {
   // if there are ties, it returns the first one found.
   public int minIndex() {
     checkMinMax("minIndex");
-    long value = data[0];
+    flatten();
+    long value = data[offset];
     int index = 0;
     for (int i = 1; i < count; i++) {
-      if (data[i] < value) {
-        value = data[i];
+      if (data[offset + i] < value) {
+        value = data[offset + i];
         index = i;
       }
     }
@@ -573,9 +695,10 @@ public class LongList implements Iterable<Long> {
    */
   public long max() {
     checkMinMax("max");
-    long outgoing = data[0];
+    flatten();
+    long outgoing = data[offset];
     for (int i = 1; i < count; i++) {
-      if (data[i] > outgoing) outgoing = data[i];
+      if (data[offset + i] > outgoing) outgoing = data[offset + i];
     }
     return outgoing;
   }
@@ -585,11 +708,12 @@ public class LongList implements Iterable<Long> {
   // if there are ties, it returns the first one found.
   public int maxIndex() {
     checkMinMax("maxIndex");
-    long value = data[0];
+    flatten();
+    long value = data[offset];
     int index = 0;
     for (int i = 1; i < count; i++) {
-      if (data[i] > value) {
-        value = data[i];
+      if (data[offset + i] > value) {
+        value = data[offset + i];
         index = i;
       }
     }
@@ -610,9 +734,10 @@ public class LongList implements Iterable<Long> {
 
 
   public long sumLong() {
+    flatten();
     long sum = 0;
     for (int i = 0; i < count; i++) {
-      sum += data[i];
+      sum += data[offset + i];
     }
     return sum;
   }
@@ -625,7 +750,13 @@ public class LongList implements Iterable<Long> {
    * @brief Sorts the array, lowest to highest
    */
   public void sort() {
-    Arrays.sort(data, 0, count);
+    flatten();
+    if (count >= Sort.PARALLEL_MIN) {
+      // same order as Arrays.sort(), using all the processors
+      Arrays.parallelSort(data, offset, offset + count);
+    } else {
+      Arrays.sort(data, offset, offset + count);
+    }
   }
 
 
@@ -636,25 +767,8 @@ public class LongList implements Iterable<Long> {
    * @brief Reverse sort, orders values from highest to lowest
    */
   public void sortReverse() {
-    new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        long diff = data[b] - data[a];
-        return diff == 0 ? 0 : (diff < 0 ? -1 : 1);
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        long temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    sort();
+    reverse();
   }
 
 
@@ -680,11 +794,12 @@ public class LongList implements Iterable<Long> {
    * @brief Reverse the order of the list elements
    */
   public void reverse() {
+    flatten();
     int ii = count - 1;
     for (int i = 0; i < count/2; i++) {
-      long t = data[i];
-      data[i] = data[ii];
-      data[ii] = t;
+      long t = data[offset + i];
+      data[offset + i] = data[offset + ii];
+      data[offset + ii] = t;
       --ii;
     }
   }
@@ -698,14 +813,15 @@ public class LongList implements Iterable<Long> {
    * @brief Randomize the order of the list elements
    */
   public void shuffle() {
+    flatten();
     Random r = new Random();
     int num = count;
     while (num > 1) {
       int value = r.nextInt(num);
       num--;
-      long temp = data[num];
-      data[num] = data[value];
-      data[value] = temp;
+      long temp = data[offset + num];
+      data[offset + num] = data[offset + value];
+      data[offset + value] = temp;
     }
   }
 
@@ -715,19 +831,22 @@ public class LongList implements Iterable<Long> {
    * sketch, allowing shuffle() to use its current randomSeed() setting.
    */
   public void shuffle(PApplet sketch) {
+    flatten();
     int num = count;
     while (num > 1) {
       int value = (int) sketch.random(num);
       num--;
-      long temp = data[num];
-      data[num] = data[value];
-      data[value] = temp;
+      long temp = data[offset + num];
+      data[offset + num] = data[offset + value];
+      data[offset + value] = temp;
     }
   }
 
 
   public LongList copy() {
-    LongList outgoing = new LongList(data);
+    flatten();
+    LongList outgoing = new LongList(count);
+    System.arraycopy(data, offset, outgoing.data, 0, count);
     outgoing.count = count;
     return outgoing;
   }
@@ -746,7 +865,7 @@ public class LongList implements Iterable<Long> {
 
   @Override
   public Iterator<Long> iterator() {
-//  public Iterator<Integer> valueIterator() {
+    flatten();
     return new Iterator<Long>() {
       int index = -1;
 
@@ -756,7 +875,7 @@ public class LongList implements Iterable<Long> {
       }
 
       public Long next() {
-        return data[++index];
+        return data[offset + ++index];
       }
 
       public boolean hasNext() {
@@ -766,6 +885,91 @@ public class LongList implements Iterable<Long> {
   }
 
 
+  /**
+   * Iterate through the values without converting each to a Long.
+   * Use nextLong() rather than next() to get each value.
+   */
+  public PrimitiveIterator.OfLong valueIterator() {
+    return new PrimitiveIterator.OfLong() {
+      long[] array;
+      int index;
+      int stop;
+      int block = -1;  // data itself is block number blockCount
+
+      public boolean hasNext() {
+        while (index == stop) {
+          if (block >= blockCount) {
+            return false;
+          }
+          block++;
+          if (block < blockCount) {
+            array = blocks[block];
+            index = 0;
+            stop = array.length;
+          } else {
+            array = data;
+            index = offset;
+            stop = offset + count - blockTotal;
+          }
+        }
+        return true;
+      }
+
+      public long nextLong() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return array[index++];
+      }
+    };
+  }
+
+
+  /**
+   * Run an action on each value in order, without converting each one to
+   * a Long the way that forEach() does.
+   * <pre>
+   * list.forEachValue(v -&gt; total += v);
+   * </pre>
+   */
+  public void forEachValue(LongConsumer action) {
+    for (int i = 0; i < blockCount; i++) {
+      for (long value : blocks[i]) {
+        action.accept(value);
+      }
+    }
+    int stop = offset + count - blockTotal;
+    for (int i = offset; i < stop; i++) {
+      action.accept(data[i]);
+    }
+  }
+
+
+  /**
+   * Get a list of the values from start up to (but not including) stop,
+   * without copying them. The two lists share the same values, so set(),
+   * sort(), shuffle(), and so on affect both, which makes it possible to
+   * work on one part of a large list. If the new list changes size (with
+   * append(), remove(), etc.) or values() is used, it first makes a copy
+   * of its values, so that it doesn't write over the original. Once the
+   * original list changes size, the values seen by the new list are no
+   * longer reliable.
+   */
+  public LongList subList(int start, int stop) {
+    if (start < 0 || stop > count || start > stop) {
+      throw new IndexOutOfBoundsException("subList(" + start + ", " + stop +
+                                          ") is outside a list of size " + count);
+    }
+    flatten();
+    LongList outgoing = new LongList(0);
+    outgoing.data = data;
+    outgoing.offset = offset + start;
+    outgoing.count = stop - start;
+    outgoing.shared = true;
+    return outgoing;
+  }
+
+
   /**
    * Create a new array with a copy of all the values.
    *
@@ -787,7 +991,8 @@ public class LongList implements Iterable<Long> {
     if (array == null || array.length != count) {
       array = new int[count];
     }
-    System.arraycopy(data, 0, array, 0, count);
+    flatten();
+    System.arraycopy(data, offset, array, 0, count);
     return array;
   }
 
@@ -842,13 +1047,14 @@ public class LongList implements Iterable<Long> {
    * normalization in place on int values).
    */
   public FloatList getPercent() {
+    flatten();
     double sum = 0;
     for (float value : array()) {
       sum += value;
     }
     FloatList outgoing = new FloatList(count);
     for (int i = 0; i < count; i++) {
-      double percent = data[i] / sum;
+      double percent = data[offset + i] / sum;
       outgoing.set(i, (float) percent);
     }
     return outgoing;
@@ -874,29 +1080,32 @@ public class LongList implements Iterable<Long> {
 
 
   public LongList getSubset(int start, int num) {
+    flatten();
     int[] subset = new int[num];
-    System.arraycopy(data, start, subset, 0, num);
+    System.arraycopy(data, offset + start, subset, 0, num);
     return new LongList(subset);
   }
 
 
   public String join(String separator) {
+    flatten();
     if (count == 0) {
       return "";
     }
     StringBuilder sb = new StringBuilder();
-    sb.append(data[0]);
+    sb.append(data[offset]);
     for (int i = 1; i < count; i++) {
       sb.append(separator);
-      sb.append(data[i]);
+      sb.append(data[offset + i]);
     }
     return sb.toString();
   }
 
 
   public void print() {
+    flatten();
     for (int i = 0; i < count; i++) {
-      System.out.format("[%d] %d%n", i, data[i]);
+      System.out.format("[%d] %d%n", i, data[offset + i]);
     }
   }
 
@@ -915,8 +1124,9 @@ public class LongList implements Iterable<Long> {
    * Write entries to a PrintWriter, one per line
    */
   public void write(PrintWriter writer) {
+    flatten();
     for (int i = 0; i < count; i++) {
-      writer.println(data[i]);
+      writer.println(data[offset + i]);
     }
     writer.flush();
   }
@@ -0,0 +1,376 @@
+package processing.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import processing.core.PApplet;
+
+
+/**
+ * A simple class to use a long as a lookup for any kind of object. Handy
+ * for data with large numeric ids (OpenStreetMap nodes, timestamps,
+ * database rows) where a HashMap&lt;Long, Object&gt; would create a Long
+ * and an entry object for every item.
+ *
+ * @nowebref
+ * @see IntIntDict
+ * @see StringDict
+ */
+public class LongObjectDict<V> {
+
+  /** Number of elements in the table */
+  protected int count;
+
+  protected long[] keys;
+  protected Object[] values;
+
+  /** Internal implementation for faster lookups */
+  private DictIndex indices = new DictIndex();
+
+
+  public LongObjectDict() {
+    count = 0;
+    keys = new long[10];
+    values = new Object[10];
+  }
+
+
+  /**
+   * Create a new lookup with a specific size. This is more efficient than not
+   * specifying a size. Use it when you know the rough size of the thing you're creating.
+   */
+  public LongObjectDict(int length) {
+    count = 0;
+    keys = new long[length];
+    values = new Object[length];
+    indices = new DictIndex(length);
+  }
+
+
+  /**
+   * Create a dictionary from arrays of keys and values. If a key is in the
+   * array more than once, the last value is used.
+   */
+  public LongObjectDict(long[] keys, V[] values) {
+    this(keys.length);
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("key and value arrays must be the same length");
+    }
+    for (int i = 0; i < keys.length; i++) {
+      set(keys[i], values[i]);
+    }
+  }
+
+
+  /**
+   * Returns the number of key/value pairs
+   */
+  public int size() {
+    return count;
+  }
+
+
+  /**
+   * Resize the internal data, this can only be used to shrink the list.
+   * Helpful for situations like sorting and then grabbing the top 50 entries.
+   */
+  public void resize(int length) {
+    if (length > count) {
+      throw new IllegalArgumentException("resize() can only be used to shrink the dictionary");
+    }
+    if (length < 1) {
+      throw new IllegalArgumentException("resize(" + length + ") is too small, use 1 or higher");
+    }
+    keys = PApplet.subset(keys, 0, length);
+    values = Arrays.copyOf(values, length);
+    count = length;
+    indices.truncate(length);
+  }
+
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    Arrays.fill(values, 0, count, null);  // let the objects be collected
+    count = 0;
+    indices.clear();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public long key(int index) {
+    return keys[index];
+  }
+
+
+  /**
+   * Return a copy of the internal keys array. This array can be modified.
+   */
+  public long[] keyArray() {
+    return keyArray(null);
+  }
+
+
+  public long[] keyArray(long[] outgoing) {
+    if (outgoing == null || outgoing.length != count) {
+      outgoing = new long[count];
+    }
+    System.arraycopy(keys, 0, outgoing, 0, count);
+    return outgoing;
+  }
+
+
+  @SuppressWarnings("unchecked")
+  public V value(int index) {
+    return (V) values[index];
+  }
+
+
+  public Iterable<V> values() {
+    return new Iterable<V>() {
+
+      @Override
+      public Iterator<V> iterator() {
+        return valueIterator();
+      }
+    };
+  }
+
+
+  public Iterator<V> valueIterator() {
+    return new Iterator<V>() {
+      int index = -1;
+
+      public void remove() {
+        removeIndex(index);
+        index--;
+      }
+
+      public V next() {
+        return value(++index);
+      }
+
+      public boolean hasNext() {
+        return index+1 < size();
+      }
+    };
+  }
+
+
+  /**
+   * Create a new array and copy each of the values into it.
+   */
+  public Object[] valueArray() {
+    return Arrays.copyOf(values, count);
+  }
+
+
+  /**
+   * Fill an already-allocated array with the values. If 'array' is not the
+   * same size as the number of values, a new array of the same type will be
+   * allocated and returned.
+   */
+  public V[] valueArray(V[] array) {
+    if (array.length != count) {
+      array = Arrays.copyOf(array, count);
+    }
+    System.arraycopy(values, 0, array, 0, count);
+    return array;
+  }
+
+
+  /**
+   * Return the value for the specified key, or null if there isn't one.
+   */
+  public V get(long key) {
+    int index = index(key);
+    if (index == -1) return null;
+    return value(index);
+  }
+
+
+  public V get(long key, V alternate) {
+    int index = index(key);
+    if (index == -1) return alternate;
+    return value(index);
+  }
+
+
+  /**
+   * Create a new key/value pair or change the value of one.
+   */
+  public void set(long key, V value) {
+    int index = index(key);
+    if (index == -1) {
+      create(key, value);
+    } else {
+      values[index] = value;
+    }
+  }
+
+
+  public void setIndex(int index, long key, V value) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    indices.set(index, key);
+    keys[index] = key;
+    values[index] = value;
+  }
+
+
+  public boolean hasKey(long key) {
+    return index(key) != -1;
+  }
+
+
+  public int index(long what) {
+    return indices.get(keys, what);
+  }
+
+
+  protected void create(long key, V value) {
+    if (count == keys.length) {
+      keys = PApplet.expand(keys);
+      values = Arrays.copyOf(values, count > 0 ? count << 1 : 1);
+    }
+    indices.add(key);
+    keys[count] = key;
+    values[count] = value;
+    count++;
+  }
+
+
+  public V remove(long key) {
+    int index = index(key);
+    if (index == -1) {
+      throw new NoSuchElementException("No key " + key);
+    }
+    return removeIndex(index);
+  }
+
+
+  public V removeIndex(int index) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    V value = value(index);
+    System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+    System.arraycopy(values, index + 1, values, index, count - index - 1);
+    indices.remove(index);
+    count--;
+    values[count] = null;
+    return value;
+  }
+
+
+  public void swap(int a, int b) {
+    long tkey = keys[a];
+    Object tvalue = values[a];
+    keys[a] = keys[b];
+    values[a] = values[b];
+    keys[b] = tkey;
+    values[b] = tvalue;
+    indices.swap(a, b);
+  }
+
+
+  /**
+   * Sort the keys in ascending order.
+   */
+  public void sortKeys() {
+    sortImpl(false, null);
+  }
+
+
+  /**
+   * Sort the keys in descending order.
+   */
+  public void sortKeysReverse() {
+    sortImpl(true, null);
+  }
+
+
+  /**
+   * Sort by values, in the order given by a Comparator. Entries with
+   * the same value are sorted by key.
+   */
+  public void sortValues(Comparator<? super V> comparator) {
+    sortImpl(false, comparator);
+  }
+
+
+  public void sortValuesReverse(Comparator<? super V> comparator) {
+    sortImpl(true, comparator);
+  }
+
+
+  protected void sortImpl(final boolean reverse,
+                          final Comparator<? super V> comparator) {
+    Sort s = new Sort() {
+      @Override
+      public int size() {
+        return count;
+      }
+
+      @Override
+      public int compare(int a, int b) {
+        int diff = 0;
+        if (comparator != null) {
+          diff = comparator.compare(value(a), value(b));
+        }
+        if (diff == 0) {
+          diff = Long.compare(keys[a], keys[b]);
+        }
+        return reverse ? -diff : diff;
+      }
+
+      @Override
+      public void swap(int a, int b) {
+        LongObjectDict.this.swap(a, b);
+      }
+    };
+    // sort the positions, then move everything once
+    int[] order = s.order();
+    long[] oldKeys = PApplet.subset(keys, 0, order.length);
+    Object[] oldValues = Arrays.copyOf(values, order.length);
+    for (int i = 0; i < order.length; i++) {
+      keys[i] = oldKeys[order[i]];
+      values[i] = oldValues[order[i]];
+    }
+    indices.reorder(order);
+  }
+
+
+  /** Returns a duplicate copy of this object. (The values are not copied.) */
+  public LongObjectDict<V> copy() {
+    LongObjectDict<V> outgoing = new LongObjectDict<>(count);
+    System.arraycopy(keys, 0, outgoing.keys, 0, count);
+    System.arraycopy(values, 0, outgoing.values, 0, count);
+    outgoing.indices = indices.copy();
+    outgoing.count = count;
+    return outgoing;
+  }
+
+
+  public void print() {
+    for (int i = 0; i < size(); i++) {
+      System.out.println(keys[i] + " = " + values[i]);
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    StringList items = new StringList();
+    for (int i = 0; i < count; i++) {
+      items.append(keys[i] + ": " + values[i]);
+    }
+    return getClass().getSimpleName() + " size=" + size() + " { " + items.join(", ") + " }";
+  }
+}
@@ -0,0 +1,450 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import processing.core.PApplet;
+
+
+/**
+ * <p>Read-only access to a table saved in the columnar binary format
+ * (with saveTable(table, "data.cbin")), reading the values in place from a
+ * memory-mapped file instead of loading them into arrays. Opening the file
+ * only reads the header, and each column is mapped the first time it's used,
+ * so even very large tables open right away, and only the columns that are
+ * actually read take up any memory.</p>
+ * <pre>
+ * MappedTable readings = new MappedTable(dataFile("readings.cbin"));
+ * int col = readings.getColumnIndex("temperature");
+ * float total = 0;
+ * for (int row = 0; row < readings.getRowCount(); row++) {
+ *   total += readings.getFloat(row, col);
+ * }
+ * </pre>
+ *
+ * @see Table
+ */
+public class MappedTable implements Closeable {
+  // Columns are mapped in pieces of (at most) 1 GB, because a single
+  // mapping is limited to 2 GB. Since the pieces are a multiple of 8 bytes,
+  // numbers never straddle two of them (Strings might, though).
+  static final int SEGMENT_SHIFT = 30;
+  static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+  static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  protected RandomAccessFile file;
+  protected FileChannel channel;
+
+  /** Titles, types, categories, and missing values, but no rows. */
+  protected Table info;
+  protected byte[] header;
+  protected int rowCount;
+
+  /** Start of each column's block in the file. */
+  protected long[] offsets;
+
+  /** Mapped pieces of each column, null until the column is first used. */
+  protected ByteBuffer[][] segments;
+
+
+  public MappedTable(File file) throws IOException {
+    this.file = new RandomAccessFile(file, "r");
+    channel = this.file.getChannel();
+
+    int magic = this.file.readInt();
+    if (magic != Table.COLUMNAR_MAGIC) {
+      close();
+      throw new IOException("Not a columnar binary table (magic was " + PApplet.hex(magic) + ")");
+    }
+    header = new byte[this.file.readInt()];
+    this.file.readFully(header);
+    info = new Table();
+    rowCount = info.readColumnarHeader(new DataInputStream(new ByteArrayInputStream(header)));
+
+    int columnCount = info.getColumnCount();
+    long length = this.file.length();
+    this.file.seek(length - 12);
+    long footer = this.file.readLong();
+    if (this.file.readInt() != Table.COLUMNAR_MAGIC) {
+      close();
+      throw new IOException("This columnar table is incomplete or damaged");
+    }
+    this.file.seek(footer);
+    offsets = new long[columnCount];
+    for (int col = 0; col < columnCount; col++) {
+      offsets[col] = this.file.readLong();
+    }
+    segments = new ByteBuffer[columnCount][];
+  }
+
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+
+  public int getColumnCount() {
+    return info.getColumnCount();
+  }
+
+
+  public String[] getColumnTitles() {
+    return info.getColumnTitles();
+  }
+
+
+  public String getColumnTitle(int column) {
+    return info.getColumnTitle(column);
+  }
+
+
+  public int getColumnIndex(String columnName) {
+    return info.getColumnIndex(columnName);
+  }
+
+
+  /** Returns one of Table.STRING, Table.INT, etc... */
+  public int getColumnType(int column) {
+    return info.getColumnType(column);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Map the block for a column, if it hasn't been used before. */
+  protected ByteBuffer[] mapColumn(int column) {
+    if (segments[column] == null) {
+      long length;
+      switch (info.columnTypes[column]) {
+      case Table.INT:
+      case Table.FLOAT:
+      case Table.CATEGORY:
+        length = rowCount * 4L;
+        break;
+      case Table.LONG:
+      case Table.DOUBLE:
+        length = rowCount * 8L;
+        break;
+      default:  // STRING or COMPACT
+        // the offsets, followed by the bytes for all the entries
+        length = rowCount * 8L + lastEnd(column);
+      }
+      try {
+        segments[column] = map(offsets[column], length);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return segments[column];
+  }
+
+
+  /** Number of bytes used by all the entries in a String column. */
+  protected long lastEnd(int column) {
+    if (rowCount == 0) {
+      return 0;
+    }
+    try {
+      file.seek(offsets[column] + (rowCount - 1) * 8L);
+      long end = file.readLong();
+      return (end < 0) ? ~end : end;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  protected ByteBuffer[] map(long offset, long length) throws IOException {
+    int count = (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+    ByteBuffer[] outgoing = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      long start = (long) i << SEGMENT_SHIFT;
+      outgoing[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+                                Math.min(SEGMENT_SIZE, length - start));
+    }
+    return outgoing;
+  }
+
+
+  protected ByteBuffer segment(int column, long position) {
+    return mapColumn(column)[(int) (position >>> SEGMENT_SHIFT)];
+  }
+
+
+  protected void checkOpen() {
+    if (segments == null) {
+      throw new IllegalStateException("This MappedTable has been closed");
+    }
+  }
+
+
+  protected void checkBounds(int row, int column) {
+    checkOpen();
+    if (row < 0 || row >= rowCount) {
+      throw new ArrayIndexOutOfBoundsException("Row " + row + " does not exist.");
+    }
+    if (column < 0 || column >= segments.length) {
+      throw new ArrayIndexOutOfBoundsException("Column " + column + " does not exist.");
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public int getInt(int row, int column) {
+    checkBounds(row, column);
+    int type = info.columnTypes[column];
+    if (type == Table.INT || type == Table.CATEGORY) {
+      long position = row * 4L;
+      return segment(column, position).getInt((int) (position & SEGMENT_MASK));
+    }
+    return PApplet.parseInt(getString(row, column), info.missingInt);
+  }
+
+
+  public int getInt(int row, String columnName) {
+    return getInt(row, info.checkColumnIndex(columnName));
+  }
+
+
+  public long getLong(int row, int column) {
+    checkBounds(row, column);
+    if (info.columnTypes[column] == Table.LONG) {
+      long position = row * 8L;
+      return segment(column, position).getLong((int) (position & SEGMENT_MASK));
+    }
+    String str = getString(row, column);
+    if (str == null) {
+      return info.missingLong;
+    }
+    try {
+      return Long.parseLong(str);
+    } catch (NumberFormatException nfe) {
+      return info.missingLong;
+    }
+  }
+
+
+  public long getLong(int row, String columnName) {
+    return getLong(row, info.checkColumnIndex(columnName));
+  }
+
+
+  public float getFloat(int row, int column) {
+    checkBounds(row, column);
+    if (info.columnTypes[column] == Table.FLOAT) {
+      long position = row * 4L;
+      return segment(column, position).getFloat((int) (position & SEGMENT_MASK));
+    }
+    return PApplet.parseFloat(getString(row, column), info.missingFloat);
+  }
+
+
+  public float getFloat(int row, String columnName) {
+    return getFloat(row, info.checkColumnIndex(columnName));
+  }
+
+
+  public double getDouble(int row, int column) {
+    checkBounds(row, column);
+    if (info.columnTypes[column] == Table.DOUBLE) {
+      long position = row * 8L;
+      return segment(column, position).getDouble((int) (position & SEGMENT_MASK));
+    }
+    String str = getString(row, column);
+    if (str == null) {
+      return info.missingDouble;
+    }
+    try {
+      return Double.parseDouble(str);
+    } catch (NumberFormatException nfe) {
+      return info.missingDouble;
+    }
+  }
+
+
+  public double getDouble(int row, String columnName) {
+    return getDouble(row, info.checkColumnIndex(columnName));
+  }
+
+
+  public String getString(int row, int column) {
+    checkBounds(row, column);
+    switch (info.columnTypes[column]) {
+    case Table.STRING:
+    case Table.COMPACT:
+      return readString(row, column);
+    case Table.CATEGORY:
+      int cat = getInt(row, column);
+      if (cat == info.missingCategory) {
+        return info.missingString;
+      }
+      return info.columnCategories[column].key(cat);
+    case Table.INT:
+      return String.valueOf(getInt(row, column));
+    case Table.LONG:
+      return String.valueOf(getLong(row, column));
+    case Table.FLOAT:
+      float f = getFloat(row, column);
+      return Float.isNaN(f) ? null : String.valueOf(f);
+    case Table.DOUBLE:
+      double d = getDouble(row, column);
+      return Double.isNaN(d) ? null : String.valueOf(d);
+    }
+    return null;
+  }
+
+
+  public String getString(int row, String columnName) {
+    return getString(row, info.checkColumnIndex(columnName));
+  }
+
+
+  protected String readString(int row, int column) {
+    long end = segment(column, row * 8L).getLong((int) ((row * 8L) & SEGMENT_MASK));
+    if (end < 0) {
+      return null;
+    }
+    long start = 0;
+    if (row > 0) {
+      long previous = (row - 1) * 8L;
+      start = segment(column, previous).getLong((int) (previous & SEGMENT_MASK));
+      if (start < 0) {
+        start = ~start;
+      }
+    }
+    // copy the bytes out, which may be split across two segments
+    byte[] bytes = new byte[(int) (end - start)];
+    long position = rowCount * 8L + start;
+    int index = 0;
+    while (index < bytes.length) {
+      ByteBuffer view = segment(column, position).duplicate();
+      view.position((int) (position & SEGMENT_MASK));
+      int n = Math.min(bytes.length - index, view.remaining());
+      view.get(bytes, index, n);
+      index += n;
+      position += n;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Load the entire table into memory, for when it needs to be modified,
+   * sorted, or otherwise used as a regular Table.
+   */
+  public Table toTable() {
+    checkOpen();
+    Table outgoing = new Table();
+    try {
+      outgoing.readColumnarHeader(new DataInputStream(new ByteArrayInputStream(header)));
+    } catch (IOException e) {
+      throw new RuntimeException(e);  // already read once, so not likely
+    }
+    outgoing.setRowCount(rowCount);
+    for (int col = 0; col < getColumnCount(); col++) {
+      // each segment is a multiple of 8 bytes, so it holds whole values
+      ByteBuffer[] pieces = mapColumn(col);
+      int index = 0;
+      switch (info.columnTypes[col]) {
+      case Table.INT:
+      case Table.CATEGORY:
+        for (ByteBuffer segment : pieces) {
+          IntBuffer values = segment.duplicate().asIntBuffer();
+          int n = values.remaining();
+          values.get((int[]) outgoing.columns[col], index, n);
+          index += n;
+        }
+        break;
+      case Table.LONG:
+        for (ByteBuffer segment : pieces) {
+          LongBuffer values = segment.duplicate().asLongBuffer();
+          int n = values.remaining();
+          values.get((long[]) outgoing.columns[col], index, n);
+          index += n;
+        }
+        break;
+      case Table.FLOAT:
+        for (ByteBuffer segment : pieces) {
+          FloatBuffer values = segment.duplicate().asFloatBuffer();
+          int n = values.remaining();
+          values.get((float[]) outgoing.columns[col], index, n);
+          index += n;
+        }
+        break;
+      case Table.DOUBLE:
+        for (ByteBuffer segment : pieces) {
+          DoubleBuffer values = segment.duplicate().asDoubleBuffer();
+          int n = values.remaining();
+          values.get((double[]) outgoing.columns[col], index, n);
+          index += n;
+        }
+        break;
+      case Table.STRING:
+        String[] data = (String[]) outgoing.columns[col];
+        for (int row = 0; row < rowCount; row++) {
+          data[row] = readString(row, col);
+        }
+        break;
+      case Table.COMPACT:
+        CompactStrings compact = (CompactStrings) outgoing.columns[col];
+        for (int row = 0; row < rowCount; row++) {
+          compact.set(row, readString(row, col));
+        }
+        break;
+      }
+    }
+    return outgoing;
+  }
+
+
+  /**
+   * Release the file. Values can no longer be read after this, though the
+   * memory for any mapped columns is only freed once they're garbage
+   * collected (the JVM has no way to unmap them directly).
+   */
+  @Override
+  public void close() {
+    segments = null;
+    if (file != null) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      file = null;
+      channel = null;
+    }
+  }
+}
@@ -1,11 +1,52 @@
 package processing.data;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 
 /**
  * Internal sorter used by several data classes.
  * Advanced users only, not official API.
+ * <p>
+ * run() sorts in place through compare() and swap(), using a quicksort
+ * with a median-of-three pivot that switches to heapsort if the input
+ * is bad enough that the quicksort would go quadratic. order() leaves
+ * the data alone and returns a stable ordering (a merge sort of the
+ * indices) instead, so that several arrays can be moved around once
+ * at the end, rather than on each swap.
+ * <p>
+ * The static radix sorts are for ordering rows by int or long keys, see
+ * intKey(), floatKey(), longKey(), and doubleKey() for how to make keys
+ * that sort numbers in the right order with NaN at the end.
+ * <p>
+ * parallelOrder() and the parallel radix sorts split larger inputs into
+ * one piece per processor, sort the pieces at the same time, then merge
+ * them back together (also in parallel, a pair of pieces at a time).
+ * The results are identical to the single-threaded versions.
+ * <p>
+ * pieces() and runPieces() are used for other work on large arrays, like
+ * the bulk math in IntList, FloatList, and DoubleList. Those pieces have a
+ * fixed size rather than one per processor, so that sums and other
+ * floating point results come out the same on every machine.
  */
 public abstract class Sort implements Runnable {
+  /** Below this size, ranges are finished with an insertion sort. */
+  static final int INSERTION_MAX = 16;
+
+  /** Below this size, radix sorts use an insertion sort instead. */
+  static final int RADIX_MIN = 64;
+
+  /** Inputs smaller than this aren't worth splitting across processors. */
+  static final int PARALLEL_MIN = 1 << 17;
+
+  /** Size of each piece from pieces(), except for the last one. */
+  static final int PIECE_SIZE = PARALLEL_MIN / 2;
+
 
   public Sort() { }
 
@@ -13,34 +54,597 @@ public abstract class Sort implements Runnable {
   public void run() {
     int c = size();
     if (c > 1) {
-      sort(0, c - 1);
+      // 2 * log2(c) levels before falling back to heapsort
+      int depth = 2 * (31 - Integer.numberOfLeadingZeros(c));
+      sort(0, c - 1, depth);
+    }
+  }
+
+
+  /**
+   * Return the indices 0..size()-1 in sorted order, keeping items that
+   * compare as equal in their original order. Nothing is swapped.
+   */
+  public int[] order() {
+    int c = size();
+    int[] order = new int[c];
+    for (int i = 0; i < c; i++) {
+      order[i] = i;
+    }
+    if (c > 1) {
+      mergeSort(order.clone(), order, 0, c);
+    }
+    return order;
+  }
+
+
+  /**
+   * Same result as order(), but larger inputs are sorted in pieces on all
+   * available processors. compare() will be called from several threads
+   * at once, so it should only read from the data.
+   */
+  public int[] parallelOrder() {
+    int c = size();
+    final int[] bounds = split(c);
+    if (bounds == null) {
+      return order();
+    }
+    int[] order = new int[c];
+    for (int i = 0; i < c; i++) {
+      order[i] = i;
+    }
+    final int[] scratch = order.clone();
+    final int[] sorted = order;
+    List<Callable<Object>> tasks = new ArrayList<>();
+    for (int i = 0; i < bounds.length - 1; i++) {
+      final int low = bounds[i];
+      final int high = bounds[i+1];
+      tasks.add(new Callable<Object>() {
+        public Object call() {
+          mergeSort(scratch, sorted, low, high);
+          return null;
+        }
+      });
+    }
+    invoke(tasks);
+
+    return mergePieces(bounds, new Merger() {
+      int[] src = sorted;
+      int[] dest = scratch;  // free again now that the pieces are sorted
+
+      void merge(int low, int mid, int high) {
+        for (int i = low, p = low, q = mid; i < high; i++) {
+          if (q >= high || (p < mid && compare(src[p], src[q]) <= 0)) {
+            dest[i] = src[p++];
+          } else {
+            dest[i] = src[q++];
+          }
+        }
+      }
+
+      void flip() {
+        int[] temp = src; src = dest; dest = temp;
+      }
+
+      int[] result() {
+        return src;
+      }
+    });
+  }
+
+
+  /** Sort the (inclusive) range i..j. */
+  protected void sort(int i, int j, int depth) {
+    while (j - i >= INSERTION_MAX) {
+      if (depth-- == 0) {
+        heapSort(i, j);
+        return;
+      }
+      // median of three: puts the lowest at i and the highest at j,
+      // which also keeps the scans below from running off either end
+      int mid = (i + j) >>> 1;
+      if (compare(mid, i) < 0) swap(mid, i);
+      if (compare(j, i) < 0) swap(j, i);
+      if (compare(j, mid) < 0) swap(j, mid);
+      int pivot = j - 1;
+      swap(mid, pivot);
+
+      // stopping on equal values keeps runs of duplicates balanced
+      int left = i;
+      int right = pivot;
+      while (true) {
+        while (compare(++left, pivot) < 0) { }
+        while (compare(--right, pivot) > 0) { }
+        if (left >= right) break;
+        swap(left, right);
+      }
+      swap(left, pivot);
+
+      // recurse on the smaller side, loop on the larger one
+      if (left - i < j - left) {
+        sort(i, left - 1, depth);
+        i = left + 1;
+      } else {
+        sort(left + 1, j, depth);
+        j = left - 1;
+      }
+    }
+    insertionSort(i, j);
+  }
+
+
+  protected void insertionSort(int i, int j) {
+    for (int k = i + 1; k <= j; k++) {
+      for (int m = k; m > i && compare(m - 1, m) > 0; m--) {
+        swap(m - 1, m);
+      }
+    }
+  }
+
+
+  protected void heapSort(int i, int j) {
+    int n = j - i + 1;
+    for (int k = n/2 - 1; k >= 0; k--) {
+      siftDown(i, k, n);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      swap(i, i + end);
+      siftDown(i, 0, end);
     }
   }
 
 
-  protected void sort(int i, int j) {
-    int pivotIndex = (i+j)/2;
-    swap(pivotIndex, j);
-    int k = partition(i-1, j);
-    swap(k, j);
-    if ((k-i) > 1) sort(i, k-1);
-    if ((j-k) > 1) sort(k+1, j);
+  private void siftDown(int offset, int k, int n) {
+    while (true) {
+      int child = 2*k + 1;
+      if (child >= n) break;
+      if (child + 1 < n && compare(offset + child, offset + child + 1) < 0) {
+        child++;
+      }
+      if (compare(offset + k, offset + child) >= 0) break;
+      swap(offset + k, offset + child);
+      k = child;
+    }
   }
 
 
-  protected int partition(int left, int right) {
-    int pivot = right;
-    do {
-      while (compare(++left, pivot) < 0) { }
-      while ((right != 0) && (compare(--right, pivot) > 0)) { }
-      swap(left, right);
-    } while (left < right);
-    swap(left, right);
-    return left;
+  /** Merge sort src[low..high) into dest, both start out the same. */
+  private void mergeSort(int[] src, int[] dest, int low, int high) {
+    int length = high - low;
+    if (length < INSERTION_MAX) {
+      for (int i = low + 1; i < high; i++) {
+        for (int j = i; j > low && compare(dest[j-1], dest[j]) > 0; j--) {
+          int temp = dest[j];
+          dest[j] = dest[j-1];
+          dest[j-1] = temp;
+        }
+      }
+      return;
+    }
+    int mid = (low + high) >>> 1;
+    mergeSort(dest, src, low, mid);
+    mergeSort(dest, src, mid, high);
+
+    // already in order, which is common enough to check for
+    if (compare(src[mid-1], src[mid]) <= 0) {
+      System.arraycopy(src, low, dest, low, length);
+      return;
+    }
+    for (int i = low, p = low, q = mid; i < high; i++) {
+      if (q >= high || (p < mid && compare(src[p], src[q]) <= 0)) {
+        dest[i] = src[p++];
+      } else {
+        dest[i] = src[q++];
+      }
+    }
   }
 
 
   abstract public int size();
   abstract public int compare(int a, int b);
   abstract public void swap(int a, int b);
-}
\ No newline at end of file
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  // Keys for the radix sorts, compared as unsigned numbers. Reversing
+  // just flips the bits, so that equal values stay in the same order.
+  // NaN is the highest key either way, so it always sorts last.
+
+
+  static int intKey(int value, boolean reverse) {
+    int key = value ^ Integer.MIN_VALUE;
+    return reverse ? ~key : key;
+  }
+
+
+  static int floatKey(float value, boolean reverse) {
+    if (value != value) {
+      return -1;
+    }
+    int bits = Float.floatToRawIntBits(value);
+    int key = bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+    return reverse ? ~key : key;
+  }
+
+
+  static long longKey(long value, boolean reverse) {
+    long key = value ^ Long.MIN_VALUE;
+    return reverse ? ~key : key;
+  }
+
+
+  static long doubleKey(double value, boolean reverse) {
+    if (value != value) {
+      return -1;
+    }
+    long bits = Double.doubleToRawLongBits(value);
+    long key = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    return reverse ? ~key : key;
+  }
+
+
+  /**
+   * Stable sort of keys (as unsigned ints), moving the entries of order
+   * along with them. Sorts a byte at a time, and skips any byte that's
+   * the same for every key.
+   */
+  static void radixSort(int[] keys, int[] order) {
+    int n = keys.length;
+    if (n < RADIX_MIN) {
+      for (int i = 1; i < n; i++) {
+        int key = keys[i];
+        int item = order[i];
+        int j = i - 1;
+        while (j >= 0 && Integer.compareUnsigned(keys[j], key) > 0) {
+          keys[j+1] = keys[j];
+          order[j+1] = order[j];
+          j--;
+        }
+        keys[j+1] = key;
+        order[j+1] = item;
+      }
+      return;
+    }
+    int[] srcKeys = keys;
+    int[] srcOrder = order;
+    int[] destKeys = new int[n];
+    int[] destOrder = new int[n];
+    int[] counts = new int[256];
+
+    for (int shift = 0; shift < 32; shift += 8) {
+      Arrays.fill(counts, 0);
+      for (int i = 0; i < n; i++) {
+        counts[(srcKeys[i] >>> shift) & 0xFF]++;
+      }
+      if (counts[(srcKeys[0] >>> shift) & 0xFF] == n) {
+        continue;
+      }
+      int total = 0;
+      for (int b = 0; b < 256; b++) {
+        int c = counts[b];
+        counts[b] = total;
+        total += c;
+      }
+      for (int i = 0; i < n; i++) {
+        int key = srcKeys[i];
+        int p = counts[(key >>> shift) & 0xFF]++;
+        destKeys[p] = key;
+        destOrder[p] = srcOrder[i];
+      }
+      int[] temp = srcKeys; srcKeys = destKeys; destKeys = temp;
+      temp = srcOrder; srcOrder = destOrder; destOrder = temp;
+    }
+    if (srcKeys != keys) {
+      System.arraycopy(srcKeys, 0, keys, 0, n);
+      System.arraycopy(srcOrder, 0, order, 0, n);
+    }
+  }
+
+
+  /** Same as radixSort(int[], int[]) but for long keys. */
+  static void radixSort(long[] keys, int[] order) {
+    int n = keys.length;
+    if (n < RADIX_MIN) {
+      for (int i = 1; i < n; i++) {
+        long key = keys[i];
+        int item = order[i];
+        int j = i - 1;
+        while (j >= 0 && Long.compareUnsigned(keys[j], key) > 0) {
+          keys[j+1] = keys[j];
+          order[j+1] = order[j];
+          j--;
+        }
+        keys[j+1] = key;
+        order[j+1] = item;
+      }
+      return;
+    }
+    long[] srcKeys = keys;
+    int[] srcOrder = order;
+    long[] destKeys = new long[n];
+    int[] destOrder = new int[n];
+    int[] counts = new int[256];
+
+    for (int shift = 0; shift < 64; shift += 8) {
+      Arrays.fill(counts, 0);
+      for (int i = 0; i < n; i++) {
+        counts[(int) (srcKeys[i] >>> shift) & 0xFF]++;
+      }
+      if (counts[(int) (srcKeys[0] >>> shift) & 0xFF] == n) {
+        continue;
+      }
+      int total = 0;
+      for (int b = 0; b < 256; b++) {
+        int c = counts[b];
+        counts[b] = total;
+        total += c;
+      }
+      for (int i = 0; i < n; i++) {
+        long key = srcKeys[i];
+        int p = counts[(int) (key >>> shift) & 0xFF]++;
+        destKeys[p] = key;
+        destOrder[p] = srcOrder[i];
+      }
+      long[] tempKeys = srcKeys; srcKeys = destKeys; destKeys = tempKeys;
+      int[] tempOrder = srcOrder; srcOrder = destOrder; destOrder = tempOrder;
+    }
+    if (srcKeys != keys) {
+      System.arraycopy(srcKeys, 0, keys, 0, n);
+      System.arraycopy(srcOrder, 0, order, 0, n);
+    }
+  }
+
+
+  /**
+   * Same as radixSort(keys, order), using all available processors for
+   * larger arrays.
+   */
+  static void parallelRadixSort(final int[] keys, final int[] order) {
+    final int[] bounds = split(keys.length);
+    if (bounds == null) {
+      radixSort(keys, order);
+      return;
+    }
+    List<Callable<Object>> tasks = new ArrayList<>();
+    for (int i = 0; i < bounds.length - 1; i++) {
+      final int low = bounds[i];
+      final int high = bounds[i+1];
+      tasks.add(new Callable<Object>() {
+        public Object call() {
+          int[] pieceKeys = Arrays.copyOfRange(keys, low, high);
+          int[] pieceOrder = Arrays.copyOfRange(order, low, high);
+          radixSort(pieceKeys, pieceOrder);
+          System.arraycopy(pieceKeys, 0, keys, low, high - low);
+          System.arraycopy(pieceOrder, 0, order, low, high - low);
+          return null;
+        }
+      });
+    }
+    invoke(tasks);
+
+    int[] sorted = mergePieces(bounds, new Merger() {
+      int[] srcKeys = keys;
+      int[] srcOrder = order;
+      int[] destKeys = new int[keys.length];
+      int[] destOrder = new int[keys.length];
+
+      void merge(int low, int mid, int high) {
+        for (int i = low, p = low, q = mid; i < high; i++) {
+          if (q >= high || (p < mid && Integer.compareUnsigned(srcKeys[p], srcKeys[q]) <= 0)) {
+            destKeys[i] = srcKeys[p];
+            destOrder[i] = srcOrder[p++];
+          } else {
+            destKeys[i] = srcKeys[q];
+            destOrder[i] = srcOrder[q++];
+          }
+        }
+      }
+
+      void flip() {
+        int[] temp = srcKeys; srcKeys = destKeys; destKeys = temp;
+        temp = srcOrder; srcOrder = destOrder; destOrder = temp;
+      }
+
+      int[] result() {
+        if (srcKeys != keys) {
+          System.arraycopy(srcKeys, 0, keys, 0, keys.length);
+        }
+        return srcOrder;
+      }
+    });
+    if (sorted != order) {
+      System.arraycopy(sorted, 0, order, 0, order.length);
+    }
+  }
+
+
+  /** Same as parallelRadixSort(int[], int[]) but for long keys. */
+  static void parallelRadixSort(final long[] keys, final int[] order) {
+    final int[] bounds = split(keys.length);
+    if (bounds == null) {
+      radixSort(keys, order);
+      return;
+    }
+    List<Callable<Object>> tasks = new ArrayList<>();
+    for (int i = 0; i < bounds.length - 1; i++) {
+      final int low = bounds[i];
+      final int high = bounds[i+1];
+      tasks.add(new Callable<Object>() {
+        public Object call() {
+          long[] pieceKeys = Arrays.copyOfRange(keys, low, high);
+          int[] pieceOrder = Arrays.copyOfRange(order, low, high);
+          radixSort(pieceKeys, pieceOrder);
+          System.arraycopy(pieceKeys, 0, keys, low, high - low);
+          System.arraycopy(pieceOrder, 0, order, low, high - low);
+          return null;
+        }
+      });
+    }
+    invoke(tasks);
+
+    int[] sorted = mergePieces(bounds, new Merger() {
+      long[] srcKeys = keys;
+      int[] srcOrder = order;
+      long[] destKeys = new long[keys.length];
+      int[] destOrder = new int[keys.length];
+
+      void merge(int low, int mid, int high) {
+        for (int i = low, p = low, q = mid; i < high; i++) {
+          if (q >= high || (p < mid && Long.compareUnsigned(srcKeys[p], srcKeys[q]) <= 0)) {
+            destKeys[i] = srcKeys[p];
+            destOrder[i] = srcOrder[p++];
+          } else {
+            destKeys[i] = srcKeys[q];
+            destOrder[i] = srcOrder[q++];
+          }
+        }
+      }
+
+      void flip() {
+        long[] tempKeys = srcKeys; srcKeys = destKeys; destKeys = tempKeys;
+        int[] tempOrder = srcOrder; srcOrder = destOrder; destOrder = tempOrder;
+      }
+
+      int[] result() {
+        if (srcKeys != keys) {
+          System.arraycopy(srcKeys, 0, keys, 0, keys.length);
+        }
+        return srcOrder;
+      }
+    });
+    if (sorted != order) {
+      System.arraycopy(sorted, 0, order, 0, order.length);
+    }
+  }
+
+
+  /**
+   * Where to split count items into one piece per processor, or null
+   * if there aren't enough items to bother.
+   */
+  static int[] split(int count) {
+    int proc = Runtime.getRuntime().availableProcessors();
+    int pieceCount = Math.min(proc, count / (PARALLEL_MIN / 2));
+    if (count < PARALLEL_MIN || pieceCount < 2) {
+      return null;
+    }
+    int[] bounds = new int[pieceCount + 1];
+    for (int i = 0; i <= pieceCount; i++) {
+      bounds[i] = (int) ((long) count * i / pieceCount);
+    }
+    return bounds;
+  }
+
+
+  /**
+   * Bounds for splitting the range from start up to (not including)
+   * start + count into pieces of PIECE_SIZE, or a single piece if there
+   * aren't enough items to bother. The pieces don't depend on the number
+   * of processors, so the pieces of a sum are always added in the same order.
+   */
+  static int[] pieces(int start, int count) {
+    return pieces(start, count, PIECE_SIZE);
+  }
+
+
+  /** Same as pieces(start, count), but with pieces of at least size items. */
+  static int[] pieces(int start, int count, int size) {
+    size = Math.max(size, PIECE_SIZE);
+    if (count < PARALLEL_MIN || count <= size) {
+      return new int[] { start, start + count };
+    }
+    int pieceCount = (int) (((long) count + size - 1) / size);
+    int[] bounds = new int[pieceCount + 1];
+    for (int i = 0; i < pieceCount; i++) {
+      bounds[i] = start + i * size;
+    }
+    bounds[pieceCount] = start + count;
+    return bounds;
+  }
+
+
+  /** Work on one piece of a range, for runPieces(). */
+  static abstract class Piece {
+    /** Handle start up to (not including) stop, which is piece number n. */
+    abstract void run(int n, int start, int stop);
+  }
+
+
+  /**
+   * Run each piece at the same time, or on this thread if there's only
+   * one of them.
+   */
+  static void runPieces(int[] bounds, final Piece piece) {
+    int pieceCount = bounds.length - 1;
+    if (pieceCount == 1) {
+      piece.run(0, bounds[0], bounds[1]);
+
+    } else {
+      List<Callable<Object>> tasks = new ArrayList<>();
+      for (int i = 0; i < pieceCount; i++) {
+        final int n = i;
+        final int start = bounds[i];
+        final int stop = bounds[i+1];
+        tasks.add(new Callable<Object>() {
+          public Object call() {
+            piece.run(n, start, stop);
+            return null;
+          }
+        });
+      }
+      invoke(tasks);
+    }
+  }
+
+
+  /** Merges sorted pieces, flipping between two sets of arrays. */
+  static abstract class Merger {
+    /** Merge [low, mid) and [mid, high) from the source into the destination. */
+    abstract void merge(int low, int mid, int high);
+    /** Swap the source and destination arrays after each round. */
+    abstract void flip();
+    abstract int[] result();
+  }
+
+
+  /** Merge neighboring pieces in parallel until there's only one left. */
+  static int[] mergePieces(int[] bounds, final Merger merger) {
+    int pieceCount = bounds.length - 1;
+    for (int width = 1; width < pieceCount; width *= 2) {
+      List<Callable<Object>> tasks = new ArrayList<>();
+      for (int i = 0; i < pieceCount; i += 2*width) {
+        final int low = bounds[i];
+        final int mid = bounds[Math.min(i + width, pieceCount)];
+        final int high = bounds[Math.min(i + 2*width, pieceCount)];
+        tasks.add(new Callable<Object>() {
+          public Object call() {
+            merger.merge(low, mid, high);  // just copies when mid == high
+            return null;
+          }
+        });
+      }
+      invoke(tasks);
+      merger.flip();
+    }
+    return merger.result();
+  }
+
+
+  static void invoke(List<Callable<Object>> tasks) {
+    try {
+      for (Future<Object> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class StringDict {
   protected String[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private DictIndex indices = new DictIndex();
 
 
   public StringDict() {
@@ -64,7 +63,7 @@ public class StringDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = pieces[1];
-        indices.put(keys[count], count);
+        indices.put(keys, keys[count]);
         count++;
       }
     }
@@ -82,7 +81,7 @@ public class StringDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -104,7 +103,7 @@ public class StringDict {
     for (int i = 0; i < count; i++) {
       keys[i] = pairs[i][0];
       values[i] = pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, keys[i]);
     }
   }
 
@@ -157,7 +156,7 @@ public class StringDict {
     keys = newKeys;
     values = newValues;
     count = length;
-    resetIndices();
+    indices.truncate(length);
   }
 
 
@@ -169,15 +168,7 @@ public class StringDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
-  }
-
-
-  private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.clear();
   }
 
 
@@ -399,14 +390,14 @@ public class StringDict {
     if (index < 0 || index >= count) {
       throw new ArrayIndexOutOfBoundsException(index);
     }
+    indices.set(index, key);
     keys[index] = key;
     values[index] = value;
   }
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.get(keys, what);
   }
 
 
@@ -424,7 +415,7 @@ public class StringDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(key, Integer.valueOf(count));
+    indices.add(key);
     keys[count] = key;
     values[count] = value;
     count++;
@@ -450,12 +441,11 @@ public class StringDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     String value = values[index];
-    indices.remove(keys[index]);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
+    indices.remove(index);
     count--;
     keys[count] = null;
     values[count] = null;
@@ -471,9 +461,7 @@ public class StringDict {
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
+    indices.swap(a, b);
   }
 
 
@@ -546,10 +534,15 @@ public class StringDict {
         StringDict.this.swap(a, b);
       }
     };
-    s.run();
-
-    // Set the indices after sort/swaps (performance fix 160411)
-    resetIndices();
+    // sort the positions, then move everything once
+    int[] order = s.order();
+    String[] oldKeys = PApplet.subset(keys, 0, order.length);
+    String[] oldValues = PApplet.subset(values, 0, order.length);
+    for (int i = 0; i < order.length; i++) {
+      keys[i] = oldKeys[order[i]];
+      values[i] = oldValues[order[i]];
+    }
+    indices.reorder(order);
   }
 
 
@@ -558,9 +551,7 @@ public class StringDict {
     StringDict outgoing = new StringDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
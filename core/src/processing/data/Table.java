@@ -25,14 +25,20 @@ package processing.data;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -80,6 +86,8 @@ public class Table {
   String[] columnTitles;
   HashMapBlows[] columnCategories;
   HashMap<String, Integer> columnIndices;
+  /** Lookup tables for the values in each column, see createIndex() */
+  ColumnIndex[] valueIndices;
 
   protected Object[] columns;  // [column]
 
@@ -90,6 +98,20 @@ public class Table {
   static public final int FLOAT = 3;
   static public final int DOUBLE = 4;
   static public final int CATEGORY = 5;
+  /**
+   * Text stored as UTF-8 bytes in a single array, rather than as one
+   * String object per entry. Uses far less memory for large columns of
+   * text, though a new String is created each time an entry is read.
+   */
+  static public final int COMPACT = 6;
+
+  /** Only keep rows that have a match in the other table, see join() */
+  static public final int INNER_JOIN = 0;
+  /** Keep every row from this table, even if it has no match */
+  static public final int LEFT_JOIN = 1;
+  /** Keep every row from both tables */
+  static public final int OUTER_JOIN = 2;
+
   int[] columnTypes;
 
   protected RowIterator rowIterator;
@@ -142,6 +164,9 @@ public class Table {
    * <li>tsv - parse the table as tab-separated values
    * <li>newlines - this CSV file contains newlines inside individual cells
    * <li>header - this table has a header (title) row
+   * <li>parallel - parse a CSV or TSV file using all available processors
+   * <li>typed - choose INT, LONG, FLOAT, DOUBLE, or CATEGORY for each column
+   * based on the first 1000 rows (or use typed=N to sample N rows)
    * </ul>
    *
    * @nowebref
@@ -302,8 +327,8 @@ public class Table {
   */
 
 
-  static final String[] loadExtensions = { "csv", "tsv", "ods", "bin" };
-  static final String[] saveExtensions = { "csv", "tsv", "ods", "bin", "html" };
+  static final String[] loadExtensions = { "csv", "tsv", "ods", "bin", "cbin" };
+  static final String[] saveExtensions = { "csv", "tsv", "ods", "bin", "cbin", "html" };
 
   static public String extensionOptions(boolean loading, String filename, String options) {
     String extension = PApplet.checkExtension(filename);
@@ -329,6 +354,8 @@ public class Table {
     boolean header = false;
     String extension = null;
     boolean binary = false;
+    boolean parallel = false;
+    int inferCount = 0;
     String encoding = "UTF-8";
 
     String worksheet = null;
@@ -351,8 +378,19 @@ public class Table {
         } else if (opt.equals("bin")) {
           binary = true;
           extension = "bin";
+        } else if (opt.equals("cbin")) {
+          extension = "cbin";
         } else if (opt.equals("header")) {
           header = true;
+        } else if (opt.equals("parallel")) {
+          parallel = true;
+        } else if (opt.equals("typed")) {
+          inferCount = INFER_COUNT_DEFAULT;
+        } else if (opt.startsWith("typed=")) {
+          inferCount = PApplet.parseInt(opt.substring(6), 0);
+          if (inferCount < 1) {
+            throw new IllegalArgumentException("'" + opt + "' must specify a number of rows to sample");
+          }
         } else if (opt.startsWith(sheetParam)) {
           worksheet = opt.substring(sheetParam.length());
         } else if (opt.startsWith("dictionary=")) {
@@ -372,20 +410,14 @@ public class Table {
     if (binary) {
       loadBinary(input);
 
+    } else if (extension.equals("cbin")) {
+      loadColumnar(input);
+
     } else if (extension.equals("ods")) {
       odsParse(input, worksheet, header);
 
     } else {
-      InputStreamReader isr = new InputStreamReader(input, encoding);
-      BufferedReader reader = new BufferedReader(isr);
-
-      // strip out the Unicode BOM, if present
-      reader.mark(1);
-      int c = reader.read();
-      // if not the BOM, back up to the beginning again
-      if (c != '\uFEFF') {
-        reader.reset();
-      }
+      BufferedReader reader = createReader(input, encoding);
 
       /*
        if (awfulCSV) {
@@ -396,19 +428,52 @@ public class Table {
         parseBasic(reader, header, false);
       }
       */
-      parseBasic(reader, header, "tsv".equals(extension));
+      if (parallel) {
+        parseParallel(reader, header, "tsv".equals(extension), inferCount);
+      } else {
+        parseBasic(reader, header, "tsv".equals(extension), inferCount);
+      }
+    }
+  }
+
+
+  /**
+   * Wrap a stream for reading text with the specified encoding,
+   * stripping the Unicode BOM from the beginning if present.
+   */
+  static BufferedReader createReader(InputStream input,
+                                     String encoding) throws IOException {
+    InputStreamReader isr = new InputStreamReader(input, encoding);
+    BufferedReader reader = new BufferedReader(isr);
+
+    // strip out the Unicode BOM, if present
+    reader.mark(1);
+    int c = reader.read();
+    // if not the BOM, back up to the beginning again
+    if (c != '\uFEFF') {
+      reader.reset();
     }
+    return reader;
   }
 
 
   protected void parseBasic(BufferedReader reader,
                             boolean header, boolean tsv) throws IOException {
+    parseBasic(reader, header, tsv, 0);
+  }
+
+
+  /**
+   * @param inferCount number of rows to read before choosing types for the
+   *                   STRING columns, or 0 to leave the column types alone
+   */
+  protected void parseBasic(BufferedReader reader, boolean header,
+                            boolean tsv, int inferCount) throws IOException {
     String line = null;
     int row = 0;
     if (rowCount == 0) {
       setRowCount(10);
     }
-    //int prev = 0;  //-1;
     try {
       while ((line = reader.readLine()) != null) {
         if (row == getRowCount()) {
@@ -418,32 +483,20 @@ public class Table {
           setColumnTitles(tsv ? PApplet.split(line, '\t') : splitLineCSV(line, reader));
           header = false;
         } else {
-          setRow(row, tsv ? PApplet.split(line, '\t') : splitLineCSV(line, reader));
-          row++;
-        }
-
-        if (row % 10000 == 0) {
-        /*
-        // this is problematic unless we're going to calculate rowCount first
-        if (row < rowCount) {
-          int pct = (100 * row) / rowCount;
-          if (pct != prev) {  // also prevents "0%" from showing up
-            System.out.println(pct + "%");
-            prev = pct;
-          }
-        }
-         */
-          try {
-            // Sleep this thread so that the GC can catch up
-            Thread.sleep(10);
-          } catch (InterruptedException e) {
-            e.printStackTrace();
+          if (row == inferCount && inferCount > 0) {
+            inferColumnTypes(row);
           }
+          parseLine(row, line, reader, tsv);
+          row++;
         }
       }
     } catch (Exception e) {
       throw new RuntimeException("Error reading table on line " + row, e);
     }
+    if (row <= inferCount && inferCount > 0) {
+      // fewer rows than the sample size, so haven't done this yet
+      inferColumnTypes(row);
+    }
     // shorten or lengthen based on what's left
     if (row != getRowCount()) {
       setRowCount(row);
@@ -451,6 +504,505 @@ public class Table {
   }
 
 
+  /**
+   * Parse a line of text into the specified row. Unless the line has quotes
+   * (which may contain separators, escapes, or span several lines), the
+   * entries are read straight from the characters of the line, and numbers
+   * for INT, LONG, FLOAT, and DOUBLE columns are parsed without creating
+   * a String for each entry.
+   * @return the number of entries found on the line
+   */
+  protected int parseLine(int row, String line,
+                          BufferedReader reader, boolean tsv) throws IOException {
+    if (!tsv && line.indexOf('\"') != -1) {
+      String[] pieces = splitLineCSV(line, reader);
+      setRow(row, pieces);
+      return pieces.length;
+    }
+    char separator = tsv ? '\t' : ',';
+    int length = line.length();
+    if (lineChars == null || lineChars.length < length) {
+      lineChars = new char[Math.max(length, 128)];
+    }
+    char[] c = lineChars;
+    line.getChars(0, length, c, 0);
+
+    int col = 0;
+    int start = 0;
+    for (int i = 0; i <= length; i++) {
+      if (i == length || c[i] == separator) {
+        ensureColumn(col);
+        setRowCol(row, col++, c, start, i);
+        start = i + 1;
+      }
+    }
+    return col;
+  }
+
+
+  char[] lineChars;
+
+  static final float[] FLOAT_POW10 = {
+    1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+  static final double[] DOUBLE_POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+
+  /**
+   * Set an entry from a range of characters. Plain integers and decimals
+   * (no exponents, and not too many digits) are handled directly. Anything
+   * else falls back to the same parsing used by setRowCol(int, int, Object),
+   * so the results are the same either way.
+   */
+  protected void setRowCol(int row, int col, char[] c, int start, int stop) {
+    switch (columnTypes[col]) {
+      case INT:
+        if (parseIntChars(c, start, stop, (int[]) columns[col], row)) {
+          return;
+        }
+        break;
+      case LONG:
+        if (parseLongChars(c, start, stop, (long[]) columns[col], row)) {
+          return;
+        }
+        break;
+      case FLOAT:
+        if (parseFloatChars(c, start, stop, (float[]) columns[col], row)) {
+          return;
+        }
+        break;
+      case DOUBLE:
+        if (parseDoubleChars(c, start, stop, (double[]) columns[col], row)) {
+          return;
+        }
+        break;
+    }
+    setRowCol(row, col, new String(c, start, stop - start));
+  }
+
+
+  static boolean parseIntChars(char[] c, int start, int stop,
+                               int[] data, int index) {
+    boolean negative = false;
+    if (start < stop && (c[start] == '-' || c[start] == '+')) {
+      negative = c[start++] == '-';
+    }
+    // nine digits or fewer can't overflow an int
+    if (start == stop || stop - start > 9) {
+      return false;
+    }
+    int value = 0;
+    for (int i = start; i < stop; i++) {
+      int digit = c[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return false;
+      }
+      value = value*10 + digit;
+    }
+    data[index] = negative ? -value : value;
+    return true;
+  }
+
+
+  static boolean parseLongChars(char[] c, int start, int stop,
+                                long[] data, int index) {
+    boolean negative = false;
+    if (start < stop && (c[start] == '-' || c[start] == '+')) {
+      negative = c[start++] == '-';
+    }
+    if (start == stop || stop - start > 18) {
+      return false;
+    }
+    long value = 0;
+    for (int i = start; i < stop; i++) {
+      int digit = c[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return false;
+      }
+      value = value*10 + digit;
+    }
+    data[index] = negative ? -value : value;
+    return true;
+  }
+
+
+  /**
+   * Parse the digits of a plain decimal number (like -12.345) into
+   * decimal[0] (the digits as an integer) and decimal[1] (the number of
+   * digits after the decimal point).
+   * @return 1 if negative, 0 if positive, or -1 if not a plain decimal
+   */
+  static int parseDecimalChars(char[] c, int start, int stop,
+                               long limit, long[] decimal) {
+    int sign = 0;
+    if (start < stop && (c[start] == '-' || c[start] == '+')) {
+      sign = (c[start++] == '-') ? 1 : 0;
+    }
+    long mantissa = 0;
+    int fraction = 0;
+    int digitCount = 0;
+    boolean point = false;
+    for (int i = start; i < stop; i++) {
+      char ch = c[i];
+      if (ch >= '0' && ch <= '9') {
+        mantissa = mantissa*10 + (ch - '0');
+        if (mantissa > limit) {
+          return -1;
+        }
+        digitCount++;
+        if (point) {
+          fraction++;
+        }
+      } else if (ch == '.' && !point) {
+        point = true;
+      } else {
+        return -1;
+      }
+    }
+    if (digitCount == 0) {
+      return -1;
+    }
+    decimal[0] = mantissa;
+    decimal[1] = fraction;
+    return sign;
+  }
+
+
+  final long[] decimal = new long[2];
+
+  // The digits are only used when they (and the power of ten) can be
+  // represented exactly, so the division is correctly rounded and matches
+  // Float.parseFloat() and Double.parseDouble().
+
+  boolean parseFloatChars(char[] c, int start, int stop,
+                          float[] data, int index) {
+    int sign = parseDecimalChars(c, start, stop, 1 << 24, decimal);
+    if (sign == -1 || decimal[1] >= FLOAT_POW10.length) {
+      return false;
+    }
+    float value = (float) decimal[0] / FLOAT_POW10[(int) decimal[1]];
+    data[index] = (sign == 1) ? -value : value;
+    return true;
+  }
+
+
+  boolean parseDoubleChars(char[] c, int start, int stop,
+                           double[] data, int index) {
+    int sign = parseDecimalChars(c, start, stop, 1L << 53, decimal);
+    if (sign == -1 || decimal[1] >= DOUBLE_POW10.length) {
+      return false;
+    }
+    double value = (double) decimal[0] / DOUBLE_POW10[(int) decimal[1]];
+    data[index] = (sign == 1) ? -value : value;
+    return true;
+  }
+
+
+  static final int INFER_COUNT_DEFAULT = 1000;
+
+
+  /**
+   * Choose a type for each STRING column, based on the contents of the
+   * first few rows. Columns that already have a type are left alone.
+   * @param sampleCount number of rows to examine
+   */
+  protected void inferColumnTypes(int sampleCount) {
+    for (int col = 0; col < columns.length; col++) {
+      if (columnTypes[col] == STRING) {
+        int type = inferColumnType((String[]) columns[col], sampleCount);
+        if (type != STRING) {
+          setColumnType(col, type);
+        }
+      }
+    }
+  }
+
+
+  static int inferColumnType(String[] entries, int sampleCount) {
+    boolean isInt = true;
+    boolean isLong = true;
+    boolean isNumber = true;
+    boolean isDouble = false;
+    int found = 0;
+    HashSet<String> unique = new HashSet<>();
+
+    for (int row = 0; row < sampleCount; row++) {
+      String s = entries[row];
+      if (s == null || s.length() == 0) {
+        continue;  // empty entries will be "missing" for any type
+      }
+      found++;
+      unique.add(s);
+      if (isNumber && !isPlainNumber(s)) {
+        isInt = isLong = isNumber = false;
+      }
+      if (isLong) {
+        try {
+          long value = Long.parseLong(s);
+          if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            isInt = false;
+          }
+        } catch (NumberFormatException nfe) {
+          isInt = isLong = false;
+        }
+      }
+      if (!isLong && isNumber) {
+        try {
+          double value = Double.parseDouble(s);
+          if (Math.abs(value) > Float.MAX_VALUE || significantDigits(s) > 7) {
+            isDouble = true;
+          }
+        } catch (NumberFormatException nfe) {
+          isNumber = false;
+        }
+      }
+    }
+    if (found == 0) {
+      return STRING;
+    } else if (isInt) {
+      return INT;
+    } else if (isLong) {
+      return LONG;
+    } else if (isNumber) {
+      return isDouble ? DOUBLE : FLOAT;
+    } else if (unique.size() * 10 <= found) {
+      // on average, each value shows up at least ten times
+      return CATEGORY;
+    }
+    return STRING;
+  }
+
+
+  /**
+   * True if this has only digits, a sign, a decimal point, or an exponent.
+   * Also rejects numbers with leading zeros (zip codes, ids) since they'd
+   * be mangled by converting them to numbers.
+   */
+  static boolean isPlainNumber(String s) {
+    int start = (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+    if (s.length() > start+1 && s.charAt(start) == '0' &&
+        s.charAt(start+1) != '.') {
+      return false;
+    }
+    for (int i = start; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if ((c < '0' || c > '9') && c != '.' &&
+          c != 'e' && c != 'E' && c != '-' && c != '+') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  static int significantDigits(String s) {
+    int count = 0;
+    boolean leading = true;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == 'e' || c == 'E') {
+        break;
+      } else if (c >= '1' && c <= '9') {
+        leading = false;
+        count++;
+      } else if (c == '0' && !leading) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+
+  /** Files smaller than this (in chars) are not worth splitting up. */
+  static final int PARALLEL_PIECE_MIN = 1 << 18;
+
+
+  /**
+   * Parse using all available processors. The file is read into memory,
+   * split at line breaks that aren't inside quoted fields, and each piece
+   * is handed to parseBasic() on a separate thread. The pieces are then
+   * joined together, so the result is identical to calling parseBasic()
+   * on the whole file.
+   */
+  protected void parseParallel(BufferedReader reader, boolean header,
+                               final boolean tsv, int inferCount) throws IOException {
+    if (header) {
+      String line = reader.readLine();
+      if (line != null) {
+        setColumnTitles(tsv ? PApplet.split(line, '\t') : splitLineCSV(line, reader));
+      }
+    }
+
+    char[] text = new char[1 << 16];
+    int length = 0;
+    int count;
+    while ((count = reader.read(text, length, text.length - length)) != -1) {
+      length += count;
+      if (length == text.length) {
+        text = PApplet.expand(text);
+      }
+    }
+
+    int start = 0;
+    if (inferCount > 0) {
+      // Choose the column types from the first rows before splitting up,
+      // so that all the pieces are parsed with the same types.
+      start = skipLines(text, 0, length, inferCount, tsv);
+      parseBasic(new BufferedReader(new CharArrayReader(text, 0, start)),
+                 false, tsv, inferCount);
+    }
+
+    int proc = Runtime.getRuntime().availableProcessors();
+    int pieceCount = Math.max(1, Math.min(proc, (length - start) / PARALLEL_PIECE_MIN));
+    int[] bounds = findPieceBounds(text, start, length, pieceCount, tsv);
+
+    List<Callable<Table>> tasks = new ArrayList<>();
+    for (int i = 0; i < bounds.length - 1; i++) {
+      final Table piece = new Table();
+      piece.setColumnTypes(columnTypes);
+      piece.missingString = missingString;
+      piece.missingInt = missingInt;
+      piece.missingLong = missingLong;
+      piece.missingFloat = missingFloat;
+      piece.missingDouble = missingDouble;
+      piece.missingCategory = missingCategory;
+
+      final BufferedReader pieceReader =
+        new BufferedReader(new CharArrayReader(text, bounds[i], bounds[i+1] - bounds[i]));
+      tasks.add(new Callable<Table>() {
+        public Table call() throws IOException {
+          piece.parseBasic(pieceReader, false, tsv);
+          return piece;
+        }
+      });
+    }
+
+    Table[] pieces = new Table[tasks.size()];
+    try {
+      List<Future<Table>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+      for (int i = 0; i < pieces.length; i++) {
+        pieces[i] = results.get(i).get();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    if (inferCount == 0) {
+      setRowCount(0);
+    }
+    appendPieces(pieces);
+  }
+
+
+  /**
+   * Find (roughly evenly spaced) offsets where the text can be split into
+   * separately parseable pieces. Each offset is the start of a line that
+   * isn't inside a quoted CSV field.
+   * @return offsets of the pieces, beginning with start and ending with length
+   */
+  static int[] findPieceBounds(char[] text, int start, int length,
+                               int pieceCount, boolean tsv) {
+    IntList bounds = new IntList();
+    bounds.append(start);
+    int pieceLength = (length - start) / pieceCount;
+    int target = start + pieceLength;
+    boolean quoted = false;
+    for (int i = start; i < length && bounds.size() < pieceCount; i++) {
+      char c = text[i];
+      if (c == '\"' && !tsv) {
+        // escaped quotes ("") toggle this twice, so it stays accurate
+        quoted = !quoted;
+      } else if (!quoted && i >= target && (c == '\n' || c == '\r')) {
+        if (c == '\r' && i+1 < length && text[i+1] == '\n') {
+          i++;
+        }
+        if (i+1 < length) {
+          bounds.append(i+1);
+          target = i+1 + pieceLength;
+        }
+      }
+    }
+    bounds.append(length);
+    return bounds.array();
+  }
+
+
+  /**
+   * Find the offset of the start of the line after the specified number of
+   * lines, not counting line breaks that are inside quoted CSV fields.
+   */
+  static int skipLines(char[] text, int start, int length,
+                       int lineCount, boolean tsv) {
+    boolean quoted = false;
+    for (int i = start; i < length; i++) {
+      char c = text[i];
+      if (c == '\"' && !tsv) {
+        quoted = !quoted;
+      } else if (!quoted && (c == '\n' || c == '\r')) {
+        if (c == '\r' && i+1 < length && text[i+1] == '\n') {
+          i++;
+        }
+        if (--lineCount == 0) {
+          return i+1;
+        }
+      }
+    }
+    return length;
+  }
+
+
+  /**
+   * Append the rows of several tables that share this table's column types,
+   * copying whole column arrays rather than going row by row. Entries from
+   * CATEGORY columns are mapped into this table's categories (and copied
+   * as-is when the categories already line up).
+   */
+  void appendPieces(Table[] pieces) {
+    int total = rowCount;
+    int columnCount = columns.length;
+    // counted first, in case this table is also one of the pieces
+    int[] pieceCounts = new int[pieces.length];
+    for (int i = 0; i < pieces.length; i++) {
+      pieceCounts[i] = pieces[i].rowCount;
+      total += pieceCounts[i];
+      columnCount = Math.max(columnCount, pieces[i].columns.length);
+    }
+    ensureColumn(columnCount - 1);
+    int offset = rowCount;
+    staleIndices();  // cheaper to rebuild than to add every row
+    setRowCount(total);
+
+    for (int i = 0; i < pieces.length; i++) {
+      Table piece = pieces[i];
+      int pieceRows = pieceCounts[i];
+      for (int col = 0; col < piece.columns.length; col++) {
+        if (piece.columnTypes[col] != columnTypes[col]) {
+          throw new IllegalArgumentException("Column " + col + " does not have the same type in both tables");
+        }
+        if (columnTypes[col] == CATEGORY) {
+          int[] remap = remapCategories(piece.columnCategories[col], columnCategories[col]);
+          copyCategories((int[]) piece.columns[col], (int[]) columns[col],
+                         offset, pieceRows, remap);
+        } else if (columnTypes[col] == COMPACT) {
+          ((CompactStrings) columns[col]).copy((CompactStrings) piece.columns[col],
+                                              pieceRows, offset);
+        } else {
+          System.arraycopy(piece.columns[col], 0, columns[col], offset, pieceRows);
+        }
+      }
+      offset += pieceRows;
+    }
+  }
+
+
 //  public void convertTSV(BufferedReader reader, File outputFile) throws IOException {
 //    convertBasic(reader, true, outputFile);
 //  }
@@ -1027,146 +1579,39 @@ public class Table {
   // because that's passed to the constructor parameter (inserted by the
   // compiler) of an inner class by the runtime.
 
-  /** incomplete, do not use */
+  /**
+   * Create an object for each row, and store them in an array field of
+   * enclosingObject (usually the sketch) named fieldName. The array's
+   * component type is the class that's created, see DataBinding for how
+   * its fields are matched to columns.
+   *
+   * @see DataBinding
+   */
   public void parseInto(Object enclosingObject, String fieldName) {
-    Class<?> target = null;
-    Object outgoing = null;
-    Field targetField = null;
     try {
-      // Object targetObject,
-      // Class target -> get this from the type of fieldName
-//      Class sketchClass = sketch.getClass();
-      Class<?> sketchClass = enclosingObject.getClass();
-      targetField = sketchClass.getDeclaredField(fieldName);
-//      PApplet.println("found " + targetField);
+      Field targetField = enclosingObject.getClass().getDeclaredField(fieldName);
       Class<?> targetArray = targetField.getType();
       if (!targetArray.isArray()) {
-        // fieldName is not an array
-      } else {
-        target = targetArray.getComponentType();
-        outgoing = Array.newInstance(target, getRowCount());
-      }
-    } catch (NoSuchFieldException e) {
-      e.printStackTrace();
-    } catch (SecurityException e) {
-      e.printStackTrace();
-    }
-
-//    Object enclosingObject = sketch;
-//    PApplet.println("enclosing obj is " + enclosingObject);
-    Class<?> enclosingClass = target.getEnclosingClass();
-    Constructor<?> con = null;
-
-    try {
-      if (enclosingClass == null) {
-        con = target.getDeclaredConstructor();  //new Class[] { });
-//        PApplet.println("no enclosing class");
-      } else {
-        con = target.getDeclaredConstructor(new Class[] { enclosingClass });
-//        PApplet.println("enclosed by " + enclosingClass.getName());
-      }
-      if (!con.isAccessible()) {
-//        System.out.println("setting constructor to public");
-        con.setAccessible(true);
-      }
-    } catch (SecurityException e) {
-      e.printStackTrace();
-    } catch (NoSuchMethodException e) {
-      e.printStackTrace();
-    }
-
-    Field[] fields = target.getDeclaredFields();
-    ArrayList<Field> inuse = new ArrayList<>();
-    for (Field field : fields) {
-      String name = field.getName();
-      if (getColumnIndex(name, false) != -1) {
-//        System.out.println("found field " + name);
-        if (!field.isAccessible()) {
-//          PApplet.println("  changing field access");
-          field.setAccessible(true);
-        }
-        inuse.add(field);
-      } else {
-//        System.out.println("skipping field " + name);
+        throw new IllegalArgumentException(fieldName + " is not an array");
       }
-    }
-
-    int index = 0;
-    try {
-      for (TableRow row : rows()) {
-        Object item = null;
-        if (enclosingClass == null) {
-          //item = target.newInstance();
-          item = con.newInstance();
-        } else {
-          item = con.newInstance(new Object[] { enclosingObject });
-        }
-        //Object item = defaultCons.newInstance(new Object[] { });
-        for (Field field : inuse) {
-          String name = field.getName();
-          //PApplet.println("gonna set field " + name);
-
-          if (field.getType() == String.class) {
-            field.set(item, row.getString(name));
-
-          } else if (field.getType() == Integer.TYPE) {
-            field.setInt(item, row.getInt(name));
-
-          } else if (field.getType() == Long.TYPE) {
-            field.setLong(item, row.getLong(name));
+      Class<?> target = targetArray.getComponentType();
+      List<Object> items = new ArrayList<>(getRowCount());
+      DataBinding.of(target, enclosingObject).loadInto(this, items);
 
-          } else if (field.getType() == Float.TYPE) {
-            field.setFloat(item, row.getFloat(name));
-
-          } else if (field.getType() == Double.TYPE) {
-            field.setDouble(item, row.getDouble(name));
-
-          } else if (field.getType() == Boolean.TYPE) {
-            String content = row.getString(name);
-            if (content != null) {
-              // Only bother setting if it's true,
-              // otherwise false by default anyway.
-              if (content.toLowerCase().equals("true") ||
-                  content.equals("1")) {
-                field.setBoolean(item, true);
-              }
-            }
-//            if (content == null) {
-//              field.setBoolean(item, false);  // necessary?
-//            } else if (content.toLowerCase().equals("true")) {
-//              field.setBoolean(item, true);
-//            } else if (content.equals("1")) {
-//              field.setBoolean(item, true);
-//            } else {
-//              field.setBoolean(item, false);  // necessary?
-//            }
-          } else if (field.getType() == Character.TYPE) {
-            String content = row.getString(name);
-            if (content != null && content.length() > 0) {
-              // Otherwise set to \0 anyway
-              field.setChar(item, content.charAt(0));
-            }
-          }
-        }
-//        list.add(item);
-        Array.set(outgoing, index++, item);
+      Object outgoing = Array.newInstance(target, items.size());
+      for (int i = 0; i < items.size(); i++) {
+        Array.set(outgoing, i, items.get(i));
       }
       if (!targetField.isAccessible()) {
-//        PApplet.println("setting target field to public");
         targetField.setAccessible(true);
       }
       // Set the array in the sketch
-//      targetField.set(sketch, outgoing);
       targetField.set(enclosingObject, outgoing);
 
-    } catch (InstantiationException e) {
+    } catch (NoSuchFieldException e) {
       e.printStackTrace();
     } catch (IllegalAccessException e) {
       e.printStackTrace();
-    } catch (IllegalArgumentException e) {
-      e.printStackTrace();
-    } catch (InvocationTargetException e) {
-      e.printStackTrace();
     }
   }
 
@@ -1219,6 +1664,13 @@ public class Table {
         e.printStackTrace();
         return false;
       }
+    } else if (extension.equals("cbin")) {
+      try {
+        saveColumnar(output);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
     }
     writer.flush();
     writer.close();
@@ -1530,7 +1982,8 @@ public class Table {
     for (TableRow row : rows()) {
       zos.write(rowStart);
       for (int i = 0; i < getColumnCount(); i++) {
-        if (columnTypes[i] == STRING || columnTypes[i] == CATEGORY) {
+        if (columnTypes[i] == STRING || columnTypes[i] == CATEGORY ||
+            columnTypes[i] == COMPACT) {
           saveStringODS(zos, row.getString(i));
         } else {
           saveNumberODS(zos, row.getString(i));
@@ -1647,6 +2100,7 @@ public class Table {
       for (int col = 0; col < getColumnCount(); col++) {
         switch (columnTypes[col]) {
         case STRING:
+        case COMPACT:
           String str = row.getString(col);
           if (str == null) {
             output.writeBoolean(false);
@@ -1726,6 +2180,9 @@ public class Table {
       case CATEGORY:
         columns[column] = new int[rowCount];
         break;
+      case COMPACT:
+        columns[column] = new CompactStrings(rowCount);
+        break;
       default:
         throw new IllegalArgumentException(newType + " is not a valid column type.");
       }
@@ -1752,6 +2209,7 @@ public class Table {
       for (int col = 0; col < columnCount; col++) {
         switch (columnTypes[col]) {
         case STRING:
+        case COMPACT:
           String str = null;
           if (input.readBoolean()) {
             str = input.readUTF();
@@ -1786,9 +2244,388 @@ public class Table {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
-  /**
-   * @webref table:method
-   * @brief Adds a new column to a table
+  // The columnar binary format (.cbin) stores each column as a single block,
+  // so that MappedTable can map the file into memory and read the columns
+  // in place. It's laid out as:
+  //   int magic, int header length, header (same fields as the .bin format)
+  //   one block per column, each starting on an 8 byte boundary:
+  //     INT, CATEGORY, LONG, FLOAT, DOUBLE: the values (big-endian)
+  //     STRING: long[rowCount] end offsets of each entry (~end for null),
+  //       followed by the UTF-8 bytes for all the entries
+  //   footer: long[columnCount] block offsets, long footer offset, int magic
+
+  static final int COLUMNAR_MAGIC = 0x9007C0B1;
+
+
+  protected void saveColumnar(OutputStream os) throws IOException {
+    DataOutputStream output =
+      new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    writeColumnarHeader(new DataOutputStream(headerBytes));
+    output.writeInt(COLUMNAR_MAGIC);
+    output.writeInt(headerBytes.size());
+    headerBytes.writeTo(output);
+    long position = 8 + headerBytes.size();
+
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    long[] offsets = new long[getColumnCount()];
+    for (int col = 0; col < getColumnCount(); col++) {
+      position += writePadding(output, position);
+      offsets[col] = position;
+      position += writeColumnBlock(output, col, buffer);
+    }
+    position += writePadding(output, position);
+    for (long offset : offsets) {
+      output.writeLong(offset);
+    }
+    output.writeLong(position);
+    output.writeInt(COLUMNAR_MAGIC);
+
+    output.flush();
+    output.close();
+  }
+
+
+  protected void writeColumnarHeader(DataOutputStream output) throws IOException {
+    output.writeInt(getRowCount());
+    output.writeInt(getColumnCount());
+    if (columnTitles != null) {
+      output.writeBoolean(true);
+      for (String title : columnTitles) {
+        output.writeUTF(title == null ? "" : title);
+      }
+    } else {
+      output.writeBoolean(false);
+    }
+    for (int i = 0; i < getColumnCount(); i++) {
+      output.writeInt(columnTypes[i]);
+    }
+    for (int i = 0; i < getColumnCount(); i++) {
+      if (columnTypes[i] == CATEGORY) {
+        columnCategories[i].write(output);
+      }
+    }
+    if (missingString == null) {
+      output.writeBoolean(false);
+    } else {
+      output.writeBoolean(true);
+      output.writeUTF(missingString);
+    }
+    output.writeInt(missingInt);
+    output.writeLong(missingLong);
+    output.writeFloat(missingFloat);
+    output.writeDouble(missingDouble);
+    output.writeInt(missingCategory);
+    output.flush();
+  }
+
+
+  /**
+   * Read the header of a columnar file. Sets the titles, types, categories,
+   * and missing values, but doesn't allocate any rows.
+   * @return the number of rows in the file
+   */
+  protected int readColumnarHeader(DataInputStream input) throws IOException {
+    int count = input.readInt();
+    int columnCount = input.readInt();
+    setColumnCount(columnCount);
+    if (input.readBoolean()) {
+      String[] titles = new String[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        titles[i] = input.readUTF();
+      }
+      setColumnTitles(titles);
+    }
+    for (int col = 0; col < columnCount; col++) {
+      int type = input.readInt();
+      if (type < STRING || type > COMPACT) {
+        throw new IOException(type + " is not a valid column type.");
+      }
+      setColumnType(col, type);
+    }
+    for (int col = 0; col < columnCount; col++) {
+      if (columnTypes[col] == CATEGORY) {
+        columnCategories[col] = new HashMapBlows(input);
+      }
+    }
+    missingString = input.readBoolean() ? input.readUTF() : null;
+    missingInt = input.readInt();
+    missingLong = input.readLong();
+    missingFloat = input.readFloat();
+    missingDouble = input.readDouble();
+    missingCategory = input.readInt();
+    return count;
+  }
+
+
+  static int writePadding(OutputStream output, long position) throws IOException {
+    int padding = (int) ((8 - (position & 7)) & 7);
+    for (int i = 0; i < padding; i++) {
+      output.write(0);
+    }
+    return padding;
+  }
+
+
+  /** Write a column as a block of values, returns the number of bytes. */
+  protected long writeColumnBlock(DataOutputStream output, int col,
+                                  ByteBuffer buffer) throws IOException {
+    buffer.clear();
+    int count = getRowCount();
+    switch (columnTypes[col]) {
+    case INT:
+    case CATEGORY: {
+      int[] data = (int[]) columns[col];
+      int step = buffer.capacity() / 4;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        buffer.asIntBuffer().put(data, i, n);
+        output.write(buffer.array(), 0, n * 4);
+      }
+      return count * 4L;
+    }
+    case LONG: {
+      long[] data = (long[]) columns[col];
+      int step = buffer.capacity() / 8;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        buffer.asLongBuffer().put(data, i, n);
+        output.write(buffer.array(), 0, n * 8);
+      }
+      return count * 8L;
+    }
+    case FLOAT: {
+      float[] data = (float[]) columns[col];
+      int step = buffer.capacity() / 4;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        buffer.asFloatBuffer().put(data, i, n);
+        output.write(buffer.array(), 0, n * 4);
+      }
+      return count * 4L;
+    }
+    case DOUBLE: {
+      double[] data = (double[]) columns[col];
+      int step = buffer.capacity() / 8;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        buffer.asDoubleBuffer().put(data, i, n);
+        output.write(buffer.array(), 0, n * 8);
+      }
+      return count * 8L;
+    }
+    case STRING: {
+      String[] data = (String[]) columns[col];
+      // first the offsets, so the readers know where each entry ends
+      long end = 0;
+      for (int i = 0; i < count; i++) {
+        if (data[i] == null) {
+          output.writeLong(~end);
+        } else {
+          end += utf8Length(data[i]);
+          output.writeLong(end);
+        }
+      }
+      for (int i = 0; i < count; i++) {
+        if (data[i] != null) {
+          output.write(data[i].getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      return count * 8L + end;
+    }
+    case COMPACT: {
+      // same layout as STRING, but the bytes are already UTF-8
+      CompactStrings data = (CompactStrings) columns[col];
+      long end = 0;
+      for (int i = 0; i < count; i++) {
+        int length = data.lengths[i];
+        if (length == CompactStrings.NULL_LENGTH) {
+          output.writeLong(~end);
+        } else {
+          end += length;
+          output.writeLong(end);
+        }
+      }
+      for (int i = 0; i < count; i++) {
+        if (data.lengths[i] > 0) {
+          output.write(data.data, data.starts[i], data.lengths[i]);
+        }
+      }
+      return count * 8L + end;
+    }
+    default:
+      throw new IllegalArgumentException("Column type " + columnTypes[col] + " not supported.");
+    }
+  }
+
+
+  /**
+   * Number of bytes needed for the UTF-8 version of a String, including
+   * the '?' that getBytes() uses to replace unpaired surrogates.
+   */
+  static int utf8Length(String str) {
+    int length = str.length();
+    int bytes = 0;
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        bytes += 1;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i+1 < length &&
+                 Character.isLowSurrogate(str.charAt(i+1))) {
+        bytes += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        bytes += 1;
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+
+
+  /**
+   * Load a columnar (.cbin) file from a stream, reading each column block
+   * straight into its array. Use MappedTable to read a file in place
+   * without loading all of it.
+   */
+  protected void loadColumnar(InputStream is) throws IOException {
+    DataInputStream input =
+      new DataInputStream(new BufferedInputStream(is, 1 << 16));
+    int magic = input.readInt();
+    if (magic != COLUMNAR_MAGIC) {
+      throw new IOException("Not a columnar binary table (magic was " + PApplet.hex(magic) + ")");
+    }
+    int headerLength = input.readInt();
+    byte[] header = new byte[headerLength];
+    input.readFully(header);
+    int count = readColumnarHeader(new DataInputStream(new ByteArrayInputStream(header)));
+    setRowCount(count);
+
+    long position = 8 + headerLength;
+    byte[] chunk = new byte[1 << 16];
+    ByteBuffer buffer = ByteBuffer.wrap(chunk);
+    for (int col = 0; col < getColumnCount(); col++) {
+      int padding = (int) ((8 - (position & 7)) & 7);
+      input.readFully(chunk, 0, padding);
+      position += padding + readColumnBlock(input, col, chunk, buffer);
+    }
+    input.close();
+  }
+
+
+  protected long readColumnBlock(DataInputStream input, int col,
+                                 byte[] chunk, ByteBuffer buffer) throws IOException {
+    int count = getRowCount();
+    switch (columnTypes[col]) {
+    case INT:
+    case CATEGORY: {
+      int[] data = (int[]) columns[col];
+      int step = chunk.length / 4;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        input.readFully(chunk, 0, n * 4);
+        buffer.clear();
+        buffer.asIntBuffer().get(data, i, n);
+      }
+      return count * 4L;
+    }
+    case LONG: {
+      long[] data = (long[]) columns[col];
+      int step = chunk.length / 8;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        input.readFully(chunk, 0, n * 8);
+        buffer.clear();
+        buffer.asLongBuffer().get(data, i, n);
+      }
+      return count * 8L;
+    }
+    case FLOAT: {
+      float[] data = (float[]) columns[col];
+      int step = chunk.length / 4;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        input.readFully(chunk, 0, n * 4);
+        buffer.clear();
+        buffer.asFloatBuffer().get(data, i, n);
+      }
+      return count * 4L;
+    }
+    case DOUBLE: {
+      double[] data = (double[]) columns[col];
+      int step = chunk.length / 8;
+      for (int i = 0; i < count; i += step) {
+        int n = Math.min(step, count - i);
+        input.readFully(chunk, 0, n * 8);
+        buffer.clear();
+        buffer.asDoubleBuffer().get(data, i, n);
+      }
+      return count * 8L;
+    }
+    case STRING: {
+      String[] data = (String[]) columns[col];
+      long[] ends = new long[count];
+      for (int i = 0; i < count; i++) {
+        ends[i] = input.readLong();
+      }
+      long start = 0;
+      for (int i = 0; i < count; i++) {
+        if (ends[i] < 0) {
+          data[i] = null;
+        } else {
+          int length = (int) (ends[i] - start);
+          byte[] bytes = (length <= chunk.length) ? chunk : new byte[length];
+          input.readFully(bytes, 0, length);
+          data[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+          start = ends[i];
+        }
+      }
+      return count * 8L + start;
+    }
+    case COMPACT: {
+      CompactStrings data = (CompactStrings) columns[col];
+      long start = 0;
+      for (int i = 0; i < count; i++) {
+        long end = input.readLong();
+        if (end < 0) {
+          data.lengths[i] = CompactStrings.NULL_LENGTH;
+        } else {
+          data.lengths[i] = (int) (end - start);
+          start = end;
+        }
+      }
+      if (start > Integer.MAX_VALUE - 8) {
+        throw new IOException("Too much text for a compact column");
+      }
+      data.data = new byte[(int) Math.max(16, start)];
+      input.readFully(data.data, 0, (int) start);
+      data.used = (int) start;
+      data.unused = 0;
+      int position = 0;
+      for (int i = 0; i < count; i++) {
+        data.starts[i] = position;
+        if (data.lengths[i] > 0) {
+          position += data.lengths[i];
+        }
+      }
+      return count * 8L + start;
+    }
+    default:
+      throw new IllegalArgumentException("Column type " + columnTypes[col] + " not supported.");
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * @webref table:method
+   * @brief Adds a new column to a table
    * @see Table#removeColumn(String)
    */
   public void addColumn() {
@@ -1845,6 +2682,18 @@ public class Table {
     }
     columnCategories = catTemp;
 
+    if (valueIndices != null) {
+      ColumnIndex[] indexTemp = new ColumnIndex[columns.length + 1];
+      System.arraycopy(valueIndices, 0, indexTemp, 0, index);
+      System.arraycopy(valueIndices, index, indexTemp, index+1, columns.length - index);
+      valueIndices = indexTemp;
+      for (int i = index + 1; i < valueIndices.length; i++) {
+        if (valueIndices[i] != null) {
+          valueIndices[i].column = i;
+        }
+      }
+    }
+
     Object[] temp = new Object[columns.length + 1];
     System.arraycopy(columns, 0, temp, 0, index);
     System.arraycopy(columns, index, temp, index+1, columns.length - index);
@@ -1857,6 +2706,7 @@ public class Table {
       case DOUBLE: columns[index] = new double[rowCount]; break;
       case STRING: columns[index] = new String[rowCount]; break;
       case CATEGORY: columns[index] = new int[rowCount]; break;
+      case COMPACT: columns[index] = new CompactStrings(rowCount); break;
     }
   }
 
@@ -1891,6 +2741,18 @@ public class Table {
     columns = columnsTemp;
     columnCategories = catTemp;
 
+    if (valueIndices != null) {
+      ColumnIndex[] indexTemp = new ColumnIndex[newCount];
+      System.arraycopy(valueIndices, 0, indexTemp, 0, column);
+      System.arraycopy(valueIndices, column+1, indexTemp, column, newCount - column);
+      valueIndices = indexTemp;
+      for (int i = column; i < newCount; i++) {
+        if (valueIndices[i] != null) {
+          valueIndices[i].column = i;
+        }
+      }
+    }
+
     if (columnTitles != null) {
       String[] titlesTemp = new String[newCount];
       for (int i = 0; i < column; i++) {
@@ -1936,6 +2798,9 @@ public class Table {
       columnTypes = PApplet.expand(columnTypes, newCount);
       columnCategories = (HashMapBlows[])
         PApplet.expand(columnCategories, newCount);
+      if (valueIndices != null) {
+        valueIndices = (ColumnIndex[]) PApplet.expand(valueIndices, newCount);
+      }
     }
   }
 
@@ -1960,6 +2825,8 @@ public class Table {
       type = DOUBLE;
     } else if (columnType.equals("category")) {
       type = CATEGORY;
+    } else if (columnType.equals("compact")) {
+      type = COMPACT;
     } else {
       throw new IllegalArgumentException("'" + columnType + "' is not a valid column type.");
     }
@@ -1970,7 +2837,7 @@ public class Table {
   /**
    * Set the data type for a column so that using it is more efficient.
    * @param column the column to change
-   * @param columnType One of int, long, float, double, string, or category.
+   * @param columnType One of int, long, float, double, string, category, or compact.
    */
   public void setColumnType(int column, String columnType) {
     setColumnType(column, parseColumnType(columnType));
@@ -2055,12 +2922,24 @@ public class Table {
         columns[column] = indexData;
         break;
       }
+      case COMPACT: {
+        if (columnTypes[column] != COMPACT) {
+          CompactStrings compactData = new CompactStrings(rowCount);
+          for (int row = 0; row < rowCount; row++) {
+            compactData.set(row, getString(row, column));
+          }
+          compactData.pack();  // trim the extra space
+          columns[column] = compactData;
+        }
+        break;
+      }
       default: {
         throw new IllegalArgumentException("That's not a valid column type.");
       }
     }
 //    System.out.println("new type is " + newType);
     columnTypes[column] = newType;
+    staleIndex(column);
   }
 
 
@@ -2280,6 +3159,7 @@ public class Table {
 
 
   public void setRowCount(int newCount) {
+    int oldCount = rowCount;
     if (newCount != rowCount) {
       if (newCount > 1000000) {
         System.out.print("Note: setting maximum row count to " + PApplet.nfc(newCount));
@@ -2293,6 +3173,7 @@ public class Table {
           case DOUBLE: columns[col] = PApplet.expand((double[]) columns[col], newCount); break;
           case STRING: columns[col] = PApplet.expand((String[]) columns[col], newCount); break;
           case CATEGORY: columns[col] = PApplet.expand((int[]) columns[col], newCount); break;
+          case COMPACT: ((CompactStrings) columns[col]).resize(newCount); break;
         }
         if (newCount > 1000000) {
           try {
@@ -2308,6 +3189,19 @@ public class Table {
       }
     }
     rowCount = newCount;
+
+    if (valueIndices != null) {
+      for (int col = 0; col < columns.length; col++) {
+        ColumnIndex index = liveIndex(col);
+        if (index != null) {
+          if (newCount > oldCount) {
+            index.rowsAdded(oldCount, newCount);
+          } else if (newCount < oldCount) {
+            index.stale = true;
+          }
+        }
+      }
+    }
   }
 
 
@@ -2351,6 +3245,7 @@ public class Table {
         setDouble(row, col, source.getDouble(col));
         break;
       case STRING:
+      case COMPACT:
         setString(row, col, source.getString(col));
         break;
       case CATEGORY:
@@ -2379,6 +3274,11 @@ public class Table {
 
 
   public void addRows(Table source) {
+    if (Arrays.equals(source.columnTypes, columnTypes)) {
+      // same layout, so copy whole columns
+      appendPieces(new Table[] { source });
+      return;
+    }
     int index = getRowCount();
     setRowCount(index + source.getRowCount());
     for (TableRow row : source.rows()) {
@@ -2426,11 +3326,22 @@ public class Table {
           columns[col] = stringTemp;
           break;
         }
+        case COMPACT:
+          ((CompactStrings) columns[col]).insert(insert);
+          break;
       }
     }
     // Need to increment before setRow(), because it calls ensureBounds()
     // https://github.com/processing/processing/issues/5406
     ++rowCount;
+    if (valueIndices != null) {
+      for (int col = 0; col < columns.length; col++) {
+        ColumnIndex index = liveIndex(col);
+        if (index != null) {
+          index.rowInserted(insert);
+        }
+      }
+    }
     setRow(insert, columnData);
   }
 
@@ -2443,6 +3354,14 @@ public class Table {
    * @see Table#clearRows()
    */
   public void removeRow(int row) {
+    if (valueIndices != null) {
+      for (int col = 0; col < columns.length; col++) {
+        ColumnIndex index = liveIndex(col);
+        if (index != null) {
+          index.rowRemoved(row);
+        }
+      }
+    }
     for (int col = 0; col < columns.length; col++) {
       switch (columnTypes[col]) {
         case CATEGORY:
@@ -2491,7 +3410,11 @@ public class Table {
           System.arraycopy(columns[col], 0, stringTemp, 0, row);
           System.arraycopy(columns[col], row+1, stringTemp, row, (rowCount - row) - 1);
           columns[col] = stringTemp;
+          break;
         }
+        case COMPACT:
+          ((CompactStrings) columns[col]).remove(row);
+          break;
       }
     }
     rowCount--;
@@ -2553,7 +3476,10 @@ public class Table {
     ensureBounds(row, pieces.length - 1);
     // pieces.length may be less than columns.length, so loop over pieces
     for (int col = 0; col < pieces.length; col++) {
+      ColumnIndex index = liveIndex(col);
+      if (index != null) index.remove(row);
       setRowCol(row, col, pieces[col]);
+      if (index != null) index.add(row);
     }
   }
 
@@ -2633,12 +3559,34 @@ public class Table {
           }
         }
         break;
+      case COMPACT:
+        ((CompactStrings) columns[col]).set(row, piece == null ? null : String.valueOf(piece));
+        break;
       default:
         throw new IllegalArgumentException("That's not a valid column type.");
     }
   }
 
 
+  /**
+   * Reset the entries in a row to their empty defaults, starting at the
+   * specified column. Used when re-filling rows that are being recycled.
+   */
+  void clearRow(int row, int startColumn) {
+    for (int col = startColumn; col < columns.length; col++) {
+      switch (columnTypes[col]) {
+        case STRING: ((String[]) columns[col])[row] = null; break;
+        case INT: ((int[]) columns[col])[row] = 0; break;
+        case LONG: ((long[]) columns[col])[row] = 0; break;
+        case FLOAT: ((float[]) columns[col])[row] = 0; break;
+        case DOUBLE: ((double[]) columns[col])[row] = 0; break;
+        case CATEGORY: ((int[]) columns[col])[row] = 0; break;
+        case COMPACT: ((CompactStrings) columns[col]).set(row, (String) null); break;
+      }
+    }
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
   /**
@@ -2694,6 +3642,26 @@ public class Table {
   }
 
 
+  /**
+   * A view of all the rows and columns of this table, which can then be
+   * filtered, sorted, or narrowed to fewer columns without copying the
+   * data. See TableView for details.
+   */
+  public TableView view() {
+    return new TableView(this, IntList.fromRange(rowCount).array(),
+                         IntList.fromRange(columns.length).array());
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public TableView view(int[] indices) {
+    return new TableView(this, indices.clone(),
+                         IntList.fromRange(columns.length).array());
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -3099,7 +4067,7 @@ public class Table {
    * @see Table#getStringColumn(String)
    */
   public void setInt(int row, int column, int value) {
-    if (columnTypes[column] == STRING) {
+    if (columnTypes[column] == STRING || columnTypes[column] == COMPACT) {
       setString(row, column, String.valueOf(value));
 
     } else {
@@ -3109,7 +4077,10 @@ public class Table {
         throw new IllegalArgumentException("Column " + column + " is not an int column.");
       }
       int[] intData = (int[]) columns[column];
+      ColumnIndex index = liveIndex(column);
+      if (index != null) index.remove(row);
       intData[row] = value;
+      if (index != null) index.add(row);
     }
   }
 
@@ -3178,7 +4149,7 @@ public class Table {
 
 
   public void setLong(int row, int column, long value) {
-    if (columnTypes[column] == STRING) {
+    if (columnTypes[column] == STRING || columnTypes[column] == COMPACT) {
       setString(row, column, String.valueOf(value));
 
     } else {
@@ -3187,7 +4158,10 @@ public class Table {
         throw new IllegalArgumentException("Column " + column + " is not a 'long' column.");
       }
       long[] longData = (long[]) columns[column];
+      ColumnIndex index = liveIndex(column);
+      if (index != null) index.remove(row);
       longData[row] = value;
+      if (index != null) index.add(row);
     }
   }
 
@@ -3280,7 +4254,7 @@ public class Table {
    * @see Table#getStringColumn(String)
    */
   public void setFloat(int row, int column, float value) {
-    if (columnTypes[column] == STRING) {
+    if (columnTypes[column] == STRING || columnTypes[column] == COMPACT) {
       setString(row, column, String.valueOf(value));
 
     } else {
@@ -3289,7 +4263,10 @@ public class Table {
         throw new IllegalArgumentException("Column " + column + " is not a float column.");
       }
       float[] longData = (float[]) columns[column];
+      ColumnIndex index = liveIndex(column);
+      if (index != null) index.remove(row);
       longData[row] = value;
+      if (index != null) index.add(row);
     }
   }
 
@@ -3357,7 +4334,7 @@ public class Table {
 
 
   public void setDouble(int row, int column, double value) {
-    if (columnTypes[column] == STRING) {
+    if (columnTypes[column] == STRING || columnTypes[column] == COMPACT) {
       setString(row, column, String.valueOf(value));
 
     } else {
@@ -3366,7 +4343,10 @@ public class Table {
         throw new IllegalArgumentException("Column " + column + " is not a 'double' column.");
       }
       double[] doubleData = (double[]) columns[column];
+      ColumnIndex index = liveIndex(column);
+      if (index != null) index.remove(row);
       doubleData[row] = value;
+      if (index != null) index.add(row);
     }
   }
 
@@ -3478,6 +4458,8 @@ public class Table {
     if (columnTypes[column] == STRING) {
       String[] stringData = (String[]) columns[column];
       return stringData[row];
+    } else if (columnTypes[column] == COMPACT) {
+      return ((CompactStrings) columns[column]).get(row);
     } else if (columnTypes[column] == CATEGORY) {
       int cat = getInt(row, column);
       if (cat == missingCategory) {
@@ -3489,7 +4471,7 @@ public class Table {
         return null;
       }
     } else if (columnTypes[column] == DOUBLE) {
-      if (Double.isNaN(getFloat(row, column))) {
+      if (Double.isNaN(getDouble(row, column))) {
         return null;
       }
     }
@@ -3510,6 +4492,7 @@ public class Table {
    */
   public void setMissingString(String value) {
     missingString = value;
+    staleIndices();  // missing categories are looked up with this
   }
 
 
@@ -3528,11 +4511,20 @@ public class Table {
    */
   public void setString(int row, int column, String value) {
     ensureBounds(row, column);
+    ColumnIndex index = liveIndex(column);
+    if (columnTypes[column] == COMPACT) {
+      if (index != null) index.remove(row);
+      ((CompactStrings) columns[column]).set(row, value);
+      if (index != null) index.add(row);
+      return;
+    }
     if (columnTypes[column] != STRING) {
       throw new IllegalArgumentException("Column " + column + " is not a String column.");
     }
     String[] stringData = (String[]) columns[column];
+    if (index != null) index.remove(row);
     stringData[row] = value;
+    if (index != null) index.add(row);
   }
 
   /**
@@ -3585,64 +4577,452 @@ public class Table {
 
 
   /**
-   * Return the row that contains the first String that matches.
-   * @param value the String to match
-   * @param column ID number of the column to search
+   * Build an index for a column, so that findRow(), findRows(), and the
+   * range searches no longer need to look through every row. The index is
+   * kept up to date as values are set and rows are added or removed, so it
+   * only needs to be created once. Use this for columns that are searched
+   * over and over, i.e. when matching up the rows of two tables.
+   *
+   * @param column ID number of the column to index
    */
-  public int findRowIndex(String value, int column) {
+  public void createIndex(int column) {
     checkColumn(column);
-    if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
-      if (value == null) {
-        for (int row = 0; row < rowCount; row++) {
-          if (stringData[row] == null) return row;
-        }
-      } else {
-        for (int row = 0; row < rowCount; row++) {
-          if (stringData[row] != null && stringData[row].equals(value)) {
-            return row;
-          }
-        }
-      }
-    } else {  // less efficient, includes conversion as necessary
-      for (int row = 0; row < rowCount; row++) {
-        String str = getString(row, column);
-        if (str == null) {
-          if (value == null) {
-            return row;
-          }
-        } else if (str.equals(value)) {
-          return row;
-        }
-      }
+    if (valueIndices == null) {
+      valueIndices = new ColumnIndex[columns.length];
+    }
+    if (valueIndices[column] == null) {
+      valueIndices[column] = new ColumnIndex(this, column);
     }
-    return -1;
   }
 
 
   /**
-   * Return the row that contains the first String that matches.
-   * @param value the String to match
-   * @param columnName title of the column to search
+   * @param columnName title of the column to index
    */
-  public int findRowIndex(String value, String columnName) {
-    return findRowIndex(value, getColumnIndex(columnName));
+  public void createIndex(String columnName) {
+    createIndex(checkColumnIndex(columnName));
   }
 
 
   /**
-   * Return a list of rows that contain the String passed in. If there are no
-   * matches, a zero length array will be returned (not a null array).
-   * @param value the String to match
-   * @param column ID number of the column to search
+   * Remove the index for a column (if there is one), freeing its memory
+   * and no longer updating it when values change.
    */
-  public int[] findRowIndices(String value, int column) {
-    int[] outgoing = new int[rowCount];
-    int count = 0;
+  public void removeIndex(int column) {
+    if (valueIndices != null && column < valueIndices.length) {
+      valueIndices[column] = null;
+    }
+  }
 
-    checkColumn(column);
-    if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+
+  public void removeIndex(String columnName) {
+    removeIndex(checkColumnIndex(columnName));
+  }
+
+
+  public boolean hasIndex(int column) {
+    return valueIndices != null && column < valueIndices.length &&
+      valueIndices[column] != null;
+  }
+
+
+  /** Index for a column, or null if it has none. */
+  protected ColumnIndex getIndex(int column) {
+    return (valueIndices == null) ? null : valueIndices[column];
+  }
+
+
+  /**
+   * Index for a column that needs to be told about changes, or null if the
+   * column has no index, or it's going to be rebuilt anyway.
+   */
+  protected ColumnIndex liveIndex(int column) {
+    if (valueIndices != null) {
+      ColumnIndex index = valueIndices[column];
+      if (index != null && !index.stale) {
+        return index;
+      }
+    }
+    return null;
+  }
+
+
+  /** Rebuild the index for this column the next time it's used. */
+  protected void staleIndex(int column) {
+    if (valueIndices != null && valueIndices[column] != null) {
+      valueIndices[column].stale = true;
+    }
+  }
+
+
+  /** Rebuild all indices the next time they're used. */
+  protected void staleIndices() {
+    if (valueIndices != null) {
+      for (ColumnIndex index : valueIndices) {
+        if (index != null) {
+          index.stale = true;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Lookup table for the values in a column. Rows are grouped by their
+   * String value (the same thing findRowIndex() compares against), so the
+   * results are identical to searching without the index. A sorted copy of
+   * the column is also built the first time it's needed by a range search.
+   */
+  static class ColumnIndex {
+    Table table;
+    int column;
+
+    /** Row numbers (in order) for each value in the column */
+    HashMap<String, IntList> rows = new HashMap<>();
+
+    /** Set after changes that aren't tracked, to rebuild on next use */
+    boolean stale = true;
+
+    // Sorted versions of the column for range searches. Both are thrown
+    // out whenever anything changes, since a single insert is O(n) anyway.
+    int[] numberRows;
+    double[] numbers;
+    int[] stringRows;
+    String[] strings;
+
+
+    ColumnIndex(Table table, int column) {
+      this.table = table;
+      this.column = column;
+    }
+
+
+    /** The value of an entry, or null if it can't be read. */
+    String key(int row) {
+      if (table.columnTypes[column] == CATEGORY) {
+        // new rows are zeroes, which may not be a category (yet)
+        int cat = ((int[]) table.columns[column])[row];
+        if (cat == table.missingCategory) {
+          return table.missingString;
+        }
+        HashMapBlows categories = table.columnCategories[column];
+        return (cat >= 0 && categories.hasCategory(cat)) ? categories.key(cat) : null;
+      }
+      return table.getString(row, column);
+    }
+
+
+    void update() {
+      if (stale) {
+        rows.clear();
+        numbers = null;
+        strings = null;
+        for (int row = 0; row < table.rowCount; row++) {
+          add(row);
+        }
+        stale = false;
+      }
+    }
+
+
+    void add(int row) {
+      String key = key(row);
+      IntList list = rows.get(key);
+      if (list == null) {
+        list = new IntList(1);
+        rows.put(key, list);
+      }
+      if (list.count == 0 || list.data[list.count-1] < row) {
+        list.append(row);  // most common case, rows added at the end
+      } else {
+        int pos = Arrays.binarySearch(list.data, 0, list.count, row);
+        if (pos < 0) {
+          list.insert(-(pos + 1), row);
+        }
+      }
+      numbers = null;
+      strings = null;
+    }
+
+
+    void remove(int row) {
+      String key = key(row);
+      IntList list = rows.get(key);
+      if (list != null) {
+        int pos = Arrays.binarySearch(list.data, 0, list.count, row);
+        if (pos >= 0) {
+          if (list.count == 1) {
+            rows.remove(key);
+          } else {
+            list.remove(pos);
+          }
+        }
+      }
+      numbers = null;
+      strings = null;
+    }
+
+
+    /** Called after an empty row is inserted. */
+    void rowInserted(int row) {
+      for (IntList list : rows.values()) {
+        for (int i = list.count - 1; i >= 0 && list.data[i] >= row; --i) {
+          list.data[i]++;
+        }
+      }
+      add(row);
+    }
+
+
+    /** Called before a row is removed. */
+    void rowRemoved(int row) {
+      remove(row);
+      for (IntList list : rows.values()) {
+        for (int i = list.count - 1; i >= 0 && list.data[i] > row; --i) {
+          list.data[i]--;
+        }
+      }
+    }
+
+
+    /** New rows go at the end, so they can be appended in order */
+    void rowsAdded(int oldCount, int newCount) {
+      for (int row = oldCount; row < newCount; row++) {
+        add(row);
+      }
+    }
+
+
+    int first(String value) {
+      update();
+      IntList list = rows.get(value);
+      return (list == null) ? -1 : list.data[0];
+    }
+
+
+    int[] all(String value) {
+      update();
+      IntList list = rows.get(value);
+      return (list == null) ? new int[0] : list.array();
+    }
+
+
+    /** Rows whose value matches the regexp, testing each value once. */
+    int[] match(String regexp) {
+      update();
+      IntList outgoing = new IntList();
+      for (Map.Entry<String, IntList> entry : rows.entrySet()) {
+        String key = entry.getKey();
+        if (key != null && PApplet.match(key, regexp) != null) {
+          outgoing.append(entry.getValue());
+        }
+      }
+      outgoing.sort();
+      return outgoing.array();
+    }
+
+
+    int[] range(double low, double high) {
+      update();
+      if (numbers == null) {
+        int count = 0;
+        numberRows = new int[table.rowCount];
+        numbers = new double[table.rowCount];
+        for (int row = 0; row < table.rowCount; row++) {
+          double value = table.getDouble(row, column);
+          if (!Double.isNaN(value)) {
+            numberRows[count] = row;
+            numbers[count++] = value;
+          }
+        }
+        numberRows = PApplet.subset(numberRows, 0, count);
+        numbers = PApplet.subset(numbers, 0, count);
+        new Sort() {
+          public int size() {
+            return numbers.length;
+          }
+
+          public int compare(int a, int b) {
+            return Double.compare(numbers[a], numbers[b]);
+          }
+
+          public void swap(int a, int b) {
+            double temp = numbers[a];
+            numbers[a] = numbers[b];
+            numbers[b] = temp;
+            int row = numberRows[a];
+            numberRows[a] = numberRows[b];
+            numberRows[b] = row;
+          }
+        }.run();
+      }
+      // first entry >= low, and first entry >= high
+      int start = 0;
+      int stop = numbers.length;
+      while (start < stop) {
+        int mid = (start + stop) >>> 1;
+        if (numbers[mid] < low) start = mid + 1; else stop = mid;
+      }
+      int end = start;
+      stop = numbers.length;
+      while (end < stop) {
+        int mid = (end + stop) >>> 1;
+        if (numbers[mid] < high) end = mid + 1; else stop = mid;
+      }
+      int[] outgoing = PApplet.subset(numberRows, start, end - start);
+      Arrays.sort(outgoing);
+      return outgoing;
+    }
+
+
+    int[] range(String low, String high) {
+      update();
+      if (strings == null) {
+        int count = 0;
+        for (Map.Entry<String, IntList> entry : rows.entrySet()) {
+          if (entry.getKey() != null) {
+            count += entry.getValue().count;
+          }
+        }
+        stringRows = new int[count];
+        strings = new String[count];
+        count = 0;
+        for (Map.Entry<String, IntList> entry : rows.entrySet()) {
+          String key = entry.getKey();
+          if (key != null) {
+            IntList list = entry.getValue();
+            for (int i = 0; i < list.count; i++) {
+              stringRows[count] = list.data[i];
+              strings[count++] = key;
+            }
+          }
+        }
+        new Sort() {
+          public int size() {
+            return strings.length;
+          }
+
+          public int compare(int a, int b) {
+            return strings[a].compareTo(strings[b]);
+          }
+
+          public void swap(int a, int b) {
+            String temp = strings[a];
+            strings[a] = strings[b];
+            strings[b] = temp;
+            int row = stringRows[a];
+            stringRows[a] = stringRows[b];
+            stringRows[b] = row;
+          }
+        }.run();
+      }
+      int start = 0;
+      int stop = strings.length;
+      while (start < stop) {
+        int mid = (start + stop) >>> 1;
+        if (strings[mid].compareTo(low) < 0) start = mid + 1; else stop = mid;
+      }
+      int end = start;
+      stop = strings.length;
+      while (end < stop) {
+        int mid = (end + stop) >>> 1;
+        if (strings[mid].compareTo(high) < 0) end = mid + 1; else stop = mid;
+      }
+      int[] outgoing = PApplet.subset(stringRows, start, end - start);
+      Arrays.sort(outgoing);
+      return outgoing;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Return the row that contains the first String that matches.
+   * @param value the String to match
+   * @param column ID number of the column to search
+   */
+  public int findRowIndex(String value, int column) {
+    checkColumn(column);
+    ColumnIndex index = getIndex(column);
+    if (index != null) {
+      return index.first(value);
+    }
+    if (columnTypes[column] == COMPACT) {
+      // compare the bytes directly, rather than creating Strings
+      CompactStrings data = (CompactStrings) columns[column];
+      byte[] bytes = (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+      for (int row = 0; row < rowCount; row++) {
+        if (data.equals(row, bytes)) {
+          return row;
+        }
+      }
+    } else if (columnTypes[column] == STRING) {
+      String[] stringData = (String[]) columns[column];
+      if (value == null) {
+        for (int row = 0; row < rowCount; row++) {
+          if (stringData[row] == null) return row;
+        }
+      } else {
+        for (int row = 0; row < rowCount; row++) {
+          if (stringData[row] != null && stringData[row].equals(value)) {
+            return row;
+          }
+        }
+      }
+    } else {  // less efficient, includes conversion as necessary
+      for (int row = 0; row < rowCount; row++) {
+        String str = getString(row, column);
+        if (str == null) {
+          if (value == null) {
+            return row;
+          }
+        } else if (str.equals(value)) {
+          return row;
+        }
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Return the row that contains the first String that matches.
+   * @param value the String to match
+   * @param columnName title of the column to search
+   */
+  public int findRowIndex(String value, String columnName) {
+    return findRowIndex(value, getColumnIndex(columnName));
+  }
+
+
+  /**
+   * Return a list of rows that contain the String passed in. If there are no
+   * matches, a zero length array will be returned (not a null array).
+   * @param value the String to match
+   * @param column ID number of the column to search
+   */
+  public int[] findRowIndices(String value, int column) {
+    checkColumn(column);
+    ColumnIndex index = getIndex(column);
+    if (index != null) {
+      return index.all(value);
+    }
+
+    int[] outgoing = new int[rowCount];
+    int count = 0;
+
+    if (columnTypes[column] == COMPACT) {
+      CompactStrings data = (CompactStrings) columns[column];
+      byte[] bytes = (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+      for (int row = 0; row < rowCount; row++) {
+        if (data.equals(row, bytes)) {
+          outgoing[count++] = row;
+        }
+      }
+    } else if (columnTypes[column] == STRING) {
+      String[] stringData = (String[]) columns[column];
       if (value == null) {
         for (int row = 0; row < rowCount; row++) {
           if (stringData[row] == null) {
@@ -3683,6 +5063,70 @@ public class Table {
   }
 
 
+  /**
+   * Return a list of rows whose values are at least low, and less than
+   * high. Values are compared as numbers (using getDouble), and entries
+   * that are missing or not numbers are skipped. Rows are returned in
+   * order, and if the column has an index (see createIndex), the search
+   * uses a sorted copy of the column instead of checking every row.
+   * @param low lowest value to include
+   * @param high values less than this will be included
+   * @param column ID number of the column to search
+   */
+  public int[] findRowIndicesInRange(double low, double high, int column) {
+    checkColumn(column);
+    ColumnIndex index = getIndex(column);
+    if (index != null) {
+      return index.range(low, high);
+    }
+    int[] outgoing = new int[rowCount];
+    int count = 0;
+    for (int row = 0; row < rowCount; row++) {
+      double value = getDouble(row, column);
+      if (value >= low && value < high) {  // false for NaN
+        outgoing[count++] = row;
+      }
+    }
+    return PApplet.subset(outgoing, 0, count);
+  }
+
+
+  /**
+   * @param columnName title of the column to search
+   */
+  public int[] findRowIndicesInRange(double low, double high, String columnName) {
+    return findRowIndicesInRange(low, high, checkColumnIndex(columnName));
+  }
+
+
+  /**
+   * Return a list of rows whose values are at least low, and less than
+   * high, compared alphabetically (using String.compareTo). Empty (null)
+   * entries are skipped.
+   */
+  public int[] findRowIndicesInRange(String low, String high, int column) {
+    checkColumn(column);
+    ColumnIndex index = getIndex(column);
+    if (index != null) {
+      return index.range(low, high);
+    }
+    int[] outgoing = new int[rowCount];
+    int count = 0;
+    for (int row = 0; row < rowCount; row++) {
+      String value = getString(row, column);
+      if (value != null && value.compareTo(low) >= 0 && value.compareTo(high) < 0) {
+        outgoing[count++] = row;
+      }
+    }
+    return PApplet.subset(outgoing, 0, count);
+  }
+
+
+  public int[] findRowIndicesInRange(String low, String high, String columnName) {
+    return findRowIndicesInRange(low, high, checkColumnIndex(columnName));
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
   /**
@@ -3766,6 +5210,11 @@ public class Table {
    */
   public int matchRowIndex(String regexp, int column) {
     checkColumn(column);
+    ColumnIndex index = getIndex(column);
+    if (index != null) {
+      int[] rows = index.match(regexp);
+      return (rows.length == 0) ? -1 : rows[0];
+    }
     if (columnTypes[column] == STRING) {
       String[] stringData = (String[]) columns[column];
       for (int row = 0; row < rowCount; row++) {
@@ -3804,10 +5253,15 @@ public class Table {
    * @param column ID number of the column to search
    */
   public int[] matchRowIndices(String regexp, int column) {
+    checkColumn(column);
+    ColumnIndex index = getIndex(column);
+    if (index != null) {
+      return index.match(regexp);
+    }
+
     int[] outgoing = new int[rowCount];
     int count = 0;
 
-    checkColumn(column);
     if (columnTypes[column] == STRING) {
       String[] stringData = (String[]) columns[column];
       for (int row = 0; row < rowCount; row++) {
@@ -3948,6 +5402,19 @@ public class Table {
           }
         }
       }
+      staleIndex(col);
+
+    } else if (columnTypes[col] == COMPACT) {
+      CompactStrings data = (CompactStrings) columns[col];
+      byte[] origBytes = (orig == null) ? null : orig.getBytes(StandardCharsets.UTF_8);
+      byte[] replacementBytes = (replacement == null) ?
+        null : replacement.getBytes(StandardCharsets.UTF_8);
+      for (int row = 0; row < rowCount; row++) {
+        if (data.equals(row, origBytes)) {
+          data.set(row, replacementBytes);
+        }
+      }
+      staleIndex(col);
     }
   }
 
@@ -3976,6 +5443,16 @@ public class Table {
           stringData[row] = stringData[row].replaceAll(regex, replacement);
         }
       }
+      staleIndex(column);
+    } else if (columnTypes[column] == COMPACT) {
+      CompactStrings data = (CompactStrings) columns[column];
+      for (int row = 0; row < rowCount; row++) {
+        String str = data.get(row);
+        if (str != null) {
+          data.set(row, str.replaceAll(regex, replacement));
+        }
+      }
+      staleIndex(column);
     } else {
       throw new IllegalArgumentException("replaceAll() can only be used on String columns");
     }
@@ -4134,6 +5611,16 @@ public class Table {
           stringData[row] = PApplet.trim(stringData[row]);
         }
       }
+      staleIndex(column);
+    } else if (columnTypes[column] == COMPACT) {
+      CompactStrings data = (CompactStrings) columns[column];
+      for (int row = 0; row < rowCount; row++) {
+        String str = data.get(row);
+        if (str != null) {
+          data.set(row, PApplet.trim(str));
+        }
+      }
+      staleIndex(column);
     }
   }
 
@@ -4240,6 +5727,13 @@ public class Table {
       return dataToIndex.size();
     }
 
+    HashMapBlows copy() {
+      HashMapBlows outgoing = new HashMapBlows();
+      outgoing.dataToIndex.putAll(dataToIndex);
+      outgoing.indexToData.addAll(indexToData);
+      return outgoing;
+    }
+
     void write(DataOutputStream output) throws IOException {
       output.writeInt(size());
       for (String str : indexToData) {
@@ -4323,104 +5817,184 @@ public class Table {
   }
 
 
+  /**
+   * Sort by several columns: rows are ordered by the first column, rows
+   * with the same value there are ordered by the second column, and so on.
+   */
+  public void sort(String... columnNames) {
+    int[] columns = new int[columnNames.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = checkColumnIndex(columnNames[i]);
+    }
+    sort(columns);
+  }
+
+
+  public void sort(int... columns) {
+    int[] order = IntList.fromRange(getRowCount()).array();
+    // the sort is stable, so work back from the last column
+    for (int i = columns.length - 1; i >= 0; --i) {
+      checkColumn(columns[i]);
+      order = sortOrder(columns[i], false, order);
+    }
+    reorderRows(order);
+  }
+
+
   protected void sort(final int column, final boolean reverse) {
-    final int[] order = IntList.fromRange(getRowCount()).array();
-    Sort s = new Sort() {
+    reorderRows(sortOrder(column, reverse, IntList.fromRange(getRowCount()).array()));
+  }
 
-      @Override
-      public int size() {
-        return getRowCount();
-      }
 
-      @Override
-      public int compare(int index1, int index2) {
-        int a = reverse ? order[index2] : order[index1];
-        int b = reverse ? order[index1] : order[index2];
+  /**
+   * Return a copy of rows, ordered by the values in a column. Rows with the
+   * same value stay in the same order, NaN values go last (even when
+   * reversed), and empty (null) String values sort the same as "".
+   * Number and category columns are radix sorted on their raw values.
+   * Larger tables are sorted in pieces on all available processors.
+   */
+  int[] sortOrder(int column, final boolean reverse, int[] rows) {
+    final int count = rows.length;
+    int[] order = rows.clone();
 
-        switch (getColumnType(column)) {
-        case INT:
-          return getInt(a, column) - getInt(b, column);
-        case LONG:
-          long diffl = getLong(a, column) - getLong(b, column);
-          return diffl == 0 ? 0 : (diffl < 0 ? -1 : 1);
-        case FLOAT:
-          float difff = getFloat(a, column) - getFloat(b, column);
-          return difff == 0 ? 0 : (difff < 0 ? -1 : 1);
-        case DOUBLE:
-          double diffd = getDouble(a, column) - getDouble(b, column);
-          return diffd == 0 ? 0 : (diffd < 0 ? -1 : 1);
-        case STRING:
-          String string1 = getString(a, column);
-          if (string1 == null) {
-            string1 = "";  // avoid NPE when cells are left empty
-          }
-          String string2 = getString(b, column);
-          if (string2 == null) {
-            string2 = "";
-          }
-          return string1.compareToIgnoreCase(string2);
-        case CATEGORY:
-          return getInt(a, column) - getInt(b, column);
-        default:
-          throw new IllegalArgumentException("Invalid column type: " + getColumnType(column));
+    switch (columnTypes[column]) {
+    case INT:
+    case CATEGORY:  // categories are sorted by their index
+      int[] intData = (int[]) columns[column];
+      int[] intKeys = new int[count];
+      for (int i = 0; i < count; i++) {
+        intKeys[i] = Sort.intKey(intData[order[i]], reverse);
+      }
+      Sort.parallelRadixSort(intKeys, order);
+      break;
+    case LONG:
+      long[] longData = (long[]) columns[column];
+      long[] longKeys = new long[count];
+      for (int i = 0; i < count; i++) {
+        longKeys[i] = Sort.longKey(longData[order[i]], reverse);
+      }
+      Sort.parallelRadixSort(longKeys, order);
+      break;
+    case FLOAT:
+      float[] floatData = (float[]) columns[column];
+      int[] floatKeys = new int[count];
+      for (int i = 0; i < count; i++) {
+        floatKeys[i] = Sort.floatKey(floatData[order[i]], reverse);
+      }
+      Sort.parallelRadixSort(floatKeys, order);
+      break;
+    case DOUBLE:
+      double[] doubleData = (double[]) columns[column];
+      long[] doubleKeys = new long[count];
+      for (int i = 0; i < count; i++) {
+        doubleKeys[i] = Sort.doubleKey(doubleData[order[i]], reverse);
+      }
+      Sort.parallelRadixSort(doubleKeys, order);
+      break;
+    case STRING:
+    case COMPACT:
+      final String[] stringKeys = new String[count];
+      for (int i = 0; i < count; i++) {
+        String str = getString(order[i], column);
+        stringKeys[i] = (str == null) ? "" : str;  // avoid NPE when cells are left empty
+      }
+      int[] sorted = new Sort() {
+        @Override
+        public int size() {
+          return count;
         }
+
+        @Override
+        public int compare(int a, int b) {
+          int diff = stringKeys[a].compareToIgnoreCase(stringKeys[b]);
+          return reverse ? -diff : diff;
+        }
+
+        @Override
+        public void swap(int a, int b) { }  // only using parallelOrder()
+      }.parallelOrder();
+      for (int i = 0; i < count; i++) {
+        sorted[i] = rows[sorted[i]];
       }
+      order = sorted;
+      break;
+    default:
+      throw new IllegalArgumentException("Invalid column type: " + getColumnType(column));
+    }
+    return order;
+  }
+
 
-      @Override
-      public void swap(int a, int b) {
-        int temp = order[a];
-        order[a] = order[b];
-        order[b] = temp;
+  /** Move the rows so that row i is the old row order[i]. */
+  protected void reorderRows(final int[] order) {
+    if (rowCount >= Sort.PARALLEL_MIN && getColumnCount() > 1) {
+      // each column is moved on its own, so they can all go at once
+      List<Callable<Object>> tasks = new ArrayList<>();
+      for (int col = 0; col < getColumnCount(); col++) {
+        final int column = col;
+        tasks.add(new Callable<Object>() {
+          public Object call() {
+            reorderColumn(column, order);
+            return null;
+          }
+        });
+      }
+      Sort.invoke(tasks);
+    } else {
+      for (int col = 0; col < getColumnCount(); col++) {
+        reorderColumn(col, order);
       }
+    }
+    staleIndices();
+  }
 
-    };
-    s.run();
 
-    //Object[] newColumns = new Object[getColumnCount()];
-    for (int col = 0; col < getColumnCount(); col++) {
-      switch (getColumnType(col)) {
-      case INT:
-      case CATEGORY:
-        int[] oldInt = (int[]) columns[col];
-        int[] newInt = new int[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newInt[row] = oldInt[order[row]];
-        }
-        columns[col] = newInt;
-        break;
-      case LONG:
-        long[] oldLong = (long[]) columns[col];
-        long[] newLong = new long[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newLong[row] = oldLong[order[row]];
-        }
-        columns[col] = newLong;
-        break;
-      case FLOAT:
-        float[] oldFloat = (float[]) columns[col];
-        float[] newFloat = new float[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newFloat[row] = oldFloat[order[row]];
-        }
-        columns[col] = newFloat;
-        break;
-      case DOUBLE:
-        double[] oldDouble = (double[]) columns[col];
-        double[] newDouble = new double[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newDouble[row] = oldDouble[order[row]];
-        }
-        columns[col] = newDouble;
-        break;
-      case STRING:
-        String[] oldString = (String[]) columns[col];
-        String[] newString = new String[rowCount];
-        for (int row = 0; row < getRowCount(); row++) {
-          newString[row] = oldString[order[row]];
-        }
-        columns[col] = newString;
-        break;
+  protected void reorderColumn(int col, int[] order) {
+    switch (getColumnType(col)) {
+    case INT:
+    case CATEGORY:
+      int[] oldInt = (int[]) columns[col];
+      int[] newInt = new int[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newInt[row] = oldInt[order[row]];
+      }
+      columns[col] = newInt;
+      break;
+    case LONG:
+      long[] oldLong = (long[]) columns[col];
+      long[] newLong = new long[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newLong[row] = oldLong[order[row]];
+      }
+      columns[col] = newLong;
+      break;
+    case FLOAT:
+      float[] oldFloat = (float[]) columns[col];
+      float[] newFloat = new float[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newFloat[row] = oldFloat[order[row]];
+      }
+      columns[col] = newFloat;
+      break;
+    case DOUBLE:
+      double[] oldDouble = (double[]) columns[col];
+      double[] newDouble = new double[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newDouble[row] = oldDouble[order[row]];
+      }
+      columns[col] = newDouble;
+      break;
+    case STRING:
+      String[] oldString = (String[]) columns[col];
+      String[] newString = new String[rowCount];
+      for (int row = 0; row < getRowCount(); row++) {
+        newString[row] = oldString[order[row]];
       }
+      columns[col] = newString;
+      break;
+    case COMPACT:
+      ((CompactStrings) columns[col]).reorder(order);
+      break;
     }
   }
 
@@ -4450,6 +6024,28 @@ public class Table {
   }
 
 
+  /**
+   * Group the rows by the values in a column, to get the sum, mean, min,
+   * max, or count of the rows that share each value.
+   * <pre>
+   * DoubleDict totals = table.groupBy("region").sum("sales");
+   * </pre>
+   * CATEGORY columns are the fastest to group by, since their values are
+   * already numbered.
+   *
+   * @param columnName title of the column with the values to group by
+   */
+  public TableGroups groupBy(String columnName) {
+    return groupBy(checkColumnIndex(columnName));
+  }
+
+
+  public TableGroups groupBy(int column) {
+    checkColumn(column);
+    return new TableGroups(this, column);
+  }
+
+
   public IntDict getOrder(String columnName) {
     return getOrder(getColumnIndex(columnName));
   }
@@ -4695,7 +6291,8 @@ public class Table {
       int row = rowSubset[i];
       for (int col = 0; col < columns.length; col++) {
         switch (columnTypes[col]) {
-          case STRING: newbie.setString(i, col, getString(row, col)); break;
+          case STRING:
+          case COMPACT: newbie.setString(i, col, getString(row, col)); break;
           case INT: newbie.setInt(i, col, getInt(row, col)); break;
           case LONG: newbie.setLong(i, col, getLong(row, col)); break;
           case FLOAT: newbie.setFloat(i, col, getFloat(row, col)); break;
@@ -4821,6 +6418,7 @@ public class Table {
     for (int col = 0; col < pieces.length; col++) {
       switch (columnTypes[col]) {
       case STRING:
+      case COMPACT:
         output.writeUTF(pieces[col]);
         break;
       case INT:
@@ -4856,6 +6454,7 @@ public class Table {
     for (int col = pieces.length; col < getColumnCount(); col++) {
       switch (columnTypes[col]) {
       case STRING:
+      case COMPACT:
         output.writeUTF("");
         break;
       case INT:
@@ -4917,6 +6516,619 @@ public class Table {
   */
 
 
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Make a new table with the rows of each table, one after another. The
+   * tables must have the same column types as the first, which also sets
+   * the column titles and missing values. Columns are copied whole, and
+   * CATEGORY columns are merged into the first table's categories.
+   */
+  static public Table concat(Table... tables) {
+    Table outgoing = new Table();
+    if (tables.length == 0) {
+      return outgoing;
+    }
+    Table first = tables[0];
+    outgoing.setColumnCount(first.getColumnCount());
+    if (first.columnTitles != null) {
+      outgoing.setColumnTitles(first.columnTitles.clone());
+    }
+    outgoing.copyMissing(first);
+    for (int col = 0; col < first.columns.length; col++) {
+      if (first.columnTypes[col] == CATEGORY) {
+        outgoing.columns[col] = new int[0];
+        outgoing.columnTypes[col] = CATEGORY;
+        outgoing.columnCategories[col] = first.columnCategories[col].copy();
+      } else {
+        outgoing.setColumnType(col, first.columnTypes[col]);
+      }
+    }
+    outgoing.appendPieces(tables);
+    return outgoing;
+  }
+
+
+  /**
+   * Same as join(other, keyColumn, INNER_JOIN).
+   */
+  public Table join(Table other, String keyColumn) {
+    return join(other, keyColumn, INNER_JOIN);
+  }
+
+
+  /**
+   * Make a new table that matches the rows of this table with the rows of
+   * another that have the same value in a key column. Each output row has
+   * the columns of this table, followed by the columns of the other table
+   * (except its key column). A row with several matches appears once for
+   * each of them.
+   *
+   * @param keyColumn title of the key column, in both tables
+   * @param type INNER_JOIN, LEFT_JOIN, or OUTER_JOIN
+   */
+  public Table join(Table other, String keyColumn, int type) {
+    return join(other, getColumnIndex(keyColumn),
+                other.getColumnIndex(keyColumn), type);
+  }
+
+
+  /**
+   * Hash join on a key column from each table. Keys are compared as
+   * numbers when both columns are INT or LONG, otherwise as text. Missing
+   * (null) keys never match. With INNER_JOIN, only rows that match are kept.
+   * LEFT_JOIN also keeps unmatched rows from this table, with missing values
+   * for the other table's columns. OUTER_JOIN keeps the unmatched rows from
+   * both tables.
+   */
+  public Table join(Table other, int column, int otherColumn, int type) {
+    if (type != INNER_JOIN && type != LEFT_JOIN && type != OUTER_JOIN) {
+      throw new IllegalArgumentException("Use INNER_JOIN, LEFT_JOIN, or OUTER_JOIN");
+    }
+    boolean numeric =
+      isIntegral(columnTypes[column]) && isIntegral(other.columnTypes[otherColumn]);
+
+    // number the keys from the other table, and chain together the rows
+    // for each, in order
+    KeyIds ids = new KeyIds(numeric);
+    int[] otherIds = other.keyIds(otherColumn, ids, true);
+    int[] first = new int[ids.count];
+    Arrays.fill(first, -1);
+    int[] next = new int[other.rowCount];
+    for (int row = other.rowCount - 1; row >= 0; row--) {
+      int id = otherIds[row];
+      if (id != -1) {
+        next[row] = first[id];
+        first[id] = row;
+      }
+    }
+
+    // look up each row of this table
+    int[] ourIds = keyIds(column, ids, false);
+    boolean[] matched = new boolean[first.length];
+    IntList ourRows = new IntList(rowCount);
+    IntList otherRows = new IntList(rowCount);
+    for (int row = 0; row < rowCount; row++) {
+      int id = ourIds[row];
+      if (id != -1 && first[id] != -1) {
+        matched[id] = true;
+        for (int match = first[id]; match != -1; match = next[match]) {
+          ourRows.append(row);
+          otherRows.append(match);
+        }
+      } else if (type != INNER_JOIN) {
+        ourRows.append(row);
+        otherRows.append(-1);
+      }
+    }
+    int matchedCount = ourRows.size();
+    if (type == OUTER_JOIN) {
+      for (int row = 0; row < other.rowCount; row++) {
+        int id = otherIds[row];
+        if (id == -1 || !matched[id]) {
+          ourRows.append(-1);
+          otherRows.append(row);
+        }
+      }
+    }
+
+    int ourCount = columns.length;
+    Table outgoing = new Table();
+    outgoing.setColumnCount(ourCount + other.columns.length - 1);
+    outgoing.copyMissing(this);
+    int[] ours = ourRows.array();
+    int[] theirs = otherRows.array();
+    for (int col = 0; col < ourCount; col++) {
+      outgoing.gatherColumn(col, this, col, ours);
+    }
+    int outCol = ourCount;
+    for (int col = 0; col < other.columns.length; col++) {
+      if (col != otherColumn) {
+        outgoing.gatherColumn(outCol++, other, col, theirs);
+      }
+    }
+    outgoing.rowCount = ours.length;
+    // rows only found in the other table still need their keys
+    for (int row = matchedCount; row < ours.length; row++) {
+      if (ours[row] == -1) {
+        outgoing.copyEntry(other, theirs[row], otherColumn, row, column);
+      }
+    }
+
+    if (columnTitles != null || other.columnTitles != null) {
+      String[] titles = new String[outgoing.columns.length];
+      for (int col = 0; col < ourCount; col++) {
+        titles[col] = getColumnTitle(col);
+      }
+      outCol = ourCount;
+      for (int col = 0; col < other.columns.length; col++) {
+        if (col != otherColumn) {
+          titles[outCol++] = other.getColumnTitle(col);
+        }
+      }
+      outgoing.setColumnTitles(titles);
+    }
+    return outgoing;
+  }
+
+
+  public Table pivot(String rowColumn, String columnColumn, String valueColumn) {
+    return pivot(getColumnIndex(rowColumn),
+                 getColumnIndex(columnColumn),
+                 getColumnIndex(valueColumn));
+  }
+
+
+  /**
+   * Make a "wide" table from a "long" one: there's a row for each distinct
+   * value in rowColumn, and a column for each distinct value in
+   * columnColumn, with entries taken from valueColumn. Rows and columns
+   * are in the order their values first appear, and the first column holds
+   * the rowColumn values. If several rows have the same pair of values, the
+   * last one wins; pairs that never appear are left missing. Rows with a
+   * missing (null) value in rowColumn or columnColumn are skipped.
+   * The new columns have the same type as valueColumn, and keep its
+   * categories if it's a CATEGORY column.
+   */
+  public Table pivot(int rowColumn, int columnColumn, int valueColumn) {
+    KeyIds rowKeys = new KeyIds(isIntegral(columnTypes[rowColumn]));
+    int[] rowIds = keyIds(rowColumn, rowKeys, true);
+    KeyIds columnKeys = new KeyIds(isIntegral(columnTypes[columnColumn]));
+    int[] columnIds = keyIds(columnColumn, columnKeys, true);
+
+    // output rows and columns, in the order they're first used
+    int[] rowSlots = new int[rowKeys.count];
+    int[] columnSlots = new int[columnKeys.count];
+    Arrays.fill(rowSlots, -1);
+    Arrays.fill(columnSlots, -1);
+    IntList firstRows = new IntList();
+    IntList usedColumns = new IntList();
+    for (int row = 0; row < rowCount; row++) {
+      int id = rowIds[row];
+      int columnId = columnIds[row];
+      if (id != -1 && columnId != -1) {
+        if (rowSlots[id] == -1) {
+          rowSlots[id] = firstRows.size();
+          firstRows.append(row);
+        }
+        if (columnSlots[columnId] == -1) {
+          columnSlots[columnId] = usedColumns.size();
+          usedColumns.append(columnId);
+        }
+      }
+    }
+    int[][] valueRows = new int[usedColumns.size()][firstRows.size()];
+    for (int[] rows : valueRows) {
+      Arrays.fill(rows, -1);
+    }
+    for (int row = 0; row < rowCount; row++) {
+      int id = rowIds[row];
+      int columnId = columnIds[row];
+      if (id != -1 && columnId != -1) {
+        valueRows[columnSlots[columnId]][rowSlots[id]] = row;
+      }
+    }
+
+    Table outgoing = new Table();
+    outgoing.setColumnCount(1 + valueRows.length);
+    outgoing.copyMissing(this);
+    outgoing.gatherColumn(0, this, rowColumn, firstRows.array());
+    for (int i = 0; i < valueRows.length; i++) {
+      outgoing.gatherColumn(1 + i, this, valueColumn, valueRows[i]);
+    }
+    outgoing.rowCount = firstRows.size();
+
+    String[] titles = new String[outgoing.columns.length];
+    titles[0] = getColumnTitle(rowColumn);
+    for (int i = 0; i < valueRows.length; i++) {
+      titles[1 + i] = columnKeys.key(usedColumns.get(i));
+    }
+    outgoing.setColumnTitles(titles);
+    return outgoing;
+  }
+
+
+  public Table unpivot(String[] idColumns, String nameTitle, String valueTitle) {
+    int[] indices = new int[idColumns.length];
+    for (int i = 0; i < idColumns.length; i++) {
+      indices[i] = getColumnIndex(idColumns[i]);
+    }
+    return unpivot(indices, nameTitle, valueTitle);
+  }
+
+
+  /**
+   * Make a "long" table from a "wide" one, the opposite of pivot(). Every
+   * column not listed in idColumns is melted into two: a CATEGORY column
+   * (titled nameTitle) with the title of the column each entry came from,
+   * and a column (titled valueTitle) with the entry itself. The idColumns
+   * are repeated for each melted column. Output rows are grouped by melted
+   * column, so that each one can be copied whole.
+   *
+   * The value column has the type of the melted columns if they all share
+   * the same type (CATEGORY columns are merged into one set of categories),
+   * otherwise it's a STRING column.
+   */
+  public Table unpivot(int[] idColumns, String nameTitle, String valueTitle) {
+    boolean[] kept = new boolean[columns.length];
+    for (int col : idColumns) {
+      kept[col] = true;
+    }
+    IntList melted = new IntList();
+    for (int col = 0; col < columns.length; col++) {
+      if (!kept[col]) {
+        melted.append(col);
+      }
+    }
+    if (melted.size() == 0) {
+      throw new IllegalArgumentException("No columns left to unpivot");
+    }
+    int meltCount = melted.size();
+    long total = (long) rowCount * meltCount;
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many rows to unpivot this table");
+    }
+    int count = (int) total;
+
+    Table outgoing = new Table();
+    outgoing.setColumnCount(idColumns.length + 2);
+    outgoing.copyMissing(this);
+    int[] rows = new int[count];
+    for (int i = 0; i < meltCount; i++) {
+      for (int row = 0; row < rowCount; row++) {
+        rows[i * rowCount + row] = row;
+      }
+    }
+    for (int i = 0; i < idColumns.length; i++) {
+      outgoing.gatherColumn(i, this, idColumns[i], rows);
+    }
+
+    int nameColumn = idColumns.length;
+    HashMapBlows names = new HashMapBlows();
+    int[] nameData = new int[count];
+    for (int i = 0; i < meltCount; i++) {
+      int col = melted.get(i);
+      String title = getColumnTitle(col);
+      int index = names.index(title != null ? title : String.valueOf(col));
+      Arrays.fill(nameData, i * rowCount, (i + 1) * rowCount, index);
+    }
+    outgoing.columns[nameColumn] = nameData;
+    outgoing.columnTypes[nameColumn] = CATEGORY;
+    outgoing.columnCategories[nameColumn] = names;
+
+    int valueColumn = nameColumn + 1;
+    int type = columnTypes[melted.get(0)];
+    for (int i = 1; i < meltCount; i++) {
+      if (columnTypes[melted.get(i)] != type) {
+        type = STRING;
+      }
+    }
+    if (type == STRING) {
+      String[] valueData = new String[count];
+      for (int i = 0; i < meltCount; i++) {
+        int col = melted.get(i);
+        boolean same = columnTypes[col] == STRING;
+        for (int row = 0; row < rowCount; row++) {
+          valueData[i * rowCount + row] = same ?
+            ((String[]) columns[col])[row] : getString(row, col);
+        }
+      }
+      outgoing.columns[valueColumn] = valueData;
+    } else if (type == CATEGORY) {
+      HashMapBlows categories = columnCategories[melted.get(0)].copy();
+      int[] valueData = new int[count];
+      for (int i = 0; i < meltCount; i++) {
+        int col = melted.get(i);
+        copyCategories((int[]) columns[col], valueData, i * rowCount, rowCount,
+                       remapCategories(columnCategories[col], categories));
+      }
+      outgoing.columns[valueColumn] = valueData;
+      outgoing.columnCategories[valueColumn] = categories;
+    } else if (type == COMPACT) {
+      CompactStrings valueData = new CompactStrings(count);
+      for (int i = 0; i < meltCount; i++) {
+        valueData.copy((CompactStrings) columns[melted.get(i)],
+                       rowCount, i * rowCount);
+      }
+      outgoing.columns[valueColumn] = valueData;
+    } else {
+      Object valueData = newColumn(type, count);
+      for (int i = 0; i < meltCount; i++) {
+        System.arraycopy(columns[melted.get(i)], 0, valueData, i * rowCount, rowCount);
+      }
+      outgoing.columns[valueColumn] = valueData;
+    }
+    outgoing.columnTypes[valueColumn] = type;
+    outgoing.rowCount = count;
+
+    String[] titles = new String[outgoing.columns.length];
+    for (int i = 0; i < idColumns.length; i++) {
+      titles[i] = getColumnTitle(idColumns[i]);
+    }
+    titles[nameColumn] = nameTitle;
+    titles[valueColumn] = valueTitle;
+    outgoing.setColumnTitles(titles);
+    return outgoing;
+  }
+
+
+  static private boolean isIntegral(int type) {
+    return type == INT || type == LONG;
+  }
+
+
+  private void copyMissing(Table source) {
+    missingString = source.missingString;
+    missingInt = source.missingInt;
+    missingLong = source.missingLong;
+    missingFloat = source.missingFloat;
+    missingDouble = source.missingDouble;
+    missingCategory = source.missingCategory;
+  }
+
+
+  /** An empty array for a column of INT, LONG, FLOAT, DOUBLE, or STRING. */
+  static private Object newColumn(int type, int count) {
+    switch (type) {
+    case INT: return new int[count];
+    case LONG: return new long[count];
+    case FLOAT: return new float[count];
+    case DOUBLE: return new double[count];
+    case STRING: return new String[count];
+    }
+    throw new IllegalArgumentException("No plain array for column type " + type);
+  }
+
+
+  /**
+   * Find the index in dest for each of the categories in source, adding
+   * them to dest if necessary. Returns null if the indices are unchanged,
+   * so that the entries can be copied as they are.
+   */
+  static int[] remapCategories(HashMapBlows source, HashMapBlows dest) {
+    int[] remap = new int[source.size()];
+    boolean same = true;
+    for (int i = 0; i < remap.length; i++) {
+      remap[i] = dest.index(source.key(i));
+      same &= (remap[i] == i);
+    }
+    return same ? null : remap;
+  }
+
+
+  static void copyCategories(int[] source, int[] dest, int offset,
+                             int count, int[] remap) {
+    if (remap == null) {
+      System.arraycopy(source, 0, dest, offset, count);
+    } else {
+      for (int row = 0; row < count; row++) {
+        int index = source[row];
+        dest[offset + row] =
+          (index >= 0 && index < remap.length) ? remap[index] : index;
+      }
+    }
+  }
+
+
+  /**
+   * Fill a column with entries picked from a column of another table:
+   * entry i is row rows[i] of the source, or a missing value if rows[i] is
+   * -1. The column takes on the source column's type, and a CATEGORY column
+   * gets a copy of its categories, so the indices can be used as they are.
+   * Doesn't change the row count, that's up to the caller.
+   */
+  void gatherColumn(int column, Table source, int sourceColumn, int[] rows) {
+    int type = source.columnTypes[sourceColumn];
+    Object data = source.columns[sourceColumn];
+    int count = rows.length;
+    switch (type) {
+    case INT:
+    case CATEGORY: {
+      int[] from = (int[]) data;
+      int[] to = new int[count];
+      int missing = (type == INT) ? missingInt : missingCategory;
+      for (int i = 0; i < count; i++) {
+        to[i] = (rows[i] == -1) ? missing : from[rows[i]];
+      }
+      columns[column] = to;
+      break;
+    }
+    case LONG: {
+      long[] from = (long[]) data;
+      long[] to = new long[count];
+      for (int i = 0; i < count; i++) {
+        to[i] = (rows[i] == -1) ? missingLong : from[rows[i]];
+      }
+      columns[column] = to;
+      break;
+    }
+    case FLOAT: {
+      float[] from = (float[]) data;
+      float[] to = new float[count];
+      for (int i = 0; i < count; i++) {
+        to[i] = (rows[i] == -1) ? missingFloat : from[rows[i]];
+      }
+      columns[column] = to;
+      break;
+    }
+    case DOUBLE: {
+      double[] from = (double[]) data;
+      double[] to = new double[count];
+      for (int i = 0; i < count; i++) {
+        to[i] = (rows[i] == -1) ? missingDouble : from[rows[i]];
+      }
+      columns[column] = to;
+      break;
+    }
+    case STRING: {
+      String[] from = (String[]) data;
+      String[] to = new String[count];
+      for (int i = 0; i < count; i++) {
+        to[i] = (rows[i] == -1) ? missingString : from[rows[i]];
+      }
+      columns[column] = to;
+      break;
+    }
+    case COMPACT: {
+      CompactStrings from = (CompactStrings) data;
+      CompactStrings to = new CompactStrings(count);
+      for (int i = 0; i < count; i++) {
+        if (rows[i] != -1) {
+          to.copyEntry(from, rows[i], i);
+        } else if (missingString != null) {
+          to.set(i, missingString);
+        }
+      }
+      columns[column] = to;
+      break;
+    }
+    }
+    columnTypes[column] = type;
+    columnCategories[column] =
+      (type == CATEGORY) ? source.columnCategories[sourceColumn].copy() : null;
+  }
+
+
+  /** Copy a single entry from another table, converting it to this column's type. */
+  void copyEntry(Table source, int sourceRow, int sourceColumn, int row, int column) {
+    switch (columnTypes[column]) {
+    case INT: setInt(row, column, source.getInt(sourceRow, sourceColumn)); break;
+    case LONG: setLong(row, column, source.getLong(sourceRow, sourceColumn)); break;
+    case FLOAT: setFloat(row, column, source.getFloat(sourceRow, sourceColumn)); break;
+    case DOUBLE: setDouble(row, column, source.getDouble(sourceRow, sourceColumn)); break;
+    case CATEGORY: {
+      String key = source.getString(sourceRow, sourceColumn);
+      ((int[]) columns[column])[row] =
+        (key == null) ? missingCategory : columnCategories[column].index(key);
+      break;
+    }
+    default: setString(row, column, source.getString(sourceRow, sourceColumn));
+    }
+  }
+
+
+  /**
+   * Number the entries of a column by value, so that they can be matched
+   * up by join() and pivot(). Values not seen before are given new ids if
+   * add is true, otherwise they get -1, same as missing (null) entries.
+   */
+  int[] keyIds(int column, KeyIds ids, boolean add) {
+    int[] outgoing = new int[rowCount];
+    int type = columnTypes[column];
+    if (ids.numeric) {
+      if (type == INT) {
+        int[] data = (int[]) columns[column];
+        for (int row = 0; row < rowCount; row++) {
+          outgoing[row] = ids.id(data[row], add);
+        }
+      } else {
+        long[] data = (long[]) columns[column];
+        for (int row = 0; row < rowCount; row++) {
+          outgoing[row] = ids.id(data[row], add);
+        }
+      }
+    } else if (type == CATEGORY) {
+      // look up each category once, the first time it's used
+      HashMapBlows categories = columnCategories[column];
+      int[] categoryIds = new int[categories.indexToData.size()];
+      Arrays.fill(categoryIds, -2);
+      int[] data = (int[]) columns[column];
+      for (int row = 0; row < rowCount; row++) {
+        int index = data[row];
+        if (index < 0 || index >= categoryIds.length || index == missingCategory) {
+          outgoing[row] = -1;
+        } else {
+          if (categoryIds[index] == -2) {
+            categoryIds[index] = ids.id(categories.key(index), add);
+          }
+          outgoing[row] = categoryIds[index];
+        }
+      }
+    } else {
+      for (int row = 0; row < rowCount; row++) {
+        outgoing[row] = ids.id(getString(row, column), add);
+      }
+    }
+    return outgoing;
+  }
+
+
+  /**
+   * Dense ids for the distinct values of one or more key columns. Integer
+   * keys are compared as numbers, anything else as text.
+   */
+  static class KeyIds {
+    final boolean numeric;
+    DictIndex index = new DictIndex();
+    long[] numbers;
+    String[] strings;
+    int count;
+
+    KeyIds(boolean numeric) {
+      this.numeric = numeric;
+      if (numeric) {
+        numbers = new long[16];
+      } else {
+        strings = new String[16];
+      }
+    }
+
+    int id(long key, boolean add) {
+      int id = index.get(numbers, key);
+      if (id == -1 && add) {
+        if (count == numbers.length) {
+          numbers = PApplet.expand(numbers);
+        }
+        numbers[count] = key;
+        index.add(key);
+        id = count++;
+      }
+      return id;
+    }
+
+    int id(String key, boolean add) {
+      if (key == null) {
+        return -1;
+      }
+      int id = index.get(strings, key);
+      if (id == -1 && add) {
+        if (count == strings.length) {
+          strings = PApplet.expand(strings);
+        }
+        strings[count] = key;
+        index.add(key);
+        id = count++;
+      }
+      return id;
+    }
+
+    String key(int id) {
+      return numeric ? String.valueOf(numbers[id]) : strings[id];
+    }
+  }
+
+
   /** Make a copy of the current table */
   public Table copy() {
     return new Table(rows());
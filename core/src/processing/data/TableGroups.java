@@ -0,0 +1,334 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * <p>The rows of a Table, grouped by the values in one of its columns, as
+ * returned by Table.groupBy(). Totals for each group are calculated by
+ * working directly on the column's data, without going through TableRow
+ * objects, and larger tables are split up across all available
+ * processors.</p>
+ * <pre>
+ * TableGroups byCountry = table.groupBy("country");
+ * DoubleDict population = byCountry.sum("population");
+ * DoubleDict averageAge = byCountry.mean("age");
+ * IntDict cities = byCountry.count();
+ * </pre>
+ * <p>Groups are listed in the order their values first appear in the
+ * column. Rows with a missing key (null, or a missing CATEGORY value) are
+ * left out, and aren't part of any group. Missing values (NaN) are skipped
+ * when adding up the totals, so the mean, min, and max of a group with no
+ * values will be NaN.</p>
+ * <p>The grouping is worked out when groupBy() is called, so call it again
+ * after making changes to the key column, or adding or removing rows.
+ * Changes to the other columns are picked up on their own.</p>
+ *
+ * @see Table#groupBy(String)
+ */
+public class TableGroups {
+  protected Table table;
+
+  /** Value for each group, in order of appearance. */
+  protected String[] keys;
+
+  /** The group for each row of the table, or -1 if its key is missing. */
+  protected int[] groups;
+
+
+  protected TableGroups(Table table, int column) {
+    this.table = table;
+    int rowCount = table.getRowCount();
+    groups = new int[rowCount];
+    List<String> found = new ArrayList<>();
+
+    if (table.columnTypes[column] == Table.CATEGORY) {
+      // categories are already numbered, just need them in order of appearance
+      int[] codes = (int[]) table.columns[column];
+      Table.HashMapBlows categories = table.columnCategories[column];
+      int[] remap = new int[categories.size()];
+      Arrays.fill(remap, -1);
+      for (int row = 0; row < rowCount; row++) {
+        int code = codes[row];
+        if (code >= 0 && code < remap.length && categories.key(code) != null) {
+          if (remap[code] == -1) {
+            remap[code] = found.size();
+            found.add(categories.key(code));
+          }
+          groups[row] = remap[code];
+        } else {
+          groups[row] = -1;
+        }
+      }
+    } else {
+      HashMap<String, Integer> lookup = new HashMap<>();
+      for (int row = 0; row < rowCount; row++) {
+        String key = table.getString(row, column);
+        if (key == null) {
+          groups[row] = -1;
+          continue;
+        }
+        Integer group = lookup.get(key);
+        if (group == null) {
+          group = found.size();
+          lookup.put(key, group);
+          found.add(key);
+        }
+        groups[row] = group;
+      }
+    }
+    keys = found.toArray(new String[0]);
+  }
+
+
+  /** Number of groups, one for each unique value in the column. */
+  public int size() {
+    return keys.length;
+  }
+
+
+  /** The values that the rows were grouped by. */
+  public String[] keyArray() {
+    return keys.clone();
+  }
+
+
+  public String key(int index) {
+    return keys[index];
+  }
+
+
+  /**
+   * Row numbers of all the rows in a group, or an empty array if there's
+   * no group for this value.
+   */
+  public int[] getRowIndices(String key) {
+    int group = -1;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i].equals(key)) {
+        group = i;
+        break;
+      }
+    }
+    IntList outgoing = new IntList();
+    if (group != -1) {
+      for (int row = 0; row < groups.length; row++) {
+        if (groups[row] == group) {
+          outgoing.append(row);
+        }
+      }
+    }
+    return outgoing.array();
+  }
+
+
+  /** Number of rows in each group. */
+  public IntDict count() {
+    int[] counts = new int[keys.length];
+    for (int group : groups) {
+      if (group != -1) {
+        counts[group]++;
+      }
+    }
+    return new IntDict(keys.clone(), counts);
+  }
+
+
+  public DoubleDict sum(String columnName) {
+    return sum(table.checkColumnIndex(columnName));
+  }
+
+
+  /** Total of the values in each group. */
+  public DoubleDict sum(int column) {
+    return new DoubleDict(keys.clone(), accumulate(column).sums);
+  }
+
+
+  public DoubleDict mean(String columnName) {
+    return mean(table.checkColumnIndex(columnName));
+  }
+
+
+  /** Average of the values in each group. */
+  public DoubleDict mean(int column) {
+    Totals totals = accumulate(column);
+    double[] means = new double[keys.length];
+    for (int i = 0; i < means.length; i++) {
+      means[i] = totals.sums[i] / totals.counts[i];  // NaN for 0 / 0
+    }
+    return new DoubleDict(keys.clone(), means);
+  }
+
+
+  public DoubleDict min(String columnName) {
+    return min(table.checkColumnIndex(columnName));
+  }
+
+
+  /** Lowest value in each group. */
+  public DoubleDict min(int column) {
+    return new DoubleDict(keys.clone(), accumulate(column).mins);
+  }
+
+
+  public DoubleDict max(String columnName) {
+    return max(table.checkColumnIndex(columnName));
+  }
+
+
+  /** Highest value in each group. */
+  public DoubleDict max(int column) {
+    return new DoubleDict(keys.clone(), accumulate(column).maxs);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Add up the values of a column for each group, splitting the rows into
+   * ranges that are handled in parallel when the table is large enough.
+   */
+  protected Totals accumulate(int column) {
+    if (table.getRowCount() != groups.length) {
+      throw new IllegalStateException("Rows have been added or removed since groupBy() was called");
+    }
+    table.checkColumn(column);
+
+    final int type = table.columnTypes[column];
+    final Object data;
+    if (type == Table.STRING || type == Table.CATEGORY || type == Table.COMPACT) {
+      // parse these up front, so that the loops only deal with numbers
+      double[] parsed = new double[groups.length];
+      for (int row = 0; row < parsed.length; row++) {
+        parsed[row] = table.getDouble(row, column);
+      }
+      data = parsed;
+    } else {
+      data = table.columns[column];
+    }
+
+    // Pieces have at least one row per group, so that all their Totals
+    // don't take up more room than the table. The split doesn't depend on
+    // the number of processors, so the sums are the same on every machine.
+    int[] bounds = Sort.pieces(0, groups.length, keys.length);
+    final Totals[] totals = new Totals[bounds.length - 1];
+    Sort.runPieces(bounds, new Sort.Piece() {
+      void run(int n, int start, int stop) {
+        totals[n] = new Totals(keys.length);
+        totals[n].add(data, groups, start, stop);
+      }
+    });
+    for (int i = 1; i < totals.length; i++) {
+      totals[0].merge(totals[i]);
+    }
+    return totals[0];
+  }
+
+
+  /** Count, sum, min, and max for each group over a range of rows. */
+  static class Totals {
+    int[] counts;
+    double[] sums;
+    double[] mins;
+    double[] maxs;
+
+
+    Totals(int groupCount) {
+      counts = new int[groupCount];
+      sums = new double[groupCount];
+      mins = new double[groupCount];
+      maxs = new double[groupCount];
+      Arrays.fill(mins, Double.NaN);
+      Arrays.fill(maxs, Double.NaN);
+    }
+
+
+    // One loop per array type, so there's no type checking for each row.
+    void add(Object data, int[] groups, int start, int stop) {
+      if (data instanceof int[]) {
+        int[] values = (int[]) data;
+        for (int row = start; row < stop; row++) {
+          add(groups[row], values[row]);
+        }
+      } else if (data instanceof long[]) {
+        long[] values = (long[]) data;
+        for (int row = start; row < stop; row++) {
+          add(groups[row], values[row]);
+        }
+      } else if (data instanceof float[]) {
+        float[] values = (float[]) data;
+        for (int row = start; row < stop; row++) {
+          float value = values[row];
+          if (value == value) {  // skip NaN
+            add(groups[row], value);
+          }
+        }
+      } else {
+        double[] values = (double[]) data;
+        for (int row = start; row < stop; row++) {
+          double value = values[row];
+          if (value == value) {
+            add(groups[row], value);
+          }
+        }
+      }
+    }
+
+
+    private void add(int group, double value) {
+      if (group == -1) {  // no key
+        return;
+      }
+      if (counts[group]++ == 0) {  // min and max start out as NaN
+        mins[group] = value;
+        maxs[group] = value;
+      } else {
+        if (value < mins[group]) mins[group] = value;
+        if (value > maxs[group]) maxs[group] = value;
+      }
+      sums[group] += value;
+    }
+
+
+    void merge(Totals other) {
+      for (int i = 0; i < counts.length; i++) {
+        if (other.counts[i] != 0) {
+          if (counts[i] == 0) {
+            mins[i] = other.mins[i];
+            maxs[i] = other.maxs[i];
+          } else {
+            mins[i] = Math.min(mins[i], other.mins[i]);
+            maxs[i] = Math.max(maxs[i], other.maxs[i]);
+          }
+          counts[i] += other.counts[i];
+          sums[i] += other.sums[i];
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,294 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import processing.core.PApplet;
+
+
+/**
+ * <p>Reads a CSV or TSV file a batch of rows at a time, so that files far
+ * larger than the available memory can be processed. Only one batch of rows
+ * is held at a time, and the same batch Table is re-filled on each read,
+ * so memory use stays fixed no matter how long the file is.</p>
+ * <p>Column types and titles are handled the same as with a Table:</p>
+ * <pre>
+ * TableReader reader = loadTableStream("sensors.csv", "header");
+ * reader.setColumnType("temperature", Table.FLOAT);
+ * float total = 0;
+ * for (TableRow row : reader) {
+ *   total += row.getFloat("temperature");
+ * }
+ * </pre>
+ * <p>Rows handed out by the iterator (and the Table returned by
+ * readBatch()) are only valid until the next batch is read. Use
+ * Table.addRow(TableRow) to keep a copy of a particular row. CATEGORY
+ * columns start over with each batch, so the category numbers from
+ * getInt() only mean the same thing within a single batch.</p>
+ *
+ * @see PApplet#loadTableStream(String, String)
+ * @see Table
+ */
+public class TableReader implements Iterable<TableRow>, Closeable {
+  static final int DEFAULT_BATCH_SIZE = 10000;
+
+  protected BufferedReader reader;
+  protected boolean tsv;
+  protected int batchSize = DEFAULT_BATCH_SIZE;
+
+  /** Table that's re-used for each batch of rows */
+  protected Table batch;
+
+  /** Number of lines read so far, used for error reporting */
+  protected int lineCount;
+
+
+  /**
+   * @nowebref
+   */
+  public TableReader(File file) throws IOException {
+    this(file, null);
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public TableReader(File file, String options) throws IOException {
+    this(PApplet.createInput(file),
+         Table.extensionOptions(true, file.getName(), options));
+  }
+
+
+  /**
+   * Read a table from a stream. Options are the same as for a Table, though
+   * only "csv", "tsv", "header", and "encoding=" are supported, because the
+   * binary and ODS formats can't be read in pieces.
+   */
+  public TableReader(InputStream input, String options) throws IOException {
+    boolean header = false;
+    String extension = null;
+    String encoding = "UTF-8";
+
+    if (options != null) {
+      for (String opt : PApplet.trim(PApplet.split(options, ','))) {
+        if (opt.equals("tsv")) {
+          extension = "tsv";
+        } else if (opt.equals("csv")) {
+          extension = "csv";
+        } else if (opt.equals("ods") || opt.equals("bin")) {
+          throw new IllegalArgumentException("'" + opt + "' files cannot be streamed, use loadTable() instead");
+        } else if (opt.equals("header")) {
+          header = true;
+        } else if (opt.startsWith("dictionary=")) {
+          // ignore option, this is only handled by PApplet
+        } else if (opt.startsWith("encoding=")) {
+          encoding = opt.substring(9);
+        } else {
+          throw new IllegalArgumentException("'" + opt + "' is not a valid option for streaming a Table");
+        }
+      }
+    }
+    if (extension == null) {
+      throw new IllegalArgumentException("No extension specified for this Table");
+    }
+    tsv = extension.equals("tsv");
+    reader = Table.createReader(input, encoding);
+    batch = new Table();
+
+    if (header) {
+      String line = reader.readLine();
+      if (line != null) {
+        lineCount++;
+        batch.setColumnTitles(split(line));
+      }
+    }
+  }
+
+
+  /**
+   * Set the number of rows that are read (and held in memory) at a time.
+   * The default is 10,000.
+   */
+  public void setBatchSize(int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("The batch size must be at least 1");
+    }
+    batchSize = count;
+  }
+
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+
+  public void setColumnType(int column, int type) {
+    batch.ensureColumn(column);
+    batch.setColumnType(column, type);
+  }
+
+
+  public void setColumnType(String columnName, int type) {
+    batch.setColumnType(columnName, type);
+  }
+
+
+  public void setColumnType(int column, String columnType) {
+    batch.ensureColumn(column);
+    batch.setColumnType(column, columnType);
+  }
+
+
+  public void setColumnType(String columnName, String columnType) {
+    batch.setColumnType(columnName, columnType);
+  }
+
+
+  public void setColumnTypes(int[] types) {
+    batch.setColumnTypes(types);
+  }
+
+
+  /**
+   * Set the titles and types of the columns from a "dictionary" table,
+   * the same as the dictionary= option for loadTable().
+   */
+  public void setColumnTypes(Table dictionary) {
+    batch.setColumnTypes(dictionary);
+  }
+
+
+  public String[] getColumnTitles() {
+    return batch.getColumnTitles();
+  }
+
+
+  public int getColumnIndex(String columnName) {
+    return batch.getColumnIndex(columnName);
+  }
+
+
+  /**
+   * Read the next batch of rows. The same Table object is returned each
+   * time, with its contents replaced by the next set of rows.
+   * @return the batch of rows, or null when the end of the file is reached
+   */
+  public Table readBatch() {
+    if (reader == null) {
+      return null;
+    }
+    if (batch.getRowCount() != batchSize) {
+      batch.setRowCount(batchSize);
+    }
+    // Every row is about to be replaced, so start the categories over.
+    // Otherwise a column of IDs or timestamps would keep growing them.
+    for (int col = 0; col < batch.getColumnCount(); col++) {
+      if (batch.columnTypes[col] == Table.CATEGORY) {
+        batch.columnCategories[col] = new Table.HashMapBlows();
+      }
+    }
+    int row = 0;
+    try {
+      String line;
+      while (row < batchSize && (line = reader.readLine()) != null) {
+        lineCount++;
+        int count = batch.parseLine(row, line, reader, tsv);
+        // don't leave behind entries from the previous batch
+        batch.clearRow(row, count);
+        row++;
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("Error reading table on line " + lineCount, e);
+    }
+    if (row < batchSize) {
+      close();
+      if (row == 0) {
+        return null;
+      }
+      batch.setRowCount(row);
+    }
+    return batch;
+  }
+
+
+  protected String[] split(String line) throws IOException {
+    return tsv ? PApplet.split(line, '\t') : batch.splitLineCSV(line, reader);
+  }
+
+
+  /**
+   * Iterate through the remaining rows, reading new batches as necessary.
+   * Like Table.rows(), a single TableRow object is re-used for each row.
+   */
+  @Override
+  public Iterator<TableRow> iterator() {
+    return new Iterator<TableRow>() {
+      Table current;
+      Table.RowPointer rp;
+      int row;
+
+      public boolean hasNext() {
+        if (current == null || row + 1 == current.getRowCount()) {
+          current = readBatch();
+          if (current == null) {
+            return false;
+          }
+          rp = new Table.RowPointer(current, -1);
+          row = -1;
+        }
+        return true;
+      }
+
+      public TableRow next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        rp.setRow(++row);
+        return rp;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove() not supported");
+      }
+    };
+  }
+
+
+  /**
+   * Close the underlying file. This happens automatically once the last
+   * row has been read.
+   */
+  @Override
+  public void close() {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      reader = null;
+    }
+  }
+}
@@ -0,0 +1,713 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import processing.core.PApplet;
+
+
+/**
+ * <p>A selection of rows and columns from a Table, as returned by
+ * Table.view(). Views only store the numbers of the rows and columns that
+ * they include, so filtering, sorting, or selecting columns doesn't copy
+ * any of the data. Each of those returns a new view, so they can be
+ * chained together:</p>
+ * <pre>
+ * TableView recent = table.view()
+ *   .filter("status", "error")
+ *   .filter("age", 0, 60)
+ *   .sortReverse("time")
+ *   .select("time", "message");
+ * for (TableRow row : recent.rows()) {
+ *   println(row.getString("message"));
+ * }
+ * </pre>
+ * <p>Values are read from (and written to) the original Table, so changes
+ * to it show up in its views. Views refer to rows by number, though, so
+ * they need to be re-created after rows are removed from the Table or it
+ * has been sorted. Use toTable() to make a separate copy.</p>
+ *
+ * @see Table#view()
+ */
+public class TableView implements Iterable<TableRow> {
+  protected Table table;
+
+  /** Row numbers in the original table, in the order used by this view */
+  protected int[] rows;
+
+  /** Column numbers in the original table */
+  protected int[] columns;
+
+
+  protected TableView(Table table, int[] rows, int[] columns) {
+    this.table = table;
+    this.rows = rows;
+    this.columns = columns;
+  }
+
+
+  /** The Table that this view reads from. */
+  public Table getTable() {
+    return table;
+  }
+
+
+  public int getRowCount() {
+    return rows.length;
+  }
+
+
+  /** Row number in the original Table for a row of this view. */
+  public int getRowIndex(int row) {
+    return rows[row];
+  }
+
+
+  /** Row numbers in the original Table for all the rows of this view. */
+  public int[] getRowIndices() {
+    return rows.clone();
+  }
+
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+
+  /**
+   * Column number in this view for a title, or -1 if the column isn't
+   * part of it.
+   */
+  public int getColumnIndex(String columnName) {
+    int column = table.getColumnIndex(columnName, false);
+    if (column != -1) {
+      for (int i = 0; i < columns.length; i++) {
+        if (columns[i] == column) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+
+  public int checkColumnIndex(String columnName) {
+    int column = getColumnIndex(columnName);
+    if (column == -1) {
+      throw new IllegalArgumentException("This view has no column named '" + columnName + "'");
+    }
+    return column;
+  }
+
+
+  public String getColumnTitle(int column) {
+    return table.getColumnTitle(columns[column]);
+  }
+
+
+  public String[] getColumnTitles() {
+    if (!table.hasColumnTitles()) {
+      return null;
+    }
+    String[] outgoing = new String[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      outgoing[i] = table.getColumnTitle(columns[i]);
+    }
+    return outgoing;
+  }
+
+
+  public int getColumnType(int column) {
+    return table.getColumnType(columns[column]);
+  }
+
+
+  public int getColumnType(String columnName) {
+    return getColumnType(checkColumnIndex(columnName));
+  }
+
+
+  public int[] getColumnTypes() {
+    int[] outgoing = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      outgoing[i] = table.getColumnType(columns[i]);
+    }
+    return outgoing;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public String getString(int row, int column) {
+    return table.getString(rows[row], columns[column]);
+  }
+
+
+  public String getString(int row, String columnName) {
+    return getString(row, checkColumnIndex(columnName));
+  }
+
+
+  public int getInt(int row, int column) {
+    return table.getInt(rows[row], columns[column]);
+  }
+
+
+  public int getInt(int row, String columnName) {
+    return getInt(row, checkColumnIndex(columnName));
+  }
+
+
+  public long getLong(int row, int column) {
+    return table.getLong(rows[row], columns[column]);
+  }
+
+
+  public long getLong(int row, String columnName) {
+    return getLong(row, checkColumnIndex(columnName));
+  }
+
+
+  public float getFloat(int row, int column) {
+    return table.getFloat(rows[row], columns[column]);
+  }
+
+
+  public float getFloat(int row, String columnName) {
+    return getFloat(row, checkColumnIndex(columnName));
+  }
+
+
+  public double getDouble(int row, int column) {
+    return table.getDouble(rows[row], columns[column]);
+  }
+
+
+  public double getDouble(int row, String columnName) {
+    return getDouble(row, checkColumnIndex(columnName));
+  }
+
+
+  public TableRow getRow(int row) {
+    return new ViewRow(this, row);
+  }
+
+
+  /**
+   * Iterate through the rows of this view. As with Table.rows(), a single
+   * TableRow object is re-used for each row.
+   */
+  public Iterable<TableRow> rows() {
+    return this;
+  }
+
+
+  @Override
+  public Iterator<TableRow> iterator() {
+    return new Iterator<TableRow>() {
+      ViewRow rp = new ViewRow(TableView.this, -1);
+
+      public boolean hasNext() {
+        return rp.row + 1 < rows.length;
+      }
+
+      public TableRow next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        rp.row++;
+        return rp;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove() not supported");
+      }
+    };
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Keep only the rows where a column has this value, compared the same
+   * way as Table.findRows(). Uses the index for the column, if the Table
+   * has one (see Table.createIndex).
+   */
+  public TableView filter(String columnName, String value) {
+    return filter(checkColumnIndex(columnName), value);
+  }
+
+
+  public TableView filter(int column, String value) {
+    int col = columns[column];
+    int[] outgoing = new int[rows.length];
+    int count = 0;
+    if (table.hasIndex(col)) {
+      // mark the rows that match, then keep those in the current order
+      boolean[] found = new boolean[table.getRowCount()];
+      for (int row : table.findRowIndices(value, col)) {
+        found[row] = true;
+      }
+      for (int row : rows) {
+        if (found[row]) {
+          outgoing[count++] = row;
+        }
+      }
+    } else {
+      for (int row : rows) {
+        String str = table.getString(row, col);
+        if (value == null ? str == null : value.equals(str)) {
+          outgoing[count++] = row;
+        }
+      }
+    }
+    return new TableView(table, PApplet.subset(outgoing, 0, count), columns);
+  }
+
+
+  /**
+   * Keep only the rows where a column is at least low, and less than high.
+   * Values are compared as numbers, and missing values (NaN) are dropped.
+   */
+  public TableView filter(String columnName, double low, double high) {
+    return filter(checkColumnIndex(columnName), low, high);
+  }
+
+
+  public TableView filter(int column, double low, double high) {
+    int col = columns[column];
+    int[] outgoing = new int[rows.length];
+    int count = 0;
+    // read the arrays directly, the type check happens just once
+    switch (table.getColumnType(col)) {
+    case Table.INT: {
+      int[] data = (int[]) table.columns[col];
+      for (int row : rows) {
+        if (data[row] >= low && data[row] < high) {
+          outgoing[count++] = row;
+        }
+      }
+      break;
+    }
+    case Table.LONG: {
+      long[] data = (long[]) table.columns[col];
+      for (int row : rows) {
+        if (data[row] >= low && data[row] < high) {
+          outgoing[count++] = row;
+        }
+      }
+      break;
+    }
+    case Table.FLOAT: {
+      float[] data = (float[]) table.columns[col];
+      for (int row : rows) {
+        if (data[row] >= low && data[row] < high) {  // false for NaN
+          outgoing[count++] = row;
+        }
+      }
+      break;
+    }
+    case Table.DOUBLE: {
+      double[] data = (double[]) table.columns[col];
+      for (int row : rows) {
+        if (data[row] >= low && data[row] < high) {
+          outgoing[count++] = row;
+        }
+      }
+      break;
+    }
+    default:
+      for (int row : rows) {
+        double value = table.getDouble(row, col);
+        if (value >= low && value < high) {
+          outgoing[count++] = row;
+        }
+      }
+    }
+    return new TableView(table, PApplet.subset(outgoing, 0, count), columns);
+  }
+
+
+  /**
+   * Keep only the rows where a column matches a regular expression,
+   * the same as Table.matchRows().
+   */
+  public TableView match(String columnName, String regexp) {
+    return match(checkColumnIndex(columnName), regexp);
+  }
+
+
+  public TableView match(int column, String regexp) {
+    int col = columns[column];
+    int[] outgoing = new int[rows.length];
+    int count = 0;
+    for (int row : rows) {
+      String str = table.getString(row, col);
+      if (str != null && PApplet.match(str, regexp) != null) {
+        outgoing[count++] = row;
+      }
+    }
+    return new TableView(table, PApplet.subset(outgoing, 0, count), columns);
+  }
+
+
+  /**
+   * Keep only the rows that pass a test. The TableRow passed to the test
+   * uses the columns of this view.
+   * <pre>
+   * view.filter(row -> row.getFloat("price") * row.getInt("count") > 100)
+   * </pre>
+   */
+  public TableView filter(Predicate<TableRow> test) {
+    int[] outgoing = new int[rows.length];
+    int count = 0;
+    ViewRow rp = new ViewRow(this, -1);
+    for (int i = 0; i < rows.length; i++) {
+      rp.row = i;
+      if (test.test(rp)) {
+        outgoing[count++] = rows[i];
+      }
+    }
+    return new TableView(table, PApplet.subset(outgoing, 0, count), columns);
+  }
+
+
+  /** Rows from start up to (but not including) stop. */
+  public TableView subset(int start, int stop) {
+    start = Math.max(0, start);
+    stop = Math.min(rows.length, stop);
+    return new TableView(table, PApplet.subset(rows, start, Math.max(0, stop - start)), columns);
+  }
+
+
+  /** Keep only these columns, in this order. */
+  public TableView select(String... columnNames) {
+    int[] outgoing = new int[columnNames.length];
+    for (int i = 0; i < columnNames.length; i++) {
+      outgoing[i] = columns[checkColumnIndex(columnNames[i])];
+    }
+    return new TableView(table, rows, outgoing);
+  }
+
+
+  public TableView select(int... columnIndices) {
+    int[] outgoing = new int[columnIndices.length];
+    for (int i = 0; i < columnIndices.length; i++) {
+      outgoing[i] = columns[columnIndices[i]];
+    }
+    return new TableView(table, rows, outgoing);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Order the rows by the values in a column. The order of the original
+   * Table is left alone, and rows with the same value keep their order.
+   */
+  public TableView sort(String columnName) {
+    return sort(checkColumnIndex(columnName), false);
+  }
+
+
+  public TableView sort(int column) {
+    return sort(column, false);
+  }
+
+
+  public TableView sortReverse(String columnName) {
+    return sort(checkColumnIndex(columnName), true);
+  }
+
+
+  public TableView sortReverse(int column) {
+    return sort(column, true);
+  }
+
+
+  protected TableView sort(int column, boolean reverse) {
+    int[] order = table.sortOrder(columns[column], reverse, rows);
+    return new TableView(table, order, columns);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Copy the rows and columns of this view into a new Table. */
+  public Table toTable() {
+    Table outgoing = new Table();
+    outgoing.setColumnCount(columns.length);
+    String[] titles = getColumnTitles();
+    if (titles != null) {
+      outgoing.setColumnTitles(titles);
+    }
+    outgoing.missingString = table.missingString;
+    outgoing.missingInt = table.missingInt;
+    outgoing.missingLong = table.missingLong;
+    outgoing.missingFloat = table.missingFloat;
+    outgoing.missingDouble = table.missingDouble;
+    outgoing.missingCategory = table.missingCategory;
+
+    for (int i = 0; i < columns.length; i++) {
+      int type = table.getColumnType(columns[i]);
+      // categories are copied as-is, so the indices stay the same
+      if (type != Table.CATEGORY) {
+        outgoing.setColumnType(i, type);
+      }
+    }
+    outgoing.setRowCount(rows.length);
+
+    for (int i = 0; i < columns.length; i++) {
+      int col = columns[i];
+      Object source = table.columns[col];
+      switch (table.getColumnType(col)) {
+      case Table.INT: {
+        int[] data = (int[]) outgoing.columns[i];
+        for (int row = 0; row < rows.length; row++) {
+          data[row] = ((int[]) source)[rows[row]];
+        }
+        break;
+      }
+      case Table.CATEGORY: {
+        int[] data = new int[rows.length];
+        for (int row = 0; row < rows.length; row++) {
+          data[row] = ((int[]) source)[rows[row]];
+        }
+        Table.HashMapBlows categories = new Table.HashMapBlows();
+        Table.HashMapBlows original = table.columnCategories[col];
+        for (int index = 0; index < original.size(); index++) {
+          categories.setCategory(index, original.key(index));
+        }
+        outgoing.columns[i] = data;
+        outgoing.columnTypes[i] = Table.CATEGORY;
+        outgoing.columnCategories[i] = categories;
+        break;
+      }
+      case Table.LONG: {
+        long[] data = (long[]) outgoing.columns[i];
+        for (int row = 0; row < rows.length; row++) {
+          data[row] = ((long[]) source)[rows[row]];
+        }
+        break;
+      }
+      case Table.FLOAT: {
+        float[] data = (float[]) outgoing.columns[i];
+        for (int row = 0; row < rows.length; row++) {
+          data[row] = ((float[]) source)[rows[row]];
+        }
+        break;
+      }
+      case Table.DOUBLE: {
+        double[] data = (double[]) outgoing.columns[i];
+        for (int row = 0; row < rows.length; row++) {
+          data[row] = ((double[]) source)[rows[row]];
+        }
+        break;
+      }
+      case Table.STRING: {
+        String[] data = (String[]) outgoing.columns[i];
+        for (int row = 0; row < rows.length; row++) {
+          data[row] = ((String[]) source)[rows[row]];
+        }
+        break;
+      }
+      case Table.COMPACT: {
+        CompactStrings data = (CompactStrings) outgoing.columns[i];
+        for (int row = 0; row < rows.length; row++) {
+          data.set(row, ((CompactStrings) source).get(rows[row]));
+        }
+        break;
+      }
+      }
+    }
+    return outgoing;
+  }
+
+
+  public void print() {
+    write(new PrintWriter(System.out));
+  }
+
+
+  public void write(PrintWriter writer) {
+    String[] titles = getColumnTitles();
+    if (titles != null) {
+      writer.println(PApplet.join(titles, '\t'));
+    }
+    for (TableRow row : rows()) {
+      row.write(writer);
+      writer.println();
+    }
+    writer.flush();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** TableRow for a row of a view, using the view's column numbers. */
+  static class ViewRow implements TableRow {
+    TableView view;
+    int row;
+
+    ViewRow(TableView view, int row) {
+      this.view = view;
+      this.row = row;
+    }
+
+    int tableRow() {
+      return view.rows[row];
+    }
+
+    int tableColumn(int column) {
+      return view.columns[column];
+    }
+
+    int tableColumn(String columnName) {
+      return view.columns[view.checkColumnIndex(columnName)];
+    }
+
+    public String getString(int column) {
+      return view.table.getString(tableRow(), tableColumn(column));
+    }
+
+    public String getString(String columnName) {
+      return view.table.getString(tableRow(), tableColumn(columnName));
+    }
+
+    public int getInt(int column) {
+      return view.table.getInt(tableRow(), tableColumn(column));
+    }
+
+    public int getInt(String columnName) {
+      return view.table.getInt(tableRow(), tableColumn(columnName));
+    }
+
+    public long getLong(int column) {
+      return view.table.getLong(tableRow(), tableColumn(column));
+    }
+
+    public long getLong(String columnName) {
+      return view.table.getLong(tableRow(), tableColumn(columnName));
+    }
+
+    public float getFloat(int column) {
+      return view.table.getFloat(tableRow(), tableColumn(column));
+    }
+
+    public float getFloat(String columnName) {
+      return view.table.getFloat(tableRow(), tableColumn(columnName));
+    }
+
+    public double getDouble(int column) {
+      return view.table.getDouble(tableRow(), tableColumn(column));
+    }
+
+    public double getDouble(String columnName) {
+      return view.table.getDouble(tableRow(), tableColumn(columnName));
+    }
+
+    public void setString(int column, String value) {
+      view.table.setString(tableRow(), tableColumn(column), value);
+    }
+
+    public void setString(String columnName, String value) {
+      view.table.setString(tableRow(), tableColumn(columnName), value);
+    }
+
+    public void setInt(int column, int value) {
+      view.table.setInt(tableRow(), tableColumn(column), value);
+    }
+
+    public void setInt(String columnName, int value) {
+      view.table.setInt(tableRow(), tableColumn(columnName), value);
+    }
+
+    public void setLong(int column, long value) {
+      view.table.setLong(tableRow(), tableColumn(column), value);
+    }
+
+    public void setLong(String columnName, long value) {
+      view.table.setLong(tableRow(), tableColumn(columnName), value);
+    }
+
+    public void setFloat(int column, float value) {
+      view.table.setFloat(tableRow(), tableColumn(column), value);
+    }
+
+    public void setFloat(String columnName, float value) {
+      view.table.setFloat(tableRow(), tableColumn(columnName), value);
+    }
+
+    public void setDouble(int column, double value) {
+      view.table.setDouble(tableRow(), tableColumn(column), value);
+    }
+
+    public void setDouble(String columnName, double value) {
+      view.table.setDouble(tableRow(), tableColumn(columnName), value);
+    }
+
+    public int getColumnCount() {
+      return view.getColumnCount();
+    }
+
+    public int getColumnType(String columnName) {
+      return view.getColumnType(columnName);
+    }
+
+    public int getColumnType(int column) {
+      return view.getColumnType(column);
+    }
+
+    public int[] getColumnTypes() {
+      return view.getColumnTypes();
+    }
+
+    public String getColumnTitle(int column) {
+      return view.getColumnTitle(column);
+    }
+
+    public String[] getColumnTitles() {
+      return view.getColumnTitles();
+    }
+
+    public void print() {
+      write(new PrintWriter(System.out));
+    }
+
+    public void write(PrintWriter writer) {
+      for (int i = 0 ; i < getColumnCount(); i++) {
+        if (i != 0) {
+          writer.print('\t');
+        }
+        writer.print(getString(i));
+      }
+    }
+  }
+}
@@ -24,6 +24,10 @@
 package processing.data;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.xml.parsers.*;
 
@@ -63,6 +67,24 @@ public class XML implements Serializable {
   /** Child elements, once loaded. */
   protected XML[] children;
 
+  /**
+   * Children grouped by name, built the first time a child is looked up
+   * by name, and thrown away when children are added or removed.
+   */
+  protected transient HashMap<String, XML[]> childIndex;
+
+  /**
+   * Attribute values that have already been parsed by getInt(), getFloat()
+   * and the others are kept (as a HashMap of name to value) in the user
+   * data of the DOM node, so that they aren't parsed again on each call.
+   * Every XML object for the same element shares them, and setString(),
+   * setName() and setContent() clear them. Changes made to the DOM nodes
+   * directly aren't seen.
+   */
+  static final private String PARSED_KEY = "processing.data.XML.parsed";
+
+  static final private XML[] NO_CHILDREN = new XML[0];
+
   /**
    * @nowebref
    */
@@ -335,6 +357,10 @@ public class XML implements Serializable {
   public void setName(String newName) {
     Document document = node.getOwnerDocument();
     node = document.renameNode(node, null, newName);
+    clearParsedAttributes();
+    if (parent != null) {
+      parent.childIndex = null;  // filed under the old name
+    }
 //    name = node.getNodeName();
   }
 
@@ -366,6 +392,39 @@ public class XML implements Serializable {
   }
 
 
+  /**
+   * Returns the children with a particular name, using (and if necessary,
+   * building) the index of names for this element. The array is shared,
+   * so it should not be modified.
+   *
+   * Internal function; not included in reference.
+   */
+  protected XML[] getChildrenNamed(String name) {
+    if (childIndex == null) {
+      checkChildren();
+      Map<String, ArrayList<XML>> groups = new LinkedHashMap<>();
+      for (XML kid : children) {
+        String kidName = kid.getName();
+        if (kidName != null) {
+          ArrayList<XML> group = groups.get(kidName);
+          if (group == null) {
+            group = new ArrayList<>();
+            groups.put(kidName, group);
+          }
+          group.add(kid);
+        }
+      }
+      childIndex = new HashMap<>();
+      for (Map.Entry<String, ArrayList<XML>> entry : groups.entrySet()) {
+        ArrayList<XML> group = entry.getValue();
+        childIndex.put(entry.getKey(), group.toArray(new XML[group.size()]));
+      }
+    }
+    XML[] found = childIndex.get(name);
+    return (found != null) ? found : NO_CHILDREN;
+  }
+
+
   /**
    * Returns the number of children.
    *
@@ -463,15 +522,8 @@ public class XML implements Serializable {
     if (name.indexOf('/') != -1) {
       return getChildRecursive(PApplet.split(name, '/'), 0);
     }
-    int childCount = getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      XML kid = getChild(i);
-      String kidName = kid.getName();
-      if (kidName != null && kidName.equals(name)) {
-        return kid;
-      }
-    }
-    return null;
+    XML[] matches = getChildrenNamed(name);
+    return (matches.length != 0) ? matches[0] : null;
   }
 
 
@@ -493,19 +545,14 @@ public class XML implements Serializable {
         return kid.getChildRecursive(items, offset+1);
       }
     }
-    int childCount = getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      XML kid = getChild(i);
-      String kidName = kid.getName();
-      if (kidName != null && kidName.equals(items[offset])) {
-        if (offset == items.length-1) {
-          return kid;
-        } else {
-          return kid.getChildRecursive(items, offset+1);
-        }
-      }
+    XML[] matches = getChildrenNamed(items[offset]);
+    if (matches.length == 0) {
+      return null;
+    } else if (offset == items.length-1) {
+      return matches[0];
+    } else {
+      return matches[0].getChildRecursive(items, offset+1);
     }
-    return null;
   }
 
 
@@ -529,17 +576,7 @@ public class XML implements Serializable {
     if (Character.isDigit(name.charAt(0))) {
       return new XML[] { getChild(Integer.parseInt(name)) };
     }
-    int childCount = getChildCount();
-    XML[] matches = new XML[childCount];
-    int matchCount = 0;
-    for (int i = 0; i < childCount; i++) {
-      XML kid = getChild(i);
-      String kidName = kid.getName();
-      if (kidName != null && kidName.equals(name)) {
-        matches[matchCount++] = kid;
-      }
-    }
-    return (XML[]) PApplet.subset(matches, 0, matchCount);
+    return getChildrenNamed(name).clone();
   }
 
 
@@ -548,12 +585,16 @@ public class XML implements Serializable {
       return getChildren(items[offset]);
     }
     XML[] matches = getChildren(items[offset]);
-    XML[] outgoing = new XML[0];
+    if (matches.length == 1) {
+      return matches[0].getChildrenRecursive(items, offset+1);
+    }
+    ArrayList<XML> outgoing = new ArrayList<>();
     for (int i = 0; i < matches.length; i++) {
-      XML[] kidMatches = matches[i].getChildrenRecursive(items, offset+1);
-      outgoing = (XML[]) PApplet.concat(outgoing, kidMatches);
+      for (XML kid : matches[i].getChildrenRecursive(items, offset+1)) {
+        outgoing.add(kid);
+      }
     }
-    return outgoing;
+    return outgoing.toArray(new XML[outgoing.size()]);
   }
 
 
@@ -582,6 +623,7 @@ public class XML implements Serializable {
     if (children != null) {
       children = (XML[]) PApplet.concat(children, new XML[] { newbie });
     }
+    childIndex = null;
     return newbie;
   }
 
@@ -593,6 +635,7 @@ public class XML implements Serializable {
   public void removeChild(XML kid) {
     node.removeChild(kid.node);
     children = null;  // TODO not efficient
+    childIndex = null;
   }
 
   /**
@@ -759,6 +802,40 @@ public class XML implements Serializable {
    */
   public void setString(String name, String value) {
     ((Element) node).setAttribute(name, value);
+    Map<String, Object> parsed = parsedAttributes(false);
+    if (parsed != null) {
+      parsed.remove(name);
+    }
+  }
+
+
+  /**
+   * The values parsed so far for this element, or null if there aren't
+   * any yet (and create is false).
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> parsedAttributes(boolean create) {
+    Map<String, Object> parsed = (Map<String, Object>) node.getUserData(PARSED_KEY);
+    if (parsed == null && create) {
+      parsed = new HashMap<>();
+      node.setUserData(PARSED_KEY, parsed, null);
+    }
+    return parsed;
+  }
+
+
+  /** Forget all the parsed values, when the element has been changed. */
+  private void clearParsedAttributes() {
+    if (node.getUserData(PARSED_KEY) != null) {
+      node.setUserData(PARSED_KEY, null, null);
+    }
+  }
+
+
+  /** The parsed value of an attribute, or null if it hasn't been parsed. */
+  private Object getParsedAttribute(String name) {
+    Map<String, Object> parsed = parsedAttributes(false);
+    return (parsed != null) ? parsed.get(name) : null;
   }
 
 
@@ -788,8 +865,17 @@ public class XML implements Serializable {
    * @return the value, or defaultValue if the attribute does not exist
    */
   public int getInt(String name, int defaultValue) {
+    Object parsed = getParsedAttribute(name);
+    if (parsed instanceof Integer) {
+      return (Integer) parsed;
+    }
     String value = getString(name);
-    return (value == null) ? defaultValue : Integer.parseInt(value);
+    if (value == null) {
+      return defaultValue;
+    }
+    int outgoing = Integer.parseInt(value);
+    parsedAttributes(true).put(name, outgoing);
+    return outgoing;
   }
 
 
@@ -810,8 +896,17 @@ public class XML implements Serializable {
    * @return the value, or defaultValue if the attribute does not exist.
    */
   public long getLong(String name, long defaultValue) {
+    Object parsed = getParsedAttribute(name);
+    if (parsed instanceof Long) {
+      return (Long) parsed;
+    }
     String value = getString(name);
-    return (value == null) ? defaultValue : Long.parseLong(value);
+    if (value == null) {
+      return defaultValue;
+    }
+    long outgoing = Long.parseLong(value);
+    parsedAttributes(true).put(name, outgoing);
+    return outgoing;
   }
 
 
@@ -834,8 +929,17 @@ public class XML implements Serializable {
    * @return the value, or defaultValue if the attribute does not exist.
    */
   public float getFloat(String name, float defaultValue) {
+    Object parsed = getParsedAttribute(name);
+    if (parsed instanceof Float) {
+      return (Float) parsed;
+    }
     String value = getString(name);
-    return (value == null) ? defaultValue : Float.parseFloat(value);
+    if (value == null) {
+      return defaultValue;
+    }
+    float outgoing = Float.parseFloat(value);
+    parsedAttributes(true).put(name, outgoing);
+    return outgoing;
   }
 
 
@@ -861,8 +965,17 @@ public class XML implements Serializable {
    * @return the value, or defaultValue if the attribute does not exist
    */
   public double getDouble(String name, double defaultValue) {
+    Object parsed = getParsedAttribute(name);
+    if (parsed instanceof Double) {
+      return (Double) parsed;
+    }
     String value = getString(name);
-    return (value == null) ? defaultValue : Double.parseDouble(value);
+    if (value == null) {
+      return defaultValue;
+    }
+    double outgoing = Double.parseDouble(value);
+    parsedAttributes(true).put(name, outgoing);
+    return outgoing;
   }
 
 
@@ -972,6 +1085,9 @@ public class XML implements Serializable {
    */
   public void setContent(String text) {
     node.setTextContent(text);
+    clearParsedAttributes();
+    children = null;  // the old children were replaced
+    childIndex = null;
   }
 
 
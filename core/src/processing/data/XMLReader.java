@@ -0,0 +1,517 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import processing.core.PApplet;
+
+
+/**
+ * <p>Reads an XML file one element at a time, instead of loading the whole
+ * document into memory the way the XML class does. Useful for files that
+ * are far larger than the available memory (OpenStreetMap extracts, large
+ * data feeds), since only the current element is held at a time.</p>
+ * <p>The simplest way to use it is with a path. Each element that matches
+ * is returned as its own (small) XML object, and everything else is
+ * skipped over without being kept:</p>
+ * <pre>
+ * XMLReader reader = loadXMLStream("map.osm", "osm/node");
+ * for (XML node : reader) {
+ *   float lat = node.getFloat("lat");
+ *   float lon = node.getFloat("lon");
+ * }
+ * </pre>
+ * <p>A path is a list of element names, starting at the root, separated by
+ * slashes. Use * to match any name at that level. Without a path, the
+ * children of the root element are returned.</p>
+ * <p>For more control, step through the elements with next(), and read
+ * the name and attributes of each one directly, without creating an XML
+ * object at all. Use readXML() or readContent() to grab the rest of the
+ * current element when it's one that's needed.</p>
+ * <pre>
+ * while (reader.next()) {
+ *   if (reader.getName().equals("way")) {
+ *     XML way = reader.readXML();
+ *   }
+ * }
+ * </pre>
+ *
+ * @see PApplet#loadXMLStream(String, String)
+ * @see XML
+ */
+public class XMLReader implements Iterable<XML>, Closeable {
+  protected XMLStreamReader stream;
+  protected Closeable source;
+
+  /** Used to create a Document for each element handed out by readXML() */
+  protected DocumentBuilder builder;
+
+  /** Names of the elements that contain the current one, and the element itself */
+  protected String[] names = new String[16];
+  protected int depth;
+
+  /**
+   * Namespace (xmlns) attributes set by each of those elements, as name and
+   * value pairs, or null for none. These are copied to the XML objects from
+   * readXML(), the same way XML copies them to its children, so that the
+   * elements can still be printed and saved.
+   */
+  protected String[][] namespaces = new String[16][];
+
+  /** Parts of the path to match, or null to return the root's children */
+  protected String[] path;
+
+
+  /**
+   * @nowebref
+   */
+  public XMLReader(File file) throws IOException {
+    this(file, null);
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public XMLReader(File file, String path) throws IOException {
+    this(PApplet.createInput(file), path);
+  }
+
+
+  /**
+   * Read from a stream. The encoding is taken from the XML declaration at
+   * the beginning of the file, same as new XML(InputStream).
+   */
+  public XMLReader(InputStream input, String path) throws IOException {
+    source = input;
+    try {
+      stream = createFactory().createXMLStreamReader(input);
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    setPath(path);
+  }
+
+
+  /**
+   * Read from an already-decoded stream of characters.
+   */
+  public XMLReader(Reader reader, String path) throws IOException {
+    source = reader;
+    try {
+      stream = createFactory().createXMLStreamReader(reader);
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    setPath(path);
+  }
+
+
+  static protected XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // same names (with prefixes) as the XML class, which doesn't use namespaces
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    // don't go to www.w3.org (or anywhere else) looking for DTDs
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+
+  /**
+   * Set the elements to be returned by the iterator, for instance
+   * "osm/node", or null for the children of the root element.
+   */
+  public void setPath(String path) {
+    this.path = (path == null) ? null : PApplet.split(path, '/');
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Move to the start of the next element, which may be a child of the
+   * current one. Returns false once the end of the document is reached.
+   */
+  public boolean next() {
+    if (stream == null) {
+      return false;
+    }
+    try {
+      while (stream.hasNext()) {
+        int event = stream.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          if (depth == names.length) {
+            names = PApplet.expand(names);
+            namespaces = (String[][]) PApplet.expand(namespaces);
+          }
+          names[depth] = qualify(stream.getPrefix(), stream.getLocalName());
+          namespaces[depth] = listNamespaces();
+          depth++;
+          return true;
+
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    }
+    close();
+    return false;
+  }
+
+
+  /** Name and value for each xmlns attribute of the current element. */
+  protected String[] listNamespaces() {
+    String[] found = null;
+    int count = stream.getAttributeCount();
+    for (int i = 0; i < count; i++) {
+      String name = qualify(stream.getAttributePrefix(i), stream.getAttributeLocalName(i));
+      if (name.startsWith("xmlns")) {
+        String[] pair = { name, stream.getAttributeValue(i) };
+        found = (found == null) ? pair : PApplet.concat(found, pair);
+      }
+    }
+    return found;
+  }
+
+
+  /** True if the current element matches the path. */
+  protected boolean matches() {
+    if (path == null) {
+      return depth == 2;
+    }
+    if (depth != path.length) {
+      return false;
+    }
+    for (int i = 0; i < depth; i++) {
+      if (!path[i].equals("*") && !path[i].equals(names[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  protected void checkElement() {
+    if (stream == null || stream.getEventType() != XMLStreamConstants.START_ELEMENT) {
+      throw new IllegalStateException("Only available at the start of an element, use next() first");
+    }
+  }
+
+
+  /** Name of the current element (including its namespace prefix, if any). */
+  public String getName() {
+    checkElement();
+    return names[depth - 1];
+  }
+
+
+  /** How far down the current element is, 1 for the root element. */
+  public int getDepth() {
+    return depth;
+  }
+
+
+  /** Names from the root to the current element, i.e. "osm/way/nd" */
+  public String getPath() {
+    return PApplet.join(PApplet.subset(names, 0, depth), '/');
+  }
+
+
+  public int getAttributeCount() {
+    checkElement();
+    return stream.getAttributeCount();
+  }
+
+
+  public String[] listAttributes() {
+    checkElement();
+    String[] outgoing = new String[stream.getAttributeCount()];
+    for (int i = 0; i < outgoing.length; i++) {
+      outgoing[i] = qualify(stream.getAttributePrefix(i), stream.getAttributeLocalName(i));
+    }
+    return outgoing;
+  }
+
+
+  public boolean hasAttribute(String name) {
+    return getString(name) != null;
+  }
+
+
+  public String getString(String name) {
+    return getString(name, null);
+  }
+
+
+  public String getString(String name, String defaultValue) {
+    checkElement();
+    int count = stream.getAttributeCount();
+    for (int i = 0; i < count; i++) {
+      String prefix = stream.getAttributePrefix(i);
+      String local = stream.getAttributeLocalName(i);
+      if ((prefix == null || prefix.isEmpty()) ?
+          name.equals(local) :
+          name.equals(qualify(prefix, local))) {
+        return stream.getAttributeValue(i);
+      }
+    }
+    return defaultValue;
+  }
+
+
+  public int getInt(String name) {
+    return getInt(name, 0);
+  }
+
+
+  public int getInt(String name, int defaultValue) {
+    String value = getString(name);
+    return (value == null) ? defaultValue : Integer.parseInt(value);
+  }
+
+
+  public long getLong(String name, long defaultValue) {
+    String value = getString(name);
+    return (value == null) ? defaultValue : Long.parseLong(value);
+  }
+
+
+  public float getFloat(String name) {
+    return getFloat(name, 0);
+  }
+
+
+  public float getFloat(String name, float defaultValue) {
+    String value = getString(name);
+    return (value == null) ? defaultValue : Float.parseFloat(value);
+  }
+
+
+  public double getDouble(String name) {
+    return getDouble(name, 0);
+  }
+
+
+  public double getDouble(String name, double defaultValue) {
+    String value = getString(name);
+    return (value == null) ? defaultValue : Double.parseDouble(value);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read the text inside the current element (including the text of any
+   * elements inside it), same as XML.getContent(). Afterwards, next() will
+   * continue with whatever follows the current element.
+   */
+  public String readContent() {
+    checkElement();
+    StringBuilder content = new StringBuilder();
+    try {
+      int level = 1;
+      while (level > 0) {
+        switch (stream.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          level++;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          level--;
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          content.append(stream.getText());
+          break;
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    }
+    depth--;
+    return content.toString();
+  }
+
+
+  /**
+   * Read the current element and everything inside it as an XML object.
+   * The object has no parent, and can be kept after the reader moves on.
+   * Afterwards, next() will continue with whatever follows the element.
+   */
+  public XML readXML() {
+    checkElement();
+    try {
+      if (builder == null) {
+        builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+      }
+      Document document = builder.newDocument();
+      Element root = createElement(document);
+      document.appendChild(root);
+      // closest declarations win, so start with the parent and work out
+      for (int i = depth - 2; i >= 0; --i) {
+        String[] pairs = namespaces[i];
+        if (pairs != null) {
+          for (int j = 0; j < pairs.length; j += 2) {
+            if (!root.hasAttribute(pairs[j])) {
+              root.setAttribute(pairs[j], pairs[j+1]);
+            }
+          }
+        }
+      }
+
+      Node parent = root;
+      int level = 1;
+      while (level > 0) {
+        switch (stream.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          Element kid = createElement(document);
+          parent.appendChild(kid);
+          parent = kid;
+          level++;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          parent = parent.getParentNode();
+          level--;
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.SPACE:
+          parent.appendChild(document.createTextNode(stream.getText()));
+          break;
+        case XMLStreamConstants.CDATA:
+          parent.appendChild(document.createCDATASection(stream.getText()));
+          break;
+        case XMLStreamConstants.COMMENT:
+          parent.appendChild(document.createComment(stream.getText()));
+          break;
+        }
+      }
+      depth--;
+
+      XML outgoing = new XML();
+      outgoing.node = root;
+      return outgoing;
+
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    } catch (ParserConfigurationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  /** Create an element for the current start tag, with its attributes. */
+  protected Element createElement(Document document) {
+    Element element =
+      document.createElement(qualify(stream.getPrefix(), stream.getLocalName()));
+    int count = stream.getAttributeCount();
+    for (int i = 0; i < count; i++) {
+      element.setAttribute(qualify(stream.getAttributePrefix(i),
+                                   stream.getAttributeLocalName(i)),
+                           stream.getAttributeValue(i));
+    }
+    return element;
+  }
+
+
+  static protected String qualify(String prefix, String local) {
+    return (prefix == null || prefix.isEmpty()) ? local : prefix + ":" + local;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Return the remaining elements that match the path, reading each one
+   * as a separate XML object.
+   */
+  @Override
+  public Iterator<XML> iterator() {
+    return new Iterator<XML>() {
+      XML upcoming;
+
+      public boolean hasNext() {
+        if (upcoming == null) {
+          while (XMLReader.this.next()) {
+            if (matches()) {
+              upcoming = readXML();
+              break;
+            }
+          }
+        }
+        return upcoming != null;
+      }
+
+      public XML next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        XML outgoing = upcoming;
+        upcoming = null;
+        return outgoing;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove() not supported");
+      }
+    };
+  }
+
+
+  /**
+   * Close the underlying file. This happens automatically once the end of
+   * the document has been reached.
+   */
+  @Override
+  public void close() {
+    if (stream != null) {
+      try {
+        stream.close();
+        source.close();
+      } catch (XMLStreamException e) {
+        e.printStackTrace();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      stream = null;
+    }
+  }
+}
@@ -6432,7 +6432,8 @@ public class PGraphicsOpenGL extends PGraphics {
         boolean dispose = img.pixels == null;
         img.loadPixels();
         tex.set(img.pixels, img.format);
-        img.setModified();
+        // everything was just uploaded, so there's nothing left to update
+        img.setModified(false);
         if (dispose) {
           // We only used the pixels to load the image into the texture and the user did not request
           // to load the pixels, so we should dispose the pixels array to avoid wasting memory
@@ -6535,7 +6536,7 @@ public class PGraphicsOpenGL extends PGraphics {
         int y = img.getModifiedY1();
         int w = img.getModifiedX2() - x;
         int h = img.getModifiedY2() - y;
-        tex.set(img.pixels, x, y, w, h, img.format);
+        tex.setRegion(img.pixels, x, y, w, h, img.format);
       }
     }
     img.setModified(false);
@@ -108,6 +108,8 @@ public class Texture implements PConstants {
   protected int[] rgbaPixels = null;
   protected IntBuffer pixelBuffer = null;
 
+  protected int[] regionPixels = null;
+
   protected int[] edgePixels = null;
   protected IntBuffer edgeBuffer = null;
 
@@ -372,6 +374,36 @@ public class Texture implements PConstants {
   // Native set methods
 
 
+  /**
+   * Uploads the x, y, w, h region of pixels, an array that has the same
+   * size as the whole texture. Only those rows are copied and sent to
+   * the GPU, instead of all of the texels.
+   */
+  public void setRegion(int[] pixels, int x, int y, int w, int h, int format) {
+    if (pixels == null || pixels.length < width * height ||
+        invertedX || invertedY ||
+        (x == 0 && y == 0 && w == width && h == height)) {
+      // The flips only work on whole arrays, so inverted textures (and
+      // whole-image updates) go through the regular path.
+      set(pixels, format);
+      return;
+    }
+    if (w <= 0 || h <= 0) {
+      return;
+    }
+
+    // convertToRGBA() reads the entire array, so it has to be w * h long
+    if (regionPixels == null || regionPixels.length != w * h) {
+      regionPixels = new int[w * h];
+    }
+    for (int row = 0; row < h; row++) {
+      System.arraycopy(pixels, (y + row) * width + x,
+                       regionPixels, row * w, w);
+    }
+    set(regionPixels, x, y, w, h, format);
+  }
+
+
   public void setNative(int[] pixels) {
     setNative(pixels, 0, 0, width, height);
   }
@@ -763,21 +795,17 @@ public class Texture implements PConstants {
 
     if (!modified) {
       mx1 = PApplet.max(0, x);
-      mx2 = PApplet.min(width - 1, x2);
+      mx2 = PApplet.min(width, x2);
       my1 = PApplet.max(0, y);
-      my2 = PApplet.min(height - 1, y2);
+      my2 = PApplet.min(height, y2);
       modified = true;
 
     } else {
-      if (x < mx1) mx1 = PApplet.max(0, x);
-      if (x > mx2) mx2 = PApplet.min(width - 1, x);
-      if (y < my1) my1 = PApplet.max(0, y);
-      if (y > my2) my2 = y;
-
-      if (x2 < mx1) mx1 = PApplet.max(0, x2);
-      if (x2 > mx2) mx2 = PApplet.min(width - 1, x2);
-      if (y2 < my1) my1 = PApplet.max(0, y2);
-      if (y2 > my2) my2 = PApplet.min(height - 1, y2);
+      // grow the modified area so that it also covers this one
+      mx1 = PApplet.max(0, PApplet.min(mx1, x));
+      mx2 = PApplet.min(width, PApplet.max(mx2, x2));
+      my1 = PApplet.max(0, PApplet.min(my1, y));
+      my2 = PApplet.min(height, PApplet.max(my2, y2));
     }
   }
 
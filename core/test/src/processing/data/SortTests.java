@@ -0,0 +1,279 @@
+package processing.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks Sort and the Table sorts against Arrays.sort(). In the same package
+ * as Sort so that the radix sorts (which aren't public) can be tested too.
+ */
+public class SortTests {
+  static final int[] SIZES = {
+    0, 1, 2, 15, 17, 63, 65, 1000, Sort.PARALLEL_MIN - 1, Sort.PARALLEL_MIN + 1234
+  };
+
+  static final double[] SPECIAL = {
+    Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+    Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE, -Double.MIN_VALUE,
+    Float.MAX_VALUE, -Float.MAX_VALUE
+  };
+
+
+  /** Lots of duplicates, plus NaN, -0.0 and the other odd values. */
+  static double[] values(int count, long seed) {
+    Random random = new Random(seed);
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      if (random.nextInt(10) == 0) {
+        values[i] = SPECIAL[random.nextInt(SPECIAL.length)];
+      } else {
+        values[i] = (random.nextInt(2000) - 1000) / 4.0;
+      }
+    }
+    return values;
+  }
+
+
+  static float[] floats(double[] values) {
+    float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+    }
+    return floats;
+  }
+
+
+  /**
+   * Positions in sorted order, using the stable Arrays.sort() for objects
+   * and the same ordering as Arrays.sort(double[]) (-0.0 before 0.0, NaN
+   * last). When reversed, equal values keep their order and NaN stays last.
+   */
+  static int[] expectedOrder(final double[] values, final boolean reverse) {
+    Integer[] order = new Integer[values.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        double va = values[a];
+        double vb = values[b];
+        if (reverse && (va == va) && (vb == vb)) {
+          return Double.compare(vb, va);
+        }
+        return Double.compare(va, vb);
+      }
+    });
+    int[] outgoing = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      outgoing[i] = order[i];
+    }
+    return outgoing;
+  }
+
+
+  static int[] identity(int count) {
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    return order;
+  }
+
+
+  static Sort doubleSort(final double[] values) {
+    return new Sort() {
+      public int size() {
+        return values.length;
+      }
+
+      public int compare(int a, int b) {
+        return Double.compare(values[a], values[b]);
+      }
+
+      public void swap(int a, int b) {
+        double temp = values[a];
+        values[a] = values[b];
+        values[b] = temp;
+      }
+    };
+  }
+
+
+  static void assertSameValues(double[] expected, double[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      // compares the bits, so that -0.0 and 0.0 are different
+      assertEquals("index " + i, Double.doubleToLongBits(expected[i]),
+                   Double.doubleToLongBits(actual[i]));
+    }
+  }
+
+
+  @Test
+  public void runMatchesArraysSort() {
+    for (int size : SIZES) {
+      double[] values = values(size, size);
+      double[] expected = values.clone();
+      Arrays.sort(expected);
+      doubleSort(values).run();
+      assertSameValues(expected, values);
+    }
+  }
+
+
+  @Test
+  public void runOnSortedAndReversedInput() {
+    // worst cases for a plain quicksort, should still finish quickly
+    int size = Sort.PARALLEL_MIN + 1234;
+    double[] values = values(size, 3);
+    Arrays.sort(values);
+    double[] expected = values.clone();
+    doubleSort(values).run();
+    assertSameValues(expected, values);
+
+    for (int i = 0; i < size / 2; i++) {
+      double temp = values[i];
+      values[i] = values[size - 1 - i];
+      values[size - 1 - i] = temp;
+    }
+    doubleSort(values).run();
+    assertSameValues(expected, values);
+  }
+
+
+  @Test
+  public void orderIsStable() {
+    for (int size : SIZES) {
+      double[] values = values(size, size + 1);
+      int[] expected = expectedOrder(values, false);
+      assertArrayEquals("order() of " + size, expected, doubleSort(values).order());
+      assertArrayEquals("parallelOrder() of " + size, expected, doubleSort(values).parallelOrder());
+    }
+  }
+
+
+  @Test
+  public void radixSortDoubles() {
+    for (boolean reverse : new boolean[] { false, true }) {
+      for (int size : SIZES) {
+        double[] values = values(size, size + 2);
+        int[] expected = expectedOrder(values, reverse);
+
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+          keys[i] = Sort.doubleKey(values[i], reverse);
+        }
+        int[] order = identity(size);
+        Sort.radixSort(keys.clone(), order);
+        assertArrayEquals("radixSort() of " + size, expected, order);
+
+        order = identity(size);
+        Sort.parallelRadixSort(keys.clone(), order);
+        assertArrayEquals("parallelRadixSort() of " + size, expected, order);
+      }
+    }
+  }
+
+
+  @Test
+  public void radixSortFloats() {
+    for (boolean reverse : new boolean[] { false, true }) {
+      for (int size : SIZES) {
+        float[] floats = floats(values(size, size + 3));
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+          values[i] = floats[i];
+        }
+        int[] expected = expectedOrder(values, reverse);
+
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+          keys[i] = Sort.floatKey(floats[i], reverse);
+        }
+        int[] order = identity(size);
+        Sort.radixSort(keys.clone(), order);
+        assertArrayEquals("radixSort() of " + size, expected, order);
+
+        order = identity(size);
+        Sort.parallelRadixSort(keys.clone(), order);
+        assertArrayEquals("parallelRadixSort() of " + size, expected, order);
+      }
+    }
+  }
+
+
+  /** A table of values, with an "id" column holding each row's position. */
+  static Table table(double[] values) {
+    Table table = new Table();
+    table.addColumn("id", Table.INT);
+    table.addColumn("double", Table.DOUBLE);
+    table.addColumn("float", Table.FLOAT);
+    table.addColumn("int", Table.INT);
+    table.setRowCount(values.length);
+    for (int row = 0; row < values.length; row++) {
+      table.setInt(row, "id", row);
+      table.setDouble(row, "double", values[row]);
+      table.setFloat(row, "float", (float) values[row]);
+      table.setInt(row, "int", (int) values[row]);
+    }
+    return table;
+  }
+
+
+  static int[] ids(Table table) {
+    return table.getIntColumn("id");
+  }
+
+
+  @Test
+  public void tableSortMatchesArraysSort() {
+    for (boolean reverse : new boolean[] { false, true }) {
+      for (int size : SIZES) {
+        double[] values = values(size, size + 4);
+        String message = (reverse ? "sortReverse() of " : "sort() of ") + size;
+
+        Table table = table(values);
+        if (reverse) table.sortReverse("double"); else table.sort("double");
+        assertArrayEquals(message, expectedOrder(values, reverse), ids(table));
+
+        double[] floatValues = new double[size];
+        double[] intValues = new double[size];
+        for (int i = 0; i < size; i++) {
+          floatValues[i] = (float) values[i];
+          intValues[i] = (int) values[i];
+        }
+        table = table(values);
+        if (reverse) table.sortReverse("float"); else table.sort("float");
+        assertArrayEquals(message, expectedOrder(floatValues, reverse), ids(table));
+
+        table = table(values);
+        if (reverse) table.sortReverse("int"); else table.sort("int");
+        assertArrayEquals(message, expectedOrder(intValues, reverse), ids(table));
+      }
+    }
+  }
+
+
+  @Test
+  public void tableSortByString() {
+    String[] words = { "pear", null, "apple", "Pear", "", "apple", "fig" };
+    Table table = new Table();
+    table.addColumn("id", Table.INT);
+    table.addColumn("word", Table.STRING);
+    for (int i = 0; i < words.length; i++) {
+      TableRow row = table.addRow();
+      row.setInt(0, i);
+      row.setString(1, words[i]);
+    }
+    table.sort("word");
+    // null sorts the same as "", case is ignored, and equal words keep
+    // their order
+    assertArrayEquals(new int[] { 1, 4, 2, 5, 6, 0, 3 }, ids(table));
+  }
+}
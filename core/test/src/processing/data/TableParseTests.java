@@ -0,0 +1,237 @@
+package processing.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the number parsing that reads straight from the characters of a
+ * line, and the column type inference, against Integer.parseInt(),
+ * Double.parseDouble() and the others. In the same package as Table,
+ * because those methods aren't public.
+ */
+public class TableParseTests {
+  static final String[] BOUNDARY = {
+    "0", "-0", "+0", "-", "+", "", "007", "-007", "000000000", "0000000000",
+    "999999999", "1000000000", "2147483647", "2147483648",
+    "-2147483648", "-2147483649", "99999999999999999", "999999999999999999",
+    "1000000000000000000", "9223372036854775807", "9223372036854775808",
+    "-9223372036854775808", "-9223372036854775809",
+    // 2^24 and 2^53, the largest mantissas that floats and doubles hold exactly
+    "16777215", "16777216", "16777217", "1677721.6", "1677721.7", "0.16777216",
+    "0.16777217", "9007199254740991", "9007199254740992", "9007199254740993",
+    "900719925474099.2", "900719925474099.3", "0.9007199254740993",
+    // 10^22 is the largest power of ten that a double holds exactly
+    "1e22", "1e-22", "1e23", "1E+22", "10000000000000000000000",
+    "0.0000000000000000000001", "0.00000000000000000000001",
+    "0.1234567890123456789012", "1.0000000000", "0.0000000001", "0.00000000001",
+    "1.", "-1.", ".5", "-.5", "+.5", ".", "..", "-.", "1.2.3", "1e5", "-1E-5",
+    "12a", "a12", " 12", "12 ", "1_000", "NaN", "Infinity", "-Infinity",
+    "3.4028235e38", "3.4028236e38", "1.7976931348623157e308", "4.9e-324"
+  };
+
+
+  /** The boundary values, plus random strings of digits, signs and points. */
+  static List<String> samples() {
+    List<String> samples = new ArrayList<>(Arrays.asList(BOUNDARY));
+    Random random = new Random(5);
+    String pieces = "0123456789.-+e";
+    for (int i = 0; i < 50000; i++) {
+      StringBuilder sb = new StringBuilder();
+      if (random.nextInt(4) == 0) {
+        sb.append('-');
+      }
+      int length = 1 + random.nextInt(24);
+      for (int j = 0; j < length; j++) {
+        // mostly digits, with the occasional point, sign or exponent
+        int limit = (random.nextInt(8) == 0) ? pieces.length() : 10;
+        sb.append(pieces.charAt(random.nextInt(limit)));
+      }
+      samples.add(sb.toString());
+    }
+    return samples;
+  }
+
+
+  @Test
+  public void parseIntChars() {
+    int[] data = new int[1];
+    for (String s : samples()) {
+      char[] c = s.toCharArray();
+      boolean parsed = Table.parseIntChars(c, 0, c.length, data, 0);
+      try {
+        int expected = Integer.parseInt(s);
+        if (parsed) {
+          assertEquals(s, expected, data[0]);
+        }
+      } catch (NumberFormatException e) {
+        assertFalse(s, parsed);
+      }
+    }
+  }
+
+
+  @Test
+  public void parseLongChars() {
+    long[] data = new long[1];
+    for (String s : samples()) {
+      char[] c = s.toCharArray();
+      boolean parsed = Table.parseLongChars(c, 0, c.length, data, 0);
+      try {
+        long expected = Long.parseLong(s);
+        if (parsed) {
+          assertEquals(s, expected, data[0]);
+        }
+      } catch (NumberFormatException e) {
+        assertFalse(s, parsed);
+      }
+    }
+  }
+
+
+  @Test
+  public void parseFloatChars() {
+    Table table = new Table();
+    float[] data = new float[1];
+    for (String s : samples()) {
+      char[] c = s.toCharArray();
+      boolean parsed = table.parseFloatChars(c, 0, c.length, data, 0);
+      try {
+        float expected = Float.parseFloat(s);
+        if (parsed) {
+          // compare the bits, so that -0.0 has to match too
+          assertEquals(s, Float.floatToIntBits(expected), Float.floatToIntBits(data[0]));
+        }
+      } catch (NumberFormatException e) {
+        assertFalse(s, parsed);
+      }
+    }
+  }
+
+
+  @Test
+  public void parseDoubleChars() {
+    Table table = new Table();
+    double[] data = new double[1];
+    for (String s : samples()) {
+      char[] c = s.toCharArray();
+      boolean parsed = table.parseDoubleChars(c, 0, c.length, data, 0);
+      try {
+        double expected = Double.parseDouble(s);
+        if (parsed) {
+          assertEquals(s, Double.doubleToLongBits(expected), Double.doubleToLongBits(data[0]));
+        }
+      } catch (NumberFormatException e) {
+        assertFalse(s, parsed);
+      }
+    }
+  }
+
+
+  /**
+   * Setting an entry from characters has to give the same result as the
+   * String version, whether or not the fast parsing handles it.
+   */
+  @Test
+  public void charsMatchStrings() {
+    String[] names = { "int", "long", "float", "double" };
+    int[] types = { Table.INT, Table.LONG, Table.FLOAT, Table.DOUBLE };
+    Table fromChars = new Table();
+    Table fromStrings = new Table();
+    for (int col = 0; col < types.length; col++) {
+      fromChars.addColumn(names[col], types[col]);
+      fromStrings.addColumn(names[col], types[col]);
+    }
+    List<String> samples = samples();
+    fromChars.setRowCount(samples.size());
+    fromStrings.setRowCount(samples.size());
+    for (int row = 0; row < samples.size(); row++) {
+      String s = samples.get(row);
+      char[] c = s.toCharArray();
+      for (int col = 0; col < types.length; col++) {
+        fromChars.setRowCol(row, col, c, 0, c.length);
+        fromStrings.setRowCol(row, col, s);
+      }
+    }
+    for (int row = 0; row < samples.size(); row++) {
+      String s = samples.get(row);
+      assertEquals(s, fromStrings.getInt(row, 0), fromChars.getInt(row, 0));
+      assertEquals(s, fromStrings.getLong(row, 1), fromChars.getLong(row, 1));
+      assertEquals(s, Float.floatToIntBits(fromStrings.getFloat(row, 2)),
+                   Float.floatToIntBits(fromChars.getFloat(row, 2)));
+      assertEquals(s, Double.doubleToLongBits(fromStrings.getDouble(row, 3)),
+                   Double.doubleToLongBits(fromChars.getDouble(row, 3)));
+    }
+  }
+
+
+  static int infer(String... entries) {
+    return Table.inferColumnType(entries, entries.length);
+  }
+
+
+  @Test
+  public void inferColumnType() {
+    assertEquals(Table.INT, infer("0", "-5", "2147483647", "-2147483648", ""));
+    assertEquals(Table.LONG, infer("1", "2147483648"));
+    assertEquals(Table.LONG, infer("-2147483649"));
+    assertEquals(Table.LONG, infer("9223372036854775807"));
+    // too big for a long, and more digits than a float holds
+    assertEquals(Table.DOUBLE, infer("9223372036854775808"));
+    assertEquals(Table.FLOAT, infer("1.5", "2", "-.25"));
+    assertEquals(Table.FLOAT, infer("0.1234567", "1234567"));
+    assertEquals(Table.DOUBLE, infer("16777216.0"));  // more than 7 digits
+    assertEquals(Table.DOUBLE, infer("0.9007199254740993"));
+    assertEquals(Table.FLOAT, infer("1e22", "1e-22"));
+    assertEquals(Table.DOUBLE, infer("3.4028236e39"));
+    // leading zeros are kept as text, so zip codes and ids aren't changed
+    assertEquals(Table.STRING, infer("007", "123"));
+    assertEquals(Table.STRING, infer("-"));
+    assertEquals(Table.STRING, infer("1.2.3"));
+    assertEquals(Table.STRING, infer("", null));
+    String[] repeated = new String[20];
+    Arrays.fill(repeated, "-");
+    assertEquals(Table.CATEGORY, infer(repeated));
+  }
+
+
+  /** Whatever type is picked, the values have to come out the same. */
+  @Test
+  public void inferredValuesMatch() throws Exception {
+    String[][] columns = {
+      { "2147483647", "-2147483648", "0", "-0", "+7" },
+      { "2147483648", "-9223372036854775808", "9223372036854775807", "1", "2" },
+      { "1677721", "0.5", "-.25", "1e22", "3.402823e38" },
+      { "9007199254740993", "0.1234567890123456789012", "4.9e-324", "1.5", "2" },
+    };
+    StringBuilder csv = new StringBuilder();
+    for (int row = 0; row < columns[0].length; row++) {
+      for (int col = 0; col < columns.length; col++) {
+        if (col != 0) csv.append(',');
+        csv.append(columns[col][row]);
+      }
+      csv.append('\n');
+    }
+    Table table = new Table();
+    table.parseBasic(new BufferedReader(new StringReader(csv.toString())),
+                     false, false, Table.INFER_COUNT_DEFAULT);
+    assertEquals(Table.INT, table.getColumnType(0));
+    assertEquals(Table.LONG, table.getColumnType(1));
+    assertEquals(Table.FLOAT, table.getColumnType(2));
+    assertEquals(Table.DOUBLE, table.getColumnType(3));
+    for (int row = 0; row < columns[0].length; row++) {
+      assertEquals(Integer.parseInt(columns[0][row]), table.getInt(row, 0));
+      assertEquals(Long.parseLong(columns[1][row]), table.getLong(row, 1));
+      assertEquals(Float.parseFloat(columns[2][row]), table.getFloat(row, 2), 0);
+      assertEquals(Double.parseDouble(columns[3][row]), table.getDouble(row, 3), 0);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package test.processing.awt;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import processing.awt.PGraphicsJava2D;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+public class ImageCacheTests {
+  static final int W = 40;
+  static final int H = 30;
+
+  @BeforeClass
+  public static void init() {
+    System.setProperty("java.awt.headless", "true");
+  }
+
+  static PGraphicsJava2D canvas() {
+    PGraphicsJava2D g = new PGraphicsJava2D();
+    g.setParent(new PApplet());
+    g.setPrimary(false);
+    g.setSize(W, H);
+    return g;
+  }
+
+  static PImage image(int color) {
+    PImage img = new PImage(W, H, PConstants.RGB);
+    img.loadPixels();
+    for (int i = 0; i < img.pixels.length; i++) {
+      img.pixels[i] = color;
+    }
+    img.updatePixels();
+    return img;
+  }
+
+  /**
+   * Draw img, change all of its pixels but only mark a small area as
+   * modified, and draw it again. Only that area should be copied, so
+   * everything else still shows the old color.
+   */
+  static void checkOnlyModifiedArea(boolean tint) {
+    PGraphicsJava2D g = canvas();
+    PImage img = image(0xff0000ff);
+    g.beginDraw();
+    g.background(0);
+    if (tint) {
+      g.tint(255, 128, 255);
+    }
+    g.image(img, 0, 0);
+
+    for (int i = 0; i < img.pixels.length; i++) {
+      img.pixels[i] = 0xffff0000;
+    }
+    img.updatePixels(10, 5, 4, 3);
+    g.image(img, 0, 0);
+    g.loadPixels();
+    g.endDraw();
+
+    // a full-strength tint channel still takes 255 down to 254
+    int oldColor = tint ? 0xff0000fe : 0xff0000ff;
+    int newColor = tint ? 0xfffe0000 : 0xffff0000;
+    for (int y = 0; y < H; y++) {
+      for (int x = 0; x < W; x++) {
+        boolean inside = x >= 10 && x < 14 && y >= 5 && y < 8;
+        assertEquals("pixel " + x + ", " + y,
+                     Integer.toHexString(inside ? newColor : oldColor),
+                     Integer.toHexString(g.pixels[y*W + x]));
+      }
+    }
+  }
+
+  @Test
+  public void untintedCopiesModifiedArea() {
+    checkOnlyModifiedArea(false);
+  }
+
+  @Test
+  public void tintedCopiesModifiedArea() {
+    checkOnlyModifiedArea(true);
+  }
+
+  @Test
+  public void tintChangeCopiesEverything() {
+    PGraphicsJava2D g = canvas();
+    PImage img = image(0xff0000ff);
+    g.beginDraw();
+    g.background(0);
+    g.image(img, 0, 0);
+    for (int i = 0; i < img.pixels.length; i++) {
+      img.pixels[i] = 0xffff0000;
+    }
+    img.updatePixels(0, 0, 1, 1);
+    g.tint(255);  // a new tint redoes the whole cache
+    g.image(img, 0, 0);
+    g.loadPixels();
+    g.endDraw();
+    assertEquals(Integer.toHexString(0xfffe0000),
+                 Integer.toHexString(g.pixels[W*H - 1]));
+  }
+}
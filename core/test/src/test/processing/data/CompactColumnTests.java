@@ -0,0 +1,67 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import processing.data.Table;
+
+public class CompactColumnTests {
+
+  static Table compactTable(String... values) {
+    Table t = new Table();
+    t.addColumn("text", Table.COMPACT);
+    for (String value : values) {
+      t.addRow().setString(0, value);
+    }
+    return t;
+  }
+
+  @Test
+  public void emptyStringAfterSort() {
+    Table t = compactTable("a long value that gets shortened later", "");
+    t.setString(0, 0, "y");
+    t.sort(0);  // packs the column
+    assertEquals("", t.getString(0, 0));
+    assertEquals("y", t.getString(1, 0));
+  }
+
+  @Test
+  public void emptyStringAfterSetColumnType() {
+    Table t = new Table();
+    t.addColumn("text", Table.STRING);
+    t.addRow().setString(0, "a long value that gets shortened later");
+    t.addRow().setString(0, "");
+    t.setColumnType(0, Table.COMPACT);
+    t.setString(0, 0, "y");
+    t.sort(0);
+    assertEquals("", t.getString(0, 0));
+    assertEquals("y", t.getString(1, 0));
+  }
+
+  @Test
+  public void emptyStringAfterAutomaticPack() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      sb.append('x');
+    }
+    Table t = compactTable(sb.toString(), "", null);
+    // leave enough unused bytes behind that set() packs the column
+    t.setString(0, 0, "y");
+    t.setString(2, 0, "z");
+    assertEquals("y", t.getString(0, 0));
+    assertEquals("", t.getString(1, 0));
+    assertEquals("z", t.getString(2, 0));
+  }
+
+  @Test
+  public void nullStaysNull() {
+    Table t = compactTable("a long value that gets shortened later", null, "");
+    t.setString(0, 0, "y");
+    t.sort(0);
+    assertNull(t.getString(0, 0));
+    assertEquals("", t.getString(1, 0));
+    assertEquals("y", t.getString(2, 0));
+  }
+}
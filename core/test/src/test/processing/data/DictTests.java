@@ -0,0 +1,62 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import processing.data.FloatDict;
+import processing.data.IntDict;
+import processing.data.StringDict;
+
+public class DictTests {
+
+  static IntDict repeatedKey() {
+    // "a" is in there twice, the last one is the one that's found
+    return new IntDict(new String[] { "b", "a", "c", "a" },
+                       new int[] { 4, 3, 1, 2 });
+  }
+
+  @Test
+  public void repeatedKeyFindsLast() {
+    assertEquals(2, repeatedKey().get("a"));
+  }
+
+  @Test
+  public void repeatedKeyAfterSortKeys() {
+    IntDict dict = repeatedKey();
+    dict.sortKeys();  // a=2, a=3, b=4, c=1
+    assertEquals(3, dict.get("a"));
+    dict.sortKeysReverse();  // c=1, b=4, a=3, a=2
+    assertEquals(2, dict.get("a"));
+  }
+
+  @Test
+  public void repeatedKeyAfterSortValues() {
+    IntDict dict = repeatedKey();
+    dict.sortValues();  // c=1, a=2, a=3, b=4
+    assertEquals(3, dict.get("a"));
+    dict.sortValuesReverse();  // b=4, a=3, a=2, c=1
+    assertEquals(2, dict.get("a"));
+  }
+
+  @Test
+  public void repeatedKeyAfterResize() {
+    IntDict dict = repeatedKey();
+    dict.resize(3);  // drops the last "a"
+    assertEquals(3, dict.get("a"));
+    assertEquals(4, dict.get("b"));
+  }
+
+  @Test
+  public void repeatedKeyInOtherDicts() {
+    FloatDict floats = new FloatDict(new String[] { "a", "b", "a" },
+                                     new float[] { 1, 2, 3 });
+    floats.sortKeys();
+    assertEquals(3, floats.get("a"), 0);
+
+    StringDict strings = new StringDict(new String[] { "a", "b", "a" },
+                                        new String[] { "x", "y", "z" });
+    strings.sortValues();  // a=x, b=y, a=z
+    assertEquals("z", strings.get("a"));
+  }
+}
@@ -0,0 +1,34 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import processing.data.JSONArray;
+
+public class JSONArrayTests {
+
+  @Test
+  public void mixedNumbersKeepTheirTypes() {
+    JSONArray arr = JSONArray.parse("[102, 0.5, 7]");
+    assertEquals(Integer.valueOf(102), arr.get(0));
+    assertEquals(Double.valueOf(0.5), arr.get(1));
+    assertEquals(Integer.valueOf(7), arr.get(2));
+
+    arr = JSONArray.parse("[0.5, 102]");
+    assertEquals(Double.valueOf(0.5), arr.get(0));
+    assertEquals(Integer.valueOf(102), arr.get(1));
+  }
+
+  @Test
+  public void numbersOfOneType() {
+    JSONArray ints = JSONArray.parse("[1, -2, 3]");
+    assertArrayEquals(new int[] { 1, -2, 3 }, ints.getIntArray());
+    assertEquals(Integer.valueOf(-2), ints.get(1));
+
+    JSONArray doubles = JSONArray.parse("[1.5, -2e3]");
+    assertEquals(Double.valueOf(-2000), doubles.get(1));
+    assertEquals("[\n  1.5,\n  -2000\n]", doubles.toString());
+  }
+}
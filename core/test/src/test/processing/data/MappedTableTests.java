@@ -0,0 +1,76 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import processing.data.MappedTable;
+import processing.data.Table;
+import processing.data.TableRow;
+
+public class MappedTableTests {
+
+  static File saveColumnar(Table table) throws Exception {
+    File file = File.createTempFile("mapped", ".cbin");
+    file.deleteOnExit();
+    table.save(file, "cbin");
+    return file;
+  }
+
+  static Table missingValues() {
+    Table t = new Table();
+    t.addColumn("s", Table.STRING);
+    t.addColumn("c", Table.COMPACT);
+    t.addColumn("cat", Table.STRING);
+    t.addColumn("f", Table.FLOAT);
+    t.addColumn("d", Table.DOUBLE);
+    t.addColumn("i", Table.INT);
+    TableRow row = t.addRow();
+    row.setString(0, "a");
+    row.setString(1, "b");
+    row.setString(2, "x");
+    row.setFloat(3, 1.5f);
+    row.setDouble(4, 2.5);
+    row.setInt(5, 3);
+    row = t.addRow();
+    row.setString(0, null);
+    row.setString(1, null);
+    row.setString(2, "y");
+    row.setFloat(3, Float.NaN);
+    row.setDouble(4, Double.NaN);
+    row.setInt(5, 0);
+    t.setColumnType(2, Table.CATEGORY);
+    t.setMissingString("NA");
+    return t;
+  }
+
+  @Test
+  public void stringsMatchTable() throws Exception {
+    File file = saveColumnar(missingValues());
+    Table table = new Table(file);
+    MappedTable mapped = new MappedTable(file);
+    try {
+      for (int row = 0; row < table.getRowCount(); row++) {
+        for (int col = 0; col < table.getColumnCount(); col++) {
+          assertEquals("row " + row + ", column " + col,
+                       table.getString(row, col), mapped.getString(row, col));
+        }
+      }
+    } finally {
+      mapped.close();
+    }
+  }
+
+  @Test
+  public void readAfterClose() throws Exception {
+    MappedTable mapped = new MappedTable(saveColumnar(missingValues()));
+    mapped.close();
+    try {
+      mapped.getInt(0, 5);
+      fail("Expected an IllegalStateException");
+    } catch (IllegalStateException e) { }
+  }
+}
@@ -0,0 +1,58 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import processing.data.DoubleList;
+import processing.data.FloatList;
+
+public class NumberListTests {
+
+  static final int PIECE_SIZE = 1 << 16;
+
+  static double[] randomValues(int count) {
+    Random random = new Random(7);
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = random.nextDouble() * Math.pow(10, random.nextInt(12));
+    }
+    return values;
+  }
+
+  /** Sum in fixed pieces, the order that sum() should always use. */
+  static double pieceSum(double[] values, int start, int count) {
+    double total = 0;
+    for (int piece = start; piece < start + count; piece += PIECE_SIZE) {
+      double sum = 0;
+      int stop = Math.min(piece + PIECE_SIZE, start + count);
+      for (int i = piece; i < stop; i++) {
+        sum += values[i];
+      }
+      total += sum;
+    }
+    return total;
+  }
+
+  @Test
+  public void doubleSumIsRepeatable() {
+    double[] values = randomValues(300000);
+    DoubleList list = new DoubleList(values);
+    // exact comparison, the result can't depend on the number of processors
+    assertEquals(pieceSum(values, 0, values.length), list.sum(), 0);
+  }
+
+  @Test
+  public void floatSumIsRepeatable() {
+    double[] values = randomValues(300000);
+    float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+      values[i] = floats[i];
+    }
+    FloatList list = new FloatList(floats);
+    assertEquals(pieceSum(values, 0, values.length), list.sumDouble(), 0);
+  }
+}
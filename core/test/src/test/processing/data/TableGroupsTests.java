@@ -0,0 +1,87 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import processing.data.DoubleDict;
+import processing.data.IntDict;
+import processing.data.Table;
+import processing.data.TableGroups;
+import processing.data.TableRow;
+
+public class TableGroupsTests {
+
+  @Test
+  public void missingKeysAreLeftOut() {
+    Table t = new Table();
+    t.addColumn("key", Table.STRING);
+    t.addColumn("value", Table.INT);
+    String[] keys = { null, "", "x", "", null };
+    for (int i = 0; i < keys.length; i++) {
+      TableRow row = t.addRow();
+      row.setString(0, keys[i]);
+      row.setInt(1, i);
+    }
+    TableGroups groups = t.groupBy("key");
+    assertEquals(2, groups.size());
+    IntDict count = groups.count();
+    assertEquals(2, count.get(""));
+    assertEquals(1, count.get("x"));
+    assertFalse(count.hasKey(null));
+    assertEquals(4, groups.sum("value").get(""), 0);
+    assertEquals(0, groups.getRowIndices(null).length);
+  }
+
+  @Test
+  public void missingCategoriesAreLeftOut() {
+    Table t = new Table();
+    t.addColumn("key", Table.STRING);
+    t.addColumn("value", Table.INT);
+    String[] keys = { "a", null, "b", "a" };
+    for (int i = 0; i < keys.length; i++) {
+      TableRow row = t.addRow();
+      row.setString(0, keys[i]);
+      row.setInt(1, i);
+    }
+    t.setColumnType(0, Table.CATEGORY);
+    IntDict count = t.groupBy(0).count();
+    assertEquals(2, count.size());
+    assertEquals(2, count.get("a"));
+    assertEquals(1, count.get("b"));
+  }
+
+  @Test
+  public void sumIsRepeatable() {
+    int rowCount = 300000;
+    int pieceSize = 1 << 16;
+    Table t = new Table();
+    t.addColumn("key", Table.INT);
+    t.addColumn("value", Table.DOUBLE);
+    t.setRowCount(rowCount);
+    Random random = new Random(11);
+    double[] expected = new double[3];
+    double[] piece = new double[3];
+    for (int row = 0; row < rowCount; row++) {
+      int key = row % 3;
+      double value = random.nextDouble() * Math.pow(10, random.nextInt(12));
+      t.setInt(row, 0, key);
+      t.setDouble(row, 1, value);
+      // the sums should be added up in fixed pieces, whatever the processors
+      piece[key] += value;
+      if ((row + 1) % pieceSize == 0 || row == rowCount - 1) {
+        for (int i = 0; i < 3; i++) {
+          expected[i] += piece[i];
+          piece[i] = 0;
+        }
+      }
+    }
+    DoubleDict sums = t.groupBy(0).sum(1);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(expected[i], sums.get(String.valueOf(i)), 0);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import processing.data.Table;
+import processing.data.TableReader;
+
+public class TableReaderTests {
+
+  /** CSV lines of "id,value", made as they're read, never all at once. */
+  static class SensorLog extends InputStream {
+    final int rowCount;
+    int row;
+    byte[] line = new byte[0];
+    int position;
+
+    SensorLog(int rowCount) {
+      this.rowCount = rowCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (position == line.length) {
+        if (row == rowCount) {
+          return -1;
+        }
+        line = ("sensor-" + row + "," + (row % 100) + "\n").getBytes("UTF-8");
+        position = 0;
+        row++;
+      }
+      return line[position++];
+    }
+  }
+
+  @Test
+  public void categoriesStayWithinBatch() throws IOException {
+    int rowCount = 300000;
+    int batchSize = 1000;
+    TableReader reader = new TableReader(new SensorLog(rowCount), "csv");
+    reader.setBatchSize(batchSize);
+    reader.setColumnTypes(new int[] { Table.CATEGORY, Table.INT });
+
+    int seen = 0;
+    Table batch;
+    while ((batch = reader.readBatch()) != null) {
+      for (int row = 0; row < batch.getRowCount(); row++) {
+        // every ID is different, so the numbers would keep climbing if
+        // the categories from earlier batches were kept around
+        int category = batch.getInt(row, 0);
+        assertTrue("category " + category, category < batchSize);
+        assertEquals("sensor-" + seen, batch.getString(row, 0));
+        assertEquals(seen % 100, batch.getInt(row, 1));
+        seen++;
+      }
+    }
+    assertEquals(rowCount, seen);
+  }
+}
@@ -0,0 +1,38 @@
+package test.processing.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+import processing.data.XML;
+
+public class XMLTests {
+
+  @Test
+  public void serializeAfterMissingAttribute() throws Exception {
+    XML xml = XML.parse("<a><b v=\"1\"/></a>");
+    assertEquals(5, xml.getInt("absent", 5));
+    assertEquals(1, xml.getChild("b").getInt("v"));
+    ObjectOutputStream out =
+      new ObjectOutputStream(new ByteArrayOutputStream());
+    out.writeObject(xml);
+    out.close();
+  }
+
+  @Test
+  public void attributeChangedThroughAnotherObject() throws Exception {
+    XML xml = XML.parse("<a><b v=\"1\"/><c/></a>");
+    XML b1 = xml.getChild(0);
+    assertEquals(1, b1.getInt("v"));
+    assertEquals(1.0, b1.getDouble("v"), 0);
+    // removeChild() makes new XML objects for the children that are left
+    xml.removeChild(xml.getChild("c"));
+    XML b2 = xml.getChild(0);
+    b2.setInt("v", 42);
+    assertEquals(42, b1.getInt("v"));
+    assertEquals(42.0, b1.getDouble("v"), 0);
+  }
+}